@@ -0,0 +1,136 @@
+package com.example.bluetoothapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Règles d'alerte sur le thread de lecture, par échantillon : 300 règles réparties sur
+ * 8 appareils (seuils, vitesses, hystérésis, durées), évaluées seules ou après le décodage.
+ * Le coût ajouté au décodage doit rester négligeable et sans allocation (gc.alloc.rate.norm).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AlertBenchmark {
+
+    private static final ChannelRegistry REGISTRY = ChannelRegistry.createDefault();
+    private static final int SAMPLES = 10_000;
+    private static final int DEVICES = 8;
+    private static final int RULES_PER_DEVICE = 37;
+    private static final String DEVICE = "AA:BB:CC:DD:EE:00";
+
+    private TelemetrySample[] samples;
+    private byte[] text;
+    private TelemetryDecoder decoder;
+    private TelemetryDecoder alertingDecoder;
+    // Règles de l'appareil (communes + les siennes) et, au pire, les 300 sur une seule session
+    private AlertEvaluator deviceAlerts;
+    private AlertEvaluator allAlerts;
+    private int changes;
+    private float checksum;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        List<AlertRule> rules = new ArrayList<>(AlertRule.createDefaults());
+        for (int device = 0; device < DEVICES; device++) {
+            String address = "AA:BB:CC:DD:EE:0" + device;
+            for (int i = 0; i < RULES_PER_DEVICE; i++) {
+                int channel = random.nextInt(REGISTRY.getChannelCount());
+                AlertRule rule;
+                switch (i % 4) {
+                    case 0:
+                        rule = AlertRule.above("haut " + i, channel, random.nextFloat() * 100);
+                        break;
+                    case 1:
+                        rule = AlertRule.below("bas " + i, channel, random.nextFloat() * 100);
+                        break;
+                    case 2:
+                        rule = AlertRule.risingFasterThan("hausse " + i, channel, random.nextFloat(), 1000);
+                        break;
+                    default:
+                        rule = AlertRule.fallingFasterThan("baisse " + i, channel, random.nextFloat(), 1000);
+                        break;
+                }
+                rules.add(rule.withHysteresis(random.nextFloat()).sustainedFor(random.nextInt(3) * 1000L)
+                        .forDevice(address));
+            }
+        }
+        AlertEvaluator.Listener listener = (rule, raised, value, timestampMillis) -> changes++;
+        deviceAlerts = new AlertEvaluator(AlertRuleSet.compile(rules, DEVICE), listener);
+        allAlerts = new AlertEvaluator(AlertRuleSet.compile(rules, null), listener);
+
+        samples = new TelemetrySample[SAMPLES];
+        ByteArrayOutputStream lines = new ByteArrayOutputStream();
+        byte[] line = new byte[128];
+        int[] next = {0};
+        TelemetryDecoder copier = new TelemetryDecoder(sample -> {
+            TelemetrySample copy = new TelemetrySample(sample.getChannelCount());
+            copy.copyFrom(sample);
+            copy.setReceivedAtMillis(1_700_000_000_000L + next[0] * 10L);
+            samples[next[0]++] = copy;
+        });
+        for (int i = 0; i < SAMPLES; i++) {
+            int length = Esp32Simulator.formatLine(0, i, 43_200_000 + i * 10, line, 0);
+            copier.feed(line, 0, length);
+            lines.write(line, 0, length);
+        }
+        text = lines.toByteArray();
+
+        decoder = new TelemetryDecoder(sample -> checksum += sample.getTemperature());
+        alertingDecoder = new TelemetryDecoder(sample -> {
+            checksum += sample.getTemperature();
+            deviceAlerts.evaluate(sample);
+        });
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public int evaluateDevice() {
+        for (TelemetrySample sample : samples) {
+            deviceAlerts.evaluate(sample);
+        }
+        return changes;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public int evaluateAllRules() {
+        for (TelemetrySample sample : samples) {
+            allAlerts.evaluate(sample);
+        }
+        return changes;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public float decodeOnly() {
+        decoder.feed(text, 0, text.length);
+        return checksum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public float decodeAndEvaluate() {
+        alertingDecoder.feed(text, 0, text.length);
+        return checksum + changes;
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.bluetoothapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Découpage et analyse des données reçues, par échantillon : ancien chemin
+ * (BufferedReader + String.split + parseFloat, comme processMessage), décodeur texte en place
+ * et trames binaires.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DecoderBenchmark {
+
+    private static final ChannelRegistry REGISTRY = ChannelRegistry.createDefault();
+    private static final int SAMPLES = 1000;
+    private static final int SAMPLES_PER_FRAME = 10;
+
+    private byte[] text;
+    private byte[] binary;
+    private TelemetryDecoder decoder;
+    private float checksum;
+
+    @Setup
+    public void setUp() {
+        ByteArrayOutputStream lines = new ByteArrayOutputStream();
+        byte[] line = new byte[96];
+        for (int i = 0; i < SAMPLES; i++) {
+            int length = Esp32Simulator.formatLine(0, i, i * 1000, line, 0);
+            lines.write(line, 0, length);
+        }
+        text = lines.toByteArray();
+
+        ByteArrayOutputStream frames = new ByteArrayOutputStream();
+        byte[] frame = new byte[BinaryFrameCodec.MAX_FRAME_SIZE];
+        float[][] values = new float[SAMPLES_PER_FRAME][REGISTRY.getChannelCount()];
+        // Les quatre canaux du firmware d'origine, les autres absents
+        for (float[] sample : values) {
+            Arrays.fill(sample, Float.NaN);
+        }
+        for (int f = 0; f < SAMPLES / SAMPLES_PER_FRAME; f++) {
+            for (int i = 0; i < SAMPLES_PER_FRAME; i++) {
+                values[i][ChannelRegistry.TEMPERATURE] = 20 + (f + i) % 50 * 0.1f;
+                values[i][ChannelRegistry.VOLTAGE] = 3.1f + i * 0.01f;
+                values[i][ChannelRegistry.BATTERY] = 80;
+                values[i][ChannelRegistry.BRIGHTNESS] = 400 + i;
+            }
+            int length = BinaryFrameCodec.encode(REGISTRY, frame, f, f * 1000, 100, values, SAMPLES_PER_FRAME);
+            frames.write(frame, 0, length);
+        }
+        binary = frames.toByteArray();
+
+        decoder = new TelemetryDecoder(sample -> checksum += sample.getTemperature());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public float decodeText() {
+        decoder.feed(text, 0, text.length);
+        return checksum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public float decodeBinary() {
+        decoder.feed(binary, 0, binary.length);
+        return checksum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public float legacySplit() throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(text)));
+        float sum = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            sum += parseLegacy(line);
+        }
+        return sum;
+    }
+
+    // Même traitement que l'ancien BluetoothService.processMessage, sans les logs
+    private static float parseLegacy(String message) {
+        String[] parts = message.split(",");
+        if (parts.length < 3) {
+            return 0;
+        }
+        float temperature = 0;
+        float voltage = 0;
+        int battery = 0;
+        float brightness = 0;
+        for (String part : parts) {
+            String[] keyValue = part.split(":");
+            if (keyValue.length != 2) continue;
+
+            String key = keyValue[0];
+            String value = keyValue[1];
+            try {
+                if (key.equals("T")) {
+                    temperature = Float.parseFloat(value);
+                } else if (key.equals("V")) {
+                    voltage = Float.parseFloat(value);
+                } else if (key.equals("B")) {
+                    battery = Integer.parseInt(value);
+                } else if (key.equals("L")) {
+                    brightness = Float.parseFloat(value);
+                }
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+        return temperature + voltage + battery + brightness;
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.bluetoothapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coût de remise d'un échantillon au thread principal, par échantillon, pour une image de
+ * {@link #SAMPLES_PER_FRAME} échantillons : un Runnable posté par échantillon (ancien
+ * handler.post) contre {@link SampleDispatcher} qui regroupe en un lot par image.
+ * La file du Looper est simulée par une ArrayDeque vidée sur le même thread.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DeliveryBenchmark {
+
+    private static final ChannelRegistry REGISTRY = ChannelRegistry.createDefault();
+    private static final int SAMPLES_PER_FRAME = 100;
+
+    private final ArrayDeque<Runnable> looper = new ArrayDeque<>();
+    private final TelemetrySample sample = new TelemetrySample(REGISTRY.getChannelCount());
+    private SampleDispatcher dispatcher;
+    private float checksum;
+
+    @Setup
+    public void setUp() {
+        sample.set(ChannelRegistry.TEMPERATURE, 21.5f);
+        sample.set(ChannelRegistry.VOLTAGE, 3.3f);
+        sample.set(ChannelRegistry.BATTERY, 80);
+        sample.set(ChannelRegistry.BRIGHTNESS, 400);
+        sample.setTimeOfDayMillis(45_296_000);
+
+        dispatcher = new SampleDispatcher((address, batch) -> checksum += batch.get(batch.size() - 1, 0),
+                "bench", new SampleDispatcher.Scheduler() {
+                    @Override
+                    public boolean postFrame(Runnable task) {
+                        looper.add(task);
+                        return true;
+                    }
+
+                    @Override
+                    public void postDelayed(Runnable task, long delayMillis) {
+                        looper.add(task);
+                    }
+
+                    @Override
+                    public long uptimeMillis() {
+                        return 0;
+                    }
+                }, REGISTRY.getChannelCount());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES_PER_FRAME)
+    public float postPerSample() {
+        for (int i = 0; i < SAMPLES_PER_FRAME; i++) {
+            // Ancien chemin : valeurs et horodatage capturés dans un lambda par échantillon
+            float temperature = sample.getTemperature() + i;
+            float voltage = sample.getVoltage();
+            int battery = sample.getBatteryPercentage();
+            String timestamp = sample.formatTimestamp();
+            float brightness = sample.getBrightness();
+            looper.add(() -> checksum += temperature + voltage + battery + brightness + timestamp.length());
+        }
+        drain();
+        return checksum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES_PER_FRAME)
+    public float batchedPerFrame() {
+        for (int i = 0; i < SAMPLES_PER_FRAME; i++) {
+            sample.set(ChannelRegistry.TEMPERATURE, 21.5f + i);
+            dispatcher.publish(sample);
+        }
+        drain();
+        return checksum;
+    }
+
+    private void drain() {
+        Runnable task;
+        while ((task = looper.poll()) != null) {
+            task.run();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.bluetoothapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Réduction de l'historique à la largeur du graphique : min/max et LTTB sur tout l'historique
+ * (coût d'un zoom), et mise à jour incrémentale de {@link ChartDecimator} par échantillon reçu.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DownsampleBenchmark {
+
+    private static final int PIXELS = 1000;
+    private static final int SAMPLES_PER_FRAME = 10;
+
+    @Param({"10000", "200000"})
+    public int historySize;
+
+    private TimeSeriesRingBuffer history;
+    private ChartDecimator decimator;
+    private final long[] outTimes = new long[2 * PIXELS];
+    private final float[] outValues = new float[2 * PIXELS];
+    private long time;
+
+    @Setup
+    public void setUp() {
+        history = new TimeSeriesRingBuffer(historySize);
+        for (int i = 0; i < historySize; i++) {
+            history.append(time, value(time));
+            time += 100;
+        }
+        decimator = new ChartDecimator(history);
+        decimator.setPixelWidth(PIXELS);
+        decimator.update();
+    }
+
+    private static float value(long time) {
+        return (float) (20 + 5 * Math.sin(time / 10_000.0) + (time / 100 % 7) * 0.1);
+    }
+
+    @Benchmark
+    public int minMax() {
+        return Downsampler.minMax(history, 0, history.size(), PIXELS, outTimes, outValues);
+    }
+
+    @Benchmark
+    public int lttb() {
+        return Downsampler.lttb(history, 0, history.size(), 2 * PIXELS, outTimes, outValues);
+    }
+
+    // Une image : quelques échantillons ajoutés puis les points du graphique recalculés
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES_PER_FRAME)
+    public int decimatorFollowTail() {
+        for (int i = 0; i < SAMPLES_PER_FRAME; i++) {
+            history.append(time, value(time));
+            time += 100;
+        }
+        decimator.update();
+        return decimator.getPointCount();
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.bluetoothapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Export compressé en colonnes, par échantillon : écriture et relecture d'une session du
+ * simulateur (100 Hz, tous les canaux). La relecture doit rester bien plus rapide que le disque :
+ * à ~4 octets par échantillon, 100 Mo/s de lecture représentent ~25 M échantillons/s.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ExportBenchmark {
+
+    private static final ChannelRegistry REGISTRY = ChannelRegistry.createDefault();
+    private static final int SAMPLES = 20_000;
+
+    private TelemetrySample[] samples;
+    private byte[] file;
+    private float checksum;
+
+    @Setup
+    public void setUp() throws IOException {
+        samples = new TelemetrySample[SAMPLES];
+        byte[] line = new byte[128];
+        int[] next = {0};
+        TelemetryDecoder decoder = new TelemetryDecoder(sample -> {
+            TelemetrySample copy = new TelemetrySample(sample.getChannelCount());
+            copy.copyFrom(sample);
+            copy.setReceivedAtMillis(1_700_000_000_000L + next[0] * 10L);
+            samples[next[0]++] = copy;
+        });
+        for (int i = 0; i < SAMPLES; i++) {
+            int length = Esp32Simulator.formatLine(0, i, 43_200_000 + i * 10, line, 0);
+            decoder.feed(line, 0, length);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (CompressedSessionWriter writer = new CompressedSessionWriter(bytes, REGISTRY.getChannelCount())) {
+            for (TelemetrySample sample : samples) {
+                writer.append(sample);
+            }
+        }
+        file = bytes.toByteArray();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public long encode() throws IOException {
+        CompressedSessionWriter writer = new CompressedSessionWriter(OutputStream.nullOutputStream(), REGISTRY.getChannelCount());
+        for (TelemetrySample sample : samples) {
+            writer.append(sample);
+        }
+        writer.close();
+        return writer.getByteCount();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public float decode() throws IOException {
+        try (CompressedSessionReader reader = new CompressedSessionReader(new ByteArrayInputStream(file))) {
+            reader.readAll(sample -> checksum += sample.getTemperature());
+        }
+        return checksum;
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.bluetoothapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ajout d'un échantillon à l'historique d'un graphique, historique plein : ancienne liste
+ * d'Entry (ajout, remove(0) et renumérotation de tous les points, comme l'ancien updateChart)
+ * contre {@link TimeSeriesRingBuffer}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HistoryBenchmark {
+
+    // 50 : ancien MAX_DATA_POINTS
+    @Param({"50", "5000"})
+    public int capacity;
+
+    private List<Point> entries;
+    private TimeSeriesRingBuffer ring;
+    private long time;
+
+    // Équivalent de com.github.mikephil.charting.data.Entry (x, y)
+    static final class Point {
+        final float x;
+        final float y;
+
+        Point(float x, float y) {
+            this.x = x;
+            this.y = y;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        entries = new ArrayList<>();
+        ring = new TimeSeriesRingBuffer(capacity);
+        for (int i = 0; i < capacity; i++) {
+            entries.add(new Point(i, i));
+            ring.append(i, i);
+        }
+        time = capacity;
+    }
+
+    @Benchmark
+    public int legacyEntryList() {
+        float value = time++ % 100;
+        entries.add(new Point(entries.size(), value));
+        if (entries.size() > capacity) {
+            entries.remove(0);
+            for (int i = 0; i < entries.size(); i++) {
+                Point e = entries.get(i);
+                entries.set(i, new Point(i, e.y));
+            }
+        }
+        return entries.size();
+    }
+
+    @Benchmark
+    public int ringBuffer() {
+        ring.append(time, time++ % 100);
+        return ring.size();
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.bluetoothapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rejeu d'une capture complète, le plus vite possible, dans la chaîne de réception
+ * (ReplayTransport -> TelemetryDecoder -> SampleDispatcher), par rejeu.
+ *
+ * Avec des données du terrain : -PjmhArgs="ReplayBenchmark -p capture=/chemin/session.cap",
+ * capture écrite par BluetoothService.setCaptureDirectory. Sans, une capture du simulateur est
+ * fabriquée au démarrage.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ReplayBenchmark {
+
+    private static final String ADDRESS = "5E:00:00:00:00:01";
+    private static final int GENERATED_SAMPLES = 100_000;
+
+    @Param("")
+    public String capture;
+
+    private final ArrayDeque<Runnable> looper = new ArrayDeque<>();
+    private byte[] bytes;
+    private SampleDispatcher dispatcher;
+    private long delivered;
+
+    @Setup
+    public void setUp() throws Exception {
+        bytes = capture.isEmpty() ? generate() : Files.readAllBytes(Paths.get(capture));
+        dispatcher = new SampleDispatcher((address, batch) -> delivered += batch.getReceivedCount(),
+                ADDRESS, new SampleDispatcher.Scheduler() {
+                    @Override
+                    public boolean postFrame(Runnable task) {
+                        looper.add(task);
+                        return true;
+                    }
+
+                    @Override
+                    public void postDelayed(Runnable task, long delayMillis) {
+                        looper.add(task);
+                    }
+
+                    @Override
+                    public long uptimeMillis() {
+                        return 0;
+                    }
+                }, ChannelRegistry.createDefault().getChannelCount());
+        long samples = replay();
+        System.out.println("Capture de " + bytes.length + " octets, " + samples + " échantillons par rejeu");
+    }
+
+    @Benchmark
+    public long replay() throws IOException {
+        ReplayTransport transport = new ReplayTransport(ADDRESS, new ByteArrayInputStream(bytes));
+        transport.setSpeed(ReplayTransport.AS_FAST_AS_POSSIBLE);
+        TelemetryDecoder decoder = new TelemetryDecoder(dispatcher::publish);
+        decoder.setClock(transport.getClock());
+        long before = delivered;
+        transport.connect();
+        InputStream in = transport.getInputStream();
+        while (true) {
+            try {
+                if (decoder.readFrom(in) < 0) {
+                    break;
+                }
+            } catch (IOException e) {
+                // Coupure enregistrée : reprise comme après une reconnexion, fin de capture sinon
+                try {
+                    transport.connect();
+                } catch (IOException end) {
+                    break;
+                }
+            }
+            drain();
+        }
+        drain();
+        return delivered - before;
+    }
+
+    private void drain() {
+        Runnable task;
+        while ((task = looper.poll()) != null) {
+            task.run();
+        }
+    }
+
+    // Capture du simulateur lu par un tube, découpée comme une vraie lecture de socket
+    private static byte[] generate() throws Exception {
+        Esp32Simulator simulator = new Esp32Simulator(1);
+        simulator.setRateHz(0);
+        PipeTransport pipe = new PipeTransport(ADDRESS);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CapturingTransport capturing = new CapturingTransport(pipe, out);
+        Thread device = new Thread(() -> {
+            try (OutputStream stream = pipe.getDeviceOutputStream()) {
+                simulator.stream(0, stream, GENERATED_SAMPLES);
+            } catch (IOException e) {
+                // Lecteur parti
+            }
+        });
+        device.start();
+        InputStream in = capturing.getInputStream();
+        byte[] buffer = new byte[4096];
+        while (in.read(buffer, 0, buffer.length) >= 0) {
+            // Tout passe dans la capture
+        }
+        capturing.close();
+        device.join();
+        return out.toByteArray();
+    }
+}
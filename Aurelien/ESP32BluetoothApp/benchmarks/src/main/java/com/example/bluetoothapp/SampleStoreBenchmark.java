@@ -0,0 +1,108 @@
+package com.example.bluetoothapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Historique de trois canaux sur 4 h à 50 Hz dans un {@link SampleStore} : ajout d'un point
+ * et zoom min/max sur une heure, tout en mémoire (budget 64 Mo) ou en grande partie sur disque
+ * (budget 2 Mo), contre {@link TimeSeriesRingBuffer}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SampleStoreBenchmark {
+
+    private static final int POINTS = 4 * 3600 * 50;
+    private static final long PERIOD = 20;
+
+    @Param({"64", "2"})
+    public int budgetMegabytes;
+
+    private File directory;
+    private SampleStore store;
+    private TimeSeries[] stored;
+    private TimeSeriesRingBuffer ring;
+    private final long[] outTimes = new long[1000];
+    private final float[] outValues = new float[1000];
+    private long time;
+    private int channel;
+    private int zoom;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("store").toFile();
+        store = new SampleStore(directory, budgetMegabytes * 1024L * 1024, POINTS);
+        stored = new TimeSeries[] {store.series("a"), store.series("b"), store.series("c")};
+        ring = new TimeSeriesRingBuffer(POINTS);
+        for (int i = 0; i < POINTS; i++) {
+            for (TimeSeries series : stored) {
+                series.append(i * PERIOD, i % 100);
+            }
+            ring.append(i * PERIOD, i % 100);
+        }
+        time = POINTS * PERIOD;
+        System.out.println("Hors tas " + store.getAllocatedBytes() / 1024 + " Ko, disque "
+                + store.getDiskBytes() / 1024 + " Ko");
+    }
+
+    @TearDown
+    public void tearDown() {
+        store.close();
+        directory.delete();
+    }
+
+    @Benchmark
+    public int appendStore() {
+        TimeSeries series = stored[channel];
+        channel = (channel + 1) % stored.length;
+        series.append(time, time % 100);
+        if (channel == 0) {
+            time += PERIOD;
+        }
+        return series.size();
+    }
+
+    @Benchmark
+    public int appendRing() {
+        ring.append(time, time % 100);
+        time += PERIOD;
+        return ring.size();
+    }
+
+    // Une heure prise tour à tour dans chacune des 4 h : les plus anciennes sont sur disque avec 2 Mo
+    @Benchmark
+    public int zoomStore() {
+        return zoom(stored[0]);
+    }
+
+    @Benchmark
+    public int zoomRing() {
+        return zoom(ring);
+    }
+
+    private int zoom(TimeSeries series) {
+        long from = series.getTimestamp(0) + (zoom++ % 4) * 3_600_000L;
+        int start = series.lowerBound(from);
+        int end = series.lowerBound(from + 3_600_000L);
+        return Downsampler.minMax(series, start, end, 500, outTimes, outValues);
+    }
+}
@@ -2,6 +2,12 @@
 #include <Wire.h>
 #include <Adafruit_BMP280.h>
 
+// Capteur de lumière VEML7700 (bibliothèque DFRobot), envoyé comme luminosité "L" : décommenter s'il est branché
+// #define VEML7700_SENSOR
+#ifdef VEML7700_SENSOR
+#include "DFRobot_VEML7700.h"
+#endif
+
 // Pin pour la mesure de tension
 #define VOLTAGE_PIN 15  // GPIO15 (pin 18)
 
@@ -15,12 +21,78 @@ const float ADC_RESOLUTION = 4095.0; // Résolution de l'ADC de l'ESP32 (12 bits
 const float BATTERY_MAX_VOLTAGE = 14.0; // Tension max de la batterie
 const float BATTERY_MIN_VOLTAGE = 11.0; // Tension min de la batterie
 
+// Protocole binaire compact (trames avec synchro, séquence et CRC, plusieurs échantillons par trame).
+// Commenter cette ligne pour revenir au format texte "T:25.5,V:3.3,B:75" des anciennes versions.
+#define BINARY_PROTOCOL
+
+#ifdef BINARY_PROTOCOL
+// Voir BinaryFrameCodec.java pour la description du format
+const uint8_t FRAME_SYNC = 0xA5;
+const int SAMPLES_PER_FRAME = 10;        // Échantillons regroupés dans une trame
+const unsigned long DEFAULT_INTERVAL_MS = 100; // 10 Hz au lieu de 1 Hz en mode texte
+// Une trame part au plus tard après ce délai, même incomplète (intervalles longs)
+const unsigned long MAX_FRAME_LATENCY_MS = 1000;
+const uint8_t REPLY_SYNC = 0xA6;         // Réponse à une commande, voir BinaryFrameCodec.java
+const uint8_t CHANNEL_TEMPERATURE = 0;   // Valeur en 0,01 °C
+const uint8_t CHANNEL_VOLTAGE = 1;       // Valeur en mV
+const uint8_t CHANNEL_BATTERY = 2;       // Valeur en %
+const uint8_t CHANNEL_BRIGHTNESS = 3;    // Luminosité (VEML7700) en 0,1 lx, sur 32 bits
+const uint8_t CHANNEL_PRESSURE = 4;      // Valeur en 0,1 hPa
+const uint8_t TAG_WIDE = 0x80;           // Bit du tag : valeur sur 32 bits
+
+uint8_t frame[2 + 255 + 2];
+int framePos = 0;
+int frameSamples = 0;
+uint16_t frameSequence = 0;
+// Après une (re)connexion, la trame en cours part dès l'échantillon suivant au lieu d'attendre
+// d'être pleine : l'application reçoit des données en ~100 ms au lieu d'une seconde
+bool flushFrame = false;
+#else
+const unsigned long DEFAULT_INTERVAL_MS = 1000;
+#endif
+
+// Commandes de l'application, une par ligne : "#<id> RATE <ms>", "#<id> CHAN <masque>",
+// "#<id> BEAT <ms>" ou "#<id> DBND <canal << 24 | bande>" (report-on-change).
+// Réponse "#<id> OK <valeur>" / "#<id> ERR <code>" en texte, trame 0xA6 en binaire (CommandChannel.java)
+const unsigned long MIN_INTERVAL_MS = 20;     // 50 Hz
+const unsigned long MAX_INTERVAL_MS = 60000;  // Tient dans le champ DT (u16) des trames
+const uint8_t STATUS_OK = 0;
+const uint8_t STATUS_UNKNOWN_COMMAND = 1;
+const uint8_t STATUS_INVALID_ARGUMENT = 2;
+const uint8_t ALL_CHANNELS = 0x1F;            // Température, tension, batterie, luminosité, pression
+
+unsigned long sampleIntervalMs = DEFAULT_INTERVAL_MS;
+uint8_t channelMask = ALL_CHANNELS;
+bool clientConnected = false;
+
+// Horloge de la carte (millis() modulo 24 h) au moment de la mesure, envoyée avec chaque
+// échantillon : l'application la recale sur son horloge (ClockSync.java), pas besoin d'heure réelle
+const unsigned long DAY_MS = 86400000UL;
+unsigned long sampledAt = 0;
+
+// Mode report-on-change (commandes "BEAT <ms>" et "DBND <canal << 24 | bande>") : un canal n'est
+// envoyé que s'il s'écarte de plus de sa bande morte de la dernière valeur envoyée, ou après
+// heartbeatMs sans envoi. heartbeatMs = 0 : chaque mesure est envoyée en entier
+const float CHANNEL_SCALE[6] = {100, 1000, 1, 10, 10, 100}; // Virgule fixe de BinaryFrameCodec
+unsigned long heartbeatMs = 0;
+float deadBand[6] = {0, 0, 0, 0, 0, 0};
+float lastSent[6];
+unsigned long lastSentAt[6];
+uint8_t sentMask = 0;  // Canaux déjà envoyés depuis la connexion
+unsigned long nextSampleAt = 0;
+char commandLine[48];
+int commandLength = 0;
+
 // Initialisation du BlueTooth
 BluetoothSerial SerialBT;
 
 // Initialisation du capteur BMP280
 Adafruit_BMP280 bmp;
 
+#ifdef VEML7700_SENSOR
+DFRobot_VEML7700 als;
+#endif
+
 void setup() {
   // Initialisation de la communication série
   Serial.begin(115200);
@@ -38,19 +110,50 @@ void setup() {
   }
   
   // Configuration du capteur
+  configureSensor();
+  
+  // Configuration du pin pour la mesure de tension
+  pinMode(VOLTAGE_PIN, INPUT);
+
+#ifdef VEML7700_SENSOR
+  als.begin();
+#endif
+}
+
+// Le BMP280 mesure en continu : une pause de 500 ms entre deux mesures suffit à 1 Hz, mais à 50 Hz
+// l'application recevrait 25 fois la même valeur
+void configureSensor() {
   bmp.setSampling(Adafruit_BMP280::MODE_NORMAL,     /* Mode de fonctionnement */
                   Adafruit_BMP280::SAMPLING_X2,     /* Temp. oversampling */
                   Adafruit_BMP280::SAMPLING_X16,    /* Pressure oversampling */
                   Adafruit_BMP280::FILTER_X16,      /* Filtering. */
-                  Adafruit_BMP280::STANDBY_MS_500); /* Standby time. */
-  
-  // Configuration du pin pour la mesure de tension
-  pinMode(VOLTAGE_PIN, INPUT);
+                  sampleIntervalMs < 500 ? Adafruit_BMP280::STANDBY_MS_1
+                                         : Adafruit_BMP280::STANDBY_MS_500); /* Standby time. */
 }
 
 void loop() {
-  // Lecture de la température
+  // Les commandes sont lues entre deux mesures : une commande n'attend jamais un long intervalle
+  readCommands();
+  unsigned long now = millis();
+  if ((long)(now - nextSampleAt) < 0) {
+    delay(1);
+    return;
+  }
+  nextSampleAt = now + sampleIntervalMs;
+  sampleAndSend();
+}
+
+void sampleAndSend() {
+  sampledAt = millis() % DAY_MS;
+  // Lecture de la température et de la pression (Pa -> hPa)
   float temperature = bmp.readTemperature();
+  float pressure = bmp.readPressure() / 100.0;
+
+  // Lumière ambiante, négative si le capteur est absent
+  float lux = -1;
+#ifdef VEML7700_SENSOR
+  als.getALSLux(lux);
+#endif
   
   // Lecture de la tension
   float adcValue = analogRead(VOLTAGE_PIN);
@@ -62,26 +165,281 @@ void loop() {
   // Calcul du pourcentage de batterie
   int batteryPercentage = calculateBatteryPercentage(batteryVoltage);
   
-  // Affichage des données en série pour le débogage
-  Serial.print("Température: ");
-  Serial.print(temperature);
-  Serial.print(" °C, Tension mesurée: ");
-  Serial.print(measuredVoltage);
-  Serial.print(" V, Tension batterie: ");
-  Serial.print(batteryVoltage);
-  Serial.print(" V, Batterie: ");
-  Serial.print(batteryPercentage);
-  Serial.println(" %");
+  // Affichage des données en série pour le débogage (trop bavard aux cadences rapides)
+  if (sampleIntervalMs >= 1000) {
+    Serial.print("Température: ");
+    Serial.print(temperature);
+    Serial.print(" °C, Tension mesurée: ");
+    Serial.print(measuredVoltage);
+    Serial.print(" V, Tension batterie: ");
+    Serial.print(batteryVoltage);
+    Serial.print(" V, Batterie: ");
+    Serial.print(batteryPercentage);
+    Serial.print(" %, Pression: ");
+    Serial.print(pressure);
+    Serial.println(" hPa");
+  }
   
   // Envoi des données via Bluetooth
+  bool connected = SerialBT.hasClient();
+  if (connected && !clientConnected) {
+#ifdef BINARY_PROTOCOL
+    flushFrame = true;
+#endif
+    // Nouvelle connexion : l'application ne connaît encore aucune valeur
+    sentMask = 0;
+  }
+  clientConnected = connected;
+#ifdef BINARY_PROTOCOL
+  addSampleToFrame(temperature, measuredVoltage, batteryPercentage, pressure, lux);
+#else
   // Le format est "T:25.5,V:3.3" car c'est ce que l'application Android attend
   // Mise à jour pour inclure le pourcentage de batterie: "T:25.5,V:3.3,B:75"
-  String data = "T:" + String(temperature, 1) + ",V:" + String(measuredVoltage, 2) + ",B:" + String(batteryPercentage);
-  SerialBT.println(data);
-  
-  // Attendre un peu
-  delay(1000);
+  // puis la luminosité et la pression : "T:25.5,V:3.3,B:75,L:350.5,P:1013.2"
+  // Les canaux désactivés par la commande CHAN sont omis, comme ceux qui n'ont pas changé en
+  // mode report-on-change ; rien n'est envoyé si aucun canal ne reste
+  String data = "";
+  if (sendChannel(0, temperature)) data += ",T:" + String(temperature, 1);
+  if (sendChannel(1, measuredVoltage)) data += ",V:" + String(measuredVoltage, 2);
+  if (sendChannel(2, batteryPercentage)) data += ",B:" + String(batteryPercentage);
+  if (lux >= 0 && sendChannel(3, lux)) data += ",L:" + String(lux, 1);
+  if (sendChannel(4, pressure)) data += ",P:" + String(pressure, 1);
+  if (data.length() > 0) {
+    // Horloge de la carte à la milliseconde : "H:01:02:03.456"
+    char boardTime[16];
+    snprintf(boardTime, sizeof(boardTime), ",H:%02lu:%02lu:%02lu.%03lu", sampledAt / 3600000UL,
+             sampledAt / 60000UL % 60, sampledAt / 1000UL % 60, sampledAt % 1000);
+    data += boardTime;
+    SerialBT.println(data.substring(1));
+  }
+#endif
+}
+
+// Vrai si le canal est activé et, en mode report-on-change, sorti de sa bande morte ou dû au battement
+bool sendChannel(int channel, float value) {
+  if (!(channelMask & (1 << channel))) {
+    return false;
+  }
+  if (heartbeatMs == 0) {
+    return true;
+  }
+  unsigned long now = millis();
+  if ((sentMask & (1 << channel)) && fabs(value - lastSent[channel]) <= deadBand[channel]
+      && now - lastSentAt[channel] < heartbeatMs) {
+    return false;
+  }
+  lastSent[channel] = value;
+  lastSentAt[channel] = now;
+  sentMask |= 1 << channel;
+  return true;
+}
+
+// Accumule les octets reçus et exécute chaque ligne complète
+void readCommands() {
+  while (SerialBT.available()) {
+    char c = SerialBT.read();
+    if (c == '\n' || c == '\r') {
+      if (commandLength > 0) {
+        commandLine[commandLength] = '\0';
+        executeCommand(commandLine);
+        commandLength = 0;
+      }
+    } else if (commandLength < (int)sizeof(commandLine) - 1) {
+      commandLine[commandLength++] = c;
+    }
+  }
+}
+
+void executeCommand(const char* line) {
+  unsigned int id;
+  char name[8];
+  long argument;
+  if (sscanf(line, "#%u %7s %ld", &id, name, &argument) != 3) {
+    return;  // Ni identifiant ni réponse possible
+  }
+
+  if (strcmp(name, "RATE") == 0) {
+    if (argument <= 0) {
+      sendReply(id, STATUS_INVALID_ARGUMENT, 0);
+      return;
+    }
+    unsigned long interval = constrain((unsigned long)argument, MIN_INTERVAL_MS, MAX_INTERVAL_MS);
+#ifdef BINARY_PROTOCOL
+    // L'intervalle est commun aux échantillons d'une trame : la trame en cours part avant
+    sendFrame();
+#endif
+    sampleIntervalMs = interval;
+    configureSensor();
+    // Prochaine mesure tout de suite quand on accélère
+    if ((long)(nextSampleAt - millis()) > (long)interval) {
+      nextSampleAt = millis();
+    }
+    sendReply(id, STATUS_OK, interval);
+  } else if (strcmp(name, "CHAN") == 0) {
+    uint8_t mask = argument & ALL_CHANNELS;
+    // Un seul canal suffit : le décodeur accepte les lignes courtes dont tous les champs sont connus
+    if (mask == 0) {
+      sendReply(id, STATUS_INVALID_ARGUMENT, 0);
+      return;
+    }
+    channelMask = mask;
+    sendReply(id, STATUS_OK, mask);
+  } else if (strcmp(name, "BEAT") == 0) {
+    if (argument < 0) {
+      sendReply(id, STATUS_INVALID_ARGUMENT, 0);
+      return;
+    }
+#ifdef BINARY_PROTOCOL
+    sendFrame();
+#endif
+    heartbeatMs = argument;
+    sentMask = 0;  // Repart d'un échantillon complet
+    sendReply(id, STATUS_OK, heartbeatMs);
+  } else if (strcmp(name, "DBND") == 0) {
+    int channel = (argument >> 24) & 0xFF;
+    if (channel >= 6) {
+      sendReply(id, STATUS_INVALID_ARGUMENT, 0);
+      return;
+    }
+    deadBand[channel] = (argument & 0xFFFFFF) / CHANNEL_SCALE[channel];
+    sendReply(id, STATUS_OK, argument);
+  } else {
+    sendReply(id, STATUS_UNKNOWN_COMMAND, 0);
+  }
+}
+
+void sendReply(unsigned int id, uint8_t status, long value) {
+#ifdef BINARY_PROTOCOL
+  uint8_t reply[11];
+  reply[0] = REPLY_SYNC;
+  reply[1] = 7;
+  reply[2] = id & 0xFF;
+  reply[3] = (id >> 8) & 0xFF;
+  reply[4] = status;
+  for (int i = 0; i < 4; i++) {
+    reply[5 + i] = (value >> (8 * i)) & 0xFF;
+  }
+  uint16_t crc = crc16(reply + 1, 8);
+  reply[9] = crc & 0xFF;
+  reply[10] = (crc >> 8) & 0xFF;
+  SerialBT.write(reply, sizeof(reply));
+#else
+  if (status == STATUS_OK) {
+    SerialBT.printf("#%u OK %ld\n", id, value);
+  } else {
+    SerialBT.printf("#%u ERR %u\n", id, status);
+  }
+#endif
+}
+
+#ifdef BINARY_PROTOCOL
+void putInt16(int16_t value) {
+  frame[framePos++] = value & 0xFF;
+  frame[framePos++] = (value >> 8) & 0xFF;
+}
+
+void putInt32(int32_t value) {
+  for (int i = 0; i < 4; i++) {
+    frame[framePos++] = (value >> (8 * i)) & 0xFF;
+  }
+}
+
+void putUInt32(uint32_t value) {
+  for (int i = 0; i < 4; i++) {
+    frame[framePos++] = (value >> (8 * i)) & 0xFF;
+  }
+}
+
+// CRC-16/CCITT (poly 0x1021, init 0xFFFF), identique à BinaryFrameCodec.crc16
+uint16_t crc16(const uint8_t* data, int length) {
+  uint16_t crc = 0xFFFF;
+  for (int i = 0; i < length; i++) {
+    crc ^= (uint16_t)data[i] << 8;
+    for (int bit = 0; bit < 8; bit++) {
+      crc = (crc & 0x8000) ? (crc << 1) ^ 0x1021 : crc << 1;
+    }
+  }
+  return crc;
+}
+
+// Ajoute un échantillon à la trame en cours et l'envoie quand elle est pleine
+void addSampleToFrame(float temperature, float voltage, int batteryPercentage, float pressure, float lux) {
+  if (frameSamples == 0) {
+    // En-tête : synchro, longueur (plus tard), séquence, nombre, heure du premier échantillon, intervalle
+    framePos = 2;
+    putInt16(frameSequence);
+    framePos++;                // Nombre d'échantillons, rempli à l'envoi
+    putUInt32(sampledAt);      // Horloge de la carte, recalée par l'application
+    putInt16(sampleIntervalMs);
+  }
+
+  // Nombre de canaux de cet échantillon, rempli après les valeurs (canaux désactivés ou inchangés omis)
+  int countPos = framePos++;
+  uint8_t channels = 0;
+  if (sendChannel(CHANNEL_TEMPERATURE, temperature)) {
+    frame[framePos++] = CHANNEL_TEMPERATURE;
+    putInt16((int16_t)lroundf(temperature * 100));
+    channels++;
+  }
+  if (sendChannel(CHANNEL_VOLTAGE, voltage)) {
+    frame[framePos++] = CHANNEL_VOLTAGE;
+    putInt16((int16_t)lroundf(voltage * 1000));
+    channels++;
+  }
+  if (sendChannel(CHANNEL_BATTERY, batteryPercentage)) {
+    frame[framePos++] = CHANNEL_BATTERY;
+    putInt16((int16_t)batteryPercentage);
+    channels++;
+  }
+  if (lux >= 0 && sendChannel(CHANNEL_BRIGHTNESS, lux)) {
+    frame[framePos++] = CHANNEL_BRIGHTNESS | TAG_WIDE;
+    putInt32(lroundf(lux * 10));
+    channels++;
+  }
+  if (sendChannel(CHANNEL_PRESSURE, pressure)) {
+    frame[framePos++] = CHANNEL_PRESSURE;
+    putInt16((int16_t)lroundf(pressure * 10));
+    channels++;
+  }
+  if (heartbeatMs > 0) {
+    // Report-on-change : les échantillons ne sont plus réguliers, chacun part seul dans sa trame
+    if (channels == 0) {
+      framePos = countPos;
+      return;
+    }
+    frame[countPos] = channels;
+    frameSamples++;
+    sendFrame();
+    return;
+  }
+  frame[countPos] = channels;
+  frameSamples++;
+
+  if (frameSamples == SAMPLES_PER_FRAME || flushFrame
+      || frameSamples * sampleIntervalMs >= MAX_FRAME_LATENCY_MS) {
+    sendFrame();
+  }
+}
+
+// Envoie la trame en cours, même incomplète
+void sendFrame() {
+  if (frameSamples == 0) {
+    return;
+  }
+  int payload = framePos - 2;
+  frame[0] = FRAME_SYNC;
+  frame[1] = payload;
+  frame[4] = frameSamples;
+  uint16_t crc = crc16(frame + 1, payload + 1);
+  frame[framePos++] = crc & 0xFF;
+  frame[framePos++] = (crc >> 8) & 0xFF;
+  SerialBT.write(frame, framePos);
+
+  frameSequence++;
+  frameSamples = 0;
+  flushFrame = false;
 }
+#endif
 
 // Fonction pour calculer le pourcentage de batterie
 int calculateBatteryPercentage(float voltage) {
@@ -0,0 +1,128 @@
+package com.example.bluetoothapp;
+
+import java.util.Arrays;
+
+/**
+ * État des alertes d'un appareil, évalué sur le thread de lecture à chaque échantillon décodé.
+ *
+ * Aucune allocation par échantillon : l'état de chaque règle tient dans des tableaux parallèles
+ * à ceux de l'{@link AlertRuleSet}. Seuls les changements d'état (alerte levée ou retombée) sont
+ * remis au {@link Listener}. Pas thread-safe : un évaluateur par session.
+ */
+public class AlertEvaluator {
+
+    private static final long NONE = Long.MIN_VALUE;
+
+    public interface Listener {
+        /**
+         * Thread de lecture.
+         * @param rule indice de la règle dans l'{@link AlertRuleSet}
+         * @param value valeur (ou vitesse de variation par seconde) qui a déclenché le changement
+         */
+        void onAlertChanged(int rule, boolean raised, float value, long timestampMillis);
+    }
+
+    private final AlertRuleSet rules;
+    private final Listener listener;
+
+    private final boolean[] active;
+    // Début de la condition en attente de sa durée minimale, NONE sinon
+    private final long[] pendingSince;
+    // Point de référence des règles sur la vitesse de variation
+    private final long[] referenceTime;
+    private final float[] referenceValue;
+    private int activeCount;
+
+    public AlertEvaluator(AlertRuleSet rules, Listener listener) {
+        this.rules = rules;
+        this.listener = listener;
+        int n = rules.size();
+        active = new boolean[n];
+        pendingSince = new long[n];
+        referenceTime = new long[n];
+        referenceValue = new float[n];
+        Arrays.fill(pendingSince, NONE);
+        Arrays.fill(referenceTime, NONE);
+    }
+
+    public void evaluate(TelemetrySample sample) {
+        if (sample.isGap()) {
+            // Une coupure interrompt les durées et les vitesses, pas les alertes levées
+            Arrays.fill(pendingSince, NONE);
+            Arrays.fill(referenceTime, NONE);
+            return;
+        }
+        long now = sample.getReceivedAtMillis();
+        for (int mask = sample.getPresentMask() & rules.channelMask; mask != 0; mask &= mask - 1) {
+            int channel = Integer.numberOfTrailingZeros(mask);
+            float value = sample.get(channel);
+            int end = rules.channelStart[channel + 1];
+            for (int rule = rules.channelStart[channel]; rule < end; rule++) {
+                float x = value;
+                long window = rules.rateWindowMillis[rule];
+                if (window > 0) {
+                    long elapsed = now - referenceTime[rule];
+                    if (referenceTime[rule] == NONE || elapsed < 0) {
+                        referenceTime[rule] = now;
+                        referenceValue[rule] = value;
+                        continue;
+                    }
+                    if (elapsed < window) {
+                        continue;
+                    }
+                    x = (value - referenceValue[rule]) * 1000f / elapsed;
+                    referenceTime[rule] = now;
+                    referenceValue[rule] = value;
+                }
+
+                float signed = rules.sign[rule] * x;
+                if (active[rule]) {
+                    if (signed < rules.clearBelow[rule]) {
+                        active[rule] = false;
+                        activeCount--;
+                        listener.onAlertChanged(rule, false, x, now);
+                    }
+                } else if (signed > rules.raiseAbove[rule]) {
+                    if (pendingSince[rule] == NONE) {
+                        pendingSince[rule] = now;
+                    }
+                    if (now - pendingSince[rule] >= rules.sustainMillis[rule]) {
+                        active[rule] = true;
+                        activeCount++;
+                        pendingSince[rule] = NONE;
+                        listener.onAlertChanged(rule, true, x, now);
+                    }
+                } else {
+                    pendingSince[rule] = NONE;
+                }
+            }
+        }
+    }
+
+    /**
+     * Fait retomber toutes les alertes levées, par exemple à la fin de la session.
+     */
+    public void clearAll(long timestampMillis) {
+        for (int rule = 0; rule < active.length && activeCount > 0; rule++) {
+            if (active[rule]) {
+                active[rule] = false;
+                activeCount--;
+                listener.onAlertChanged(rule, false, Float.NaN, timestampMillis);
+            }
+        }
+        Arrays.fill(pendingSince, NONE);
+        Arrays.fill(referenceTime, NONE);
+    }
+
+    public boolean isActive(int rule) {
+        return active[rule];
+    }
+
+    public int getActiveCount() {
+        return activeCount;
+    }
+
+    public AlertRuleSet getRules() {
+        return rules;
+    }
+}
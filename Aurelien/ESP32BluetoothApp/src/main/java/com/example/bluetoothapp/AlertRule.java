@@ -0,0 +1,158 @@
+package com.example.bluetoothapp;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Règle d'alerte sur un canal : seuil haut ou bas, sur la valeur ou sur sa vitesse de variation,
+ * avec hystérésis et durée minimale. Simple définition : elle est compilée avec les autres
+ * règles de l'appareil dans un {@link AlertRuleSet} à la connexion.
+ *
+ * L'alerte est levée quand la condition tient depuis {@link #sustainedFor} millisecondes, et
+ * retombe quand la valeur repasse le seuil d'au moins l'hystérésis.
+ */
+public class AlertRule {
+
+    static final int ABOVE = 0;
+    static final int BELOW = 1;
+
+    private final String name;
+    private final int channel;
+    private final int direction;
+    private final float threshold;
+    private final boolean rate;
+    private long rateWindowMillis;
+    private float hysteresis;
+    private long sustainMillis;
+    private String deviceAddress;
+
+    private AlertRule(String name, int channel, int direction, float threshold, boolean rate) {
+        if (channel < 0 || channel >= ChannelRegistry.MAX_CHANNELS) {
+            throw new IllegalArgumentException("Canal hors limites: " + channel);
+        }
+        this.name = name;
+        this.channel = channel;
+        this.direction = direction;
+        this.threshold = threshold;
+        this.rate = rate;
+    }
+
+    public static AlertRule above(String name, int channel, float threshold) {
+        return new AlertRule(name, channel, ABOVE, threshold, false);
+    }
+
+    public static AlertRule below(String name, int channel, float threshold) {
+        return new AlertRule(name, channel, BELOW, threshold, false);
+    }
+
+    /**
+     * Hausse plus rapide que unitsPerSecond, mesurée entre deux points distants d'au moins
+     * windowMillis (la vitesse n'est donc réévaluée qu'une fois par fenêtre).
+     */
+    public static AlertRule risingFasterThan(String name, int channel, float unitsPerSecond, long windowMillis) {
+        AlertRule rule = new AlertRule(name, channel, ABOVE, unitsPerSecond, true);
+        rule.rateWindowMillis = checkPositive(windowMillis);
+        return rule;
+    }
+
+    /**
+     * Baisse plus rapide que unitsPerSecond (valeur positive), comme {@link #risingFasterThan}.
+     */
+    public static AlertRule fallingFasterThan(String name, int channel, float unitsPerSecond, long windowMillis) {
+        AlertRule rule = new AlertRule(name, channel, BELOW, -unitsPerSecond, true);
+        rule.rateWindowMillis = checkPositive(windowMillis);
+        return rule;
+    }
+
+    /**
+     * Écart au seuil nécessaire pour que l'alerte retombe.
+     * @return this, pour enchaîner
+     */
+    public AlertRule withHysteresis(float hysteresis) {
+        if (!(hysteresis >= 0)) {
+            throw new IllegalArgumentException("Hystérésis invalide: " + hysteresis);
+        }
+        this.hysteresis = hysteresis;
+        return this;
+    }
+
+    /**
+     * Durée pendant laquelle la condition doit tenir sans interruption avant l'alerte.
+     * @return this, pour enchaîner
+     */
+    public AlertRule sustainedFor(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("Durée invalide: " + millis);
+        }
+        this.sustainMillis = millis;
+        return this;
+    }
+
+    /**
+     * Limite la règle à un appareil (toutes les sessions par défaut).
+     * @return this, pour enchaîner
+     */
+    public AlertRule forDevice(String deviceAddress) {
+        this.deviceAddress = deviceAddress;
+        return this;
+    }
+
+    /**
+     * Règles de l'application : batterie faible et surchauffe de l'ESP32.
+     */
+    public static List<AlertRule> createDefaults() {
+        List<AlertRule> rules = new ArrayList<>();
+        rules.add(below("Batterie faible", ChannelRegistry.BATTERY, 20).withHysteresis(2).sustainedFor(10_000));
+        rules.add(above("Surchauffe", ChannelRegistry.TEMPERATURE, 60).withHysteresis(2).sustainedFor(5_000));
+        rules.add(risingFasterThan("Échauffement rapide", ChannelRegistry.TEMPERATURE, 0.5f, 10_000)
+                .withHysteresis(0.2f));
+        return rules;
+    }
+
+    private static long checkPositive(long windowMillis) {
+        if (windowMillis <= 0) {
+            throw new IllegalArgumentException("Fenêtre invalide: " + windowMillis);
+        }
+        return windowMillis;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getChannel() {
+        return channel;
+    }
+
+    public float getThreshold() {
+        return threshold;
+    }
+
+    public float getHysteresis() {
+        return hysteresis;
+    }
+
+    public long getSustainMillis() {
+        return sustainMillis;
+    }
+
+    public boolean isRate() {
+        return rate;
+    }
+
+    public long getRateWindowMillis() {
+        return rateWindowMillis;
+    }
+
+    public String getDeviceAddress() {
+        return deviceAddress;
+    }
+
+    int getDirection() {
+        return direction;
+    }
+
+    boolean appliesTo(String address) {
+        return deviceAddress == null || deviceAddress.equals(address);
+    }
+}
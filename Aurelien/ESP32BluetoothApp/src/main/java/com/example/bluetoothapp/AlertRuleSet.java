@@ -0,0 +1,92 @@
+package com.example.bluetoothapp;
+
+import java.util.List;
+
+/**
+ * Règles d'alerte d'un appareil, compilées une fois à la connexion en tableaux plats triés par
+ * canal : l'{@link AlertEvaluator} ne parcourt pour chaque valeur reçue que les règles de son
+ * canal, sans objet intermédiaire. Les seuils bas sont ramenés à des seuils hauts en changeant
+ * le signe de la valeur, pour une seule comparaison par règle.
+ * Immuable, partageable entre threads.
+ */
+public final class AlertRuleSet {
+
+    private final AlertRule[] rules;
+    // Règles du canal c : indices [channelStart[c], channelStart[c + 1])
+    final int[] channelStart = new int[ChannelRegistry.MAX_CHANNELS + 1];
+    // Canaux ayant au moins une règle
+    final int channelMask;
+    // +1 pour un seuil haut, -1 pour un seuil bas
+    final float[] sign;
+    // Alerte levée si sign * x > raiseAbove, retombée si sign * x < clearBelow
+    final float[] raiseAbove;
+    final float[] clearBelow;
+    final long[] sustainMillis;
+    // 0 : seuil sur la valeur, sinon fenêtre de mesure de la vitesse de variation
+    final long[] rateWindowMillis;
+
+    private AlertRuleSet(AlertRule[] rules) {
+        this.rules = rules;
+        int n = rules.length;
+        sign = new float[n];
+        raiseAbove = new float[n];
+        clearBelow = new float[n];
+        sustainMillis = new long[n];
+        rateWindowMillis = new long[n];
+        int mask = 0;
+        for (int i = 0; i < n; i++) {
+            AlertRule rule = rules[i];
+            sign[i] = rule.getDirection() == AlertRule.ABOVE ? 1f : -1f;
+            raiseAbove[i] = sign[i] * rule.getThreshold();
+            clearBelow[i] = raiseAbove[i] - rule.getHysteresis();
+            sustainMillis[i] = rule.getSustainMillis();
+            rateWindowMillis[i] = rule.isRate() ? rule.getRateWindowMillis() : 0;
+            channelStart[rule.getChannel() + 1]++;
+            mask |= 1 << rule.getChannel();
+        }
+        for (int channel = 0; channel < ChannelRegistry.MAX_CHANNELS; channel++) {
+            channelStart[channel + 1] += channelStart[channel];
+        }
+        channelMask = mask;
+    }
+
+    /**
+     * Compile les règles qui s'appliquent à l'appareil (toutes si deviceAddress est null).
+     */
+    public static AlertRuleSet compile(List<AlertRule> rules, String deviceAddress) {
+        int count = 0;
+        for (AlertRule rule : rules) {
+            if (deviceAddress == null || rule.appliesTo(deviceAddress)) {
+                count++;
+            }
+        }
+        // Tri par canal (comptage), l'ordre des règles d'un même canal est conservé
+        int[] next = new int[ChannelRegistry.MAX_CHANNELS + 1];
+        for (AlertRule rule : rules) {
+            if (deviceAddress == null || rule.appliesTo(deviceAddress)) {
+                next[rule.getChannel() + 1]++;
+            }
+        }
+        for (int channel = 0; channel < ChannelRegistry.MAX_CHANNELS; channel++) {
+            next[channel + 1] += next[channel];
+        }
+        AlertRule[] sorted = new AlertRule[count];
+        for (AlertRule rule : rules) {
+            if (deviceAddress == null || rule.appliesTo(deviceAddress)) {
+                sorted[next[rule.getChannel()]++] = rule;
+            }
+        }
+        return new AlertRuleSet(sorted);
+    }
+
+    public int size() {
+        return rules.length;
+    }
+
+    /**
+     * Règle d'indice index, tel que passé à {@link AlertEvaluator.Listener}.
+     */
+    public AlertRule getRule(int index) {
+        return rules[index];
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.bluetoothapp;
+
+import java.util.Random;
+
+/**
+ * Délais de reconnexion : croissance exponentielle plafonnée, avec gigue pour que plusieurs
+ * appareils coupés en même temps ne retentent pas tous au même instant.
+ * Chaque délai est tiré dans [d/2, d] où d = initial × 2^tentative (plafonné).
+ */
+public class Backoff {
+
+    public static final long DEFAULT_INITIAL_MILLIS = 200;
+    public static final long DEFAULT_MAX_MILLIS = 10_000;
+    public static final int DEFAULT_MAX_ATTEMPTS = 12;
+
+    private final long initialMillis;
+    private final long maxMillis;
+    private final int maxAttempts;
+    private final Random random;
+    private int attempts;
+
+    public Backoff() {
+        this(DEFAULT_INITIAL_MILLIS, DEFAULT_MAX_MILLIS, DEFAULT_MAX_ATTEMPTS, new Random());
+    }
+
+    public Backoff(long initialMillis, long maxMillis, int maxAttempts, Random random) {
+        this.initialMillis = initialMillis;
+        this.maxMillis = maxMillis;
+        this.maxAttempts = maxAttempts;
+        this.random = random;
+    }
+
+    /**
+     * Vrai tant que le nombre maximal de tentatives n'est pas atteint.
+     */
+    public boolean hasNext() {
+        return attempts < maxAttempts;
+    }
+
+    /**
+     * Délai avant la prochaine tentative ; compte une tentative.
+     */
+    public long nextDelayMillis() {
+        // Décalage borné pour ne pas déborder sur les longs
+        long delay = Math.min(maxMillis, initialMillis << Math.min(attempts, 30));
+        attempts++;
+        long half = delay / 2;
+        return half + (long) (random.nextDouble() * (delay - half + 1));
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * À appeler quand la liaison est rétablie et que des données arrivent.
+     */
+    public void reset() {
+        attempts = 0;
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.bluetoothapp;
+
+/**
+ * Format de trame binaire compact envoyé par l'ESP32 (mode BINARY_PROTOCOL du sketch).
+ *
+ * <pre>
+ * [0]      0xA5            octet de synchronisation
+ * [1]      LEN             taille de la charge utile (de SEQ à la fin des échantillons)
+ * [2..3]   SEQ   u16 LE    numéro de séquence de la trame
+ * [4]      COUNT u8        nombre d'échantillons dans la trame
+ * [5..8]   T0    u32 LE    heure du premier échantillon en ms depuis minuit (0xFFFFFFFF si absente)
+ * [9..10]  DT    u16 LE    intervalle entre deux échantillons en ms
+ * puis COUNT fois :
+ *          N     u8        nombre de canaux
+ *          N fois : TAG u8 (bits 0-6 = canal, bit 7 = valeur sur 32 bits) puis valeur i16/i32 LE
+ * [..]     CRC   u16 LE    CRC-16/CCITT (poly 0x1021, init 0xFFFF) de LEN à la fin des échantillons
+ * </pre>
+ *
+ * Réponse à une commande de {@link CommandChannel}, intercalée entre les trames de données :
+ * <pre>
+ * [0]      0xA6            octet de synchronisation des réponses
+ * [1]      LEN = 7
+ * [2..3]   ID     u16 LE   identifiant de la commande
+ * [4]      STATUS u8       0 si appliquée, sinon code d'erreur (CommandChannel.STATUS_*)
+ * [5..8]   VALUE  i32 LE   valeur effectivement appliquée
+ * [9..10]  CRC    u16 LE   comme pour les trames de données
+ * </pre>
+ *
+ * Les valeurs sont en virgule fixe : valeur réelle = valeur entière / facteur du canal,
+ * donné par {@link ChannelRegistry#getScale(int)}.
+ */
+public final class BinaryFrameCodec {
+
+    public static final int SYNC = 0xA5;
+    public static final int HEADER_SIZE = 11;  // SYNC + LEN + SEQ + COUNT + T0 + DT
+    public static final int CRC_SIZE = 2;
+    public static final int MAX_PAYLOAD = 255;
+    public static final int MAX_FRAME_SIZE = 2 + MAX_PAYLOAD + CRC_SIZE;
+    public static final int NO_TIME = 0xFFFFFFFF;
+    public static final int REPLY_SYNC = 0xA6;
+    public static final int REPLY_PAYLOAD = 7;
+    public static final int REPLY_SIZE = 2 + REPLY_PAYLOAD + CRC_SIZE;
+
+    static final int TAG_WIDE = 0x80;
+    static final int TAG_CHANNEL_MASK = 0x7F;
+
+    private BinaryFrameCodec() {
+    }
+
+    public static int crc16(byte[] data, int offset, int length) {
+        int crc = 0xFFFF;
+        for (int i = offset; i < offset + length; i++) {
+            crc ^= (data[i] & 0xFF) << 8;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 0x8000) != 0 ? (crc << 1) ^ 0x1021 : crc << 1;
+            }
+        }
+        return crc & 0xFFFF;
+    }
+
+    /**
+     * Encode une trame contenant {@code count} échantillons, valeurs en unités réelles
+     * dans {@code values[sample][channel]} ; les canaux absents valent NaN.
+     * Sert au simulateur et aux tests, l'ESP32 implémente le même encodage en C.
+     * @param registry canaux déclarés et leurs facteurs de virgule fixe
+     * @return la taille de la trame écrite dans {@code out}
+     * @throws IllegalArgumentException si une valeur porte sur un canal non déclaré
+     */
+    public static int encode(ChannelRegistry registry, byte[] out, int sequence, int timeOfDayMillis,
+                             int intervalMillis, float[][] values, int count) {
+        int pos = 2;
+        pos = putShort(out, pos, sequence);
+        out[pos++] = (byte) count;
+        pos = putInt(out, pos, timeOfDayMillis);
+        pos = putShort(out, pos, intervalMillis);
+
+        for (int s = 0; s < count; s++) {
+            int countPos = pos++;
+            int channels = 0;
+            for (int channel = 0; channel < values[s].length; channel++) {
+                float value = values[s][channel];
+                if (Float.isNaN(value)) {
+                    continue;
+                }
+                if (!registry.isDefined(channel)) {
+                    throw new IllegalArgumentException("Canal non déclaré: " + channel);
+                }
+                long fixed = Math.round((double) value * registry.getScale(channel));
+                if (fixed >= Short.MIN_VALUE && fixed <= Short.MAX_VALUE) {
+                    out[pos++] = (byte) channel;
+                    pos = putShort(out, pos, (int) fixed);
+                } else {
+                    out[pos++] = (byte) (channel | TAG_WIDE);
+                    pos = putInt(out, pos, (int) fixed);
+                }
+                channels++;
+            }
+            out[countPos] = (byte) channels;
+        }
+
+        int payload = pos - 2;
+        if (payload > MAX_PAYLOAD) {
+            throw new IllegalArgumentException("Trame trop grande: " + payload + " octets");
+        }
+        out[0] = (byte) SYNC;
+        out[1] = (byte) payload;
+        return putShort(out, pos, crc16(out, 1, payload + 1));
+    }
+
+    /**
+     * Encode une réponse à une commande (simulateur et tests, comme {@link #encode}).
+     * @return la taille de la trame écrite dans {@code out}
+     */
+    public static int encodeReply(byte[] out, int offset, int requestId, int status, int value) {
+        out[offset] = (byte) REPLY_SYNC;
+        out[offset + 1] = (byte) REPLY_PAYLOAD;
+        int pos = putShort(out, offset + 2, requestId);
+        out[pos++] = (byte) status;
+        pos = putInt(out, pos, value);
+        putShort(out, pos, crc16(out, offset + 1, REPLY_PAYLOAD + 1));
+        return REPLY_SIZE;
+    }
+
+    static int getShort(byte[] data, int pos) {
+        return (short) ((data[pos] & 0xFF) | (data[pos + 1] & 0xFF) << 8);
+    }
+
+    static int getUnsignedShort(byte[] data, int pos) {
+        return (data[pos] & 0xFF) | (data[pos + 1] & 0xFF) << 8;
+    }
+
+    static int getInt(byte[] data, int pos) {
+        return (data[pos] & 0xFF) | (data[pos + 1] & 0xFF) << 8
+                | (data[pos + 2] & 0xFF) << 16 | (data[pos + 3] & 0xFF) << 24;
+    }
+
+    private static int putShort(byte[] data, int pos, int value) {
+        data[pos] = (byte) value;
+        data[pos + 1] = (byte) (value >> 8);
+        return pos + 2;
+    }
+
+    private static int putInt(byte[] data, int pos, int value) {
+        data[pos] = (byte) value;
+        data[pos + 1] = (byte) (value >> 8);
+        data[pos + 2] = (byte) (value >> 16);
+        data[pos + 3] = (byte) (value >> 24);
+        return pos + 4;
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.bluetoothapp;
+
+import java.io.IOException;
+
+/**
+ * Lecture bit à bit d'un tableau d'octets écrit par {@link BitWriter}.
+ * Une fenêtre de 64 bits évite de revenir au tableau à chaque lecture.
+ */
+final class BitReader {
+
+    private byte[] data;
+    private int limit;
+    private int position;
+    // Bits pas encore lus dans les bits de poids faible de la fenêtre
+    private long window;
+    private int windowBits;
+
+    void reset(byte[] data, int length) {
+        this.data = data;
+        this.limit = length;
+        this.position = 0;
+        this.window = 0;
+        this.windowBits = 0;
+    }
+
+    boolean readBit() throws IOException {
+        if (windowBits == 0) {
+            refill(1);
+        }
+        windowBits--;
+        return ((window >>> windowBits) & 1) != 0;
+    }
+
+    /**
+     * Lit {@code count} bits (1 à 64).
+     */
+    long read(int count) throws IOException {
+        if (count > 32) {
+            long high = read(count - 32);
+            return (high << 32) | read(32);
+        }
+        if (windowBits < count) {
+            refill(count);
+        }
+        windowBits -= count;
+        return (window >>> windowBits) & (-1L >>> (64 - count));
+    }
+
+    private void refill(int needed) throws IOException {
+        while (windowBits <= 56 && position < limit) {
+            window = (window << 8) | (data[position++] & 0xFF);
+            windowBits += 8;
+        }
+        if (windowBits < needed) {
+            throw new IOException("Bloc tronqué");
+        }
+    }
+
+    long readVarint() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            long group = read(8);
+            value |= (group & 0x7F) << shift;
+            if ((group & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Entier variable invalide");
+    }
+}
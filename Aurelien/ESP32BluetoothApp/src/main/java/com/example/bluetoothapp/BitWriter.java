@@ -0,0 +1,74 @@
+package com.example.bluetoothapp;
+
+import java.util.Arrays;
+
+/**
+ * Écriture bit à bit dans un tableau d'octets extensible, bits de poids fort en premier.
+ */
+final class BitWriter {
+
+    private byte[] buffer;
+    private int length;
+    // Bits en attente dans les bits de poids faible, moins de 8 entre deux écritures
+    private long pending;
+    private int pendingBits;
+
+    BitWriter(int initialCapacity) {
+        buffer = new byte[Math.max(16, initialCapacity)];
+    }
+
+    void reset() {
+        length = 0;
+        pending = 0;
+        pendingBits = 0;
+    }
+
+    void writeBit(boolean bit) {
+        write(bit ? 1 : 0, 1);
+    }
+
+    /**
+     * Écrit les {@code count} bits de poids faible de value (1 à 64).
+     */
+    void write(long value, int count) {
+        if (count > 32) {
+            write(value >>> 32, count - 32);
+            count = 32;
+        }
+        pending = (pending << count) | (value & (-1L >>> (64 - count)));
+        pendingBits += count;
+        while (pendingBits >= 8) {
+            pendingBits -= 8;
+            if (length == buffer.length) {
+                buffer = Arrays.copyOf(buffer, length * 2);
+            }
+            buffer[length++] = (byte) (pending >>> pendingBits);
+        }
+    }
+
+    /**
+     * Entier sans signe par groupes de 7 bits, un bit de continuation devant chaque groupe.
+     */
+    void writeVarint(long value) {
+        while ((value & ~0x7FL) != 0) {
+            write(0x80 | (value & 0x7F), 8);
+            value >>>= 7;
+        }
+        write(value, 8);
+    }
+
+    /**
+     * Complète le dernier octet par des zéros.
+     * @return le nombre d'octets écrits
+     */
+    int finish() {
+        if (pendingBits > 0) {
+            write(0, 8 - pendingBits);
+        }
+        return length;
+    }
+
+    byte[] buffer() {
+        return buffer;
+    }
+}
@@ -2,220 +2,895 @@ package com.example.bluetoothapp;
 
 import android.bluetooth.BluetoothAdapter;
 import android.bluetooth.BluetoothDevice;
-import android.bluetooth.BluetoothSocket;
 import android.os.Handler;
 import android.os.Looper;
 import android.util.Log;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.util.UUID;
-
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gestionnaire de connexions : jusqu'à {@link #MAX_DEVICES} sessions simultanées, identifiées par
+ * l'adresse de l'appareil. Chaque session a son état, son décodeur, sa livraison vers l'interface
+ * et son journal ; les sessions ne partagent aucun verrou sur le chemin de lecture.
+ * La liaison elle-même passe par un {@link Transport} (RFCOMM, TCP ou tube en mémoire).
+ *
+ * Aucune méthode n'est synchronisée : l'état de chaque session est une
+ * {@link ConnectionStateMachine} à compare-and-set, et la table des sessions une ConcurrentHashMap.
+ * Les appels de l'interface ne contendent donc jamais avec les threads de lecture.
+ */
 public class BluetoothService {
     private static final String TAG = "BluetoothService";
-    private static final UUID ESP32_UUID = UUID.fromString("00001101-0000-1000-8000-00805F9B34FB"); // UUID standard SPP
+
+    // Nombre maximal d'appareils connectés en même temps (un thread de lecture chacun)
+    public static final int MAX_DEVICES = 8;
 
     private final BluetoothAdapter bluetoothAdapter;
     private final Handler handler;
-    private ConnectThread connectThread;
-    private ConnectedThread connectedThread;
+    // Threads de lecture, un par session ; lectures bloquantes donc pool borné et non partagé
+    private final ExecutorService readerPool;
+    private final Map<String, DeviceSession> sessions = new ConcurrentHashMap<>();
     private BluetoothCallback callback;
-    private int state;
+    // Écouteurs de transitions, appelés sans verrou sur le thread qui fait la transition
+    private final List<ConnectionStateMachine.Listener> stateListeners = new CopyOnWriteArrayList<>();
+    // Destinataire des lots d'échantillons ; null quand aucune interface n'est visible
+    private volatile SampleDispatcher.BatchListener sampleListener;
+    // Repli sur l'ancien décodage par String.split (BufferedReader + parseFloat)
+    private volatile boolean legacyTextParsing = false;
+    // Répertoire des journaux persistants (un sous-répertoire par appareil), optionnel
+    private volatile File recordingDirectory;
+    // Captures brutes des octets reçus (une par connexion), rejouables avec ReplayTransport
+    private volatile File captureDirectory;
+    private volatile int deliveryPolicy = SampleBatch.POLICY_ALL;
+    private volatile long deliveryIntervalMillis = SampleDispatcher.FRAME_PACED;
+    // Reconnexion automatique au même appareil après une coupure
+    private volatile boolean autoReconnect = true;
+    // Clés du protocole -> identifiants de canal, figée pour chaque session à la connexion
+    private volatile ChannelRegistry channelRegistry = ChannelRegistry.createDefault();
+    // Règles d'alerte, compilées pour chaque session à la connexion
+    private volatile List<AlertRule> alertRules = AlertRule.createDefaults();
+    // Intervalle de mesure demandé à l'ESP32 selon qu'une interface regarde ou non (0 : inchangé)
+    private volatile int watchedIntervalMillis = 20;
+    private volatile int idleIntervalMillis = 10_000;
+    // Mode report-on-change demandé aux ESP32 : bande morte par canal en unités réelles (NaN ou
+    // canal au-delà du tableau : réglage du firmware) et battement ; sans battement (par défaut),
+    // chaque mesure est envoyée en entier
+    private volatile float[] deadBands = {0.1f, 0.01f, 1f, Float.NaN, 0.1f, 5f};
+    private volatile int heartbeatMillis = 0;
 
     // Constants that indicate the current connection state
-    public static final int STATE_NONE = 0;       // Rien ne se passe
-    public static final int STATE_CONNECTING = 1; // Connexion en cours
-    public static final int STATE_CONNECTED = 2;  // Connecté
+    public static final int STATE_NONE = ConnectionStateMachine.NONE;             // Rien ne se passe
+    public static final int STATE_CONNECTING = ConnectionStateMachine.CONNECTING; // Connexion en cours
+    public static final int STATE_CONNECTED = ConnectionStateMachine.CONNECTED;   // Connecté
+    public static final int STATE_RECONNECTING = ConnectionStateMachine.RECONNECTING; // Liaison perdue, reconnexion automatique en cours
+    public static final int STATE_CLOSING = ConnectionStateMachine.CLOSING;       // Fermeture en cours
+
+    // Au-delà, la reprise des données après une coupure est signalée comme lente
+    private static final long TIME_TO_DATA_TARGET_MILLIS = 2000;
+    // Journal brut conservé ; au-delà, les agrégats (RollupStore) prennent le relais
+    private static final long RAW_RETENTION_MILLIS = 7 * 86_400_000L;
+    private static final String ROLLUP_DIRECTORY = "rollup";
 
-    public interface BluetoothCallback {
-        void onConnectionStateChanged(int state);
-        void onDataReceived(float temperature, float voltage, int batteryPercentage, String timestamp, float brightness);
-        void onConnectionFailed();
+    /**
+     * Événements de connexion ; les échantillons arrivent par lots sur
+     * {@link SampleDispatcher.BatchListener#onSamplesReceived}, valeurs indexées par identifiant
+     * de canal ({@link ChannelRegistry}).
+     */
+    public interface BluetoothCallback extends SampleDispatcher.BatchListener {
+        void onConnectionStateChanged(String deviceAddress, int state);
+        void onConnectionFailed(String deviceAddress);
+        /**
+         * Une règle d'alerte vient d'être levée ou de retomber pour cet appareil (jamais à chaque
+         * échantillon). value est NaN quand l'alerte retombe à la fin de la session.
+         */
+        void onAlertChanged(String deviceAddress, AlertRule rule, boolean raised, float value);
     }
 
     public BluetoothService(BluetoothCallback callback) {
         this.bluetoothAdapter = BluetoothAdapter.getDefaultAdapter();
-        this.state = STATE_NONE;
         this.handler = new Handler(Looper.getMainLooper());
         this.callback = callback;
+        this.sampleListener = callback;
+        this.stateListeners.add(this::postStateChange);
+        this.readerPool = Executors.newFixedThreadPool(MAX_DEVICES, runnable -> {
+            Thread thread = new Thread(runnable, "DeviceSession");
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
-    public synchronized void connect(BluetoothDevice device) {
-        Log.d(TAG, "Connexion à: " + device.getName());
+    /**
+     * Ouvre une session avec l'appareil sans toucher aux autres connexions.
+     * Une session existante pour la même adresse est remplacée.
+     */
+    public void connect(BluetoothDevice device) {
+        connect(new RfcommTransport(bluetoothAdapter, device));
+    }
 
-        // Annuler les threads qui tentent d'établir une connexion
-        if (state == STATE_CONNECTING) {
-            if (connectThread != null) {
-                connectThread.cancel();
-                connectThread = null;
-            }
+    /**
+     * Ouvre une session sur une liaison quelconque (simulateur TCP par exemple).
+     */
+    public void connect(Transport transport) {
+        String address = transport.getAddress();
+        Log.d(TAG, "Connexion à: " + transport.getName() + " (" + address + ")");
+        transport = capture(transport);
+
+        // Créée ici (thread principal) pour que la livraison puisse se caler sur le Choreographer
+        DeviceSession session = new DeviceSession(transport);
+        // Remplacement atomique de la session précédente du même appareil, annulée ensuite
+        DeviceSession previous = sessions.put(address, session);
+        session.previous = previous;
+        if (previous != null) {
+            previous.cancel();
+        } else if (sessions.size() > MAX_DEVICES) {
+            // Deux connexions simultanées peuvent toutes deux renoncer, jamais dépasser la limite
+            Log.w(TAG, "Nombre maximal d'appareils atteint (" + MAX_DEVICES + ")");
+            sessions.remove(address, session);
+            handler.post(() -> callback.onConnectionFailed(address));
+            return;
         }
 
-        // Annuler tous les threads qui gèrent une connexion
-        if (connectedThread != null) {
-            connectedThread.cancel();
-            connectedThread = null;
+        session.machine.moveTo(STATE_CONNECTING);
+        try {
+            readerPool.execute(session);
+        } catch (RejectedExecutionException e) {
+            Log.e(TAG, "Pool de lecture indisponible", e);
+            sessions.remove(address, session);
+            session.cancel();
+            // Aucun thread de lecture ne terminera cette session
+            session.machine.finish();
+            handler.post(() -> callback.onConnectionFailed(address));
         }
+    }
 
-        // Démarrer le thread pour se connecter au périphérique
-        connectThread = new ConnectThread(device);
-        connectThread.start();
-        setState(STATE_CONNECTING);
+    /**
+     * Ferme la session d'un appareil.
+     */
+    public void disconnect(String deviceAddress) {
+        DeviceSession session = sessions.remove(deviceAddress);
+        if (session != null) {
+            Log.d(TAG, "Déconnexion de " + deviceAddress);
+            session.cancel();
+        }
     }
 
-    public synchronized void connected(BluetoothSocket socket, BluetoothDevice device) {
-        Log.d(TAG, "Connecté au périphérique");
+    /**
+     * Ferme toutes les sessions.
+     */
+    public void stop() {
+        Log.d(TAG, "Arrêt du service Bluetooth");
 
-        // Annuler le thread qui a terminé la connexion
-        if (connectThread != null) {
-            connectThread.cancel();
-            connectThread = null;
+        for (Map.Entry<String, DeviceSession> entry : sessions.entrySet()) {
+            // Seule la session encore présente est annulée : une connexion concurrente reste ouverte
+            if (sessions.remove(entry.getKey(), entry.getValue())) {
+                entry.getValue().cancel();
+            }
         }
+    }
 
-        // Annuler tous les threads actuellement en cours d'exécution
-        if (connectedThread != null) {
-            connectedThread.cancel();
-            connectedThread = null;
-        }
+    /**
+     * Ferme toutes les sessions puis libère les threads de lecture ; le service n'accepte plus
+     * de connexion ensuite.
+     */
+    public void release() {
+        stop();
+        // Les sessions annulées terminent leur thread ; aucune nouvelle n'est acceptée
+        readerPool.shutdown();
+    }
 
-        // Démarrer le thread pour gérer la connexion
-        connectedThread = new ConnectedThread(socket);
-        connectedThread.start();
+    /**
+     * Ajoute un écouteur de transitions ; appelé sans verrou sur le thread qui fait la transition
+     * (thread de lecture ou appelant de connect/disconnect), il ne doit pas bloquer.
+     */
+    public void addStateListener(ConnectionStateMachine.Listener listener) {
+        stateListeners.add(listener);
+    }
 
-        setState(STATE_CONNECTED);
+    public void removeStateListener(ConnectionStateMachine.Listener listener) {
+        stateListeners.remove(listener);
     }
 
-    public synchronized void stop() {
-        Log.d(TAG, "Arrêt du service Bluetooth");
+    // Vers l'interface, sur le thread principal
+    private void postStateChange(String address, int from, int to) {
+        Log.d(TAG, "État " + address + ": " + ConnectionStateMachine.name(from)
+                + " -> " + ConnectionStateMachine.name(to));
+        handler.post(() -> {
+            // Une session remplacée ne doit pas écraser l'état de celle qui lui succède
+            DeviceSession current = sessions.get(address);
+            if (current == null || current.machine.getState() == to) {
+                callback.onConnectionStateChanged(address, to);
+            }
+        });
+    }
+
+    public int getState(String deviceAddress) {
+        DeviceSession session = sessions.get(deviceAddress);
+        return session != null ? session.machine.getState() : STATE_NONE;
+    }
+
+    /**
+     * Adresses des appareils ayant une session ouverte (connexion en cours ou établie).
+     */
+    public List<String> getDeviceAddresses() {
+        return new ArrayList<>(sessions.keySet());
+    }
 
-        if (connectThread != null) {
-            connectThread.cancel();
-            connectThread = null;
+    /**
+     * Règle la livraison des échantillons au thread principal, pour toutes les sessions.
+     * @param policy une des constantes SampleBatch.POLICY_*
+     * @param intervalMillis intervalle minimal entre deux livraisons, ou SampleDispatcher.FRAME_PACED
+     */
+    public void setDeliveryPolicy(int policy, long intervalMillis) {
+        this.deliveryPolicy = policy;
+        this.deliveryIntervalMillis = intervalMillis;
+        for (DeviceSession session : sessions.values()) {
+            session.dispatcher.configure(policy, intervalMillis);
         }
+    }
 
-        if (connectedThread != null) {
-            connectedThread.cancel();
-            connectedThread = null;
+    /**
+     * Change le destinataire des échantillons de toutes les sessions. Avec null, les échantillons
+     * sont seulement décodés, comptés et enregistrés : rien n'est posté au thread principal.
+     */
+    public void setSampleListener(SampleDispatcher.BatchListener listener) {
+        this.sampleListener = listener;
+        int interval = listener != null ? watchedIntervalMillis : idleIntervalMillis;
+        for (DeviceSession session : sessions.values()) {
+            session.dispatcher.setListener(listener);
+            session.setSampleInterval(interval);
         }
+    }
 
-        setState(STATE_NONE);
+    /**
+     * Intervalles de mesure demandés aux ESP32 : rapide quand un destinataire des échantillons
+     * est abonné (interface visible), lent sinon. 0 laisse l'intervalle du firmware.
+     */
+    public void setSampleIntervals(int watchedMillis, int idleMillis) {
+        this.watchedIntervalMillis = watchedMillis;
+        this.idleIntervalMillis = idleMillis;
+        int interval = sampleListener != null ? watchedMillis : idleMillis;
+        for (DeviceSession session : sessions.values()) {
+            session.setSampleInterval(interval);
+        }
     }
 
-    private synchronized void setState(int state) {
-        Log.d(TAG, "setState() " + this.state + " -> " + state);
-        this.state = state;
-        handler.post(() -> callback.onConnectionStateChanged(state));
+    /**
+     * Demande un intervalle de mesure à un appareil, jusqu'au prochain changement d'abonné.
+     * Sans effet immédiat s'il n'est pas connecté : l'intervalle est envoyé à la connexion.
+     */
+    public void setSampleInterval(String deviceAddress, int millis) {
+        DeviceSession session = sessions.get(deviceAddress);
+        if (session != null) {
+            session.setSampleInterval(millis);
+        }
     }
 
-    public synchronized int getState() {
-        return state;
+    /**
+     * Choisit les canaux envoyés par l'appareil (bit n = canal n de {@link ChannelRegistry}).
+     * Renvoyé à chaque reconnexion.
+     */
+    public void setEnabledChannels(String deviceAddress, int channelMask) {
+        DeviceSession session = sessions.get(deviceAddress);
+        if (session != null) {
+            session.setChannelMask(channelMask);
+        }
     }
 
     /**
-     * Thread qui tente d'établir une connexion sortante avec un périphérique
+     * Mode report-on-change : l'ESP32 n'envoie un canal que s'il sort de sa bande morte
+     * (deadBands[canal], unités réelles, NaN ou canal au-delà du tableau pour garder le réglage
+     * du firmware ; seuls les canaux de {@link ChannelRegistry} sont envoyés) ou au moins
+     * toutes les heartbeatMillis. La série complète est reconstruite à la réception
+     * ({@link SampleReconstructor}). heartbeatMillis = 0 (par défaut) désactive le mode, tout comme
+     * l'ancien décodage ({@link #setLegacyTextParsing}). Pris en compte à la prochaine connexion.
      */
-    private class ConnectThread extends Thread {
-        private final BluetoothSocket mmSocket;
-        private final BluetoothDevice mmDevice;
+    public void setReportOnChange(float[] deadBands, int heartbeatMillis) {
+        if (deadBands.length > ChannelRegistry.MAX_CHANNELS || heartbeatMillis < 0) {
+            throw new IllegalArgumentException("Réglage report-on-change invalide");
+        }
+        this.deadBands = deadBands.clone();
+        this.heartbeatMillis = heartbeatMillis;
+    }
 
-        public ConnectThread(BluetoothDevice device) {
-            mmDevice = device;
-            BluetoothSocket tmp = null;
+    /**
+     * Intervalle de mesure confirmé par l'appareil, ou -1 s'il n'a pas encore répondu
+     * (ancien firmware sans commandes).
+     */
+    public int getSampleIntervalMillis(String deviceAddress) {
+        DeviceSession session = sessions.get(deviceAddress);
+        return session != null ? session.sampleIntervalMillis : -1;
+    }
 
+    /**
+     * Enregistre les échantillons de chaque appareil dans un journal sous ce répertoire
+     * (null pour désactiver). Pris en compte à la prochaine connexion.
+     */
+    public void setRecordingDirectory(File recordingDirectory) {
+        this.recordingDirectory = recordingDirectory;
+    }
+
+    /**
+     * Enregistre les octets bruts reçus de chaque appareil dans une capture sous ce répertoire
+     * (null pour désactiver), pour rejouer la session avec {@link ReplayTransport}.
+     * Pris en compte à la prochaine connexion.
+     */
+    public void setCaptureDirectory(File captureDirectory) {
+        this.captureDirectory = captureDirectory;
+    }
+
+    // Liaison enregistrée si les captures sont activées ; sans capture en cas d'échec
+    private Transport capture(Transport transport) {
+        File directory = captureDirectory;
+        if (directory == null) {
+            return transport;
+        }
+        File file = new File(directory, transport.getAddress().replace(':', '_')
+                + "-" + System.currentTimeMillis() + ".cap");
+        try {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Répertoire impossible à créer: " + directory);
+            }
+            FileOutputStream out = new FileOutputStream(file);
             try {
-                tmp = device.createRfcommSocketToServiceRecord(ESP32_UUID);
+                Log.i(TAG, "Capture de " + transport.getAddress() + " dans " + file);
+                return new CapturingTransport(transport, out);
             } catch (IOException e) {
-                Log.e(TAG, "Erreur lors de la création du socket", e);
-                handler.post(() -> callback.onConnectionFailed());
+                out.close();
+                throw e;
             }
-            mmSocket = tmp;
+        } catch (IOException e) {
+            Log.e(TAG, "Capture impossible pour " + transport.getAddress(), e);
+            return transport;
         }
+    }
 
+    /**
+     * Active ou non la reconnexion automatique (avec {@link Backoff}) après une coupure.
+     */
+    public void setAutoReconnect(boolean autoReconnect) {
+        this.autoReconnect = autoReconnect;
+    }
+
+    /**
+     * Délai entre la dernière coupure de l'appareil et le premier échantillon reçu ensuite,
+     * ou -1 si aucune coupure n'a encore été rattrapée.
+     */
+    public long getLastTimeToDataMillis(String deviceAddress) {
+        DeviceSession session = sessions.get(deviceAddress);
+        return session != null ? session.lastTimeToDataMillis : -1;
+    }
+
+    /**
+     * Mesures de réception de l'appareil, ou null s'il n'a pas de session.
+     */
+    public IngestionMetrics getMetrics(String deviceAddress) {
+        DeviceSession session = sessions.get(deviceAddress);
+        return session != null ? session.metrics : null;
+    }
+
+    /**
+     * Statistiques glissantes de l'appareil (minute, heure, jour), ou null s'il n'a pas de session.
+     */
+    public TelemetryStatistics getStatistics(String deviceAddress) {
+        DeviceSession session = sessions.get(deviceAddress);
+        return session != null ? session.statistics : null;
+    }
+
+    /**
+     * Échantillons de l'appareil publiés mais pas encore livrés au thread principal.
+     */
+    public int getPendingDeliveries(String deviceAddress) {
+        DeviceSession session = sessions.get(deviceAddress);
+        return session != null ? session.dispatcher.getPendingCount() : 0;
+    }
+
+    /**
+     * Mesures de toutes les sessions ouvertes, au format JSON.
+     */
+    public String dumpMetricsJson() {
+        StringBuilder out = new StringBuilder("{\"timestamp\":").append(System.currentTimeMillis())
+                .append(",\"devices\":[");
+        boolean first = true;
+        for (DeviceSession session : sessions.values()) {
+            if (!first) {
+                out.append(',');
+            }
+            first = false;
+            out.append("{\"pendingDeliveries\":").append(session.dispatcher.getPendingCount())
+                    .append(",\"ingestion\":");
+            session.metrics.appendJson(out);
+            out.append('}');
+        }
+        return out.append("]}").toString();
+    }
+
+    /**
+     * Exporte le journal de l'appareil au format compressé {@link CompressedSessionWriter}, en
+     * flux : rien n'est chargé en entier en mémoire. Utilise le journal de la session ouverte,
+     * sinon celui resté sur disque. À appeler hors du thread principal.
+     * @return le nombre d'échantillons exportés
+     */
+    public long exportRecording(String deviceAddress, File destination) throws IOException {
+        DeviceSession session = sessions.get(deviceAddress);
+        TelemetryLog log = session != null ? session.telemetryLog : null;
+        if (log != null) {
+            return exportLog(log, destination);
+        }
+        File directory = recordingDirectory;
+        File logDirectory = directory != null ? logDirectory(directory, deviceAddress) : null;
+        if (logDirectory == null || !logDirectory.isDirectory()) {
+            throw new IOException("Aucun journal pour " + deviceAddress);
+        }
+        try (TelemetryLog closedLog = TelemetryLog.open(logDirectory, channelRegistry.getChannelCount())) {
+            return exportLog(closedLog, destination);
+        }
+    }
+
+    /**
+     * Répertoire des agrégats de l'appareil (voir {@link RollupStore#read}), ou null sans
+     * répertoire d'enregistrement.
+     */
+    public File getRollupDirectory(String deviceAddress) {
+        File directory = recordingDirectory;
+        return directory != null ? new File(logDirectory(directory, deviceAddress), ROLLUP_DIRECTORY) : null;
+    }
+
+    private static File logDirectory(File recordingDirectory, String deviceAddress) {
+        return new File(recordingDirectory, deviceAddress.replace(':', '_'));
+    }
+
+    private static long exportLog(TelemetryLog log, File destination) throws IOException {
+        try (CompressedSessionWriter writer = new CompressedSessionWriter(
+                new BufferedOutputStream(new FileOutputStream(destination)), log.getChannelCount())) {
+            log.read(Long.MIN_VALUE, Long.MAX_VALUE, sample -> {
+                try {
+                    writer.append(sample);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            Log.i(TAG, "Export de " + writer.getSampleCount() + " échantillons vers " + destination.getName());
+            return writer.getSampleCount();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Remplace la table des canaux ; prise en compte à la prochaine connexion.
+     */
+    public void setChannelRegistry(ChannelRegistry channelRegistry) {
+        this.channelRegistry = channelRegistry;
+    }
+
+    public ChannelRegistry getChannelRegistry() {
+        return channelRegistry;
+    }
+
+    /**
+     * Remplace les règles d'alerte ; prises en compte à la prochaine connexion.
+     */
+    public void setAlertRules(List<AlertRule> alertRules) {
+        this.alertRules = new ArrayList<>(alertRules);
+    }
+
+    public List<AlertRule> getAlertRules() {
+        return alertRules;
+    }
+
+    /**
+     * Active l'ancien décodage basé sur String.split à la place de {@link TelemetryDecoder}.
+     * Pris en compte à la prochaine connexion.
+     */
+    public void setLegacyTextParsing(boolean legacyTextParsing) {
+        this.legacyTextParsing = legacyTextParsing;
+    }
+
+    /**
+     * Session avec un appareil : connexion, puis lecture jusqu'à la déconnexion.
+     * Une coupure en cours de lecture n'arrête pas la session : un marqueur de coupure est
+     * publié et la session se reconnecte directement au même appareil (sans découverte),
+     * jusqu'à épuisement des tentatives. S'exécute sur un thread du pool de lecture.
+     */
+    private class DeviceSession implements Runnable {
+        private final Transport transport;
+        private final String address;
+        // Heure système en direct, heure enregistrée en rejeu
+        private final Clock clock;
+        private final SampleDispatcher dispatcher;
+        // Table figée à la connexion ; les tableaux de la session en prennent la taille
+        private final ChannelRegistry registry = channelRegistry;
+        private final TelemetrySample legacySample = new TelemetrySample(registry.getChannelCount());
+        private final TelemetrySample gapSample = new TelemetrySample(registry.getChannelCount());
+        // Session remplacée pour le même appareil : son journal doit être fermé avant de rouvrir le nôtre.
+        // Fixée juste après l'insertion dans la table, avant le démarrage du thread de lecture
+        private DeviceSession previous;
+        private final CountDownLatch finished = new CountDownLatch(1);
+        // Libéré par cancel() pour interrompre l'attente entre deux tentatives
+        private final CountDownLatch cancelSignal = new CountDownLatch(1);
+        private volatile boolean cancelled;
+        private final ConnectionStateMachine machine;
+        // Écrit par le thread de lecture, lu aussi par exportRecording
+        private volatile TelemetryLog telemetryLog;
+        // Thread de lecture uniquement
+        private RollupStore rollups;
+        // Instant de la dernière coupure (System.nanoTime), 0 une fois les données revenues
+        private long dropoutNanos;
+        private volatile long lastTimeToDataMillis = -1;
+        private final IngestionMetrics metrics;
+        private final TelemetryStatistics statistics = new TelemetryStatistics(registry.getChannelCount());
+        // Thread de lecture uniquement
+        private final AlertEvaluator alerts;
+        // Commandes vers l'appareil, écrites par leur propre thread sur la même liaison
+        private final CommandChannel commands;
+        // Réglages voulus, renvoyés à chaque (re)connexion ; 0 : réglage du firmware conservé
+        private volatile int requestedIntervalMillis;
+        private volatile int requestedChannelMask;
+        // Intervalle confirmé par l'appareil, -1 tant qu'il n'a pas répondu
+        private volatile int sampleIntervalMillis = -1;
+        private final float[] sessionDeadBands = deadBands;
+        private final int sessionHeartbeatMillis = heartbeatMillis;
+        // Série régulière rebâtie à partir des mises à jour partielles ; thread de lecture
+        private final SampleReconstructor reconstructor =
+                new SampleReconstructor(registry.getChannelCount(), this::onSampleDecoded);
+        // Horloge de la carte recalée sur celle du téléphone ; thread de lecture
+        private final ClockSync clockSync;
+
+        DeviceSession(Transport transport) {
+            this.transport = transport;
+            this.address = transport.getAddress();
+            this.clock = transport.getClock();
+            this.clockSync = new ClockSync(clock);
+            this.machine = new ConnectionStateMachine(address, stateListeners);
+            this.dispatcher = new SampleDispatcher(sampleListener, address, new MainThreadScheduler(),
+                    registry.getChannelCount());
+            this.dispatcher.configure(deliveryPolicy, deliveryIntervalMillis);
+            this.metrics = new IngestionMetrics(address);
+            this.dispatcher.setMetrics(metrics);
+            AlertRuleSet rules = AlertRuleSet.compile(alertRules, address);
+            this.alerts = new AlertEvaluator(rules, (rule, raised, value, timestamp) ->
+                    postAlertChange(rules.getRule(rule), raised, value));
+            this.commands = new CommandChannel(transport);
+            this.requestedIntervalMillis = sampleListener != null ? watchedIntervalMillis : idleIntervalMillis;
+        }
+
+        void setSampleInterval(int millis) {
+            requestedIntervalMillis = millis;
+            if (millis > 0 && machine.getState() == STATE_CONNECTED) {
+                commands.send(CommandChannel.SET_INTERVAL, millis, this::onCommandReply);
+            }
+        }
+
+        void setChannelMask(int channelMask) {
+            requestedChannelMask = channelMask;
+            if (channelMask != 0 && machine.getState() == STATE_CONNECTED) {
+                commands.send(CommandChannel.SET_CHANNELS, channelMask, this::onCommandReply);
+            }
+        }
+
+        // Après chaque connexion : l'ESP32 a pu redémarrer et perdre ses réglages
+        private void applySettings() {
+            int interval = requestedIntervalMillis;
+            if (interval > 0) {
+                commands.send(CommandChannel.SET_INTERVAL, interval, this::onCommandReply);
+            }
+            int channelMask = requestedChannelMask;
+            if (channelMask != 0) {
+                commands.send(CommandChannel.SET_CHANNELS, channelMask, this::onCommandReply);
+            }
+            // Bandes mortes d'abord : le battement active le mode ; toujours envoyé pour qu'un
+            // ESP32 resté en report-on-change d'une session précédente en sorte au besoin.
+            // L'ancien décodage ne lit pas les réponses et ne passe pas par la reconstruction :
+            // le mode y reste coupé
+            int heartbeat = legacyTextParsing ? 0 : sessionHeartbeatMillis;
+            if (heartbeat > 0) {
+                for (int channel = 0; channel < sessionDeadBands.length; channel++) {
+                    if (registry.isDefined(channel) && !Float.isNaN(sessionDeadBands[channel])) {
+                        commands.send(CommandChannel.SET_DEAD_BAND,
+                                CommandChannel.deadBandArgument(registry, channel, sessionDeadBands[channel]),
+                                this::onCommandReply);
+                    }
+                }
+            }
+            commands.send(CommandChannel.SET_HEARTBEAT, heartbeat, this::onCommandReply);
+        }
+
+        // Thread de lecture (réponse) ou d'écriture (échec)
+        private void onCommandReply(int requestId, int command, int status, int value) {
+            if (status == CommandChannel.STATUS_OK) {
+                if (command == CommandChannel.SET_INTERVAL) {
+                    sampleIntervalMillis = value;
+                    reconstructor.setIntervalMillis(value);
+                } else if (command == CommandChannel.SET_HEARTBEAT) {
+                    reconstructor.setHeartbeatMillis(value);
+                }
+                Log.d(TAG, "Commande " + requestId + " appliquée par " + address + ": " + value);
+            } else {
+                Log.w(TAG, "Commande " + requestId + " non appliquée par " + address + ", statut " + status);
+            }
+        }
+
+        // Seuls les changements d'état des alertes quittent le thread de lecture
+        private void postAlertChange(AlertRule rule, boolean raised, float value) {
+            Log.i(TAG, "Alerte " + (raised ? "levée" : "retombée") + " pour " + address + ": "
+                    + rule.getName() + " (" + value + ")");
+            handler.post(() -> callback.onAlertChanged(address, rule, raised, value));
+        }
+
+        @Override
         public void run() {
-            Log.i(TAG, "ConnectThread démarré");
-            setName("ConnectThread");
+            Log.i(TAG, "Session démarrée: " + address);
+            Thread.currentThread().setName("DeviceSession-" + address);
+
+            try {
+                commands.start();
+                if (!connectTransport()) {
+                    return;
+                }
+                openLog();
+
+                while (true) {
+                    // Échoue si une fermeture a devancé la connexion
+                    if (!machine.moveTo(STATE_CONNECTED)) {
+                        return;
+                    }
+                    applySettings();
 
-            // Toujours annuler la découverte car elle ralentit une connexion
-            bluetoothAdapter.cancelDiscovery();
+                    try {
+                        InputStream in = transport.getInputStream();
+                        if (legacyTextParsing) {
+                            readLines(in);
+                        } else {
+                            readBytes(in);
+                        }
+                    } catch (IOException e) {
+                        if (cancelled) {
+                            return;
+                        }
+                        Log.e(TAG, "Déconnecté: " + address, e);
+                    }
+
+                    if (!reconnect()) {
+                        fail();
+                        return;
+                    }
+                }
+            } finally {
+                commands.close();
+                closeTransport();
+                closeLog();
+                alerts.clearAll(clock.currentTimeMillis());
+                finished.countDown();
+                // Tout est libéré : la session peut annoncer NONE, toujours en dernier
+                machine.finish();
+                Thread.currentThread().setName("DeviceSession");
+            }
+        }
 
-            // Établir la connexion au BluetoothSocket
+        private boolean connectTransport() {
             try {
-                mmSocket.connect();
+                if (cancelled) {
+                    return false;
+                }
+                transport.connect();
             } catch (IOException e) {
-                Log.e(TAG, "Impossible de se connecter au socket", e);
+                if (!cancelled) {
+                    Log.e(TAG, "Impossible de se connecter à " + address, e);
+                    fail();
+                }
+                return false;
+            }
+            return !cancelled;
+        }
+
+        // Reconnexion au même appareil avec attente croissante ; faux si abandon ou annulation
+        private boolean reconnect() {
+            if (!autoReconnect || cancelled) {
+                return false;
+            }
+            publishGap();
+            if (!machine.moveTo(STATE_RECONNECTING)) {
+                return false;
+            }
+
+            Backoff backoff = new Backoff();
+            while (backoff.hasNext()) {
+                long delay = backoff.nextDelayMillis();
+                Log.d(TAG, "Reconnexion de " + address + " dans " + delay + " ms (tentative "
+                        + backoff.getAttempts() + "/" + backoff.getMaxAttempts() + ")");
                 try {
-                    mmSocket.close();
-                } catch (IOException e2) {
-                    Log.e(TAG, "Impossible de fermer le socket pendant l'échec de connexion", e2);
+                    if (cancelSignal.await(delay, TimeUnit.MILLISECONDS)) {
+                        return false;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+
+                try {
+                    transport.connect();
+                    Log.i(TAG, "Reconnecté à " + address + " après " + backoff.getAttempts() + " tentative(s)");
+                    return true;
+                } catch (IOException e) {
+                    if (cancelled) {
+                        return false;
+                    }
+                    Log.w(TAG, "Tentative de reconnexion échouée: " + address + " - " + e.getMessage());
                 }
-                handler.post(() -> callback.onConnectionFailed());
-                return;
             }
+            Log.e(TAG, "Abandon de la reconnexion de " + address + " après " + backoff.getAttempts() + " tentatives");
+            return false;
+        }
 
-            // Réinitialiser le ConnectThread car nous avons terminé
-            synchronized (BluetoothService.this) {
-                connectThread = null;
+        // Marqueur de coupure daté de la perte de liaison, vers l'interface et le journal
+        private void publishGap() {
+            gapSample.reset();
+            gapSample.setReceivedAtMillis(clock.currentTimeMillis());
+            gapSample.markGap();
+            dispatcher.publish(gapSample);
+            if (telemetryLog != null) {
+                telemetryLog.append(gapSample);
             }
+            metrics.onGap();
+            alerts.evaluate(gapSample);
+            reconstructor.reset();
+            dropoutNanos = System.nanoTime();
+        }
 
-            // Démarrer le thread connecté
-            connected(mmSocket, mmDevice);
+        // Fin anormale : la session quitte la table et l'interface est prévenue
+        private void fail() {
+            // Une session déjà retirée (déconnexion, remplacement) n'a pas échoué
+            if (!sessions.remove(address, this) || !machine.close()) {
+                return;
+            }
+            handler.post(() -> callback.onConnectionFailed(address));
         }
 
-        public void cancel() {
+        private void openLog() {
+            File directory = recordingDirectory;
+            if (directory == null) {
+                return;
+            }
             try {
-                mmSocket.close();
+                if (previous != null) {
+                    previous.finished.await();
+                }
+                File logDirectory = logDirectory(directory, address);
+                telemetryLog = TelemetryLog.open(logDirectory, registry.getChannelCount());
+                telemetryLog.setRetentionMillis(RAW_RETENTION_MILLIS);
+                rollups = RollupStore.open(new File(logDirectory, ROLLUP_DIRECTORY), registry.getChannelCount());
             } catch (IOException e) {
-                Log.e(TAG, "Fermeture du socket Connect échouée", e);
+                Log.e(TAG, "Impossible d'ouvrir le journal de " + address, e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
         }
-    }
-
-    /**
-     * Thread qui gère une connexion établie
-     */
-    private class ConnectedThread extends Thread {
-        private final BluetoothSocket mmSocket;
-        private final InputStream mmInStream;
-
-        public ConnectedThread(BluetoothSocket socket) {
-            Log.d(TAG, "ConnectedThread créé");
-            mmSocket = socket;
-            InputStream tmpIn = null;
 
+        private void closeLog() {
+            if (rollups != null) {
+                try {
+                    rollups.close();
+                } catch (IOException e) {
+                    Log.e(TAG, "Erreur à la fermeture des agrégats de " + address, e);
+                }
+                rollups = null;
+            }
+            if (telemetryLog == null) {
+                return;
+            }
             try {
-                tmpIn = socket.getInputStream();
+                telemetryLog.close();
             } catch (IOException e) {
-                Log.e(TAG, "Erreur lors de la création du flux d'entrée", e);
+                Log.e(TAG, "Erreur à la fermeture du journal de " + address, e);
             }
+            telemetryLog = null;
+        }
 
-            mmInStream = tmpIn;
+        // Sortie du décodeur : datation sur l'horloge de la carte, puis série régulière
+        private void onSampleReceived(TelemetrySample sample) {
+            clockSync.apply(sample);
+            reconstructor.onSample(sample);
         }
 
-        public void run() {
-            Log.i(TAG, "ConnectedThread démarré");
-            BufferedReader reader = new BufferedReader(new InputStreamReader(mmInStream));
-            
-            while (true) {
-                try {
-                    if (!mmSocket.isConnected()) {
-                        break;
-                    }
-                    
-                    String line = reader.readLine();
-                    if (line != null) {
-                        Log.d(TAG, "Données reçues: " + line);
-                        
-                        // Analyser les données
-                        processMessage(line);
+        // Chaque échantillon décodé part vers l'interface, le journal, les agrégats et les alertes de l'appareil
+        private void onSampleDecoded(TelemetrySample sample) {
+            if (dropoutNanos != 0) {
+                recordTimeToData();
+            }
+            statistics.add(sample);
+            dispatcher.publish(sample);
+            if (telemetryLog != null) {
+                telemetryLog.append(sample);
+            }
+            if (rollups != null) {
+                rollups.add(sample);
+            }
+            alerts.evaluate(sample);
+        }
+
+        private void recordTimeToData() {
+            long elapsed = (System.nanoTime() - dropoutNanos) / 1_000_000;
+            dropoutNanos = 0;
+            lastTimeToDataMillis = elapsed;
+            if (elapsed > TIME_TO_DATA_TARGET_MILLIS) {
+                Log.w(TAG, "Reprise des données lente pour " + address + ": " + elapsed + " ms");
+            } else {
+                Log.i(TAG, "Données reprises pour " + address + " en " + elapsed + " ms");
+            }
+        }
+
+        // Lecture octet par octet avec le décodeur sans allocation (texte ou binaire, détecté à la connexion)
+        private void readBytes(InputStream in) throws IOException {
+            TelemetryDecoder decoder = new TelemetryDecoder(registry, this::onSampleReceived);
+            decoder.setClock(clock);
+            decoder.setReplyListener(commands);
+            // Compteurs du décodeur à la lecture précédente : les mesures reçoivent les écarts
+            long lines = 0;
+            long frames = 0;
+            long errors = 0;
+            long decodeNanos = 0;
+            try {
+                while (!cancelled) {
+                    int read = decoder.readFrom(in);
+                    if (read < 0) {
+                        throw new IOException("Fin du flux d'entrée");
                     }
-                } catch (IOException e) {
-                    Log.e(TAG, "Déconnecté", e);
-                    setState(STATE_NONE);
-                    handler.post(() -> callback.onConnectionFailed());
-                    break;
+                    long currentErrors = decoder.getErrorCount() + decoder.getCrcErrorCount();
+                    metrics.onRead(read, (int) (decoder.getLineCount() - lines),
+                            (int) (decoder.getFrameCount() - frames), (int) (currentErrors - errors),
+                            decoder.getDecodeNanos() - decodeNanos);
+                    lines = decoder.getLineCount();
+                    frames = decoder.getFrameCount();
+                    errors = currentErrors;
+                    decodeNanos = decoder.getDecodeNanos();
                 }
+            } finally {
+                Log.i(TAG, "Fin de lecture " + address + " - protocole: " + decoder.getProtocol()
+                        + ", lignes: " + decoder.getLineCount()
+                        + ", trames: " + decoder.getFrameCount()
+                        + ", réponses: " + decoder.getReplyCount()
+                        + ", trames perdues: " + decoder.getLostFrameCount()
+                        + ", erreurs CRC: " + decoder.getCrcErrorCount()
+                        + ", erreurs: " + decoder.getErrorCount()
+                        + ", mises à jour partielles: " + reconstructor.getUpdateCount()
+                        + ", recréés: " + reconstructor.getFilledCount()
+                        + ", dérive horloge: " + String.format(Locale.ROOT, "%.1f ppm", clockSync.getDriftPpm())
+                        + ", recalages: " + clockSync.getResyncCount());
+            }
+        }
+
+        // Ancien chemin : une String par ligne puis String.split
+        private void readLines(InputStream in) throws IOException {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in));
+
+            while (!cancelled) {
+                String line = reader.readLine();
+                if (line == null) {
+                    throw new IOException("Fin du flux d'entrée");
+                }
+                Log.d(TAG, "Données reçues: " + line);
+
+                // Analyser les données (les erreurs de ce chemin ne sont que journalisées)
+                long begin = System.nanoTime();
+                processMessage(line);
+                metrics.onRead(line.length() + 1, 1, 0, 0, System.nanoTime() - begin);
             }
         }
 
@@ -229,12 +904,6 @@ public class BluetoothService {
                     return;
                 }
 
-                float temperature = 0;
-                float voltage = 0;
-                int batteryPercentage = 0;
-                float brightness = 0;
-                String timestamp = "--:--:--";
-
                 // Découper la chaîne en parties
                 String[] parts = message.split(",");
                 if (parts.length < 3) {
@@ -242,6 +911,8 @@ public class BluetoothService {
                     return;
                 }
 
+                legacySample.reset();
+                legacySample.setReceivedAtMillis(clock.currentTimeMillis());
                 for (String part : parts) {
                     String[] keyValue = part.split(":");
                     if (keyValue.length != 2) continue;
@@ -249,36 +920,18 @@ public class BluetoothService {
                     String key = keyValue[0];
                     String value = keyValue[1];
 
+                    int channel = registry.lookup(key);
+                    if (channel == ChannelRegistry.UNKNOWN) continue;
                     try {
-                        if (key.equals("T")) {
-                            temperature = Float.parseFloat(value);
-                        } else if (key.equals("V")) {
-                            voltage = Float.parseFloat(value);
-                        } else if (key.equals("B")) {
-                            batteryPercentage = Integer.parseInt(value);
-                        } else if (key.equals("L")) {
-                            brightness = Float.parseFloat(value);
-                        } else if (key.equals("H")) {
-                            timestamp = value;
-                        }
+                        legacySample.set(channel, Float.parseFloat(value.trim()));
                     } catch (NumberFormatException e) {
                         Log.e(TAG, "Erreur de parsing pour " + key + ":" + value, e);
                     }
                 }
 
                 // Envoyer les données à l'activité principale
-                final float finalTemp = temperature;
-                final float finalVoltage = voltage;
-                final int finalBattery = batteryPercentage;
-                final float finalBrightness = brightness;
-                final String finalTimestamp = timestamp;
-
-                Handler mainHandler = new Handler(Looper.getMainLooper());
-                mainHandler.post(() -> {
-                    if (callback != null) {
-                        callback.onDataReceived(finalTemp, finalVoltage, finalBattery, finalTimestamp, finalBrightness);
-                    }
-                });
+                clockSync.apply(legacySample);
+                onSampleDecoded(legacySample);
             } catch (Exception e) {
                 Log.e(TAG, "Erreur lors du traitement du message", e);
             }
@@ -309,11 +962,24 @@ public class BluetoothService {
         }
 
         public void cancel() {
+            cancelled = true;
+            cancelSignal.countDown();
+            // Seul le gagnant de la fermeture ferme la liaison pour débloquer la lecture
+            if (machine.close()) {
+                closeTransport();
+            }
+        }
+
+        private void closeTransport() {
             try {
-                mmSocket.close();
+                transport.close();
             } catch (IOException e) {
-                Log.e(TAG, "Fermeture du socket Connected échouée", e);
+                Log.e(TAG, "Fermeture de la liaison échouée", e);
+            }
+            if (transport instanceof CapturingTransport
+                    && ((CapturingTransport) transport).getCaptureError() != null) {
+                Log.e(TAG, "Capture incomplète pour " + address, ((CapturingTransport) transport).getCaptureError());
             }
         }
     }
-} 
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,93 @@
+package com.example.bluetoothapp;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Relit une capture écrite par {@link CapturingTransport}, un enregistrement à la fois, dans
+ * un tampon réutilisé.
+ */
+public class CaptureReader implements Closeable {
+
+    // Bien au-delà d'une lecture réelle : au-delà, la capture est corrompue
+    private static final int MAX_RECORD_LENGTH = 1 << 20;
+
+    private final DataInputStream in;
+    private byte[] data = new byte[4096];
+    private int type;
+    private long timeMillis;
+    private int length;
+
+    public CaptureReader(InputStream in) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(in));
+        int magic = this.in.readInt();
+        int version = this.in.readInt();
+        if (magic != CapturingTransport.MAGIC || version != CapturingTransport.VERSION) {
+            throw new IOException("Capture invalide ou version non prise en charge: " + version);
+        }
+    }
+
+    /**
+     * Passe à l'enregistrement suivant.
+     * @return faux à la fin de la capture, y compris sur un dernier enregistrement tronqué
+     */
+    public boolean next() throws IOException {
+        int nextType = in.read();
+        if (nextType < 0) {
+            return false;
+        }
+        try {
+            long nextTime = in.readLong();
+            int nextLength = in.readInt();
+            if ((nextType != CapturingTransport.RECORD_DATA && nextType != CapturingTransport.RECORD_BREAK)
+                    || nextLength < 0 || nextLength > MAX_RECORD_LENGTH) {
+                throw new IOException("Enregistrement de capture invalide: type " + nextType
+                        + ", longueur " + nextLength);
+            }
+            if (nextLength > data.length) {
+                data = new byte[Math.max(nextLength, data.length * 2)];
+            }
+            in.readFully(data, 0, nextLength);
+            type = nextType;
+            timeMillis = nextTime;
+            length = nextLength;
+            return true;
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Vrai si la liaison a été coupée à cet endroit de la capture.
+     */
+    public boolean isBreak() {
+        return type == CapturingTransport.RECORD_BREAK;
+    }
+
+    /**
+     * Heure de la lecture enregistrée, en ms.
+     */
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    /**
+     * Octets de l'enregistrement courant, valables jusqu'au prochain appel à {@link #next}.
+     */
+    public byte[] getData() {
+        return data;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.bluetoothapp;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Enregistre tels quels les octets lus sur une autre liaison, pour les rejouer ensuite avec
+ * {@link ReplayTransport} dans la même chaîne de réception (découpage, décodage, livraison,
+ * graphiques, journal).
+ *
+ * Capture (entiers gros-boutiens) : magic "ECAP" et version, puis un enregistrement par lecture
+ * réussie : type (u8), heure de la lecture en ms, longueur (i32) et les octets. Une lecture en
+ * échec ou une fin de flux donne un enregistrement de coupure sans octets. Relue par
+ * {@link CaptureReader} ; une capture tronquée (application tuée) reste lisible jusqu'au dernier
+ * enregistrement complet.
+ */
+public class CapturingTransport implements Transport {
+
+    static final int MAGIC = 0x45434150; // "ECAP"
+    static final int VERSION = 1;
+    static final int RECORD_DATA = 0;
+    static final int RECORD_BREAK = 1;
+
+    private final Transport transport;
+    private final Clock clock;
+    // Écrit par le thread de lecture, fermé par close() depuis n'importe quel thread
+    private final DataOutputStream capture;
+    private boolean captureClosed;
+    // Première erreur d'écriture : la capture s'arrête, pas la liaison
+    private volatile IOException captureError;
+    private volatile long capturedBytes;
+
+    public CapturingTransport(Transport transport, OutputStream capture) throws IOException {
+        this.transport = transport;
+        this.clock = transport.getClock();
+        this.capture = new DataOutputStream(new BufferedOutputStream(capture));
+        this.capture.writeInt(MAGIC);
+        this.capture.writeInt(VERSION);
+    }
+
+    @Override
+    public String getAddress() {
+        return transport.getAddress();
+    }
+
+    @Override
+    public String getName() {
+        return transport.getName();
+    }
+
+    @Override
+    public void connect() throws IOException {
+        transport.connect();
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return new CaptureInputStream(transport.getInputStream());
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        return transport.getOutputStream();
+    }
+
+    @Override
+    public Clock getClock() {
+        return clock;
+    }
+
+    /**
+     * Erreur qui a arrêté la capture, null si elle est complète.
+     */
+    public IOException getCaptureError() {
+        return captureError;
+    }
+
+    public long getCapturedBytes() {
+        return capturedBytes;
+    }
+
+    /**
+     * Ferme la liaison puis la capture, qui est vidée sur le disque.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            transport.close();
+        } finally {
+            synchronized (this) {
+                if (!captureClosed) {
+                    captureClosed = true;
+                    capture.close();
+                }
+            }
+        }
+    }
+
+    private synchronized void record(int type, byte[] data, int offset, int length) {
+        if (captureClosed || captureError != null) {
+            return;
+        }
+        try {
+            capture.writeByte(type);
+            capture.writeLong(clock.currentTimeMillis());
+            capture.writeInt(length);
+            capture.write(data, offset, length);
+            if (type == RECORD_BREAK) {
+                capture.flush();
+            }
+            capturedBytes += length;
+        } catch (IOException e) {
+            captureError = e;
+        }
+    }
+
+    private final class CaptureInputStream extends FilterInputStream {
+
+        CaptureInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read;
+            try {
+                read = in.read(b, off, len);
+            } catch (IOException e) {
+                record(RECORD_BREAK, b, off, 0);
+                throw e;
+            }
+            if (read > 0) {
+                record(RECORD_DATA, b, off, read);
+            } else if (read < 0) {
+                record(RECORD_BREAK, b, off, 0);
+            }
+            return read;
+        }
+
+        // Les octets sautés ne seraient pas dans la capture
+        @Override
+        public long skip(long n) throws IOException {
+            return read(new byte[(int) Math.min(n, 4096)], 0, (int) Math.min(n, 4096));
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.bluetoothapp;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Table des canaux de télémétrie : clé du protocole texte ("T", "Lux"...), libellé, unité et
+ * facteur de virgule fixe du protocole binaire, pour chaque identifiant de canal. C'est la seule
+ * définition des canaux : échantillons, journaux et statistiques sont dimensionnés par
+ * {@link #getChannelCount()}, et {@link BinaryFrameCodec} y lit ses facteurs.
+ *
+ * La correspondance clé -> identifiant est construite une fois, avant la connexion ; le décodeur
+ * la consulte directement sur les octets reçus (tableau indexé pour les clés d'un caractère,
+ * comparaison d'octets pour les autres), sans créer de String. Les échantillons transportent
+ * ensuite les valeurs dans un tableau indexé par identifiant ({@link TelemetrySample}).
+ */
+public class ChannelRegistry {
+
+    // Identifiants des canaux de createDefault(), partagés avec le firmware
+    public static final int TEMPERATURE = 0;
+    public static final int VOLTAGE = 1;
+    public static final int BATTERY = 2;
+    public static final int BRIGHTNESS = 3;
+    public static final int PRESSURE = 4;
+    public static final int LUX = 5;
+
+    // Limite des identifiants : les masques de canaux sont des int dont le bit 31 marque les
+    // coupures (TelemetrySample.GAP_FLAG)
+    public static final int MAX_CHANNELS = 31;
+    public static final int UNKNOWN = -1;
+
+    // Clé réservée à l'horodatage "H:HH:mm:ss"
+    private static final String TIME_KEY = "H";
+
+    private final String[] keys = new String[MAX_CHANNELS];
+    private final String[] labels = new String[MAX_CHANNELS];
+    private final String[] units = new String[MAX_CHANNELS];
+    private final float[] scales = new float[MAX_CHANNELS];
+    private int definedMask;
+
+    // Clés d'un octet : canal + 1 (0 = inconnue)
+    private final byte[] singleByteKeys = new byte[128];
+    // Clés plus longues, comparées octet par octet
+    private byte[][] longKeys = new byte[0][];
+    private int[] longKeyChannels = new int[0];
+
+    /**
+     * Canaux connus de l'application, avec les identifiants du protocole binaire.
+     */
+    public static ChannelRegistry createDefault() {
+        ChannelRegistry registry = new ChannelRegistry();
+        // Facteurs : 0,01 °C, 1 mV, 1 %, 0,1 lux
+        registry.register(TEMPERATURE, "T", "Température", "°C", 100);
+        registry.register(VOLTAGE, "V", "Tension", "V", 1000);
+        registry.register(BATTERY, "B", "Batterie", "%", 1);
+        registry.register(BRIGHTNESS, "L", "Luminosité", "lux", 10);
+        // BMP280 du sketch d'Aurélien (pression en hPa, à 0,1 hPa)
+        registry.register(PRESSURE, "P", "Pression", "hPa", 10);
+        // VEML7700 du montage de Samy, clé "Lux" comme sur son écran LCD (0,01 lx, valeur sur
+        // 32 bits au-delà de 327 lx)
+        registry.register(LUX, "Lux", "Lux VEML7700", "lx", 100);
+        return registry;
+    }
+
+    /**
+     * Déclare un canal. À faire avant de passer la table au service : elle n'est pas protégée
+     * contre les modifications concurrentes.
+     * @param binaryScale facteur de virgule fixe du protocole binaire (valeur entière / facteur)
+     * @return this, pour enchaîner les déclarations
+     * @throws IllegalArgumentException si l'identifiant est hors limites, la clé déjà prise ou le
+     *                                  facteur nul
+     */
+    public ChannelRegistry register(int channel, String key, String label, String unit, int binaryScale) {
+        if (channel < 0 || channel >= MAX_CHANNELS) {
+            throw new IllegalArgumentException("Canal hors limites: " + channel);
+        }
+        if (key.isEmpty() || key.equals(TIME_KEY) || lookup(key) != UNKNOWN) {
+            throw new IllegalArgumentException("Clé invalide ou déjà utilisée: " + key);
+        }
+        if (isDefined(channel)) {
+            throw new IllegalArgumentException("Canal déjà déclaré: " + channel);
+        }
+        if (binaryScale <= 0) {
+            throw new IllegalArgumentException("Facteur invalide: " + binaryScale);
+        }
+
+        byte[] bytes = key.getBytes(StandardCharsets.US_ASCII);
+        if (bytes.length == 1 && bytes[0] >= 0) {
+            singleByteKeys[bytes[0]] = (byte) (channel + 1);
+        } else {
+            longKeys = Arrays.copyOf(longKeys, longKeys.length + 1);
+            longKeys[longKeys.length - 1] = bytes;
+            longKeyChannels = Arrays.copyOf(longKeyChannels, longKeyChannels.length + 1);
+            longKeyChannels[longKeyChannels.length - 1] = channel;
+        }
+        keys[channel] = key;
+        labels[channel] = label;
+        units[channel] = unit;
+        scales[channel] = binaryScale;
+        definedMask |= 1 << channel;
+        return this;
+    }
+
+    /**
+     * Identifiant du canal dont la clé occupe {@code data[from, to)}, ou {@link #UNKNOWN}.
+     */
+    public int lookup(byte[] data, int from, int to) {
+        int length = to - from;
+        if (length == 1) {
+            int b = data[from];
+            return b >= 0 ? singleByteKeys[b] - 1 : UNKNOWN;
+        }
+        for (int k = 0; k < longKeys.length; k++) {
+            byte[] key = longKeys[k];
+            if (key.length != length) {
+                continue;
+            }
+            int i = 0;
+            while (i < length && key[i] == data[from + i]) {
+                i++;
+            }
+            if (i == length) {
+                return longKeyChannels[k];
+            }
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * Variante pour les clés déjà sous forme de String (ancien décodage, configuration).
+     */
+    public int lookup(String key) {
+        byte[] bytes = key.getBytes(StandardCharsets.US_ASCII);
+        return lookup(bytes, 0, bytes.length);
+    }
+
+    public boolean isDefined(int channel) {
+        return channel >= 0 && channel < MAX_CHANNELS && (definedMask & (1 << channel)) != 0;
+    }
+
+    /**
+     * Taille des tableaux de valeurs indexés par identifiant : plus grand identifiant déclaré + 1.
+     */
+    public int getChannelCount() {
+        return 32 - Integer.numberOfLeadingZeros(definedMask);
+    }
+
+    /**
+     * Masque des canaux déclarés (bit i pour le canal i).
+     */
+    public int getDefinedMask() {
+        return definedMask;
+    }
+
+    public String getKey(int channel) {
+        return keys[channel];
+    }
+
+    public String getLabel(int channel) {
+        return labels[channel];
+    }
+
+    public String getUnit(int channel) {
+        return units[channel];
+    }
+
+    /**
+     * Facteur de virgule fixe du protocole binaire : valeur réelle = valeur entière / facteur.
+     */
+    public float getScale(int channel) {
+        return scales[channel];
+    }
+}
@@ -0,0 +1,652 @@
+package com.example.bluetoothapp;
+
+import android.graphics.Color;
+import android.graphics.Rect;
+import android.os.Looper;
+import android.util.Log;
+import android.view.MotionEvent;
+
+import com.github.mikephil.charting.charts.LineChart;
+import com.github.mikephil.charting.components.LimitLine;
+import com.github.mikephil.charting.data.Entry;
+import com.github.mikephil.charting.data.LineData;
+import com.github.mikephil.charting.data.LineDataSet;
+import com.github.mikephil.charting.listener.ChartTouchListener;
+import com.github.mikephil.charting.listener.OnChartGestureListener;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Relie l'historique d'un canal à son graphique en passant par un {@link ChartDecimator}.
+ * Le graphique ne reçoit jamais plus de quelques points par pixel, quelle que soit la durée de
+ * l'historique. L'axe X est en secondes depuis le premier échantillon reçu.
+ *
+ * L'historique et la décimation appartiennent au thread de rendu du {@link ChartRenderScheduler} :
+ * le thread principal dépose les échantillons dans un tampon d'attente et ne touche au graphique
+ * que pour lui remettre des points déjà préparés.
+ *
+ * Vue longue durée ({@link #showSpan}) : les dernières heures ou semaines sont lues dans le
+ * niveau d'agrégats ({@link RollupStore}) le plus grossier qui donne encore un point par pixel,
+ * ou dans l'historique en mémoire si la vue est plus courte que tous les niveaux. Le nombre de
+ * points lus reste borné quel que soit le zoom.
+ */
+public class ChartController implements OnChartGestureListener {
+
+    private static final String TAG = "ChartController";
+
+    // Coupures de liaison affichées au plus, les plus anciennes disparaissent
+    private static final int MAX_GAP_MARKERS = 50;
+    private static final int INITIAL_STAGING_CAPACITY = 1024;
+    // Points en attente au plus : un producteur hors du thread principal attend alors que le
+    // thread de rendu reprenne le tampon, le thread principal perd les points en trop
+    static final int MAX_PENDING_POINTS = 16 * 1024;
+    private static final long DRAIN_WAIT_MILLIS = 500;
+    private static final int DEFAULT_PIXEL_WIDTH = 500;
+    // Vue longue durée qui suit les nouveaux échantillons : recalculée au plus une fois par pixel
+    // de temps, et jamais plus d'une fois par seconde
+    private static final long MIN_SPAN_REFRESH_MILLIS = 1000;
+
+    private static final int IDLE = 0;
+    private static final int PREPARING = 1;
+    private static final int PREPARED = 2;
+
+    private final LineChart chart;
+    // Jeu de données unique du graphique, dont les points sont remplacés à chaque rendu
+    private final LineDataSet dataSet;
+    private final ChartRenderScheduler scheduler;
+    private final Rect visibleRect = new Rect();
+
+    // Thread de rendu uniquement
+    private final TimeSeries history;
+    private final ChartDecimator decimator;
+    private long[] stagedTimes = new long[INITIAL_STAGING_CAPACITY];
+    private float[] stagedValues = new float[INITIAL_STAGING_CAPACITY];
+    private final RollupStore.Series rollupSeries = new RollupStore.Series();
+    private long[] spanTimes = new long[0];
+    private float[] spanValues = new float[0];
+    // Vue longue durée : durée (0 si aucune), plage figée par un zoom, dernier calcul (0 à refaire)
+    private long viewSpan;
+    private boolean viewFixed;
+    private long viewFrom;
+    private long viewTo;
+    private long spanUpdatedAt;
+
+    // Échantillons et commandes déposés par le thread principal, repris par le thread de rendu
+    private final Object stagingLock = new Object();
+    private long[] pendingTimes = new long[INITIAL_STAGING_CAPACITY];
+    private float[] pendingValues = new float[INITIAL_STAGING_CAPACITY];
+    private int pendingCount;
+    private long droppedCount;
+    private boolean clearRequested;
+    private boolean rangeRequested;
+    private boolean followTailRequested;
+    private long requestedFrom;
+    private long requestedTo;
+    private int generation;
+    private boolean spanRequested;
+    private long requestedSpan;
+
+    // Points passés au graphique, en double tampon : le thread de rendu remplit « back » pendant
+    // que le graphique affiche « front », puis les deux sont échangés sur le thread principal
+    private List<Entry> front = new ArrayList<>();
+    private List<Entry> back = new ArrayList<>();
+    private List<Entry> frontPool = new ArrayList<>();
+    private List<Entry> backPool = new ArrayList<>();
+    private int preparedGeneration;
+    // Fenêtre des points préparés en vue longue durée qui suit la fin, pour l'axe X
+    private boolean preparedTrailing;
+    private long preparedFrom;
+    private long preparedTo;
+
+    private volatile int state = IDLE;
+    private volatile boolean prepareVisible;
+    private volatile int pixelWidth;
+    // Étendue de l'historique, publiée par le thread de rendu (-1 tant qu'il est vide)
+    private volatile long firstTimestamp = -1;
+    private volatile long lastTimestamp = -1;
+    // Agrégats de l'appareil affiché, null sans enregistrement
+    private volatile File rollupDirectory;
+    private volatile int rollupChannel;
+
+    // Thread principal uniquement
+    boolean renderRequested;
+    // Lignes verticales marquant les coupures, dans l'ordre chronologique
+    private final List<LimitLine> gapMarkers = new ArrayList<>();
+    private boolean followingTail = true;
+    private long spanMillis;
+    // Lu par le thread de rendu pour l'axe X ; fixé au premier échantillon après un clear()
+    private volatile long originMillis = -1;
+
+    // Échelle Y fixée à la configuration du graphique, utilisée tant qu'il n'y a pas de statistiques
+    private final float defaultMinY;
+    private final float defaultMaxY;
+
+    final Runnable prepareTask = this::prepare;
+
+    /**
+     * @param dataSet jeu de données déjà attaché au graphique
+     * @param history historique du canal, par exemple une série d'un {@link SampleStore} ; il
+     *                n'est modifié que par le thread de rendu
+     */
+    public ChartController(LineChart chart, LineDataSet dataSet, TimeSeries history,
+                           ChartRenderScheduler scheduler) {
+        this.chart = chart;
+        this.dataSet = dataSet;
+        this.scheduler = scheduler;
+        this.history = history;
+        this.decimator = new ChartDecimator(history);
+        this.defaultMinY = chart.getAxisLeft().getAxisMinimum();
+        this.defaultMaxY = chart.getAxisLeft().getAxisMaximum();
+        chart.setOnChartGestureListener(this);
+        scheduler.register(this);
+    }
+
+    /**
+     * Dépose un point pour le prochain rendu. Le thread principal en est l'appelant habituel ;
+     * un seul autre thread à la fois peut l'appeler (relecture d'un export). Ce dernier est
+     * bloqué tant que {@link #MAX_PENDING_POINTS} points attendent le thread de rendu : un
+     * export est ainsi intégré à l'historique par morceaux, sans jamais être entier sur le tas.
+     */
+    public void append(long timestampMillis, float value) {
+        if (originMillis < 0) {
+            originMillis = timestampMillis;
+        }
+        boolean mainThread = Looper.myLooper() == Looper.getMainLooper();
+        synchronized (stagingLock) {
+            while (pendingCount == MAX_PENDING_POINTS) {
+                if (mainThread || scheduler.isReleased()) {
+                    if (droppedCount++ % 1000 == 0) {
+                        Log.w(TAG, "Tampon d'attente plein, " + droppedCount + " points perdus");
+                    }
+                    return;
+                }
+                // La demande de rendu passe par le thread principal ; elle est renouvelée si
+                // l'attente dure (graphique pas encore attaché à la fenêtre)
+                chart.post(this::refresh);
+                try {
+                    stagingLock.wait(DRAIN_WAIT_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            if (pendingCount == pendingTimes.length) {
+                int capacity = Math.min(pendingCount * 2, MAX_PENDING_POINTS);
+                pendingTimes = Arrays.copyOf(pendingTimes, capacity);
+                pendingValues = Arrays.copyOf(pendingValues, capacity);
+            }
+            pendingTimes[pendingCount] = timestampMillis;
+            pendingValues[pendingCount++] = value;
+        }
+    }
+
+    /**
+     * Durée couverte par l'historique, 0 s'il est vide.
+     */
+    public long getHistorySpanMillis() {
+        long first = firstTimestamp;
+        long last = lastTimestamp;
+        return first < 0 || last < first ? 0 : last - first;
+    }
+
+    /**
+     * Échelle Y donnée par des statistiques glissantes couvrant tout l'historique : elle suit les
+     * valeurs sans parcourir les points. Ignoré en zoom, ou si la plage n'est pas connue (NaN).
+     */
+    public void setValueRange(float min, float max) {
+        if (!followingTail || spanMillis > 0 || !(min <= max)) {
+            return;
+        }
+        float margin = Math.max((max - min) * 0.1f, Math.max(Math.abs(max) * 0.01f, 0.1f));
+        chart.getAxisLeft().setAxisMinimum(min - margin);
+        chart.getAxisLeft().setAxisMaximum(max + margin);
+    }
+
+    /**
+     * Agrégats à lire en vue longue durée pour ce canal ; null si l'appareil n'en a pas.
+     */
+    public void setRollupSource(File directory, int channel) {
+        rollupChannel = channel;
+        rollupDirectory = directory;
+    }
+
+    /**
+     * Affiche les spanMillis dernières millisecondes, en suivant les nouveaux échantillons ;
+     * 0 revient à la vue de l'historique en mémoire. L'échelle Y suit alors les points affichés.
+     */
+    public void showSpan(long spanMillis) {
+        this.spanMillis = spanMillis;
+        synchronized (stagingLock) {
+            spanRequested = true;
+            requestedSpan = spanMillis;
+            rangeRequested = false;
+            followTailRequested = false;
+        }
+        followingTail = true;
+        chart.fitScreen();
+        if (spanMillis > 0) {
+            long end = lastTimestamp >= 0 ? lastTimestamp : System.currentTimeMillis();
+            if (originMillis < 0) {
+                originMillis = end - spanMillis;
+            }
+            chart.getXAxis().setAxisMinimum(toChartX(end - spanMillis));
+            chart.getXAxis().setAxisMaximum(toChartX(end));
+            chart.getAxisLeft().resetAxisMinimum();
+            chart.getAxisLeft().resetAxisMaximum();
+        } else {
+            chart.getXAxis().resetAxisMinimum();
+            chart.getXAxis().resetAxisMaximum();
+            chart.getAxisLeft().setAxisMinimum(defaultMinY);
+            chart.getAxisLeft().setAxisMaximum(defaultMaxY);
+        }
+        refresh();
+    }
+
+    /**
+     * Marque une coupure de liaison à cet instant par une ligne verticale pointillée :
+     * la courbe reste continue mais l'interruption est visible.
+     */
+    public void markGap(long timestampMillis) {
+        if (originMillis < 0) {
+            // Rien d'affiché avant la coupure
+            return;
+        }
+        if (gapMarkers.size() == MAX_GAP_MARKERS) {
+            chart.getXAxis().removeLimitLine(gapMarkers.remove(0));
+        }
+        LimitLine marker = new LimitLine(toChartX(timestampMillis), "Coupure");
+        marker.setLineColor(Color.GRAY);
+        marker.setLineWidth(1f);
+        marker.enableDashedLine(10f, 10f, 0f);
+        marker.setTextSize(9f);
+        gapMarkers.add(marker);
+        chart.getXAxis().addLimitLine(marker);
+        refresh();
+    }
+
+    /**
+     * Vide l'historique et le graphique, par exemple quand l'appareil affiché change.
+     */
+    public void clear() {
+        synchronized (stagingLock) {
+            pendingCount = 0;
+            stagingLock.notifyAll();
+            clearRequested = true;
+            rangeRequested = false;
+            followTailRequested = false;
+            // Les points en cours de préparation appartiennent à l'ancien historique
+            generation++;
+        }
+        originMillis = -1;
+        firstTimestamp = -1;
+        lastTimestamp = -1;
+        followingTail = true;
+        gapMarkers.clear();
+        chart.getXAxis().removeAllLimitLines();
+        chart.getXAxis().resetAxisMinimum();
+        chart.getXAxis().resetAxisMaximum();
+        if (spanMillis > 0) {
+            chart.getAxisLeft().resetAxisMinimum();
+            chart.getAxisLeft().resetAxisMaximum();
+        } else {
+            chart.getAxisLeft().setAxisMinimum(defaultMinY);
+            chart.getAxisLeft().setAxisMaximum(defaultMaxY);
+        }
+        chart.fitScreen();
+
+        LineData data = chart.getData();
+        if (data != null) {
+            front.clear();
+            dataSet.setValues(front);
+            data.notifyDataChanged();
+            chart.notifyDataSetChanged();
+        }
+        chart.invalidate();
+    }
+
+    /**
+     * Demande la mise à jour du graphique à la prochaine image, s'il est visible.
+     */
+    public void refresh() {
+        scheduler.requestRender(this);
+    }
+
+    // Appelé par le ChartRenderScheduler sur le thread principal
+
+    boolean isPreparing() {
+        return state == PREPARING;
+    }
+
+    boolean isPrepared() {
+        return state == PREPARED;
+    }
+
+    boolean isVisible() {
+        return chart.isShown() && chart.getLocalVisibleRect(visibleRect);
+    }
+
+    void startPreparing(boolean visible) {
+        int width = (int) chart.getViewPortHandler().contentWidth();
+        if (width > 0) {
+            pixelWidth = width;
+        }
+        prepareVisible = visible;
+        state = PREPARING;
+    }
+
+    /**
+     * Remet au graphique les points préparés ; seul travail fait sur le thread principal.
+     */
+    void apply() {
+        state = IDLE;
+        int current;
+        synchronized (stagingLock) {
+            current = generation;
+        }
+        LineData data = chart.getData();
+        if (preparedGeneration != current || data == null) {
+            // Historique vidé pendant la préparation
+            renderRequested = true;
+            return;
+        }
+        List<Entry> shown = back;
+        back = front;
+        front = shown;
+        List<Entry> pool = backPool;
+        backPool = frontPool;
+        frontPool = pool;
+
+        dataSet.setValues(front);
+        if (preparedTrailing && spanMillis > 0) {
+            // La fenêtre avance avec les nouveaux échantillons
+            chart.getXAxis().setAxisMinimum(toChartX(preparedFrom));
+            chart.getXAxis().setAxisMaximum(toChartX(preparedTo));
+        }
+        data.notifyDataChanged();
+        chart.notifyDataSetChanged();
+        chart.invalidate();
+    }
+
+    // Thread de rendu : intègre les échantillons en attente puis, si le graphique est visible,
+    // décime et remplit les points du tampon arrière
+    private void prepare() {
+        int count;
+        boolean clear;
+        boolean range;
+        boolean tail;
+        long from;
+        long to;
+        int preparing;
+        boolean span;
+        long spanValue;
+        synchronized (stagingLock) {
+            count = pendingCount;
+            if (stagedTimes.length < count) {
+                stagedTimes = new long[pendingTimes.length];
+                stagedValues = new float[pendingTimes.length];
+            }
+            System.arraycopy(pendingTimes, 0, stagedTimes, 0, count);
+            System.arraycopy(pendingValues, 0, stagedValues, 0, count);
+            pendingCount = 0;
+            stagingLock.notifyAll();
+            clear = clearRequested;
+            range = rangeRequested;
+            tail = followTailRequested;
+            from = requestedFrom;
+            to = requestedTo;
+            clearRequested = false;
+            rangeRequested = false;
+            followTailRequested = false;
+            preparing = generation;
+            span = spanRequested;
+            spanValue = requestedSpan;
+            spanRequested = false;
+        }
+
+        if (span) {
+            viewSpan = spanValue;
+            viewFixed = false;
+            spanUpdatedAt = 0;
+            if (viewSpan == 0) {
+                decimator.followTail();
+            }
+        }
+        if (clear) {
+            history.clear();
+            decimator.reset();
+            viewFixed = false;
+            spanUpdatedAt = 0;
+        }
+        for (int i = 0; i < count; i++) {
+            history.append(stagedTimes[i], stagedValues[i]);
+        }
+        if (history.size() > 0) {
+            firstTimestamp = history.getTimestamp(0);
+            lastTimestamp = history.getTimestamp(history.size() - 1);
+        }
+        if (viewSpan > 0) {
+            // Zoom dans la vue longue durée : plage figée, niveau choisi pour sa largeur
+            if (tail || range) {
+                viewFixed = range;
+                viewFrom = from;
+                viewTo = to;
+                spanUpdatedAt = 0;
+            }
+        } else if (tail) {
+            decimator.followTail();
+        } else if (range) {
+            decimator.setVisibleRange(from, to, ChartDecimator.ALGORITHM_LTTB);
+        }
+
+        if (!prepareVisible) {
+            // Hors de l'écran : l'historique est à jour, la décimation attendra le retour à l'écran
+            state = IDLE;
+            return;
+        }
+        if (pixelWidth > 0) {
+            decimator.setPixelWidth(pixelWidth);
+        }
+        if (viewSpan > 0) {
+            if (!prepareSpan()) {
+                state = IDLE;
+                return;
+            }
+        } else {
+            if (!decimator.update() && !clear) {
+                state = IDLE;
+                return;
+            }
+            preparedTrailing = false;
+            back.clear();
+            long origin = originMillis;
+            for (int i = 0; i < decimator.getPointCount(); i++) {
+                addPoint(i, decimator.getTime(i), decimator.getValue(i), origin);
+            }
+        }
+        preparedGeneration = preparing;
+        state = PREPARED;
+        scheduler.onPrepared();
+    }
+
+    // Vue longue durée : agrégats si un niveau donne au moins un point par pixel (ou si
+    // l'historique en mémoire ne couvre pas la vue), sinon décimation de l'historique en mémoire
+    private boolean prepareSpan() {
+        long now = System.currentTimeMillis();
+        int width = pixelWidth > 0 ? pixelWidth : DEFAULT_PIXEL_WIDTH;
+        long from;
+        long to;
+        if (viewFixed) {
+            if (spanUpdatedAt != 0) {
+                return false;
+            }
+            from = viewFrom;
+            to = viewTo;
+        } else {
+            if (spanUpdatedAt != 0 && now - spanUpdatedAt < Math.max(MIN_SPAN_REFRESH_MILLIS, viewSpan / width)) {
+                return false;
+            }
+            long last = lastTimestamp;
+            to = last >= 0 ? last : now;
+            from = to - viewSpan;
+        }
+        spanUpdatedAt = now;
+
+        int tier = RollupStore.selectTier(to - from, width);
+        File directory = rollupDirectory;
+        boolean inMemory = history.size() > 0 && firstTimestamp <= from;
+        back.clear();
+        long origin = originMillis;
+        if (directory == null || (tier == RollupStore.TIER_RAW && inMemory)) {
+            decimator.setVisibleRange(from, to, ChartDecimator.ALGORITHM_MIN_MAX);
+            decimator.update();
+            for (int i = 0; i < decimator.getPointCount(); i++) {
+                addPoint(i, decimator.getTime(i), decimator.getValue(i), origin);
+            }
+        } else {
+            int count = readRollups(directory, Math.max(tier, RollupStore.TIER_10_SECONDS), from, to, width);
+            for (int i = 0; i < count; i++) {
+                addPoint(i, spanTimes[i], spanValues[i], origin);
+            }
+        }
+        preparedTrailing = !viewFixed;
+        preparedFrom = from;
+        preparedTo = to;
+        return true;
+    }
+
+    // Lit les seaux de [from, to] et les regroupe en au plus width paires min/max
+    private int readRollups(File directory, int tier, long from, long to, int width) {
+        try {
+            RollupStore.read(directory, tier, rollupChannel, from, to, rollupSeries);
+        } catch (IOException e) {
+            Log.w(TAG, "Lecture des agrégats impossible", e);
+            return 0;
+        }
+        if (spanTimes.length < 2 * width) {
+            spanTimes = new long[2 * width];
+            spanValues = new float[2 * width];
+        }
+        int rows = rollupSeries.size();
+        int stride = Math.max(1, (rows + width - 1) / width);
+        long half = rollupSeries.getBucketMillis() / 2;
+        int written = 0;
+        for (int start = 0; start < rows; start += stride) {
+            int end = Math.min(rows, start + stride);
+            float min = rollupSeries.getMin(start);
+            float max = rollupSeries.getMax(start);
+            long minTime = rollupSeries.getStart(start);
+            long maxTime = minTime + half;
+            for (int r = start + 1; r < end; r++) {
+                if (rollupSeries.getMin(r) < min) {
+                    min = rollupSeries.getMin(r);
+                    minTime = rollupSeries.getStart(r);
+                }
+                if (rollupSeries.getMax(r) > max) {
+                    max = rollupSeries.getMax(r);
+                    maxTime = rollupSeries.getStart(r) + half;
+                }
+            }
+            boolean minFirst = minTime <= maxTime;
+            spanTimes[written] = minFirst ? minTime : maxTime;
+            spanValues[written++] = minFirst ? min : max;
+            if (min != max) {
+                spanTimes[written] = minFirst ? maxTime : minTime;
+                spanValues[written++] = minFirst ? max : min;
+            }
+        }
+        return written;
+    }
+
+    private void addPoint(int index, long time, float value, long origin) {
+        Entry entry = obtainEntry(index);
+        entry.setX((time - origin) / 1000f);
+        entry.setY(value);
+        back.add(entry);
+    }
+
+    private Entry obtainEntry(int index) {
+        if (index == backPool.size()) {
+            backPool.add(new Entry());
+        }
+        return backPool.get(index);
+    }
+
+    private float toChartX(long timestampMillis) {
+        return (timestampMillis - originMillis) / 1000f;
+    }
+
+    private long toTimestamp(float chartX) {
+        return originMillis + (long) (chartX * 1000);
+    }
+
+    // Zoom et défilement : recalcul de la plage visible à la fin du geste
+
+    @Override
+    public void onChartGestureEnd(MotionEvent me, ChartTouchListener.ChartGesture lastPerformedGesture) {
+        long first = firstTimestamp;
+        long last = lastTimestamp;
+        if (first < 0 && spanMillis == 0) {
+            return;
+        }
+
+        if (chart.getViewPortHandler().isFullyZoomedOutX()) {
+            // Retour à la vue complète qui suit les nouveaux échantillons
+            followingTail = true;
+            synchronized (stagingLock) {
+                followTailRequested = true;
+                rangeRequested = false;
+            }
+            if (spanMillis == 0) {
+                chart.getXAxis().resetAxisMinimum();
+                chart.getXAxis().resetAxisMaximum();
+            }
+        } else {
+            followingTail = false;
+            synchronized (stagingLock) {
+                requestedFrom = toTimestamp(chart.getLowestVisibleX());
+                requestedTo = toTimestamp(chart.getHighestVisibleX());
+                rangeRequested = true;
+                followTailRequested = false;
+            }
+            // L'axe garde toute l'étendue de l'historique (ou de la vue longue durée) pour que
+            // le zoom reste cohérent
+            if (spanMillis == 0) {
+                chart.getXAxis().setAxisMinimum(toChartX(first));
+                chart.getXAxis().setAxisMaximum(toChartX(last));
+            }
+        }
+        refresh();
+    }
+
+    @Override
+    public void onChartGestureStart(MotionEvent me, ChartTouchListener.ChartGesture lastPerformedGesture) {
+    }
+
+    @Override
+    public void onChartLongPressed(MotionEvent me) {
+    }
+
+    @Override
+    public void onChartDoubleTapped(MotionEvent me) {
+    }
+
+    @Override
+    public void onChartSingleTapped(MotionEvent me) {
+    }
+
+    @Override
+    public void onChartFling(MotionEvent me1, MotionEvent me2, float velocityX, float velocityY) {
+    }
+
+    @Override
+    public void onChartScale(MotionEvent me, float scaleX, float scaleY) {
+    }
+
+    @Override
+    public void onChartTranslate(MotionEvent me, float dX, float dY) {
+    }
+}
@@ -0,0 +1,265 @@
+package com.example.bluetoothapp;
+
+/**
+ * Étage de décimation entre l'historique d'un canal et son graphique.
+ *
+ * En mode suivi (vue complète, aucun zoom), l'historique est résumé en seaux min/max calculés
+ * au fil de l'eau : un nouvel échantillon ne met à jour que le dernier seau, et quand il y a plus
+ * de seaux que de pixels les seaux voisins sont fusionnés deux à deux (la taille double).
+ * Quand l'utilisateur zoome ou fait défiler, seule la plage visible (avec une marge de chaque
+ * côté) est recalculée, par min/max ou LTTB, à environ deux points par pixel.
+ */
+public class ChartDecimator {
+
+    public static final int ALGORITHM_MIN_MAX = 0;
+    public static final int ALGORITHM_LTTB = 1;
+
+    private static final int DEFAULT_PIXEL_WIDTH = 500;
+
+    private final TimeSeries history;
+    private int pixelWidth = DEFAULT_PIXEL_WIDTH;
+
+    // Seaux du mode suivi, numérotés d'après l'index global des échantillons (index / bucketSize)
+    private float[] bucketMin;
+    private float[] bucketMax;
+    private long[] bucketMinTime;
+    private long[] bucketMaxTime;
+    private long firstBucket;
+    private int bucketCount;
+    private long bucketSize;
+    // Index global du prochain échantillon à intégrer
+    private long processed;
+
+    // Mode plage fixe (zoom / défilement)
+    private boolean followTail = true;
+    private boolean rangeDirty;
+    private long rangeFrom;
+    private long rangeTo;
+    private int algorithm = ALGORITHM_MIN_MAX;
+
+    // Points produits pour le graphique
+    private long[] outTimes;
+    private float[] outValues;
+    private int pointCount;
+
+    public ChartDecimator(TimeSeries history) {
+        this.history = history;
+        allocate();
+    }
+
+    /**
+     * Largeur utile du graphique en pixels ; une valeur différente relance un calcul complet.
+     */
+    public void setPixelWidth(int pixels) {
+        pixels = Math.max(1, pixels);
+        if (pixels != pixelWidth) {
+            pixelWidth = pixels;
+            allocate();
+        }
+    }
+
+    public void followTail() {
+        if (!followTail) {
+            followTail = true;
+            resetBuckets();
+        }
+    }
+
+    /**
+     * Fige la vue sur [fromMillis, toMillis] ; les points sont recalculés au prochain update().
+     */
+    public void setVisibleRange(long fromMillis, long toMillis, int algorithm) {
+        this.followTail = false;
+        this.rangeFrom = fromMillis;
+        this.rangeTo = toMillis;
+        this.algorithm = algorithm;
+        this.rangeDirty = true;
+    }
+
+    /**
+     * Oublie les seaux et les points calculés, à appeler après avoir vidé l'historique.
+     */
+    public void reset() {
+        followTail = true;
+        resetBuckets();
+    }
+
+    public boolean isFollowingTail() {
+        return followTail;
+    }
+
+    /**
+     * Intègre les nouveaux échantillons de l'historique.
+     * @return vrai si les points à afficher ont changé
+     */
+    public boolean update() {
+        if (followTail) {
+            long before = processed;
+            appendNewSamples();
+            if (processed == before && pointCount > 0) {
+                return false;
+            }
+            emitBuckets();
+            return true;
+        }
+
+        if (!rangeDirty) {
+            return false;
+        }
+        rangeDirty = false;
+        computeRange();
+        return true;
+    }
+
+    public int getPointCount() {
+        return pointCount;
+    }
+
+    public long getTime(int index) {
+        return outTimes[index];
+    }
+
+    public float getValue(int index) {
+        return outValues[index];
+    }
+
+    // Échantillons par seau en mode suivi, pour vérifier les seaux depuis les tests
+    long getBucketSize() {
+        return bucketSize;
+    }
+
+    private void allocate() {
+        bucketMin = new float[pixelWidth];
+        bucketMax = new float[pixelWidth];
+        bucketMinTime = new long[pixelWidth];
+        bucketMaxTime = new long[pixelWidth];
+        // Plage visible + une marge de chaque côté, deux points par pixel
+        outTimes = new long[6 * pixelWidth];
+        outValues = new float[6 * pixelWidth];
+        resetBuckets();
+        rangeDirty = true;
+    }
+
+    private void resetBuckets() {
+        bucketSize = 1;
+        bucketCount = 0;
+        processed = history.getTotalCount() - history.size();
+        firstBucket = processed;
+        pointCount = 0;
+    }
+
+    private void appendNewSamples() {
+        long total = history.getTotalCount();
+        long oldest = total - history.size();
+        if (total < processed || processed < oldest) {
+            // Historique vidé, ou écrasé avant qu'on ait pu le lire : on repart de zéro
+            resetBuckets();
+        }
+
+        for (long global = processed; global < total; global++) {
+            int index = (int) (global - oldest);
+            long time = history.getTimestamp(index);
+            float value = history.getValue(index);
+
+            long slot = global / bucketSize - firstBucket;
+            if (slot == bucketCount) {
+                if (bucketCount == bucketMin.length) {
+                    mergeBuckets();
+                    slot = global / bucketSize - firstBucket;
+                }
+            }
+            if (slot == bucketCount) {
+                int s = bucketCount++;
+                bucketMin[s] = value;
+                bucketMax[s] = value;
+                bucketMinTime[s] = time;
+                bucketMaxTime[s] = time;
+            } else {
+                int s = (int) slot;
+                if (value < bucketMin[s]) {
+                    bucketMin[s] = value;
+                    bucketMinTime[s] = time;
+                }
+                if (value > bucketMax[s]) {
+                    bucketMax[s] = value;
+                    bucketMaxTime[s] = time;
+                }
+            }
+        }
+        processed = total;
+
+        // Retirer les seaux entièrement écrasés dans l'historique
+        int dropped = 0;
+        while (dropped < bucketCount && (firstBucket + dropped + 1) * bucketSize <= oldest) {
+            dropped++;
+        }
+        if (dropped > 0) {
+            shiftBuckets(dropped);
+        }
+    }
+
+    // Double la taille des seaux en fusionnant les paires (2k, 2k + 1)
+    private void mergeBuckets() {
+        long newFirst = firstBucket / 2;
+        int merged = 0;
+        for (int s = 0; s < bucketCount; s++) {
+            int target = (int) ((firstBucket + s) / 2 - newFirst);
+            if (target == merged) {
+                bucketMin[target] = bucketMin[s];
+                bucketMax[target] = bucketMax[s];
+                bucketMinTime[target] = bucketMinTime[s];
+                bucketMaxTime[target] = bucketMaxTime[s];
+                merged++;
+            } else {
+                if (bucketMin[s] < bucketMin[target]) {
+                    bucketMin[target] = bucketMin[s];
+                    bucketMinTime[target] = bucketMinTime[s];
+                }
+                if (bucketMax[s] > bucketMax[target]) {
+                    bucketMax[target] = bucketMax[s];
+                    bucketMaxTime[target] = bucketMaxTime[s];
+                }
+            }
+        }
+        bucketCount = merged;
+        firstBucket = newFirst;
+        bucketSize *= 2;
+    }
+
+    private void shiftBuckets(int count) {
+        int remaining = bucketCount - count;
+        System.arraycopy(bucketMin, count, bucketMin, 0, remaining);
+        System.arraycopy(bucketMax, count, bucketMax, 0, remaining);
+        System.arraycopy(bucketMinTime, count, bucketMinTime, 0, remaining);
+        System.arraycopy(bucketMaxTime, count, bucketMaxTime, 0, remaining);
+        bucketCount = remaining;
+        firstBucket += count;
+    }
+
+    private void emitBuckets() {
+        int written = 0;
+        for (int s = 0; s < bucketCount; s++) {
+            boolean minFirst = bucketMinTime[s] <= bucketMaxTime[s];
+            outTimes[written] = minFirst ? bucketMinTime[s] : bucketMaxTime[s];
+            outValues[written++] = minFirst ? bucketMin[s] : bucketMax[s];
+            if (bucketMinTime[s] != bucketMaxTime[s] || bucketMin[s] != bucketMax[s]) {
+                outTimes[written] = minFirst ? bucketMaxTime[s] : bucketMinTime[s];
+                outValues[written++] = minFirst ? bucketMax[s] : bucketMin[s];
+            }
+        }
+        pointCount = written;
+    }
+
+    private void computeRange() {
+        long width = Math.max(1, rangeTo - rangeFrom);
+        int from = history.lowerBound(rangeFrom - width);
+        int to = history.lowerBound(rangeTo + width + 1);
+        int budget = 3 * pixelWidth;
+
+        if (algorithm == ALGORITHM_LTTB) {
+            pointCount = Downsampler.lttb(history, from, to, 2 * budget, outTimes, outValues);
+        } else {
+            pointCount = Downsampler.minMax(history, from, to, budget, outTimes, outValues);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.bluetoothapp;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.view.Choreographer;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cadence le rendu des graphiques : au plus une mise à jour par image (Choreographer) et par
+ * graphique, rien pour un graphique hors de l'écran.
+ *
+ * La préparation (intégration des nouveaux échantillons, décimation, points du graphique) se fait
+ * sur un thread de rendu ; le thread principal ne fait que remettre les points préparés au
+ * graphique à l'image suivante. Un graphique n'a jamais plus d'une préparation en cours.
+ *
+ * Toutes les méthodes publiques sont à appeler sur le thread principal.
+ */
+public class ChartRenderScheduler implements Choreographer.FrameCallback {
+
+    // Au-delà, deux images de rendu ne sont pas consécutives : l'intervalle n'est pas mesuré
+    private static final long MAX_FRAME_INTERVAL_NANOS = 100_000_000L;
+
+    private final Choreographer choreographer = Choreographer.getInstance();
+    private final Handler workerHandler;
+    private final HandlerThread workerThread;
+    private final View scrollRoot;
+    private final List<ChartController> controllers = new ArrayList<>();
+
+    // Image demandée au Choreographer (aussi depuis le thread de rendu quand des points sont prêts)
+    private boolean framePosted;
+    private long lastFrameNanos;
+    // Lu par les producteurs qui attendent le thread de rendu
+    private volatile boolean released;
+
+    // Travail du thread principal par image de rendu, et intervalle entre deux images de rendu
+    private final LatencyHistogram frameWorkMicros = new LatencyHistogram("µs");
+    private final LatencyHistogram frameIntervalMillis = new LatencyHistogram("ms");
+
+    // Un graphique qui revient à l'écran (défilement, changement de visibilité ou de mise en page,
+    // retour de la fenêtre au premier plan) est redessiné s'il a du retard
+    private final ViewTreeObserver.OnScrollChangedListener scrollListener = this::onVisibilityChanged;
+    private final ViewTreeObserver.OnGlobalLayoutListener layoutListener = this::onVisibilityChanged;
+    private final ViewTreeObserver.OnWindowFocusChangeListener focusListener = hasFocus -> {
+        if (hasFocus) {
+            onVisibilityChanged();
+        }
+    };
+
+    /**
+     * @param scrollRoot vue qui contient les graphiques, pour les redessiner quand ils réapparaissent
+     */
+    public ChartRenderScheduler(View scrollRoot) {
+        this.scrollRoot = scrollRoot;
+        workerThread = new HandlerThread("chart-render");
+        workerThread.start();
+        workerHandler = new Handler(workerThread.getLooper());
+        ViewTreeObserver observer = scrollRoot.getViewTreeObserver();
+        observer.addOnScrollChangedListener(scrollListener);
+        observer.addOnGlobalLayoutListener(layoutListener);
+        observer.addOnWindowFocusChangeListener(focusListener);
+    }
+
+    void register(ChartController controller) {
+        controllers.add(controller);
+    }
+
+    /**
+     * Demande un rendu du graphique à la prochaine image ; plusieurs demandes se fondent en une.
+     */
+    public void requestRender(ChartController controller) {
+        controller.renderRequested = true;
+        postFrame();
+    }
+
+    /**
+     * Arrête le thread de rendu : les préparations en attente sont abandonnées, celle en cours est
+     * attendue, si bien que l'historique peut être fermé au retour.
+     */
+    public void release() {
+        released = true;
+        choreographer.removeFrameCallback(this);
+        ViewTreeObserver observer = scrollRoot.getViewTreeObserver();
+        if (observer.isAlive()) {
+            observer.removeOnScrollChangedListener(scrollListener);
+            observer.removeOnGlobalLayoutListener(layoutListener);
+            observer.removeOnWindowFocusChangeListener(focusListener);
+        }
+        workerHandler.removeCallbacksAndMessages(null);
+        workerThread.quitSafely();
+        try {
+            workerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Vrai une fois le thread de rendu arrêté ; appelable depuis n'importe quel thread.
+     */
+    public boolean isReleased() {
+        return released;
+    }
+
+    /**
+     * Résumé pour l'affichage de débogage : coût d'une image sur le thread principal et régularité.
+     */
+    public String summary() {
+        return "rendu/image    " + frameWorkMicros.summary()
+                + "\nintervalle     " + frameIntervalMillis.summary();
+    }
+
+    private void onVisibilityChanged() {
+        for (int i = 0; i < controllers.size(); i++) {
+            if (controllers.get(i).renderRequested) {
+                postFrame();
+                return;
+            }
+        }
+    }
+
+    private void postFrame() {
+        synchronized (this) {
+            if (framePosted) {
+                return;
+            }
+            framePosted = true;
+        }
+        // postFrameCallback peut être appelé depuis n'importe quel thread
+        choreographer.postFrameCallback(this);
+    }
+
+    // Thread principal, une fois par image demandée
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        synchronized (this) {
+            framePosted = false;
+        }
+        long start = System.nanoTime();
+        if (lastFrameNanos != 0 && frameTimeNanos - lastFrameNanos < MAX_FRAME_INTERVAL_NANOS) {
+            frameIntervalMillis.record((frameTimeNanos - lastFrameNanos) / 1_000_000);
+        }
+        lastFrameNanos = frameTimeNanos;
+
+        for (int i = 0; i < controllers.size(); i++) {
+            ChartController controller = controllers.get(i);
+            if (controller.isPrepared()) {
+                controller.apply();
+            }
+            if (!controller.renderRequested || controller.isPreparing()) {
+                // Une préparation à la fois : la demande sera servie quand elle sera remise
+                continue;
+            }
+            boolean visible = controller.isVisible();
+            controller.renderRequested = !visible;
+            controller.startPreparing(visible);
+            workerHandler.post(controller.prepareTask);
+        }
+        frameWorkMicros.record((System.nanoTime() - start) / 1000);
+    }
+
+    // Thread de rendu : les points d'un graphique sont prêts, à remettre à la prochaine image
+    void onPrepared() {
+        postFrame();
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.bluetoothapp;
+
+/**
+ * Heure murale qui date les échantillons. {@link #SYSTEM} en direct ; une liaison rejouée
+ * ({@link ReplayTransport}) donne l'heure enregistrée, pour que deux rejeux d'une même capture
+ * produisent exactement les mêmes échantillons.
+ */
+public interface Clock {
+
+    Clock SYSTEM = System::currentTimeMillis;
+
+    long currentTimeMillis();
+
+    /**
+     * Horloge monotone en ns, pour {@link ClockSync}.
+     */
+    default long nanoTime() {
+        return System.nanoTime();
+    }
+}
@@ -0,0 +1,202 @@
+package com.example.bluetoothapp;
+
+/**
+ * Recale l'horloge d'une carte (champ H ou heure des trames, à la milliseconde si le firmware
+ * la donne) sur l'horloge monotone du téléphone, puis donne à chaque échantillon un horodatage
+ * epoch en nanosecondes ({@link TelemetrySample#setTimestampNanos}).
+ *
+ * Pour chaque échantillon, réception moins heure de la carte = décalage + délai de transmission,
+ * le délai étant toujours positif. Le plus petit écart de chaque bloc de {@link #BLOCK_MILLIS}
+ * approche donc le décalage ; une droite ajustée sur les derniers blocs donne le décalage et la
+ * dérive (en ppm) entre les deux horloges. Un écart impossible (mesure reçue avant d'avoir été
+ * faite) ou durablement trop grand signale un saut de l'horloge de la carte (redémarrage,
+ * réglage) : l'estimation repart de zéro.
+ *
+ * Sans heure de la carte, l'échantillon est daté à sa réception. Thread de lecture uniquement,
+ * sans allocation ; les accesseurs peuvent être lus d'un autre thread.
+ */
+public class ClockSync {
+
+    private static final long DAY_MILLIS = 86_400_000L;
+    // Chaque bloc garde son plus petit écart, celui où la transmission a été la plus rapide
+    static final long BLOCK_MILLIS = 10_000;
+    // Blocs retenus pour l'ajustement (environ 5 min)
+    static final int BLOCKS = 32;
+    // Écart à l'estimation au-delà duquel l'horloge de la carte a sauté
+    static final long RESYNC_NANOS = 2_000_000_000L;
+
+    private final Clock clock;
+    // Horloge monotone du téléphone -> epoch, fixé à la création
+    private final long epochOffsetNanos;
+
+    // Plus petits écarts des blocs fermés, en anneau : heure de la carte (ms depuis l'origine) et écart (ns)
+    private final long[] blockDevice = new long[BLOCKS];
+    private final long[] blockOffset = new long[BLOCKS];
+    private int blockHead;
+    private int blockCount;
+    // Bloc en cours
+    private long blockStart;
+    private long blockMinDevice;
+    private long blockMinOffset = Long.MAX_VALUE;
+
+    // Heure de la carte déroulée au-delà de minuit, relative à la première reçue
+    private long originMillis = Long.MIN_VALUE;
+    private long dayBaseMillis;
+    private long lastDeviceMillis;
+
+    // Écart estimé = intercept + slope * (heure de la carte - origine), slope en ns/ms soit en ppm
+    private volatile double intercept;
+    private volatile double slope;
+    private volatile boolean estimated;
+    private volatile long resyncCount;
+
+    public ClockSync(Clock clock) {
+        this.clock = clock;
+        this.epochOffsetNanos = clock.currentTimeMillis() * 1_000_000L - clock.nanoTime();
+    }
+
+    /**
+     * Date l'échantillon qui vient d'être décodé (reçu maintenant).
+     */
+    public void apply(TelemetrySample sample) {
+        long receivedNanos = clock.nanoTime();
+        int timeOfDay = sample.getTimeOfDayMillis();
+        if (sample.isGap() || timeOfDay == TelemetrySample.NO_TIME) {
+            sample.setTimestampNanos(receivedNanos + epochOffsetNanos);
+            return;
+        }
+        long device = unwrap(timeOfDay);
+        long offset = receivedNanos - device * 1_000_000L;
+
+        if (estimated && offset < estimate(device) - RESYNC_NANOS) {
+            // Reçu avant d'avoir été mesuré selon l'estimation : l'horloge de la carte a avancé d'un coup
+            resyncCount++;
+            reset();
+            device = unwrap(timeOfDay);
+            offset = receivedNanos - device * 1_000_000L;
+        }
+        addOffset(device, offset);
+
+        long aligned = device * 1_000_000L + Math.round(estimate(device));
+        // Jamais après la réception
+        sample.setTimestampNanos(Math.min(aligned, receivedNanos) + epochOffsetNanos);
+    }
+
+    /**
+     * Oublie l'estimation, par exemple quand une autre carte prend la place de la précédente.
+     */
+    public void reset() {
+        originMillis = Long.MIN_VALUE;
+        blockHead = 0;
+        blockCount = 0;
+        blockMinOffset = Long.MAX_VALUE;
+        estimated = false;
+        intercept = 0;
+        slope = 0;
+    }
+
+    /**
+     * Vrai dès qu'une estimation du décalage existe (premier échantillon daté par la carte).
+     */
+    public boolean isSynchronized() {
+        return estimated;
+    }
+
+    /**
+     * Dérive de l'horloge de la carte par rapport au téléphone, en ppm (positive si la carte retarde).
+     */
+    public double getDriftPpm() {
+        return slope;
+    }
+
+    /**
+     * Sauts de l'horloge de la carte détectés.
+     */
+    public long getResyncCount() {
+        return resyncCount;
+    }
+
+    private long unwrap(int timeOfDay) {
+        if (originMillis == Long.MIN_VALUE) {
+            originMillis = timeOfDay;
+            dayBaseMillis = 0;
+            lastDeviceMillis = 0;
+        }
+        long device = dayBaseMillis + timeOfDay - originMillis;
+        // Passage de minuit : l'heure de la carte repart de 0
+        if (device < lastDeviceMillis - DAY_MILLIS / 2) {
+            dayBaseMillis += DAY_MILLIS;
+            device += DAY_MILLIS;
+        }
+        lastDeviceMillis = device;
+        return device;
+    }
+
+    private void addOffset(long device, long offset) {
+        if (blockMinOffset == Long.MAX_VALUE) {
+            blockStart = device;
+        } else if (device - blockStart >= BLOCK_MILLIS || device < blockStart) {
+            // Un bloc entier sans un seul écart proche de l'estimation : l'horloge de la carte a reculé
+            if (estimated && blockCount > 0 && blockMinOffset > estimate(blockMinDevice) + RESYNC_NANOS) {
+                restartFrom(device, offset);
+                return;
+            }
+            closeBlock();
+            blockStart = device;
+        }
+        if (offset < blockMinOffset) {
+            blockMinOffset = offset;
+            blockMinDevice = device;
+        }
+        if (blockCount == 0) {
+            // Premier bloc : décalage seul, pas encore de dérive
+            intercept = blockMinOffset;
+            slope = 0;
+            estimated = true;
+        }
+    }
+
+    private void closeBlock() {
+        blockDevice[blockHead] = blockMinDevice;
+        blockOffset[blockHead] = blockMinOffset;
+        blockHead = (blockHead + 1) % BLOCKS;
+        blockCount = Math.min(blockCount + 1, BLOCKS);
+        blockMinOffset = Long.MAX_VALUE;
+        fit();
+    }
+
+    // Moindres carrés sur les blocs fermés, centrés pour rester précis avec de grands écarts
+    private void fit() {
+        double meanX = 0;
+        double meanY = 0;
+        for (int i = 0; i < blockCount; i++) {
+            meanX += blockDevice[i];
+            meanY += blockOffset[i];
+        }
+        meanX /= blockCount;
+        meanY /= blockCount;
+        double sxy = 0;
+        double sxx = 0;
+        for (int i = 0; i < blockCount; i++) {
+            double dx = blockDevice[i] - meanX;
+            sxy += dx * (blockOffset[i] - meanY);
+            sxx += dx * dx;
+        }
+        double newSlope = sxx > 0 ? sxy / sxx : 0;
+        slope = newSlope;
+        intercept = meanY - newSlope * meanX;
+        estimated = true;
+    }
+
+    private double estimate(long device) {
+        return intercept + slope * device;
+    }
+
+    private void restartFrom(long device, long offset) {
+        resyncCount++;
+        blockHead = 0;
+        blockCount = 0;
+        blockMinOffset = Long.MAX_VALUE;
+        addOffset(device, offset);
+    }
+}
@@ -0,0 +1,283 @@
+package com.example.bluetoothapp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Voie montante vers l'ESP32 : les commandes "#id COMMANDE argument\n" sont mises en file sans
+ * bloquer l'appelant et écrites par un thread dédié sur la même liaison que la lecture.
+ *
+ * Plusieurs commandes peuvent être en vol : l'écrivain n'attend aucun acquittement et regroupe
+ * celles qui attendent dans une seule écriture. Chaque commande porte un identifiant que l'ESP32
+ * recopie dans sa réponse ("#id OK valeur" en texte, trame 0xA6 en binaire) ; le décodeur les
+ * remet à {@link #onReply}, qui retrouve la demande d'origine quel que soit l'ordre d'arrivée.
+ * Ne dépend pas d'Android.
+ */
+public class CommandChannel implements TelemetryDecoder.ReplyListener, Closeable {
+
+    // Intervalle entre deux mesures en ms : "RATE 20" ; l'ESP32 répond avec la valeur retenue
+    public static final int SET_INTERVAL = 0;
+    // Masque des canaux envoyés (bit = identifiant de canal) : "CHAN 23"
+    public static final int SET_CHANNELS = 1;
+    // Battement du mode report-on-change en ms, 0 pour tout envoyer à chaque mesure : "BEAT 5000"
+    public static final int SET_HEARTBEAT = 2;
+    // Bande morte d'un canal, voir {@link #deadBandArgument} : "DBND 16777226"
+    public static final int SET_DEAD_BAND = 3;
+    private static final String[] NAMES = {"RATE", "CHAN", "BEAT", "DBND"};
+
+    // Réponses de l'ESP32
+    public static final int STATUS_OK = 0;
+    public static final int STATUS_UNKNOWN_COMMAND = 1;
+    public static final int STATUS_INVALID_ARGUMENT = 2;
+    // Échecs constatés côté application
+    public static final int STATUS_TIMEOUT = -1;
+    public static final int STATUS_DISCONNECTED = -2;
+    public static final int STATUS_QUEUE_FULL = -3;
+
+    public static final long DEFAULT_TIMEOUT_MILLIS = 3000;
+    private static final int QUEUE_CAPACITY = 32;
+    // Réveil de l'écrivain pour expirer les commandes sans réponse
+    private static final long POLL_MILLIS = 250;
+    // "#65535 CHAN -2147483648\n" fait 24 octets
+    private static final int MAX_COMMAND_LENGTH = 32;
+
+    public interface ReplyCallback {
+        /**
+         * Thread de lecture pour une réponse de l'ESP32, thread d'écriture (ou appelant de
+         * {@link #send}) pour un échec local.
+         * @param status STATUS_OK, un code d'erreur de l'ESP32 ou un STATUS_* négatif
+         * @param value valeur appliquée par l'ESP32, 0 en cas d'échec
+         */
+        void onReply(int requestId, int command, int status, int value);
+    }
+
+    private static final class Request {
+        final int id;
+        final int command;
+        final int argument;
+        final ReplyCallback callback;
+        // Écrit par l'écrivain avant la publication dans inFlight
+        long sentAtMillis;
+
+        Request(int id, int command, int argument, ReplyCallback callback) {
+            this.id = id;
+            this.command = command;
+            this.argument = argument;
+            this.callback = callback;
+        }
+    }
+
+    private final Transport transport;
+    private final BlockingQueue<Request> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    // Commandes écrites en attente de réponse, par identifiant
+    private final Map<Integer, Request> inFlight = new ConcurrentHashMap<>();
+    private final AtomicInteger lastId = new AtomicInteger();
+    // Thread d'écriture uniquement
+    private final byte[] pending = new byte[QUEUE_CAPACITY * MAX_COMMAND_LENGTH];
+    private final Thread writer;
+    private volatile boolean closed;
+    private volatile long timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+
+    private volatile long sentCount;
+    private volatile long timeoutCount;
+    private volatile long unmatchedReplyCount;
+
+    public CommandChannel(Transport transport) {
+        this.transport = transport;
+        this.writer = new Thread(this::runWriter, "CommandWriter-" + transport.getAddress());
+        this.writer.setDaemon(true);
+    }
+
+    /**
+     * Démarre l'écrivain ; les commandes envoyées avant restent en file.
+     */
+    public void start() {
+        writer.start();
+    }
+
+    /**
+     * Délai au-delà duquel une commande sans réponse échoue avec STATUS_TIMEOUT.
+     */
+    public void setTimeoutMillis(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Met la commande en file sans attendre ; le résultat arrive sur callback.
+     * Si la file est pleine ou le canal fermé, callback est appelé tout de suite.
+     * @return l'identifiant de la commande (1 à 65535, réutilisé après bouclage)
+     */
+    public int send(int command, int argument, ReplyCallback callback) {
+        if (command < 0 || command >= NAMES.length) {
+            throw new IllegalArgumentException("Commande inconnue: " + command);
+        }
+        int id = lastId.updateAndGet(previous -> previous % 0xFFFF + 1);
+        Request request = new Request(id, command, argument, callback);
+        if (closed) {
+            callback.onReply(id, command, STATUS_DISCONNECTED, 0);
+        } else if (!queue.offer(request)) {
+            callback.onReply(id, command, STATUS_QUEUE_FULL, 0);
+        } else if (closed && queue.remove(request)) {
+            // Fermé pendant la mise en file, après le dernier passage de l'écrivain
+            callback.onReply(id, command, STATUS_DISCONNECTED, 0);
+        }
+        return id;
+    }
+
+    /**
+     * Argument de SET_DEAD_BAND : canal sur l'octet de poids fort, bande en virgule fixe du
+     * protocole binaire ({@link ChannelRegistry#getScale}) sur les 24 bits de poids faible.
+     */
+    public static int deadBandArgument(ChannelRegistry registry, int channel, float band) {
+        if (!registry.isDefined(channel) || !(band >= 0)) {
+            throw new IllegalArgumentException("Bande morte invalide: canal " + channel + ", " + band);
+        }
+        long fixed = Math.round((double) band * registry.getScale(channel));
+        return channel << 24 | (int) Math.min(fixed, 0xFFFFFF);
+    }
+
+    // TelemetryDecoder.ReplyListener, sur le thread de lecture
+    @Override
+    public void onReply(int requestId, int status, int value) {
+        Request request = inFlight.remove(requestId);
+        if (request == null) {
+            // Réponse arrivée après l'expiration, ou d'une session précédente
+            unmatchedReplyCount++;
+            return;
+        }
+        request.callback.onReply(requestId, request.command, status, value);
+    }
+
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    public long getSentCount() {
+        return sentCount;
+    }
+
+    public long getTimeoutCount() {
+        return timeoutCount;
+    }
+
+    public long getUnmatchedReplyCount() {
+        return unmatchedReplyCount;
+    }
+
+    /**
+     * Arrête l'écrivain ; les commandes en file ou en vol échouent avec STATUS_DISCONNECTED.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        writer.interrupt();
+    }
+
+    private void runWriter() {
+        Request[] batch = new Request[QUEUE_CAPACITY];
+        try {
+            while (!closed) {
+                Request first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                long now = System.currentTimeMillis();
+                if (first != null) {
+                    // Tout ce qui attend part dans la même écriture
+                    int count = 0;
+                    int length = 0;
+                    for (Request request = first; request != null; request = count < batch.length ? queue.poll() : null) {
+                        batch[count++] = request;
+                        length = format(request, pending, length);
+                    }
+                    write(batch, count, length, now);
+                }
+                expire(now);
+            }
+        } catch (InterruptedException e) {
+            // close()
+        }
+        for (Request request; (request = queue.poll()) != null; ) {
+            request.callback.onReply(request.id, request.command, STATUS_DISCONNECTED, 0);
+        }
+        for (Request request : inFlight.values()) {
+            complete(request, STATUS_DISCONNECTED);
+        }
+    }
+
+    private void write(Request[] batch, int count, int length, long now) {
+        // Publiées avant l'écriture : la réponse peut arriver avant le retour de write()
+        for (int i = 0; i < count; i++) {
+            batch[i].sentAtMillis = now;
+            inFlight.put(batch[i].id, batch[i]);
+        }
+        try {
+            OutputStream out = transport.getOutputStream();
+            out.write(pending, 0, length);
+            out.flush();
+            sentCount += count;
+        } catch (IOException e) {
+            // Liaison coupée ou pas encore rétablie : c'est à l'appelant de renvoyer après la reconnexion
+            for (int i = 0; i < count; i++) {
+                complete(batch[i], STATUS_DISCONNECTED);
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            batch[i] = null;
+        }
+    }
+
+    private void expire(long now) {
+        long timeout = timeoutMillis;
+        for (Request request : inFlight.values()) {
+            if (now - request.sentAtMillis >= timeout && complete(request, STATUS_TIMEOUT)) {
+                timeoutCount++;
+            }
+        }
+    }
+
+    // Retire la commande si personne ne l'a fait avant (réponse arrivée entre-temps)
+    private boolean complete(Request request, int status) {
+        if (!inFlight.remove(request.id, request)) {
+            return false;
+        }
+        request.callback.onReply(request.id, request.command, status, 0);
+        return true;
+    }
+
+    // "#id NOM argument\n" en ASCII, sans allocation
+    private static int format(Request request, byte[] out, int pos) {
+        out[pos++] = '#';
+        pos = putDecimal(out, pos, request.id);
+        out[pos++] = ' ';
+        String name = NAMES[request.command];
+        for (int i = 0; i < name.length(); i++) {
+            out[pos++] = (byte) name.charAt(i);
+        }
+        out[pos++] = ' ';
+        pos = putDecimal(out, pos, request.argument);
+        out[pos++] = '\n';
+        return pos;
+    }
+
+    private static int putDecimal(byte[] out, int pos, int value) {
+        long v = value;
+        if (v < 0) {
+            out[pos++] = '-';
+            v = -v;
+        }
+        int digits = 1;
+        for (long rest = v / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        for (int i = pos + digits - 1; i >= pos; i--) {
+            out[i] = (byte) ('0' + v % 10);
+            v /= 10;
+        }
+        return pos + digits;
+    }
+}
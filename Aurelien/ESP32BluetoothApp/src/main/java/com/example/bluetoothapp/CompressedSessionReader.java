@@ -0,0 +1,203 @@
+package com.example.bluetoothapp;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.CRC32;
+
+/**
+ * Relecture en flux d'un export {@link CompressedSessionWriter} : un bloc décodé à la fois,
+ * dans un seul échantillon réutilisé.
+ */
+public class CompressedSessionReader implements Closeable {
+
+    private final InputStream in;
+    private final int channels;
+
+    private final byte[] header = new byte[CompressedSessionWriter.BLOCK_HEADER_SIZE];
+    private final ByteBuffer headerBuffer = ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN);
+    private byte[] payload = new byte[CompressedSessionWriter.BLOCK_SAMPLES * 8];
+    private final BitReader bits = new BitReader();
+    private final CRC32 crc = new CRC32();
+
+    // Bloc décodé, en colonnes
+    private final long[] receivedAt = new long[CompressedSessionWriter.BLOCK_SAMPLES];
+    private final long[] timeOfDay = new long[CompressedSessionWriter.BLOCK_SAMPLES];
+    private final int[] masks = new int[CompressedSessionWriter.BLOCK_SAMPLES];
+    private final float[][] values;
+    private final float[] column = new float[CompressedSessionWriter.BLOCK_SAMPLES];
+    private final long[] scaled = new long[CompressedSessionWriter.BLOCK_SAMPLES];
+    private int count;
+    private int next;
+
+    public CompressedSessionReader(InputStream in) throws IOException {
+        this.in = in;
+        byte[] fileHeader = new byte[CompressedSessionWriter.FILE_HEADER_SIZE];
+        if (!readFully(fileHeader, fileHeader.length)) {
+            throw new IOException("Fichier vide");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(fileHeader).order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.getInt() != CompressedSessionWriter.FILE_MAGIC) {
+            throw new IOException("Ce n'est pas un export de session");
+        }
+        int version = buffer.getInt();
+        if (version != CompressedSessionWriter.VERSION) {
+            throw new IOException("Version d'export non prise en charge: " + version);
+        }
+        channels = buffer.getInt();
+        if (channels < 1 || channels > ChannelRegistry.MAX_CHANNELS) {
+            throw new IOException("Nombre de canaux non pris en charge: " + channels);
+        }
+        values = new float[channels][CompressedSessionWriter.BLOCK_SAMPLES];
+    }
+
+    /**
+     * Remplit sample avec l'échantillon suivant.
+     * @return faux à la fin du fichier
+     */
+    public boolean next(TelemetrySample sample) throws IOException {
+        if (next == count && !readBlock()) {
+            return false;
+        }
+        int i = next++;
+        sample.reset();
+        sample.setReceivedAtMillis(receivedAt[i]);
+        sample.setTimeOfDayMillis((int) timeOfDay[i]);
+        int mask = masks[i];
+        for (int present = mask & ~TelemetrySample.GAP_FLAG; present != 0; present &= present - 1) {
+            int channel = Integer.numberOfTrailingZeros(present);
+            if (channel < channels) {
+                sample.set(channel, values[channel][i]);
+            }
+        }
+        if ((mask & TelemetrySample.GAP_FLAG) != 0) {
+            sample.markGap();
+        }
+        return true;
+    }
+
+    /**
+     * Relit tout le fichier.
+     * @return le nombre d'échantillons lus
+     */
+    public long readAll(TelemetryDecoder.SampleListener listener) throws IOException {
+        TelemetrySample sample = new TelemetrySample(channels);
+        long read = 0;
+        while (next(sample)) {
+            listener.onSample(sample);
+            read++;
+        }
+        return read;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private boolean readBlock() throws IOException {
+        if (!readFully(header, header.length)) {
+            return false;
+        }
+        headerBuffer.clear();
+        int magic = headerBuffer.getInt();
+        int samples = headerBuffer.getInt();
+        int length = headerBuffer.getInt();
+        int expectedCrc = headerBuffer.getInt();
+        if (magic != CompressedSessionWriter.BLOCK_MAGIC || samples <= 0
+                || samples > CompressedSessionWriter.BLOCK_SAMPLES || length <= 0) {
+            throw new IOException("En-tête de bloc invalide");
+        }
+        if (payload.length < length) {
+            payload = new byte[length];
+        }
+        if (!readFully(payload, length)) {
+            throw new EOFException("Bloc tronqué");
+        }
+        crc.reset();
+        crc.update(payload, 0, length);
+        if ((int) crc.getValue() != expectedCrc) {
+            throw new IOException("CRC de bloc invalide");
+        }
+
+        bits.reset(payload, length);
+        GorillaCodec.decodeDeltaOfDelta(bits, receivedAt, samples);
+        GorillaCodec.decodeDeltaOfDelta(bits, timeOfDay, samples);
+        int mask = 0;
+        for (int i = 0; i < samples; i++) {
+            if (bits.readBit()) {
+                mask = (int) bits.read(32);
+            }
+            masks[i] = mask;
+        }
+        for (int channel = 0; channel < channels; channel++) {
+            decodeChannel(channel, samples);
+        }
+        count = samples;
+        next = 0;
+        return true;
+    }
+
+    private void decodeChannel(int channel, int samples) throws IOException {
+        int bit = 1 << channel;
+        int n = 0;
+        for (int i = 0; i < samples; i++) {
+            if ((masks[i] & bit) != 0 && (masks[i] & TelemetrySample.GAP_FLAG) == 0) {
+                n++;
+            }
+        }
+        int header = (int) bits.read(4);
+        int mode = header >>> 2;
+        switch (mode) {
+            case CompressedSessionWriter.MODE_ABSENT:
+                if (n != 0) {
+                    throw new IOException("Colonne manquante pour le canal " + channel);
+                }
+                return;
+            case CompressedSessionWriter.MODE_VARINT:
+                GorillaCodec.decodeVarints(bits, scaled, n);
+                unscale(n, 0);
+                break;
+            case CompressedSessionWriter.MODE_DECIMAL:
+                GorillaCodec.decodeDeltaOfDelta(bits, scaled, n);
+                unscale(n, header & 3);
+                break;
+            default:
+                GorillaCodec.decodeXor(bits, column, n);
+                break;
+        }
+
+        // Redistribue la colonne sur les échantillons où le canal est présent
+        float[] target = values[channel];
+        int j = 0;
+        for (int i = 0; i < samples; i++) {
+            if ((masks[i] & bit) != 0 && (masks[i] & TelemetrySample.GAP_FLAG) == 0) {
+                target[i] = column[j++];
+            }
+        }
+    }
+
+    private void unscale(int n, int decimals) {
+        for (int i = 0; i < n; i++) {
+            column[i] = CompressedSessionWriter.unscale(scaled[i], decimals);
+        }
+    }
+
+    private boolean readFully(byte[] buffer, int length) throws IOException {
+        int read = 0;
+        while (read < length) {
+            int r = in.read(buffer, read, length - read);
+            if (r < 0) {
+                if (read == 0) {
+                    return false;
+                }
+                throw new EOFException("Fin de fichier inattendue");
+            }
+            read += r;
+        }
+        return true;
+    }
+}
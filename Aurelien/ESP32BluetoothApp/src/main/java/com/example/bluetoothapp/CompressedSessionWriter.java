@@ -0,0 +1,210 @@
+package com.example.bluetoothapp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.CRC32;
+
+/**
+ * Export compressé d'une session, en colonnes, écrit au fil de l'eau par blocs de
+ * {@link #BLOCK_SAMPLES} échantillons : seul le bloc courant est en mémoire, quelle que soit la
+ * durée exportée. Relu par {@link CompressedSessionReader}.
+ *
+ * Fichier : en-tête (magic "TLZ1", version, nombre de canaux), puis des blocs. Chaque bloc :
+ * magic, nombre d'échantillons, taille et CRC32 des données, puis les colonnes dans l'ordre
+ * (voir {@link GorillaCodec}) :
+ * <ul>
+ *   <li>heure de réception et heure ESP32 : différence de différences ;</li>
+ *   <li>masque des canaux : '0' si inchangé, sinon '1' et les 32 bits ;</li>
+ *   <li>chaque canal, sur les seuls échantillons où il est présent, dans le mode choisi pour le
+ *   bloc : petit entier variable (batterie), décimal mis à l'échelle (valeurs exactement égales
+ *   à n / 10^d, d &lt;= 3) en différence de différences, ou XOR de flottants sinon.</li>
+ * </ul>
+ * La relecture est exacte au bit près dans tous les modes.
+ */
+public class CompressedSessionWriter implements Closeable {
+
+    static final int FILE_MAGIC = 0x315A4C54; // "TLZ1"
+    static final int BLOCK_MAGIC = 0x425A4C54; // "TLZB"
+    static final int VERSION = 1;
+    static final int FILE_HEADER_SIZE = 4 + 4 + 4;
+    static final int BLOCK_HEADER_SIZE = 4 + 4 + 4 + 4;
+    static final int BLOCK_SAMPLES = 4096;
+
+    // Mode d'une colonne de canal, 2 bits, suivis de 2 bits de décimales
+    static final int MODE_ABSENT = 0;
+    static final int MODE_XOR = 1;
+    static final int MODE_DECIMAL = 2;
+    static final int MODE_VARINT = 3;
+    static final int MAX_DECIMALS = 3;
+    static final double[] POWERS_OF_TEN = {1, 10, 100, 1000};
+
+    private final OutputStream out;
+    private final int channels;
+
+    // Bloc en cours, en colonnes
+    private final long[] receivedAt = new long[BLOCK_SAMPLES];
+    private final long[] timeOfDay = new long[BLOCK_SAMPLES];
+    private final int[] masks = new int[BLOCK_SAMPLES];
+    private final float[][] values;
+    private int count;
+
+    // Colonne d'un canal, rassemblée avant encodage
+    private final float[] column = new float[BLOCK_SAMPLES];
+    private final long[] scaled = new long[BLOCK_SAMPLES];
+    private final BitWriter payload = new BitWriter(BLOCK_SAMPLES * 8);
+    private final ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private final CRC32 crc = new CRC32();
+
+    private long sampleCount;
+    private long byteCount;
+    private boolean closed;
+
+    /**
+     * @param channels colonnes de canaux écrites, {@link ChannelRegistry#getChannelCount()} ;
+     *                 les canaux au-delà ne sont pas exportés
+     */
+    public CompressedSessionWriter(OutputStream out, int channels) throws IOException {
+        if (channels < 1 || channels > ChannelRegistry.MAX_CHANNELS) {
+            throw new IllegalArgumentException("Nombre de canaux invalide: " + channels);
+        }
+        this.out = out;
+        this.channels = channels;
+        this.values = new float[channels][BLOCK_SAMPLES];
+        ByteBuffer fileHeader = ByteBuffer.allocate(FILE_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        fileHeader.putInt(FILE_MAGIC).putInt(VERSION).putInt(channels);
+        out.write(fileHeader.array());
+        byteCount = FILE_HEADER_SIZE;
+    }
+
+    /**
+     * Ajoute un échantillon (copié) ; un bloc plein est encodé et écrit aussitôt.
+     */
+    public void append(TelemetrySample sample) throws IOException {
+        receivedAt[count] = sample.getReceivedAtMillis();
+        timeOfDay[count] = sample.getTimeOfDayMillis();
+        int mask = sample.getPresentMask();
+        masks[count] = mask;
+        for (int present = mask & ~TelemetrySample.GAP_FLAG; present != 0; present &= present - 1) {
+            int channel = Integer.numberOfTrailingZeros(present);
+            values[channel][count] = sample.get(channel);
+        }
+        if (++count == BLOCK_SAMPLES) {
+            flushBlock();
+        }
+    }
+
+    public long getSampleCount() {
+        return sampleCount + count;
+    }
+
+    /**
+     * Octets écrits jusqu'ici (le bloc en cours n'est compté qu'une fois écrit).
+     */
+    public long getByteCount() {
+        return byteCount;
+    }
+
+    /**
+     * Écrit le dernier bloc et ferme le flux.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (count > 0) {
+                flushBlock();
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private void flushBlock() throws IOException {
+        payload.reset();
+        GorillaCodec.encodeDeltaOfDelta(payload, receivedAt, count);
+        GorillaCodec.encodeDeltaOfDelta(payload, timeOfDay, count);
+        int previousMask = 0;
+        for (int i = 0; i < count; i++) {
+            if (masks[i] == previousMask) {
+                payload.write(0, 1);
+            } else {
+                payload.write(1, 1);
+                payload.write(masks[i], 32);
+                previousMask = masks[i];
+            }
+        }
+        for (int channel = 0; channel < channels; channel++) {
+            encodeChannel(channel);
+        }
+        int length = payload.finish();
+
+        crc.reset();
+        crc.update(payload.buffer(), 0, length);
+        header.clear();
+        header.putInt(BLOCK_MAGIC).putInt(count).putInt(length).putInt((int) crc.getValue());
+        out.write(header.array());
+        out.write(payload.buffer(), 0, length);
+
+        byteCount += BLOCK_HEADER_SIZE + length;
+        sampleCount += count;
+        count = 0;
+    }
+
+    private void encodeChannel(int channel) {
+        int bit = 1 << channel;
+        int n = 0;
+        float[] source = values[channel];
+        for (int i = 0; i < count; i++) {
+            if ((masks[i] & bit) != 0 && (masks[i] & TelemetrySample.GAP_FLAG) == 0) {
+                column[n++] = source[i];
+            }
+        }
+        if (n == 0) {
+            payload.write(MODE_ABSENT, 4);
+            return;
+        }
+
+        if (channel == ChannelRegistry.BATTERY && scale(n, 0)) {
+            payload.write(MODE_VARINT << 2, 4);
+            GorillaCodec.encodeVarints(payload, scaled, n);
+            return;
+        }
+        for (int decimals = 0; decimals <= MAX_DECIMALS; decimals++) {
+            if (scale(n, decimals)) {
+                payload.write(MODE_DECIMAL << 2 | decimals, 4);
+                GorillaCodec.encodeDeltaOfDelta(payload, scaled, n);
+                return;
+            }
+        }
+        payload.write(MODE_XOR << 2, 4);
+        GorillaCodec.encodeXor(payload, column, n);
+    }
+
+    // Vrai si chaque valeur est exactement n / 10^decimals (relecture identique au bit près)
+    private boolean scale(int n, int decimals) {
+        double power = POWERS_OF_TEN[decimals];
+        for (int i = 0; i < n; i++) {
+            float value = column[i];
+            double product = value * power;
+            if (!(Math.abs(product) < Integer.MAX_VALUE)) {
+                return false;
+            }
+            long q = Math.round(product);
+            if (Float.floatToRawIntBits(unscale(q, decimals)) != Float.floatToRawIntBits(value)) {
+                return false;
+            }
+            scaled[i] = q;
+        }
+        return true;
+    }
+
+    static float unscale(long q, int decimals) {
+        return (float) (q / POWERS_OF_TEN[decimals]);
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.bluetoothapp;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * État de connexion d'une session, changé uniquement par compare-and-set : aucun verrou n'est
+ * partagé entre l'interface et les threads de lecture.
+ *
+ * Cycle de vie : NONE -> CONNECTING -> CONNECTED <-> RECONNECTING, puis CLOSING depuis n'importe
+ * quel état actif, et enfin NONE. Une transition interdite depuis l'état courant échoue sans rien
+ * changer ; c'est ainsi qu'un thread de lecture apprend qu'une fermeture l'a devancé.
+ * Un seul appelant gagne le passage à CLOSING et se charge de la fermeture.
+ *
+ * Les écouteurs sont appelés après la transition, sans verrou, sur le thread qui l'a faite.
+ * Deux transitions concurrentes (CONNECTED et CLOSING par exemple) peuvent être annoncées dans le
+ * désordre ; le NONE final, lui, est toujours annoncé en dernier par le thread de la session.
+ */
+public class ConnectionStateMachine {
+
+    public static final int NONE = 0;
+    public static final int CONNECTING = 1;
+    public static final int CONNECTED = 2;
+    public static final int RECONNECTING = 3;
+    public static final int CLOSING = 4;
+
+    /**
+     * Reçoit chaque transition réussie ; doit être rapide et ne pas bloquer.
+     */
+    public interface Listener {
+        void onStateChanged(String address, int from, int to);
+    }
+
+    private final String address;
+    private final AtomicInteger state = new AtomicInteger(NONE);
+    // Liste partagée et copiée à l'écriture (CopyOnWriteArrayList) : parcourue sans verrou
+    private final List<Listener> listeners;
+
+    public ConnectionStateMachine(String address, List<Listener> listeners) {
+        this.address = address;
+        this.listeners = listeners;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public int getState() {
+        return state.get();
+    }
+
+    /**
+     * Passe à l'état demandé si la transition est permise depuis l'état courant.
+     * @return faux si l'état courant ne le permet pas (session fermée entre-temps par exemple)
+     */
+    public boolean moveTo(int to) {
+        while (true) {
+            int from = state.get();
+            if (!isAllowed(from, to)) {
+                return false;
+            }
+            if (state.compareAndSet(from, to)) {
+                publish(from, to);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Demande la fermeture.
+     * @return vrai pour le seul appelant qui a fait passer la session à CLOSING
+     */
+    public boolean close() {
+        return moveTo(CLOSING);
+    }
+
+    /**
+     * Fin de session : termine la fermeture (en passant par CLOSING si personne ne l'a demandée).
+     * Appelé une fois par le thread de lecture quand tout est libéré.
+     */
+    public void finish() {
+        close();
+        moveTo(NONE);
+    }
+
+    public boolean isActive() {
+        int current = state.get();
+        return current != NONE && current != CLOSING;
+    }
+
+    static boolean isAllowed(int from, int to) {
+        switch (to) {
+            case CONNECTING:
+                return from == NONE;
+            case CONNECTED:
+                return from == CONNECTING || from == RECONNECTING;
+            case RECONNECTING:
+                return from == CONNECTED;
+            case CLOSING:
+                return from == CONNECTING || from == CONNECTED || from == RECONNECTING;
+            case NONE:
+                return from == CLOSING;
+            default:
+                return false;
+        }
+    }
+
+    private void publish(int from, int to) {
+        for (Listener listener : listeners) {
+            listener.onStateChanged(address, from, to);
+        }
+    }
+
+    public static String name(int state) {
+        switch (state) {
+            case NONE:
+                return "NONE";
+            case CONNECTING:
+                return "CONNECTING";
+            case CONNECTED:
+                return "CONNECTED";
+            case RECONNECTING:
+                return "RECONNECTING";
+            case CLOSING:
+                return "CLOSING";
+            default:
+                return String.valueOf(state);
+        }
+    }
+}
@@ -10,82 +10,197 @@ import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+/**
+ * Liste des appareils trouvés pendant la découverte. Chaque adresse n'apparaît qu'une fois :
+ * un index par adresse évite de parcourir la liste à chaque résultat, et seule la ligne
+ * ajoutée ou modifiée est notifiée.
+ */
 public class DeviceAdapter extends RecyclerView.Adapter<DeviceAdapter.DeviceViewHolder> {
 
-    private List<BluetoothDevice> devices = new ArrayList<>();
+    public static final int NO_RSSI = Short.MIN_VALUE;
+
+    // Mise à jour partielle d'une ligne : seul le RSSI a changé
+    private static final Object PAYLOAD_RSSI = new Object();
+
+    // Tous les appareils trouvés, et ceux affichés après filtrage par préfixe de nom
+    private final Map<String, DeviceEntry> entries = new HashMap<>();
+    private final List<DeviceEntry> found = new ArrayList<>();
+    private final List<DeviceEntry> visible = new ArrayList<>();
+    private String namePrefix = "";
     private OnDeviceClickListener listener;
 
     public interface OnDeviceClickListener {
         void onDeviceClick(BluetoothDevice device);
     }
 
+    private static class DeviceEntry {
+        final BluetoothDevice device;
+        String name;
+        int rssi = NO_RSSI;
+        // Position dans la liste affichée, -1 si masqué par le filtre
+        int position = -1;
+
+        DeviceEntry(BluetoothDevice device) {
+            this.device = device;
+        }
+    }
+
     public DeviceAdapter(OnDeviceClickListener listener) {
         this.listener = listener;
     }
 
-    public void setDevices(List<BluetoothDevice> devices) {
-        this.devices = devices;
-        notifyDataSetChanged();
+    public void addDevice(BluetoothDevice device) {
+        addOrUpdate(device, null, NO_RSSI);
     }
 
-    public void addDevice(BluetoothDevice device) {
-        // Vérifier si l'appareil n'est pas déjà dans la liste
-        for (BluetoothDevice existingDevice : devices) {
-            if (existingDevice.getAddress().equals(device.getAddress())) {
-                return;
+    /**
+     * Ajoute l'appareil, ou met à jour son nom et son RSSI s'il est déjà dans la liste.
+     * @param name nom annoncé, null pour garder le nom connu
+     * @param rssi puissance reçue en dBm, {@link #NO_RSSI} si inconnue
+     * @return vrai si l'appareil vient d'être ajouté
+     */
+    public boolean addOrUpdate(BluetoothDevice device, String name, int rssi) {
+        String address = device.getAddress();
+        DeviceEntry entry = entries.get(address);
+        boolean added = entry == null;
+        if (added) {
+            entry = new DeviceEntry(device);
+            entries.put(address, entry);
+            found.add(entry);
+        }
+
+        boolean nameChanged = name != null && !name.equals(entry.name);
+        boolean rssiChanged = rssi != NO_RSSI && rssi != entry.rssi;
+        if (nameChanged) {
+            entry.name = name;
+        }
+        if (rssiChanged) {
+            entry.rssi = rssi;
+        }
+
+        if (entry.position < 0) {
+            // Nouvel appareil, ou nom qui correspond désormais au filtre
+            if (matches(entry)) {
+                entry.position = visible.size();
+                visible.add(entry);
+                notifyItemInserted(entry.position);
+            }
+        } else if (nameChanged) {
+            notifyItemChanged(entry.position);
+        } else if (rssiChanged) {
+            notifyItemChanged(entry.position, PAYLOAD_RSSI);
+        }
+        return added;
+    }
+
+    /**
+     * N'affiche que les appareils dont le nom commence par prefix (vide : tous).
+     */
+    public void setNamePrefix(String prefix) {
+        String normalized = prefix == null ? "" : prefix.trim();
+        if (normalized.equals(namePrefix)) {
+            return;
+        }
+        namePrefix = normalized;
+        visible.clear();
+        for (DeviceEntry entry : found) {
+            if (matches(entry)) {
+                entry.position = visible.size();
+                visible.add(entry);
+            } else {
+                entry.position = -1;
             }
         }
-        
-        devices.add(device);
         notifyDataSetChanged();
     }
 
+    public boolean matchesPrefix(String name) {
+        return namePrefix.isEmpty() || (name != null && name.startsWith(namePrefix));
+    }
+
     public void clearDevices() {
-        devices.clear();
-        notifyDataSetChanged();
+        int count = visible.size();
+        entries.clear();
+        found.clear();
+        visible.clear();
+        notifyItemRangeRemoved(0, count);
+    }
+
+    private boolean matches(DeviceEntry entry) {
+        return matchesPrefix(displayName(entry));
+    }
+
+    private static String displayName(DeviceEntry entry) {
+        if (entry.name != null) {
+            return entry.name;
+        }
+        try {
+            return entry.device.getName();
+        } catch (SecurityException e) {
+            return null;
+        }
     }
 
     @NonNull
     @Override
     public DeviceViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
         View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.device_item, parent, false);
-        return new DeviceViewHolder(view);
+        DeviceViewHolder holder = new DeviceViewHolder(view);
+        view.setOnClickListener(v -> {
+            int position = holder.getBindingAdapterPosition();
+            if (listener != null && position != RecyclerView.NO_POSITION) {
+                listener.onDeviceClick(visible.get(position).device);
+            }
+        });
+        return holder;
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull DeviceViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.size() == 1 && payloads.get(0) == PAYLOAD_RSSI) {
+            bindRssi(holder, visible.get(position));
+        } else {
+            onBindViewHolder(holder, position);
+        }
     }
 
     @Override
     public void onBindViewHolder(@NonNull DeviceViewHolder holder, int position) {
-        BluetoothDevice device = devices.get(position);
-        String deviceName = device.getName();
-        
+        DeviceEntry entry = visible.get(position);
+        String deviceName = displayName(entry);
+
         if (deviceName == null || deviceName.isEmpty()) {
             deviceName = "Appareil inconnu";
         }
-        
+
         holder.deviceNameTextView.setText(deviceName);
-        holder.deviceAddressTextView.setText(device.getAddress());
-        
-        holder.itemView.setOnClickListener(v -> {
-            if (listener != null) {
-                listener.onDeviceClick(device);
-            }
-        });
+        holder.deviceAddressTextView.setText(entry.device.getAddress());
+        bindRssi(holder, entry);
+    }
+
+    private static void bindRssi(DeviceViewHolder holder, DeviceEntry entry) {
+        holder.deviceRssiTextView.setText(entry.rssi == NO_RSSI ? "" : entry.rssi + " dBm");
     }
 
     @Override
     public int getItemCount() {
-        return devices.size();
+        return visible.size();
     }
 
     static class DeviceViewHolder extends RecyclerView.ViewHolder {
         TextView deviceNameTextView;
         TextView deviceAddressTextView;
+        TextView deviceRssiTextView;
 
         DeviceViewHolder(@NonNull View itemView) {
             super(itemView);
             deviceNameTextView = itemView.findViewById(R.id.deviceNameTextView);
             deviceAddressTextView = itemView.findViewById(R.id.deviceAddressTextView);
+            deviceRssiTextView = itemView.findViewById(R.id.deviceRssiTextView);
         }
     }
-} 
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,119 @@
+package com.example.bluetoothapp;
+
+/**
+ * Algorithmes de réduction d'une plage d'historique à un nombre de points borné.
+ * Les résultats sont écrits dans des tableaux fournis par l'appelant (aucune allocation).
+ */
+public final class Downsampler {
+
+    private Downsampler() {
+    }
+
+    /**
+     * Découpe [from, to) en {@code buckets} seaux et garde le minimum et le maximum de chacun,
+     * dans l'ordre chronologique. Les pics sont toujours conservés.
+     * @return le nombre de points écrits (au plus 2 × buckets)
+     */
+    public static int minMax(TimeSeries src, int from, int to, int buckets,
+                             long[] outTimes, float[] outValues) {
+        int count = to - from;
+        if (count <= 0 || buckets <= 0) {
+            return 0;
+        }
+        if (count <= 2 * buckets) {
+            return copy(src, from, to, outTimes, outValues);
+        }
+
+        int written = 0;
+        for (int b = 0; b < buckets; b++) {
+            int start = from + (int) ((long) count * b / buckets);
+            int end = from + (int) ((long) count * (b + 1) / buckets);
+            if (start >= end) {
+                continue;
+            }
+
+            long extremes = src.minMaxIndex(start, end);
+            int minIndex = (int) (extremes >>> 32);
+            int maxIndex = (int) extremes;
+
+            int firstIndex = Math.min(minIndex, maxIndex);
+            int secondIndex = Math.max(minIndex, maxIndex);
+            outTimes[written] = src.getTimestamp(firstIndex);
+            outValues[written++] = src.getValue(firstIndex);
+            if (secondIndex != firstIndex) {
+                outTimes[written] = src.getTimestamp(secondIndex);
+                outValues[written++] = src.getValue(secondIndex);
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Largest-Triangle-Three-Buckets : garde {@code threshold} points qui conservent au mieux
+     * la forme de la courbe (premier et dernier point inclus).
+     * @return le nombre de points écrits (au plus threshold)
+     */
+    public static int lttb(TimeSeries src, int from, int to, int threshold,
+                           long[] outTimes, float[] outValues) {
+        int count = to - from;
+        if (count <= 0) {
+            return 0;
+        }
+        if (threshold >= count || threshold < 3) {
+            return copy(src, from, to, outTimes, outValues);
+        }
+
+        // Les abscisses sont relatives au premier point pour garder la précision en double
+        long origin = src.getTimestamp(from);
+        double bucketSize = (double) (count - 2) / (threshold - 2);
+
+        int written = 0;
+        int selected = from;
+        outTimes[written] = src.getTimestamp(from);
+        outValues[written++] = src.getValue(from);
+
+        for (int b = 0; b < threshold - 2; b++) {
+            // Moyenne du seau suivant, sommet du triangle
+            int nextStart = from + (int) ((b + 1) * bucketSize) + 1;
+            int nextEnd = Math.min(from + (int) ((b + 2) * bucketSize) + 1, to);
+            double averageX = 0;
+            double averageY = 0;
+            for (int i = nextStart; i < nextEnd; i++) {
+                averageX += src.getTimestamp(i) - origin;
+                averageY += src.getValue(i);
+            }
+            int nextCount = nextEnd - nextStart;
+            averageX /= nextCount;
+            averageY /= nextCount;
+
+            // Point du seau courant formant le plus grand triangle avec le point retenu précédent
+            int start = from + (int) (b * bucketSize) + 1;
+            int end = from + (int) ((b + 1) * bucketSize) + 1;
+            double selectedX = src.getTimestamp(selected) - origin;
+            double selectedY = src.getValue(selected);
+            double maxArea = -1;
+            int maxIndex = start;
+            for (int i = start; i < end; i++) {
+                double area = Math.abs((selectedX - averageX) * (src.getValue(i) - selectedY)
+                        - (selectedX - (src.getTimestamp(i) - origin)) * (averageY - selectedY));
+                if (area > maxArea) {
+                    maxArea = area;
+                    maxIndex = i;
+                }
+            }
+
+            outTimes[written] = src.getTimestamp(maxIndex);
+            outValues[written++] = src.getValue(maxIndex);
+            selected = maxIndex;
+        }
+
+        outTimes[written] = src.getTimestamp(to - 1);
+        outValues[written++] = src.getValue(to - 1);
+        return written;
+    }
+
+    private static int copy(TimeSeries src, int from, int to, long[] outTimes, float[] outValues) {
+        src.copyTimestamps(from, to - from, outTimes, 0);
+        return src.copyValues(from, to - from, outValues, 0);
+    }
+}
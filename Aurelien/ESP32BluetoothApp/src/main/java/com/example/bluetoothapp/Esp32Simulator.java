@@ -0,0 +1,394 @@
+package com.example.bluetoothapp;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * ESP32 simulés émettant exactement les lignes du firmware texte
+ * "T:25.5,V:3.30,B:75,L:800,H:12:34:56\r\n", pour faire tourner la chaîne de réception
+ * (décodage, livraison, journal) sur une JVM sans téléphone ni Bluetooth.
+ *
+ * Réglages : nombre d'appareils, cadence par appareil (0 = au plus vite), gigue autour de la
+ * période, proportion de lignes corrompues et mode report-on-change (seuls les canaux sortis de
+ * leur bande morte sont envoyés, plus un battement). Les tirages aléatoires sont reproductibles (graine).
+ * Les lignes sont formatées dans un tampon réutilisé, sans allocation par échantillon.
+ *
+ * Utilisable aussi en ligne de commande comme serveur TCP (voir {@link #main(String[])}).
+ */
+public class Esp32Simulator {
+
+    public static final int DEFAULT_RATE_HZ = 1;
+
+    // Une ligne fait au plus ~45 octets ; plusieurs lignes sont regroupées par écriture en mode libre
+    private static final int MAX_LINE_LENGTH = 96;
+    private static final int CHUNK_SIZE = 8 * 1024;
+    private static final byte[] GARBAGE = {'#', '?', 'x', ';', ' ', 0x7F};
+    // Canaux du firmware simulé (ceux de ChannelRegistry.createDefault()) : clés et décimales de
+    // formatLine, dans l'ordre des identifiants de canal
+    private static final String[] KEYS = {"T", "V", "B", "L", "P", "Lux"};
+    private static final int[] DECIMALS = {1, 2, 0, 0, 1, 1};
+
+    private final int deviceCount;
+    private double rateHz = DEFAULT_RATE_HZ;
+    private double jitterRatio;
+    private double corruptionRatio;
+    private long seed = 1;
+    private int startTimeOfDayMillis = 12 * 3_600_000;
+    // Bande morte par canal en unités de la dernière décimale ; battement 0 = mode désactivé
+    private final int[] deadBands = new int[KEYS.length];
+    private long heartbeatMillis;
+
+    private final AtomicLong sentCount = new AtomicLong();
+    private final AtomicLong corruptedCount = new AtomicLong();
+
+    public Esp32Simulator(int deviceCount) {
+        if (deviceCount <= 0) {
+            throw new IllegalArgumentException("Nombre d'appareils invalide: " + deviceCount);
+        }
+        this.deviceCount = deviceCount;
+    }
+
+    /**
+     * Échantillons par seconde et par appareil ; 0 pour émettre au plus vite.
+     */
+    public void setRateHz(double rateHz) {
+        this.rateHz = Math.max(0, rateHz);
+    }
+
+    /**
+     * Écart maximal autour de l'instant d'émission nominal, en fraction de période (0 à 1).
+     */
+    public void setJitterRatio(double jitterRatio) {
+        this.jitterRatio = Math.max(0, Math.min(1, jitterRatio));
+    }
+
+    /**
+     * Proportion de lignes dont un octet est remplacé par un caractère invalide (0 à 1).
+     * La fin de ligne n'est jamais touchée : le découpage reste correct.
+     */
+    public void setCorruptionRatio(double corruptionRatio) {
+        this.corruptionRatio = Math.max(0, Math.min(1, corruptionRatio));
+    }
+
+    /**
+     * Mode report-on-change, comme la commande BEAT du firmware : un canal n'est envoyé que s'il
+     * s'écarte de plus de deadBands[canal] (unités réelles) de la dernière valeur envoyée, ou
+     * au moins toutes les heartbeatMillis ; une ligne sans canal n'est pas envoyée.
+     * heartbeatMillis = 0 revient aux lignes complètes.
+     */
+    public void setReportOnChange(float[] deadBands, long heartbeatMillis) {
+        for (int channel = 0; channel < this.deadBands.length; channel++) {
+            this.deadBands[channel] = (int) Math.round(deadBands[channel] * Math.pow(10, DECIMALS[channel]));
+        }
+        this.heartbeatMillis = Math.max(0, heartbeatMillis);
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public void setStartTimeOfDayMillis(int startTimeOfDayMillis) {
+        this.startTimeOfDayMillis = startTimeOfDayMillis;
+    }
+
+    public int getDeviceCount() {
+        return deviceCount;
+    }
+
+    /**
+     * Lignes émises par tous les appareils, corrompues comprises.
+     */
+    public long getSentCount() {
+        return sentCount.get();
+    }
+
+    public long getCorruptedCount() {
+        return corruptedCount.get();
+    }
+
+    /**
+     * Adresse MAC fictive de l'appareil simulé.
+     */
+    public static String deviceAddress(int device) {
+        return String.format("5E:00:00:00:00:%02X", device & 0xFF);
+    }
+
+    /**
+     * Écrit {@code samples} lignes de l'appareil sur le flux puis le ferme (fin de flux côté lecteur).
+     * Bloque au rythme configuré.
+     */
+    public void stream(int device, OutputStream out, long samples) throws IOException {
+        Random random = new Random(seed * 31 + device);
+        byte[] chunk = new byte[CHUNK_SIZE];
+        int length = 0;
+        boolean paced = rateHz > 0;
+        long periodNanos = paced ? (long) (1_000_000_000L / rateHz) : 0;
+        int periodMillis = paced ? (int) Math.max(1, 1000 / rateHz) : 100;
+        long startNanos = System.nanoTime();
+        // Mode report-on-change : dernière valeur envoyée par canal et son instant
+        int[] lastSent = new int[KEYS.length];
+        long[] lastSentAt = new long[KEYS.length];
+
+        try {
+            for (long i = 0; i < samples; i++) {
+                if (paced) {
+                    long jitter = (long) ((random.nextDouble() * 2 - 1) * jitterRatio * periodNanos);
+                    long wait = startNanos + i * periodNanos + jitter - System.nanoTime();
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                }
+
+                int timeOfDay = (int) ((startTimeOfDayMillis + i * periodMillis) % 86_400_000L);
+                int lineLength;
+                if (heartbeatMillis > 0) {
+                    int mask = changedChannels(device, i, i * periodMillis, lastSent, lastSentAt);
+                    if (mask == 0) {
+                        continue;
+                    }
+                    lineLength = formatChanges(device, i, timeOfDay, mask, chunk, length);
+                } else {
+                    lineLength = formatLine(device, i, timeOfDay, chunk, length);
+                }
+                if (corruptionRatio > 0 && random.nextDouble() < corruptionRatio) {
+                    // Un octet du corps de la ligne (hors "\r\n") est remplacé
+                    chunk[length + random.nextInt(lineLength - 2)] = GARBAGE[random.nextInt(GARBAGE.length)];
+                    corruptedCount.incrementAndGet();
+                }
+                length += lineLength;
+                sentCount.incrementAndGet();
+
+                if (paced || length > CHUNK_SIZE - MAX_LINE_LENGTH) {
+                    out.write(chunk, 0, length);
+                    out.flush();
+                    length = 0;
+                }
+            }
+            if (length > 0) {
+                out.write(chunk, 0, length);
+                out.flush();
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Formate la ligne {@code index} de l'appareil à partir de {@code out[offset]}.
+     * @return le nombre d'octets écrits, "\r\n" compris
+     */
+    public static int formatLine(int device, long index, int timeOfDayMillis, byte[] out, int offset) {
+        int temperature = fixedValue(device, index, ChannelRegistry.TEMPERATURE);
+        int voltage = fixedValue(device, index, ChannelRegistry.VOLTAGE);
+        int battery = fixedValue(device, index, ChannelRegistry.BATTERY);
+        int brightness = fixedValue(device, index, ChannelRegistry.BRIGHTNESS);
+        int pressure = fixedValue(device, index, ChannelRegistry.PRESSURE);
+        int lux = fixedValue(device, index, ChannelRegistry.LUX);
+
+        int pos = offset;
+        out[pos++] = 'T';
+        out[pos++] = ':';
+        pos = putFixed(out, pos, temperature, 1);
+        out[pos++] = ',';
+        out[pos++] = 'V';
+        out[pos++] = ':';
+        pos = putFixed(out, pos, voltage, 2);
+        out[pos++] = ',';
+        out[pos++] = 'B';
+        out[pos++] = ':';
+        pos = putFixed(out, pos, battery, 0);
+        out[pos++] = ',';
+        out[pos++] = 'L';
+        out[pos++] = ':';
+        pos = putFixed(out, pos, brightness, 0);
+        out[pos++] = ',';
+        out[pos++] = 'P';
+        out[pos++] = ':';
+        pos = putFixed(out, pos, pressure, 1);
+        out[pos++] = ',';
+        out[pos++] = 'L';
+        out[pos++] = 'u';
+        out[pos++] = 'x';
+        out[pos++] = ':';
+        pos = putFixed(out, pos, lux, 1);
+        out[pos++] = ',';
+        out[pos++] = 'H';
+        out[pos++] = ':';
+        int seconds = timeOfDayMillis / 1000;
+        pos = putTwoDigits(out, pos, seconds / 3600);
+        out[pos++] = ':';
+        pos = putTwoDigits(out, pos, seconds / 60 % 60);
+        out[pos++] = ':';
+        pos = putTwoDigits(out, pos, seconds % 60);
+        out[pos++] = '\r';
+        out[pos++] = '\n';
+        return pos - offset;
+    }
+
+    /**
+     * Formate une mise à jour partielle du mode report-on-change : les canaux de channelMask
+     * puis l'heure à la milliseconde "H:12:34:56.700".
+     * @return le nombre d'octets écrits, "\r\n" compris
+     */
+    public static int formatChanges(int device, long index, int timeOfDayMillis, int channelMask,
+                                    byte[] out, int offset) {
+        int pos = offset;
+        for (int mask = channelMask; mask != 0; mask &= mask - 1) {
+            int channel = Integer.numberOfTrailingZeros(mask);
+            String key = KEYS[channel];
+            for (int i = 0; i < key.length(); i++) {
+                out[pos++] = (byte) key.charAt(i);
+            }
+            out[pos++] = ':';
+            pos = putFixed(out, pos, fixedValue(device, index, channel), DECIMALS[channel]);
+            out[pos++] = ',';
+        }
+        out[pos++] = 'H';
+        out[pos++] = ':';
+        int seconds = timeOfDayMillis / 1000;
+        pos = putTwoDigits(out, pos, seconds / 3600);
+        out[pos++] = ':';
+        pos = putTwoDigits(out, pos, seconds / 60 % 60);
+        out[pos++] = ':';
+        pos = putTwoDigits(out, pos, seconds % 60);
+        out[pos++] = '.';
+        pos = putTwoDigits(out, pos, timeOfDayMillis % 1000 / 10);
+        out[pos++] = (byte) ('0' + timeOfDayMillis % 10);
+        out[pos++] = '\r';
+        out[pos++] = '\n';
+        return pos - offset;
+    }
+
+    /**
+     * Valeur du canal pour la ligne index, en unités de la dernière décimale envoyée.
+     */
+    static int fixedValue(int device, long index, int channel) {
+        double phase = index / 50.0 + device;
+        switch (channel) {
+            case ChannelRegistry.TEMPERATURE:
+                return (int) Math.round((22.0 + device * 0.5 + 3.0 * Math.sin(phase)) * 10);
+            case ChannelRegistry.VOLTAGE:
+                return (int) Math.round((3.10 + 0.15 * Math.cos(phase / 7)) * 100);
+            case ChannelRegistry.BATTERY:
+                return (int) Math.max(0, Math.min(100, 80 - (index / 600) % 60));
+            case ChannelRegistry.BRIGHTNESS:
+                return (int) Math.round(400 + 350 * Math.sin(phase / 3));
+            case ChannelRegistry.PRESSURE:
+                return (int) Math.round((1013.2 + 2.0 * Math.sin(phase / 40)) * 10);
+            default:
+                return (int) Math.round((250 + 200 * Math.sin(phase / 3)) * 10);
+        }
+    }
+
+    // Canaux à envoyer en mode report-on-change, avec mise à jour des dernières valeurs envoyées
+    private int changedChannels(int device, long index, long millis, int[] lastSent, long[] lastSentAt) {
+        int mask = 0;
+        for (int channel = 0; channel < lastSent.length; channel++) {
+            int value = fixedValue(device, index, channel);
+            if (index == 0 || Math.abs(value - lastSent[channel]) > deadBands[channel]
+                    || millis - lastSentAt[channel] >= heartbeatMillis) {
+                lastSent[channel] = value;
+                lastSentAt[channel] = millis;
+                mask |= 1 << channel;
+            }
+        }
+        return mask;
+    }
+
+    // Écrit value / 10^decimals avec exactement `decimals` chiffres après la virgule
+    private static int putFixed(byte[] out, int pos, int value, int decimals) {
+        if (value < 0) {
+            out[pos++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (int v = value / 10; v > 0; v /= 10) {
+            digits++;
+        }
+        digits = Math.max(digits, decimals + 1);
+        int end = pos + digits + (decimals > 0 ? 1 : 0);
+        int p = end;
+        for (int d = 0; d < digits; d++) {
+            if (d == decimals && decimals > 0) {
+                out[--p] = '.';
+            }
+            out[--p] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return end;
+    }
+
+    private static int putTwoDigits(byte[] out, int pos, int value) {
+        out[pos++] = (byte) ('0' + value / 10);
+        out[pos++] = (byte) ('0' + value % 10);
+        return pos;
+    }
+
+    /**
+     * Démarre un thread d'émission par appareil, chacun relié à l'application par un tube en mémoire.
+     * Le flux de chaque tube se termine après {@code samplesPerDevice} lignes.
+     */
+    public List<PipeTransport> startPipes(long samplesPerDevice) {
+        List<PipeTransport> transports = new ArrayList<>(deviceCount);
+        for (int device = 0; device < deviceCount; device++) {
+            PipeTransport transport = new PipeTransport(deviceAddress(device));
+            transports.add(transport);
+            start(device, transport.getDeviceOutputStream(), samplesPerDevice);
+        }
+        return transports;
+    }
+
+    /**
+     * Accepte {@code deviceCount} connexions sur le serveur ; chaque connexion reçoit le flux
+     * d'un appareil. Bloque jusqu'à ce que tous les appareils soient connectés.
+     */
+    public void serve(ServerSocket server, long samplesPerDevice) throws IOException {
+        for (int device = 0; device < deviceCount; device++) {
+            Socket socket = server.accept();
+            socket.setTcpNoDelay(true);
+            start(device, socket.getOutputStream(), samplesPerDevice);
+        }
+    }
+
+    private void start(int device, OutputStream out, long samples) {
+        Thread thread = new Thread(() -> {
+            try {
+                stream(device, out, samples);
+            } catch (IOException e) {
+                // Lecteur parti : fin normale d'une simulation
+            }
+        }, "Esp32Simulator-" + device);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Serveur TCP de test : {@code port [appareils] [Hz] [gigue] [corruption] [échantillons]}.
+     */
+    public static void main(String[] args) throws Exception {
+        int port = Integer.parseInt(args[0]);
+        Esp32Simulator simulator = new Esp32Simulator(args.length > 1 ? Integer.parseInt(args[1]) : 1);
+        simulator.setRateHz(args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_RATE_HZ);
+        simulator.setJitterRatio(args.length > 3 ? Double.parseDouble(args[3]) : 0);
+        simulator.setCorruptionRatio(args.length > 4 ? Double.parseDouble(args[4]) : 0);
+        long samples = args.length > 5 ? Long.parseLong(args[5]) : Long.MAX_VALUE;
+
+        try (ServerSocket server = new ServerSocket(port)) {
+            System.out.println("Simulateur ESP32 en écoute sur le port " + port);
+            simulator.serve(server, samples);
+            while (!Thread.currentThread().isInterrupted()) {
+                TimeUnit.SECONDS.sleep(10);
+                System.out.println("Lignes émises: " + simulator.getSentCount()
+                        + ", corrompues: " + simulator.getCorruptedCount());
+            }
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.bluetoothapp;
+
+import java.io.IOException;
+
+/**
+ * Encodages de colonnes inspirés de Gorilla (Facebook, 2015), utilisés par
+ * {@link CompressedSessionWriter} et {@link CompressedSessionReader}.
+ *
+ * Entiers (horodatages, décimaux mis à l'échelle) : différence de différences, '0' si elle est
+ * nulle, sinon un préfixe de 2 à 4 bits et 7, 9, 12 ou 64 bits. Flottants : XOR avec la valeur
+ * précédente, '0' si identique, '10' si les bits significatifs tiennent dans la fenêtre
+ * précédente, '11' + zéros de tête (5 bits) + longueur (5 bits) sinon.
+ */
+final class GorillaCodec {
+
+    private GorillaCodec() {
+    }
+
+    static void encodeDeltaOfDelta(BitWriter out, long[] values, int count) {
+        if (count == 0) {
+            return;
+        }
+        long previous = values[0];
+        long previousDelta = 0;
+        out.write(previous, 64);
+        for (int i = 1; i < count; i++) {
+            long delta = values[i] - previous;
+            long dod = delta - previousDelta;
+            if (dod == 0) {
+                out.write(0, 1);
+            } else if (dod >= -63 && dod <= 64) {
+                out.write(0b10, 2);
+                out.write(dod + 63, 7);
+            } else if (dod >= -255 && dod <= 256) {
+                out.write(0b110, 3);
+                out.write(dod + 255, 9);
+            } else if (dod >= -2047 && dod <= 2048) {
+                out.write(0b1110, 4);
+                out.write(dod + 2047, 12);
+            } else {
+                out.write(0b1111, 4);
+                out.write(dod, 64);
+            }
+            previous = values[i];
+            previousDelta = delta;
+        }
+    }
+
+    static void decodeDeltaOfDelta(BitReader in, long[] values, int count) throws IOException {
+        if (count == 0) {
+            return;
+        }
+        long previous = in.read(64);
+        long previousDelta = 0;
+        values[0] = previous;
+        for (int i = 1; i < count; i++) {
+            long dod;
+            if (!in.readBit()) {
+                dod = 0;
+            } else if (!in.readBit()) {
+                dod = in.read(7) - 63;
+            } else if (!in.readBit()) {
+                dod = in.read(9) - 255;
+            } else if (!in.readBit()) {
+                dod = in.read(12) - 2047;
+            } else {
+                dod = in.read(64);
+            }
+            previousDelta += dod;
+            previous += previousDelta;
+            values[i] = previous;
+        }
+    }
+
+    static void encodeXor(BitWriter out, float[] values, int count) {
+        if (count == 0) {
+            return;
+        }
+        int previous = Float.floatToRawIntBits(values[0]);
+        out.write(previous, 32);
+        int previousLeading = -1;
+        int previousTrailing = 0;
+        for (int i = 1; i < count; i++) {
+            int bits = Float.floatToRawIntBits(values[i]);
+            int xor = bits ^ previous;
+            previous = bits;
+            if (xor == 0) {
+                out.write(0, 1);
+                continue;
+            }
+            int leading = Integer.numberOfLeadingZeros(xor);
+            int trailing = Integer.numberOfTrailingZeros(xor);
+            if (previousLeading >= 0 && leading >= previousLeading && trailing >= previousTrailing) {
+                out.write(0b10, 2);
+                out.write(xor >>> previousTrailing, 32 - previousLeading - previousTrailing);
+            } else {
+                int significant = 32 - leading - trailing;
+                out.write(0b11, 2);
+                out.write(leading, 5);
+                out.write(significant - 1, 5);
+                out.write(xor >>> trailing, significant);
+                previousLeading = leading;
+                previousTrailing = trailing;
+            }
+        }
+    }
+
+    static void decodeXor(BitReader in, float[] values, int count) throws IOException {
+        if (count == 0) {
+            return;
+        }
+        int previous = (int) in.read(32);
+        values[0] = Float.intBitsToFloat(previous);
+        int leading = 0;
+        int trailing = 0;
+        for (int i = 1; i < count; i++) {
+            if (in.readBit()) {
+                if (in.readBit()) {
+                    leading = (int) in.read(5);
+                    int significant = (int) in.read(5) + 1;
+                    trailing = 32 - leading - significant;
+                }
+                previous ^= (int) in.read(32 - leading - trailing) << trailing;
+            }
+            values[i] = Float.intBitsToFloat(previous);
+        }
+    }
+
+    /**
+     * Petits entiers (pourcentage de batterie) : '0' si inchangé, sinon '1' et l'écart en zigzag.
+     */
+    static void encodeVarints(BitWriter out, long[] values, int count) {
+        long previous = 0;
+        for (int i = 0; i < count; i++) {
+            long delta = values[i] - previous;
+            previous = values[i];
+            if (delta == 0 && i > 0) {
+                out.write(0, 1);
+            } else {
+                out.write(1, 1);
+                out.writeVarint((delta << 1) ^ (delta >> 63));
+            }
+        }
+    }
+
+    static void decodeVarints(BitReader in, long[] values, int count) throws IOException {
+        long previous = 0;
+        for (int i = 0; i < count; i++) {
+            if (in.readBit()) {
+                long zigzag = in.readVarint();
+                previous += (zigzag >>> 1) ^ -(zigzag & 1);
+            }
+            values[i] = previous;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.bluetoothapp;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Mesures de la chaîne de réception d'un appareil, sans verrou :
+ * le thread de lecture met à jour les compteurs une fois par lecture (pas par octet),
+ * le thread principal enregistre la latence d'affichage. Les débits sont calculés à la lecture
+ * à partir de deux instantanés successifs (voir {@link #appendJson(StringBuilder)}).
+ */
+public class IngestionMetrics {
+
+    private final String deviceAddress;
+
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong lines = new AtomicLong();
+    private final AtomicLong frames = new AtomicLong();
+    private final AtomicLong parseErrors = new AtomicLong();
+    private final AtomicLong gaps = new AtomicLong();
+
+    // Temps d'analyse moyen par ligne ou trame, mesuré sur chaque lecture
+    private final LatencyHistogram parseNanos = new LatencyHistogram("ns");
+    // Attente entre la publication d'un lot et sa livraison sur le thread principal
+    private final LatencyHistogram deliveryDelayMillis = new LatencyHistogram("ms");
+    // Échantillons par livraison
+    private final LatencyHistogram batchSizes = new LatencyHistogram("samples");
+    // Lecture sur le socket -> fin de la mise à jour de l'écran
+    private final LatencyHistogram readToScreenMillis = new LatencyHistogram("ms");
+    // Heure de mesure recalée sur l'horloge de l'ESP32 (ClockSync) -> écran
+    private final LatencyHistogram sensorToScreenMillis = new LatencyHistogram("ms");
+
+    // Débits calculés entre deux appels à updateRates()
+    private long lastRateNanos = System.nanoTime();
+    private long lastBytes;
+    private long lastLines;
+    private double bytesPerSecond;
+    private double linesPerSecond;
+
+    public IngestionMetrics(String deviceAddress) {
+        this.deviceAddress = deviceAddress;
+    }
+
+    /**
+     * Thread de lecture : une lecture du transport et son décodage.
+     * @param decodedLines lignes de texte complètes décodées par cette lecture
+     * @param decodedFrames trames binaires complètes décodées par cette lecture
+     */
+    public void onRead(int byteCount, int decodedLines, int decodedFrames, int errors, long decodeNanos) {
+        bytes.addAndGet(byteCount);
+        if (decodedLines > 0) {
+            lines.addAndGet(decodedLines);
+        }
+        if (decodedFrames > 0) {
+            frames.addAndGet(decodedFrames);
+        }
+        if (errors > 0) {
+            parseErrors.addAndGet(errors);
+        }
+        int units = decodedLines + decodedFrames;
+        if (units > 0) {
+            parseNanos.record(decodeNanos / units);
+        }
+    }
+
+    public void onGap() {
+        gaps.incrementAndGet();
+    }
+
+    public void onDelivered(int batchSize, long delayMillis) {
+        batchSizes.record(batchSize);
+        deliveryDelayMillis.record(delayMillis);
+    }
+
+    /**
+     * Thread principal, une fois l'échantillon affiché.
+     */
+    public void onRendered(long receivedAtMillis, long timestampNanos, long nowMillis) {
+        readToScreenMillis.record(nowMillis - receivedAtMillis);
+        sensorToScreenMillis.record(nowMillis - Math.floorDiv(timestampNanos, 1_000_000L));
+    }
+
+    public String getDeviceAddress() {
+        return deviceAddress;
+    }
+
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    public long getLines() {
+        return lines.get();
+    }
+
+    public long getFrames() {
+        return frames.get();
+    }
+
+    public long getParseErrors() {
+        return parseErrors.get();
+    }
+
+    public long getGaps() {
+        return gaps.get();
+    }
+
+    public LatencyHistogram getParseNanos() {
+        return parseNanos;
+    }
+
+    public LatencyHistogram getDeliveryDelayMillis() {
+        return deliveryDelayMillis;
+    }
+
+    public LatencyHistogram getBatchSizes() {
+        return batchSizes;
+    }
+
+    public LatencyHistogram getReadToScreenMillis() {
+        return readToScreenMillis;
+    }
+
+    public LatencyHistogram getSensorToScreenMillis() {
+        return sensorToScreenMillis;
+    }
+
+    /**
+     * Recalcule les débits depuis l'appel précédent ; à appeler depuis un seul thread
+     * (l'affichage de débogage ou l'export).
+     */
+    public synchronized void updateRates() {
+        long now = System.nanoTime();
+        long elapsed = now - lastRateNanos;
+        if (elapsed < 100_000_000L) {
+            return;
+        }
+        long currentBytes = bytes.get();
+        long currentLines = lines.get() + frames.get();
+        bytesPerSecond = (currentBytes - lastBytes) * 1e9 / elapsed;
+        linesPerSecond = (currentLines - lastLines) * 1e9 / elapsed;
+        lastBytes = currentBytes;
+        lastLines = currentLines;
+        lastRateNanos = now;
+    }
+
+    public synchronized double getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    public synchronized double getLinesPerSecond() {
+        return linesPerSecond;
+    }
+
+    public void appendJson(StringBuilder out) {
+        updateRates();
+        out.append("{\"device\":\"").append(deviceAddress).append('"')
+                .append(",\"bytes\":").append(getBytes())
+                .append(",\"lines\":").append(getLines())
+                .append(",\"frames\":").append(getFrames())
+                .append(",\"parseErrors\":").append(getParseErrors())
+                .append(",\"gaps\":").append(getGaps())
+                .append(",\"bytesPerSecond\":").append(String.format(Locale.ROOT, "%.1f", getBytesPerSecond()))
+                .append(",\"linesPerSecond\":").append(String.format(Locale.ROOT, "%.1f", getLinesPerSecond()))
+                .append(",\"parseNanosPerLine\":");
+        parseNanos.appendJson(out);
+        out.append(",\"deliveryDelay\":");
+        deliveryDelayMillis.appendJson(out);
+        out.append(",\"batchSize\":");
+        batchSizes.appendJson(out);
+        out.append(",\"readToScreen\":");
+        readToScreenMillis.appendJson(out);
+        out.append(",\"sensorToScreen\":");
+        sensorToScreenMillis.appendJson(out);
+        out.append('}');
+    }
+
+    /**
+     * Quelques lignes pour l'affichage de débogage.
+     */
+    public String summary() {
+        updateRates();
+        return String.format(Locale.ROOT, "%s  %.0f o/s  %.1f lignes/s  erreurs %d  coupures %d%n"
+                        + "analyse/ligne   %s%n"
+                        + "attente livr.   %s%n"
+                        + "lecture->écran  %s%n"
+                        + "capteur->écran  %s",
+                deviceAddress, getBytesPerSecond(), getLinesPerSecond(), getParseErrors(), getGaps(),
+                parseNanos.summary(), deliveryDelayMillis.summary(),
+                readToScreenMillis.summary(), sensorToScreenMillis.summary());
+    }
+}
@@ -0,0 +1,264 @@
+package com.example.bluetoothapp;
+
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothManager;
+import android.content.Intent;
+import android.os.Binder;
+import android.os.Build;
+import android.os.IBinder;
+import android.util.Log;
+
+import androidx.core.app.NotificationCompat;
+import androidx.core.app.ServiceCompat;
+import androidx.core.content.ContextCompat;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Service de premier plan qui possède les connexions et les journaux, indépendamment de l'activité.
+ *
+ * L'activité se lie au service quand elle devient visible et s'abonne aux échantillons ; elle se
+ * désabonne quand elle ne l'est plus. Sans abonné, les échantillons sont seulement décodés et
+ * enregistrés : aucune livraison ni aucun rendu sur le thread principal. Une rotation ou un passage
+ * en arrière-plan ne coupe donc plus la liaison RFCOMM.
+ *
+ * Le service passe au premier plan à la première connexion et s'arrête de lui-même quand la
+ * dernière session se termine. Chaque demande de démarrage porte la liste des appareils
+ * connectés : si le système tue le processus pendant un enregistrement, il relance le service
+ * avec la dernière liste et les sessions sont rouvertes.
+ */
+public class IngestionService extends Service implements BluetoothService.BluetoothCallback {
+    private static final String TAG = "IngestionService";
+
+    private static final String CHANNEL_ID = "recording";
+    private static final int NOTIFICATION_ID = 1;
+    private static final String ALERT_CHANNEL_ID = "alerts";
+    // Adresses des sessions ouvertes, dans la demande de démarrage redonnée après un arrêt forcé
+    private static final String EXTRA_ADDRESSES = "addresses";
+
+    /**
+     * Liaison locale : l'activité et le service sont dans le même processus.
+     */
+    public class LocalBinder extends Binder {
+        public IngestionService getService() {
+            return IngestionService.this;
+        }
+    }
+
+    private final IBinder binder = new LocalBinder();
+    private BluetoothService bluetoothService;
+    // Interface abonnée, uniquement manipulée sur le thread principal
+    private BluetoothService.BluetoothCallback subscriber;
+    private boolean foreground;
+    // Dernière liste d'adresses envoyée au système et dernière demande de démarrage reçue
+    private List<String> recordedAddresses = new ArrayList<>();
+    private int lastStartId;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        Log.d(TAG, "Création du service d'acquisition");
+        bluetoothService = new BluetoothService(this);
+        // Un journal persistant par appareil, ouvert à la connexion
+        bluetoothService.setRecordingDirectory(new File(getFilesDir(), "telemetry"));
+        bluetoothService.setSampleListener(null);
+        createNotificationChannels();
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        if (!foreground) {
+            startForeground(NOTIFICATION_ID, buildNotification());
+            foreground = true;
+        }
+        if (intent != null && (flags & START_FLAG_REDELIVERY) != 0) {
+            restoreSessions(intent.getStringArrayListExtra(EXTRA_ADDRESSES));
+        }
+        // La demande précédente est acquittée : seule la liste la plus récente est redonnée
+        if (lastStartId != 0) {
+            stopSelfResult(lastStartId);
+        }
+        lastStartId = startId;
+        return START_REDELIVER_INTENT;
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return binder;
+    }
+
+    @Override
+    public void onDestroy() {
+        Log.d(TAG, "Arrêt du service d'acquisition");
+        // Les journaux sont vidés sur disque à la fermeture des sessions
+        bluetoothService.release();
+        super.onDestroy();
+    }
+
+    public BluetoothService getBluetoothService() {
+        return bluetoothService;
+    }
+
+    /**
+     * Ouvre une session et fait passer le service au premier plan pour qu'elle survive à l'activité.
+     */
+    public void connect(BluetoothDevice device) {
+        List<String> addresses = bluetoothService.getDeviceAddresses();
+        if (!addresses.contains(device.getAddress())) {
+            addresses.add(device.getAddress());
+        }
+        recordedAddresses = addresses;
+        ContextCompat.startForegroundService(this, startIntent(addresses));
+        bluetoothService.connect(device);
+    }
+
+    /**
+     * Abonne l'interface visible aux événements et aux échantillons, ou la désabonne avec null.
+     */
+    public void subscribe(BluetoothService.BluetoothCallback subscriber) {
+        this.subscriber = subscriber;
+        bluetoothService.setSampleListener(subscriber);
+    }
+
+    // BluetoothCallback : transmis à l'abonné, la notification suit le nombre de sessions
+
+    @Override
+    public void onConnectionStateChanged(String deviceAddress, int state) {
+        if (subscriber != null) {
+            subscriber.onConnectionStateChanged(deviceAddress, state);
+        }
+        sessionsChanged();
+    }
+
+    @Override
+    public void onConnectionFailed(String deviceAddress) {
+        if (subscriber != null) {
+            subscriber.onConnectionFailed(deviceAddress);
+        }
+        sessionsChanged();
+    }
+
+    @Override
+    public void onAlertChanged(String deviceAddress, AlertRule rule, boolean raised, float value) {
+        if (subscriber != null) {
+            subscriber.onAlertChanged(deviceAddress, rule, raised, value);
+        }
+        // Une notification par règle et par appareil, retirée quand l'alerte retombe
+        NotificationManager manager = getSystemService(NotificationManager.class);
+        String tag = deviceAddress + "/" + rule.getName();
+        if (raised) {
+            manager.notify(tag, NOTIFICATION_ID, buildAlertNotification(deviceAddress, rule, value));
+        } else {
+            manager.cancel(tag, NOTIFICATION_ID);
+        }
+    }
+
+    @Override
+    public void onSamplesReceived(String deviceAddress, SampleBatch batch) {
+        // Les lots vont directement à l'abonné (setSampleListener), jamais au service
+    }
+
+    private void sessionsChanged() {
+        if (!foreground) {
+            return;
+        }
+        if (bluetoothService.getDeviceAddresses().isEmpty()) {
+            Log.d(TAG, "Plus aucune session, fin du premier plan");
+            ServiceCompat.stopForeground(this, ServiceCompat.STOP_FOREGROUND_REMOVE);
+            foreground = false;
+            // Reste en vie tant que l'activité est liée
+            stopSelf();
+        } else {
+            NotificationManager manager = getSystemService(NotificationManager.class);
+            manager.notify(NOTIFICATION_ID, buildNotification());
+            List<String> addresses = bluetoothService.getDeviceAddresses();
+            if (!addresses.containsAll(recordedAddresses) || !recordedAddresses.containsAll(addresses)) {
+                // Un appareil a été retiré : la liste redonnée au redémarrage doit le suivre
+                recordedAddresses = addresses;
+                startService(startIntent(addresses));
+            }
+        }
+    }
+
+    private Intent startIntent(List<String> addresses) {
+        return new Intent(this, IngestionService.class)
+                .putStringArrayListExtra(EXTRA_ADDRESSES, new ArrayList<>(addresses));
+    }
+
+    // Relancé par le système : rouvre les sessions de la liste, ferme celles qui n'y sont plus
+    private void restoreSessions(List<String> addresses) {
+        if (addresses == null) {
+            return;
+        }
+        for (String address : bluetoothService.getDeviceAddresses()) {
+            if (!addresses.contains(address)) {
+                bluetoothService.disconnect(address);
+            }
+        }
+        BluetoothManager manager = getSystemService(BluetoothManager.class);
+        BluetoothAdapter adapter = manager != null ? manager.getAdapter() : null;
+        if (adapter == null) {
+            Log.w(TAG, "Bluetooth indisponible, sessions non rouvertes");
+            return;
+        }
+        recordedAddresses = new ArrayList<>(addresses);
+        for (String address : addresses) {
+            if (bluetoothService.getState(address) != BluetoothService.STATE_NONE) {
+                continue;
+            }
+            Log.d(TAG, "Reprise de la session de " + address + " après redémarrage du service");
+            try {
+                bluetoothService.connect(adapter.getRemoteDevice(address));
+            } catch (IllegalArgumentException | SecurityException e) {
+                Log.e(TAG, "Reprise impossible pour " + address, e);
+            }
+        }
+    }
+
+    // Canaux d'acquisition et d'alertes, créés une fois à la création du service
+    private void createNotificationChannels() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationChannel channel = new NotificationChannel(CHANNEL_ID,
+                    getString(R.string.recording_channel_name), NotificationManager.IMPORTANCE_LOW);
+            getSystemService(NotificationManager.class).createNotificationChannel(channel);
+            NotificationChannel alerts = new NotificationChannel(ALERT_CHANNEL_ID,
+                    getString(R.string.alert_channel_name), NotificationManager.IMPORTANCE_HIGH);
+            getSystemService(NotificationManager.class).createNotificationChannel(alerts);
+        }
+    }
+
+    private android.app.Notification buildNotification() {
+        PendingIntent openActivity = PendingIntent.getActivity(this, 0,
+                new Intent(this, MainActivity.class), PendingIntent.FLAG_IMMUTABLE);
+        return new NotificationCompat.Builder(this, CHANNEL_ID)
+                .setContentTitle(getString(R.string.recording_notification_title))
+                .setContentText(getString(R.string.recording_notification_text,
+                        bluetoothService.getDeviceAddresses().size()))
+                .setSmallIcon(R.drawable.ic_lightning)
+                .setContentIntent(openActivity)
+                .setOngoing(true)
+                .setOnlyAlertOnce(true)
+                .setPriority(NotificationCompat.PRIORITY_LOW)
+                .build();
+    }
+
+    private android.app.Notification buildAlertNotification(String deviceAddress, AlertRule rule, float value) {
+        PendingIntent openActivity = PendingIntent.getActivity(this, 0,
+                new Intent(this, MainActivity.class), PendingIntent.FLAG_IMMUTABLE);
+        return new NotificationCompat.Builder(this, ALERT_CHANNEL_ID)
+                .setContentTitle(rule.getName())
+                .setContentText(getString(R.string.alert_notification_text, deviceAddress, value))
+                .setSmallIcon(R.drawable.ic_lightning)
+                .setContentIntent(openActivity)
+                .setPriority(NotificationCompat.PRIORITY_HIGH)
+                .setCategory(NotificationCompat.CATEGORY_ALARM)
+                .build();
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.bluetoothapp;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogramme de durées (ou de tailles) sans verrou ni allocation à l'enregistrement.
+ * Seaux logarithmiques : 8 sous-seaux par puissance de 2, soit une erreur relative d'au plus
+ * 12,5 % sur les percentiles, de 1 à 2^47 unités.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 48;
+    private static final int BUCKET_COUNT = (MAX_EXPONENT + 1) * SUB_BUCKETS;
+
+    private final String unit;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param unit unité des valeurs enregistrées, reprise dans le JSON ("ns", "ms"...)
+     */
+    public LatencyHistogram(String unit) {
+        this.unit = unit;
+    }
+
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        buckets.incrementAndGet(bucketOf(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        long current;
+        while (value > (current = max.get())) {
+            if (max.compareAndSet(current, value)) {
+                break;
+            }
+        }
+    }
+
+    // Les valeurs < 8 ont chacune leur seau, au-delà 8 seaux par puissance de 2
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+        int mantissa = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + mantissa;
+    }
+
+    // Borne supérieure (incluse) des valeurs du seau
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long mantissa = bucket % SUB_BUCKETS;
+        return ((SUB_BUCKETS + mantissa + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long n = count.get();
+        return n == 0 ? 0 : (double) sum.get() / n;
+    }
+
+    /**
+     * Percentile approché (borne haute du seau), p entre 0 et 100.
+     */
+    public long getPercentile(double p) {
+        long n = count.get();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(p / 100 * n));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            seen += buckets.get(bucket);
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(bucket), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    public void reset() {
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            buckets.set(bucket, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    public void appendJson(StringBuilder out) {
+        out.append("{\"unit\":\"").append(unit).append('"')
+                .append(",\"count\":").append(getCount())
+                .append(",\"mean\":").append(String.format(Locale.ROOT, "%.1f", getMean()))
+                .append(",\"p50\":").append(getPercentile(50))
+                .append(",\"p90\":").append(getPercentile(90))
+                .append(",\"p99\":").append(getPercentile(99))
+                .append(",\"max\":").append(getMax())
+                .append('}');
+    }
+
+    /**
+     * Résumé d'une ligne pour l'affichage de débogage.
+     */
+    public String summary() {
+        return String.format(Locale.ROOT, "p50 %d p99 %d max %d %s",
+                getPercentile(50), getPercentile(99), getMax(), unit);
+    }
+}
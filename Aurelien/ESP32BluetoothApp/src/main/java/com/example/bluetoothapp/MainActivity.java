@@ -7,16 +7,27 @@ import android.bluetooth.BluetoothAdapter;
 import android.bluetooth.BluetoothDevice;
 import android.bluetooth.BluetoothManager;
 import android.content.BroadcastReceiver;
+import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
+import android.content.ServiceConnection;
 import android.content.pm.PackageManager;
 import android.graphics.Color;
+import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+import android.text.Editable;
+import android.text.TextUtils;
+import android.text.TextWatcher;
 import android.util.Log;
 import android.view.View;
 import android.widget.Button;
+import android.widget.CheckBox;
+import android.widget.EditText;
 import android.widget.TextView;
 import android.widget.Toast;
 
@@ -32,54 +43,127 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.github.mikephil.charting.charts.LineChart;
 import com.github.mikephil.charting.components.XAxis;
 import com.github.mikephil.charting.components.YAxis;
-import com.github.mikephil.charting.data.Entry;
 import com.github.mikephil.charting.data.LineData;
 import com.github.mikephil.charting.data.LineDataSet;
 import com.github.mikephil.charting.formatter.ValueFormatter;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Date;
-import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.text.SimpleDateFormat;
 import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class MainActivity extends AppCompatActivity implements BluetoothService.BluetoothCallback {
 
     private static final String TAG = "MainActivity";
     private static final int REQUEST_ENABLE_BT = 1;
     private static final int REQUEST_PERMISSIONS = 2;
-    private static final int MAX_DATA_POINTS = 50; // Nombre maximum de points sur le graphique
+    // Historique des graphiques : mémoire hors tas commune aux canaux, le reste sur disque
+    private static final long HISTORY_MEMORY_BUDGET = 24L * 1024 * 1024;
+    private static final int HISTORY_POINTS = 2_160_000; // Par canal, 12 h à 50 Hz
+    private static final long METRICS_REFRESH_MILLIS = 1000;
+    private static final long STATISTICS_TEXT_MILLIS = 1000;
+    private static final String[] WINDOW_LABELS = {"1m", "1h", "24h"};
+    // Durées de la vue longue durée, parcourues par le bouton ; 0 : historique en mémoire
+    private static final long[] SPAN_MILLIS = {0, 3_600_000L, 86_400_000L, 7 * 86_400_000L, 30 * 86_400_000L};
+    private static final String[] SPAN_LABELS = {"Direct", "1 h", "24 h", "7 j", "30 j"};
+    // Adresse affichée fictive d'un export relu : les lots des sessions réelles ne s'y mêlent pas
+    private static final String IMPORT_PREFIX = "import:";
 
     private BluetoothAdapter bluetoothAdapter;
+    // Sessions détenues par le service d'acquisition, accessibles uniquement pendant la liaison
+    private IngestionService ingestionService;
     private BluetoothService bluetoothService;
-    private DeviceAdapter deviceAdapter;
+private DeviceAdapter deviceAdapter;
     private AlertDialog deviceDialog;
     
     private TextView deviceStatusTextView;
+    private TextView debugOverlayTextView;
+    private TextView alertTextView;
     private Button scanButton;
     private Button connectButton;
+    private Button exportSessionButton;
+    private Button importSessionButton;
+    private Button historySpanButton;
+    private int spanIndex;
     private TextView temperatureValueTextView;
     private TextView voltageValueTextView;
     private TextView batteryPercentageTextView;
     private TextView timestampValueTextView;
     private TextView brightnessValueTextView;
+    private TextView statisticsTextView;
+    private TextView pressureValueTextView;
+    private TextView luxValueTextView;
     private LineChart temperatureChart;
     private LineChart voltageChart;
     private LineChart brightnessChart;
     
-    private final List<Entry> temperatureEntries = new ArrayList<>();
-    private final List<Entry> voltageEntries = new ArrayList<>();
-    private final List<Entry> brightnessEntries = new ArrayList<>();
-    private int xIndex = 0;
+    // Historique et décimation de chaque graphique
+    private ChartController temperatureController;
+    private ChartController voltageController;
+    private ChartController brightnessController;
+    // Rendu des graphiques cadencé par image, préparé hors du thread principal
+    private ChartRenderScheduler chartRenderScheduler;
+    private SampleStore historyStore;
     
     private BluetoothDevice selectedDevice;
-    
+    // Filtre de la liste des appareils, conservé d'une recherche à l'autre
+    private String deviceNamePrefix = "ESP32_";
+    private boolean stopDiscoveryOnTarget = true;
+    // Appareil dont les mesures sont affichées ; les autres sessions continuent d'être enregistrées
+    private String displayedDeviceAddress;
+
+    // Copie des statistiques glissantes de l'appareil affiché, réutilisée à chaque lot
+    private final TelemetryStatistics.Snapshot statisticsSnapshot = new TelemetryStatistics.Snapshot();
+    private long lastStatisticsTextMillis;
+    // Alertes levées, par appareil puis nom de règle, dans l'ordre d'arrivée
+    private final Map<String, String> activeAlerts = new LinkedHashMap<>();
+
+    // Export et relecture de sessions, qui peuvent durer plusieurs secondes pour des jours de données
+    private final ExecutorService fileExecutor = Executors.newSingleThreadExecutor();
+
+    // Rafraîchissement de l'affichage des mesures tant qu'il est visible
+    private final Handler metricsHandler = new Handler(Looper.getMainLooper());
+    private final Runnable metricsRefresh = new Runnable() {
+        @Override
+        public void run() {
+            updateDebugOverlay();
+            metricsHandler.postDelayed(this, METRICS_REFRESH_MILLIS);
+        }
+    };
+
+    private final ServiceConnection ingestionConnection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder binder) {
+            ingestionService = ((IngestionService.LocalBinder) binder).getService();
+            bluetoothService = ingestionService.getBluetoothService();
+            ingestionService.subscribe(MainActivity.this);
+            Log.d(TAG, "Abonné au service d'acquisition");
+            restoreDisplayedDevice();
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            ingestionService = null;
+            bluetoothService = null;
+        }
+    };
+
     private final BroadcastReceiver bluetoothReceiver = new BroadcastReceiver() {
         @Override
         public void onReceive(Context context, Intent intent) {
             try {
                 String action = intent.getAction();
-                if (BluetoothDevice.ACTION_FOUND.equals(action)) {
+                if (BluetoothDevice.ACTION_FOUND.equals(action)
+                        || BluetoothDevice.ACTION_NAME_CHANGED.equals(action)) {
                     if (ActivityCompat.checkSelfPermission(MainActivity.this, Manifest.permission.BLUETOOTH_CONNECT) != PackageManager.PERMISSION_GRANTED) {
                         Log.e(TAG, "Permission BLUETOOTH_CONNECT non accordée");
                         return;
@@ -93,8 +177,14 @@ public class MainActivity extends AppCompatActivity implements BluetoothService.
                             device = intent.getParcelableExtra(BluetoothDevice.EXTRA_DEVICE);
                         }
                         
-                        if (device != null && device.getName() != null) {
-                            deviceAdapter.addDevice(device);
+                        if (device != null && deviceAdapter != null) {
+                            String name = intent.getStringExtra(BluetoothDevice.EXTRA_NAME);
+                            if (name == null) {
+                                name = device.getName();
+                            }
+                            int rssi = intent.getShortExtra(BluetoothDevice.EXTRA_RSSI, Short.MIN_VALUE);
+                            deviceAdapter.addOrUpdate(device, name, rssi);
+                            stopDiscoveryOnTarget(device, name);
                         }
                     } catch (SecurityException e) {
                         Log.e(TAG, "SecurityException lors de l'accès au périphérique", e);
@@ -120,6 +210,14 @@ public class MainActivity extends AppCompatActivity implements BluetoothService.
                 }
             });
 
+    private final ActivityResultLauncher<String[]> openExportLauncher = registerForActivityResult(
+            new ActivityResultContracts.OpenDocument(),
+            uri -> {
+                if (uri != null) {
+                    importSession(uri);
+                }
+            });
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -149,7 +247,7 @@ public class MainActivity extends AppCompatActivity implements BluetoothService.
                 Toast.makeText(this, "Erreur d'initialisation de l'interface", Toast.LENGTH_LONG).show();
             }
             
-            // Initialiser l'adaptateur Bluetooth
+// Initialiser l'adaptateur Bluetooth
             try {
                 initializeBluetooth();
             } catch (Exception e) {
@@ -167,13 +265,21 @@ public class MainActivity extends AppCompatActivity implements BluetoothService.
     private void initializeViews() {
         Log.d(TAG, "Initialisation des vues");
         deviceStatusTextView = findViewById(R.id.deviceStatusTextView);
+        debugOverlayTextView = findViewById(R.id.debugOverlayTextView);
+        alertTextView = findViewById(R.id.alertTextView);
         scanButton = findViewById(R.id.scanButton);
         connectButton = findViewById(R.id.connectButton);
+        exportSessionButton = findViewById(R.id.exportSessionButton);
+        importSessionButton = findViewById(R.id.importSessionButton);
+        historySpanButton = findViewById(R.id.historySpanButton);
         temperatureValueTextView = findViewById(R.id.temperatureValueTextView);
         voltageValueTextView = findViewById(R.id.voltageValueTextView);
         batteryPercentageTextView = findViewById(R.id.batteryPercentageTextView);
         timestampValueTextView = findViewById(R.id.timestampValueTextView);
         brightnessValueTextView = findViewById(R.id.brightnessValueTextView);
+        statisticsTextView = findViewById(R.id.statisticsTextView);
+        pressureValueTextView = findViewById(R.id.pressureValueTextView);
+        luxValueTextView = findViewById(R.id.luxValueTextView);
         temperatureChart = findViewById(R.id.temperatureChart);
         voltageChart = findViewById(R.id.voltageChart);
         brightnessChart = findViewById(R.id.brightnessChart);
@@ -184,6 +290,22 @@ public class MainActivity extends AppCompatActivity implements BluetoothService.
         Log.d(TAG, "Configuration des écouteurs de boutons");
         scanButton.setOnClickListener(v -> showDeviceListDialog());
         connectButton.setOnClickListener(v -> connectToDevice());
+        exportSessionButton.setOnClickListener(v -> exportSession());
+        importSessionButton.setOnClickListener(v -> openExportLauncher.launch(new String[]{"*/*"}));
+        historySpanButton.setOnClickListener(v -> {
+            spanIndex = (spanIndex + 1) % SPAN_MILLIS.length;
+            historySpanButton.setText(SPAN_LABELS[spanIndex]);
+            showSpan();
+        });
+        // Appui long sur l'état : affiche ou masque les mesures ; sur les mesures : export JSON
+        deviceStatusTextView.setOnLongClickListener(v -> {
+            toggleDebugOverlay();
+            return true;
+        });
+        debugOverlayTextView.setOnLongClickListener(v -> {
+            exportMetrics();
+            return true;
+        });
         Log.d(TAG, "Écouteurs de boutons configurés");
     }
     
@@ -208,6 +330,25 @@ public class MainActivity extends AppCompatActivity implements BluetoothService.
         checkPermissions();
     }
 
+    @Override
+    protected void onStart() {
+        super.onStart();
+        // Les sessions survivent à l'activité : on se lie au service pour les suivre
+        bindService(new Intent(this, IngestionService.class), ingestionConnection, Context.BIND_AUTO_CREATE);
+    }
+
+    @Override
+    protected void onStop() {
+        // Plus d'abonné : le service continue d'enregistrer sans rien livrer au thread principal
+        if (ingestionService != null) {
+            ingestionService.subscribe(null);
+            ingestionService = null;
+            bluetoothService = null;
+        }
+        unbindService(ingestionConnection);
+        super.onStop();
+    }
+
     @Override
     protected void onResume() {
         super.onResume();
@@ -215,12 +356,11 @@ public class MainActivity extends AppCompatActivity implements BluetoothService.
             Log.d(TAG, "onResume - Enregistrement du récepteur Bluetooth");
             // Enregistrer pour les découvertes d'appareils Bluetooth
             IntentFilter filter = new IntentFilter(BluetoothDevice.ACTION_FOUND);
+            filter.addAction(BluetoothDevice.ACTION_NAME_CHANGED);
             registerReceiver(bluetoothReceiver, filter);
             
-            // Initialiser le service Bluetooth s'il n'est pas déjà initialisé
-            if (bluetoothService == null) {
-                bluetoothService = new BluetoothService(this);
-                Log.d(TAG, "BluetoothService initialisé");
+            if (debugOverlayTextView.getVisibility() == View.VISIBLE) {
+                metricsHandler.post(metricsRefresh);
             }
         } catch (Exception e) {
             Log.e(TAG, "Erreur dans onResume", e);
@@ -242,6 +382,7 @@ public class MainActivity extends AppCompatActivity implements BluetoothService.
             } catch (IllegalArgumentException e) {
                 Log.w(TAG, "Le récepteur n'était pas enregistré", e);
             }
+            metricsHandler.removeCallbacks(metricsRefresh);
         } catch (Exception e) {
             Log.e(TAG, "Erreur dans onPause", e);
         }
@@ -250,15 +391,13 @@ public class MainActivity extends AppCompatActivity implements BluetoothService.
 
     @Override
     protected void onDestroy() {
-        try {
-            Log.d(TAG, "onDestroy - Nettoyage des ressources");
-            // Arrêter le service Bluetooth
-            if (bluetoothService != null) {
-                bluetoothService.stop();
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "Erreur dans onDestroy", e);
+        if (chartRenderScheduler != null) {
+            chartRenderScheduler.release();
         }
+        if (historyStore != null) {
+            historyStore.close();
+        }
+        fileExecutor.shutdown();
         super.onDestroy();
     }
 
@@ -267,9 +406,11 @@ public class MainActivity extends AppCompatActivity implements BluetoothService.
             Log.d(TAG, "Vérification des permissions, SDK: " + Build.VERSION.SDK_INT);
             // Pour Android 13 (API 33) et plus récent
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+                // Sans POST_NOTIFICATIONS, la notification d'acquisition et les alertes sont masquées
                 String[] permissions = {
                         Manifest.permission.BLUETOOTH_SCAN,
-                        Manifest.permission.BLUETOOTH_CONNECT
+                        Manifest.permission.BLUETOOTH_CONNECT,
+                        Manifest.permission.POST_NOTIFICATIONS
                 };
                 
                 boolean allGranted = true;
@@ -353,7 +494,9 @@ public class MainActivity extends AppCompatActivity implements BluetoothService.
                     Log.d(TAG, "Permission " + permissions[i] + ": " + 
                           (grantResults[i] == PackageManager.PERMISSION_GRANTED ? "GRANTED" : "DENIED"));
                     
-                    if (grantResults[i] != PackageManager.PERMISSION_GRANTED) {
+                    // Les notifications sont facultatives : le Bluetooth fonctionne sans
+                    if (grantResults[i] != PackageManager.PERMISSION_GRANTED
+                            && !Manifest.permission.POST_NOTIFICATIONS.equals(permissions[i])) {
                         allGranted = false;
                     }
                 }
@@ -409,16 +552,25 @@ public class MainActivity extends AppCompatActivity implements BluetoothService.
 
     private void setupCharts() {
         // Configuration du graphique de température
-        setupChart(temperatureChart, "Température (°C)", Color.RED, 0, 50);
+        LineDataSet temperatureDataSet = setupChart(temperatureChart, "Température (°C)", Color.RED, 0, 50);
         
         // Configuration du graphique de tension
-        setupChart(voltageChart, "Tension (V)", Color.BLUE, 0, 15);
+        LineDataSet voltageDataSet = setupChart(voltageChart, "Tension (V)", Color.BLUE, 0, 15);
         
         // Configuration du graphique de luminosité
-        setupChart(brightnessChart, "Luminosité (lux)", Color.YELLOW, 0, 1000);
+        LineDataSet brightnessDataSet = setupChart(brightnessChart, "Luminosité (lux)", Color.YELLOW, 0, 1000);
+
+        chartRenderScheduler = new ChartRenderScheduler(getWindow().getDecorView());
+        historyStore = new SampleStore(new File(getCacheDir(), "history"), HISTORY_MEMORY_BUDGET, HISTORY_POINTS);
+        temperatureController = new ChartController(temperatureChart, temperatureDataSet,
+                historyStore.series("temperature"), chartRenderScheduler);
+        voltageController = new ChartController(voltageChart, voltageDataSet,
+                historyStore.series("voltage"), chartRenderScheduler);
+        brightnessController = new ChartController(brightnessChart, brightnessDataSet,
+                historyStore.series("brightness"), chartRenderScheduler);
     }
 
-    private void setupChart(LineChart chart, String label, int color, float minY, float maxY) {
+    private LineDataSet setupChart(LineChart chart, String label, int color, float minY, float maxY) {
         chart.getDescription().setEnabled(false);
         chart.setTouchEnabled(true);
         chart.setDragEnabled(true);
@@ -454,44 +606,14 @@ public class MainActivity extends AppCompatActivity implements BluetoothService.
         dataSet.setDrawCircleHole(false);
         dataSet.setValueTextSize(9f);
         dataSet.setDrawValues(false);
-        dataSet.setMode(LineDataSet.Mode.CUBIC_BEZIER);
+        // Tracé linéaire sans cercles : les courbes de Bézier coûtent cher sur des milliers de points
+        dataSet.setDrawCircles(false);
+        dataSet.setMode(LineDataSet.Mode.LINEAR);
         
         LineData lineData = new LineData(dataSet);
         chart.setData(lineData);
         chart.invalidate();
-    }
-
-    private void updateChart(LineChart chart, List<Entry> entries, float newValue) {
-        LineData data = chart.getData();
-        
-        if (data != null) {
-            LineDataSet set = (LineDataSet) data.getDataSetByIndex(0);
-            
-            if (set == null) {
-                return;
-            }
-            
-            // Ajouter les nouvelles données
-            entries.add(new Entry(xIndex, newValue));
-            
-            // Limiter le nombre de points affichés
-            if (entries.size() > MAX_DATA_POINTS) {
-                entries.remove(0);
-                
-                // Ajuster les valeurs X pour les entrées restantes
-                for (int i = 0; i < entries.size(); i++) {
-                    Entry e = entries.get(i);
-                    entries.set(i, new Entry(i, e.getY()));
-                }
-            }
-            
-            set.setValues(entries);
-            data.notifyDataChanged();
-            chart.notifyDataSetChanged();
-            chart.setVisibleXRangeMaximum(MAX_DATA_POINTS);
-            chart.moveViewToX(entries.size() - 1);
-            chart.invalidate();
-        }
+        return dataSet;
     }
 
     private void showDeviceListDialog() {
@@ -502,16 +624,42 @@ public class MainActivity extends AppCompatActivity implements BluetoothService.
             
             RecyclerView deviceRecyclerView = dialogView.findViewById(R.id.deviceRecyclerView);
             Button scanAgainButton = dialogView.findViewById(R.id.scanAgainButton);
+            EditText deviceFilterEditText = dialogView.findViewById(R.id.deviceFilterEditText);
+            CheckBox stopOnTargetCheckBox = dialogView.findViewById(R.id.stopOnTargetCheckBox);
             
             deviceAdapter = new DeviceAdapter(device -> {
                 selectedDevice = device;
                 deviceDialog.dismiss();
                 connectButton.setEnabled(true);
+                showDevice(device.getAddress());
                 deviceStatusTextView.setText(String.format("Appareil sélectionné: %s", device.getName()));
-            });
+                connectButton.setText(bluetoothService == null
+                        || bluetoothService.getState(device.getAddress()) == BluetoothService.STATE_NONE
+                        ? R.string.connect : R.string.disconnect);
+});
+            deviceAdapter.setNamePrefix(deviceNamePrefix);
             
             deviceRecyclerView.setLayoutManager(new LinearLayoutManager(this));
             deviceRecyclerView.setAdapter(deviceAdapter);
+
+            deviceFilterEditText.setText(deviceNamePrefix);
+            deviceFilterEditText.addTextChangedListener(new TextWatcher() {
+                @Override
+                public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+                }
+
+                @Override
+                public void onTextChanged(CharSequence s, int start, int before, int count) {
+                }
+
+                @Override
+                public void afterTextChanged(Editable s) {
+                    deviceNamePrefix = s.toString().trim();
+                    deviceAdapter.setNamePrefix(deviceNamePrefix);
+                }
+            });
+            stopOnTargetCheckBox.setChecked(stopDiscoveryOnTarget);
+            stopOnTargetCheckBox.setOnCheckedChangeListener((button, checked) -> stopDiscoveryOnTarget = checked);
             
             scanAgainButton.setOnClickListener(v -> startDiscovery());
             
@@ -561,6 +709,22 @@ public class MainActivity extends AppCompatActivity implements BluetoothService.
         }
     }
     
+    /**
+     * Arrête la découverte dès qu'une cible connue apparaît (dernier appareil choisi, ou nom
+     * correspondant au filtre) : la découverte occupe la radio et ralentit la connexion qui suit.
+     */
+    private void stopDiscoveryOnTarget(BluetoothDevice device, String name) {
+        if (!stopDiscoveryOnTarget || !bluetoothAdapter.isDiscovering()) {
+            return;
+        }
+        boolean known = selectedDevice != null && selectedDevice.getAddress().equals(device.getAddress());
+        boolean matching = !deviceNamePrefix.isEmpty() && deviceAdapter.matchesPrefix(name);
+        if (known || matching) {
+            Log.d(TAG, "Cible trouvée (" + device.getAddress() + "), arrêt de la découverte");
+            bluetoothAdapter.cancelDiscovery();
+        }
+    }
+
     private void connectToDevice() {
         try {
             if (selectedDevice == null) {
@@ -578,21 +742,103 @@ public class MainActivity extends AppCompatActivity implements BluetoothService.
                 bluetoothAdapter.cancelDiscovery();
             }
             
-            // Connexion à l'appareil
+            if (ingestionService == null) {
+                Log.w(TAG, "Service d'acquisition pas encore lié");
+                return;
+            }
+
+            // Le bouton déconnecte l'appareil sélectionné s'il a déjà une session
+            String address = selectedDevice.getAddress();
+            if (bluetoothService.getState(address) != BluetoothService.STATE_NONE) {
+                Log.d(TAG, "Déconnexion de l'appareil: " + selectedDevice.getName());
+                bluetoothService.disconnect(address);
+                return;
+            }
+
+            // Connexion à l'appareil, les autres sessions restent ouvertes
             Log.d(TAG, "Connexion à l'appareil: " + selectedDevice.getName());
-            bluetoothService.connect(selectedDevice);
-        } catch (Exception e) {
+            showDevice(address);
+            ingestionService.connect(selectedDevice);
+} catch (Exception e) {
             Log.e(TAG, "Erreur lors de la connexion à l'appareil", e);
             Toast.makeText(this, "Erreur de connexion", Toast.LENGTH_SHORT).show();
         }
     }
     
+    // Change l'appareil affiché ; les graphiques repartent de zéro
+    private void showDevice(String address) {
+        if (address.equals(displayedDeviceAddress)) {
+            return;
+        }
+        displayedDeviceAddress = address;
+        if (temperatureController != null) {
+            temperatureController.clear();
+            voltageController.clear();
+            brightnessController.clear();
+            setRollupSources(address);
+            if (SPAN_MILLIS[spanIndex] > 0) {
+                showSpan();
+            }
+        }
+        statisticsTextView.setText("--");
+        lastStatisticsTextMillis = 0;
+    }
+
+    private void setRollupSources(String address) {
+        // Les sessions importées n'ont pas d'agrégats
+        File rollups = bluetoothService == null || address.startsWith(IMPORT_PREFIX)
+                ? null : bluetoothService.getRollupDirectory(address);
+        temperatureController.setRollupSource(rollups, ChannelRegistry.TEMPERATURE);
+        voltageController.setRollupSource(rollups, ChannelRegistry.VOLTAGE);
+        brightnessController.setRollupSource(rollups, ChannelRegistry.BRIGHTNESS);
+    }
+
+    // Vue longue durée des graphiques, lue dans les agrégats de l'appareil affiché
+    private void showSpan() {
+        long span = SPAN_MILLIS[spanIndex];
+        temperatureController.showSpan(span);
+        voltageController.showSpan(span);
+        brightnessController.showSpan(span);
+    }
+
+    // Au retour au premier plan, reprend l'appareil affiché ou la première session encore ouverte
+    private void restoreDisplayedDevice() {
+        String address = displayedDeviceAddress;
+        if (address == null) {
+            if (bluetoothService.getDeviceAddresses().isEmpty()) {
+                return;
+            }
+            address = bluetoothService.getDeviceAddresses().get(0);
+            showDevice(address);
+        } else if (temperatureController != null) {
+            // Appareil choisi avant la liaison au service : ses agrégats n'étaient pas connus
+            setRollupSources(address);
+        }
+        if (address.startsWith(IMPORT_PREFIX)) {
+            // Session importée : pas d'appareil ni de connexion à reprendre
+            return;
+        }
+        if (selectedDevice == null && bluetoothAdapter != null) {
+            // Activité recréée : le bouton doit pouvoir déconnecter la session reprise
+            selectedDevice = bluetoothAdapter.getRemoteDevice(address);
+            connectButton.setEnabled(true);
+        }
+        onConnectionStateChanged(address, bluetoothService.getState(address));
+    }
+
+    private boolean isDisplayed(String deviceAddress) {
+        return deviceAddress.equals(displayedDeviceAddress);
+    }
+
     // Implémentations de BluetoothCallback
-    
+
     @Override
-    public void onConnectionStateChanged(int state) {
+    public void onConnectionStateChanged(String deviceAddress, int state) {
         try {
-            Log.d(TAG, "État de connexion changé: " + state);
+            Log.d(TAG, "État de connexion changé: " + deviceAddress + " -> " + state);
+            if (!isDisplayed(deviceAddress)) {
+                return;
+            }
             switch (state) {
                 case BluetoothService.STATE_NONE:
                     deviceStatusTextView.setText(R.string.no_device);
@@ -601,6 +847,12 @@ public class MainActivity extends AppCompatActivity implements BluetoothService.
                 case BluetoothService.STATE_CONNECTING:
                     deviceStatusTextView.setText("Connexion en cours...");
                     break;
+                case BluetoothService.STATE_RECONNECTING:
+                    deviceStatusTextView.setText("Liaison perdue, reconnexion...");
+                    break;
+                case BluetoothService.STATE_CLOSING:
+                    deviceStatusTextView.setText("Déconnexion...");
+                    break;
                 case BluetoothService.STATE_CONNECTED:
                     if (selectedDevice != null && ActivityCompat.checkSelfPermission(this, Manifest.permission.BLUETOOTH_CONNECT) == PackageManager.PERMISSION_GRANTED) {
                         deviceStatusTextView.setText(getString(R.string.connected_to, selectedDevice.getName()));
@@ -614,31 +866,255 @@ public class MainActivity extends AppCompatActivity implements BluetoothService.
     }
     
     @Override
-    public void onDataReceived(float temperature, float voltage, int batteryPercentage, String timestamp, float brightness) {
-        xIndex++;
-        Log.d(TAG, "Données reçues - Temp: " + temperature + "°C, Tension: " + voltage + "V, Batterie: " + batteryPercentage + "%, Luminosité: " + brightness + " lux, Heure: " + timestamp);
+    public void onSamplesReceived(String deviceAddress, SampleBatch batch) {
+        if (!isDisplayed(deviceAddress)) {
+            return;
+        }
+        if (batch.getDroppedCount() > 0) {
+            Log.w(TAG, "Échantillons perdus (affichage en retard): " + batch.getDroppedCount());
+        }
 
-        temperatureValueTextView.setText(String.format("%.1f °C", temperature));
-        voltageValueTextView.setText(String.format("%.2f V", voltage));
-        batteryPercentageTextView.setText(String.format("%d%%", batteryPercentage));
-        
-        // Affichage de l'horodatage provenant de l'ESP32
-        timestampValueTextView.setText(timestamp);
-        
-        // Affichage de la luminosité provenant de l'ESP32
-        brightnessValueTextView.setText(String.format("%.0f lux", brightness));
+        for (int i = 0; i < batch.size(); i++) {
+            // Heure de mesure recalée sur l'horloge de la carte, pas l'heure de lecture
+            long timestamp = Math.floorDiv(batch.getTimestampNanos(i), 1_000_000L);
+            if (batch.isGap(i)) {
+                temperatureController.markGap(timestamp);
+                voltageController.markGap(timestamp);
+                brightnessController.markGap(timestamp);
+                continue;
+            }
+            temperatureController.append(timestamp, batch.get(i, ChannelRegistry.TEMPERATURE));
+            voltageController.append(timestamp, batch.get(i, ChannelRegistry.VOLTAGE));
+            brightnessController.append(timestamp, batch.get(i, ChannelRegistry.BRIGHTNESS));
+        }
+        updateStatistics(deviceAddress);
+        updateCharts();
+        recordRenderLatency(deviceAddress, batch);
 
-        updateChart(temperatureChart, temperatureEntries, temperature);
-        updateChart(voltageChart, voltageEntries, voltage);
-        updateChart(brightnessChart, brightnessEntries, brightness);
+        // Les valeurs affichées sont celles du dernier échantillon du lot
+        int last = batch.size() - 1;
+        while (last >= 0 && batch.isGap(last)) {
+            last--;
+        }
+        if (last < 0) {
+            return;
+        }
+        temperatureValueTextView.setText(String.format("%.1f °C", batch.get(last, ChannelRegistry.TEMPERATURE)));
+        voltageValueTextView.setText(String.format("%.2f V", batch.get(last, ChannelRegistry.VOLTAGE)));
+        batteryPercentageTextView.setText(String.format("%d%%", (int) batch.get(last, ChannelRegistry.BATTERY)));
+        timestampValueTextView.setText(TelemetrySample.formatLocalTime(batch.getTimestampNanos(last)));
+        brightnessValueTextView.setText(String.format("%.0f lux", batch.get(last, ChannelRegistry.BRIGHTNESS)));
+        // Capteurs optionnels : la valeur n'est affichée que si le firmware l'envoie
+        if (batch.has(last, ChannelRegistry.PRESSURE)) {
+            pressureValueTextView.setText(String.format("%.1f hPa", batch.get(last, ChannelRegistry.PRESSURE)));
+        }
+        if (batch.has(last, ChannelRegistry.LUX)) {
+            luxValueTextView.setText(String.format("%.1f lx", batch.get(last, ChannelRegistry.LUX)));
+        }
     }
-    
+
+    // Échelle des graphiques et texte des statistiques, sans parcourir l'historique
+    private void updateStatistics(String deviceAddress) {
+        TelemetryStatistics statistics = bluetoothService.getStatistics(deviceAddress);
+        if (statistics == null) {
+            return;
+        }
+        statistics.copyTo(statisticsSnapshot);
+        scaleChart(temperatureController, ChannelRegistry.TEMPERATURE);
+        scaleChart(voltageController, ChannelRegistry.VOLTAGE);
+        scaleChart(brightnessController, ChannelRegistry.BRIGHTNESS);
+
+        long now = System.currentTimeMillis();
+        if (now - lastStatisticsTextMillis < STATISTICS_TEXT_MILLIS) {
+            return;
+        }
+        lastStatisticsTextMillis = now;
+        ChannelRegistry registry = bluetoothService.getChannelRegistry();
+        StringBuilder text = new StringBuilder();
+        int channels = Math.min(registry.getChannelCount(), statisticsSnapshot.getChannelCount());
+        for (int channel = 0; channel < channels; channel++) {
+            if (registry.isDefined(channel)) {
+                appendStatistics(text, registry.getKey(channel), channel);
+            }
+        }
+        statisticsTextView.setText(text);
+    }
+
+    private void scaleChart(ChartController controller, int channel) {
+        int window = TelemetryStatistics.windowCovering(controller.getHistorySpanMillis());
+        if (window >= 0 && channel < statisticsSnapshot.getChannelCount()) {
+            controller.setValueRange(statisticsSnapshot.getMin(channel, window),
+                    statisticsSnapshot.getMax(channel, window));
+        }
+    }
+
+    private void appendStatistics(StringBuilder text, String label, int channel) {
+        for (int window = 0; window < TelemetryStatistics.WINDOW_COUNT; window++) {
+            if (statisticsSnapshot.getCount(channel, window) == 0) {
+                continue;
+            }
+            if (text.length() > 0) {
+                text.append('\n');
+            }
+            text.append(String.format(Locale.getDefault(), "%-3s %-3s min %.2f max %.2f moy %.2f σ %.2f ewma %.2f",
+                    label, WINDOW_LABELS[window],
+                    statisticsSnapshot.getMin(channel, window), statisticsSnapshot.getMax(channel, window),
+                    statisticsSnapshot.getMean(channel, window), statisticsSnapshot.getStdDev(channel, window),
+                    statisticsSnapshot.getEwma(channel, window)));
+        }
+    }
+
+    // Latence de bout en bout, une fois les graphiques mis à jour
+    private void recordRenderLatency(String deviceAddress, SampleBatch batch) {
+        IngestionMetrics metrics = bluetoothService.getMetrics(deviceAddress);
+        if (metrics == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < batch.size(); i++) {
+            if (!batch.isGap(i)) {
+                metrics.onRendered(batch.getReceivedAtMillis(i), batch.getTimestampNanos(i), now);
+            }
+        }
+    }
+
+    private void toggleDebugOverlay() {
+        if (debugOverlayTextView.getVisibility() == View.VISIBLE) {
+            debugOverlayTextView.setVisibility(View.GONE);
+            metricsHandler.removeCallbacks(metricsRefresh);
+        } else {
+            debugOverlayTextView.setVisibility(View.VISIBLE);
+            metricsHandler.removeCallbacks(metricsRefresh);
+            metricsHandler.post(metricsRefresh);
+        }
+    }
+
+    private void updateDebugOverlay() {
+        IngestionMetrics metrics = displayedDeviceAddress != null && bluetoothService != null
+                ? bluetoothService.getMetrics(displayedDeviceAddress) : null;
+        String rendering = chartRenderScheduler != null ? "\n" + chartRenderScheduler.summary() : "";
+        if (metrics == null) {
+            debugOverlayTextView.setText("Aucune session" + rendering);
+            return;
+        }
+        debugOverlayTextView.setText(metrics.summary() + "\nen attente      "
+                + bluetoothService.getPendingDeliveries(displayedDeviceAddress) + rendering);
+    }
+
+    // Écrit les mesures de toutes les sessions dans le dossier de l'application
+    private void exportMetrics() {
+        if (bluetoothService == null) {
+            return;
+        }
+        File file = new File(getExternalFilesDir(null), "metrics-" + System.currentTimeMillis() + ".json");
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(bluetoothService.dumpMetricsJson().getBytes(StandardCharsets.UTF_8));
+            Toast.makeText(this, "Mesures exportées: " + file.getName(), Toast.LENGTH_SHORT).show();
+        } catch (IOException e) {
+            Log.e(TAG, "Impossible d'exporter les mesures", e);
+            Toast.makeText(this, "Échec de l'export des mesures", Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    // Exporte le journal de l'appareil affiché au format compressé, dans le dossier de l'application
+    private void exportSession() {
+        String address = displayedDeviceAddress;
+        if (bluetoothService == null || address == null || address.startsWith(IMPORT_PREFIX)) {
+            Toast.makeText(this, "Aucun appareil à exporter", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        BluetoothService service = bluetoothService;
+        File file = new File(getExternalFilesDir(null),
+                "session-" + address.replace(':', '_') + "-" + System.currentTimeMillis() + ".tlz");
+        fileExecutor.execute(() -> {
+            try {
+                long samples = service.exportRecording(address, file);
+                String message = String.format(Locale.ROOT, "%d échantillons exportés: %s (%d Ko)",
+                        samples, file.getName(), file.length() / 1024);
+                runOnUiThread(() -> Toast.makeText(this, message, Toast.LENGTH_LONG).show());
+            } catch (IOException e) {
+                Log.e(TAG, "Impossible d'exporter la session", e);
+                runOnUiThread(() -> Toast.makeText(this, "Échec de l'export de la session", Toast.LENGTH_SHORT).show());
+            }
+        });
+    }
+
+    // Affiche un export dans les graphiques à la place de l'appareil ; la lecture se fait en flux
+    private void importSession(Uri uri) {
+        String address = IMPORT_PREFIX + uri.getLastPathSegment();
+        showDevice(address);
+        deviceStatusTextView.setText("Lecture de l'export...");
+        fileExecutor.execute(() -> {
+            long samples;
+            try (InputStream in = getContentResolver().openInputStream(uri);
+                 CompressedSessionReader reader = new CompressedSessionReader(in)) {
+                // Les contrôleurs acceptent les ajouts hors du thread principal et font attendre
+                // la lecture quand leur tampon est plein : l'export passe par morceaux
+                samples = reader.readAll(sample -> {
+                    long timestamp = sample.getTimestampMillis();
+                    if (sample.isGap()) {
+                        // Dans l'ordre du flux, après les points qui la précèdent
+                        runOnUiThread(() -> {
+                            if (isDisplayed(address)) {
+                                temperatureController.markGap(timestamp);
+                                voltageController.markGap(timestamp);
+                                brightnessController.markGap(timestamp);
+                            }
+                        });
+                        return;
+                    }
+                    temperatureController.append(timestamp, sample.get(ChannelRegistry.TEMPERATURE));
+                    voltageController.append(timestamp, sample.get(ChannelRegistry.VOLTAGE));
+                    brightnessController.append(timestamp, sample.get(ChannelRegistry.BRIGHTNESS));
+                });
+            } catch (IOException e) {
+                Log.e(TAG, "Export illisible: " + uri, e);
+                runOnUiThread(() -> Toast.makeText(this, "Export illisible", Toast.LENGTH_SHORT).show());
+                return;
+            }
+            long count = samples;
+            runOnUiThread(() -> {
+                if (!isDisplayed(address)) {
+                    return;
+                }
+                updateCharts();
+                deviceStatusTextView.setText(String.format(Locale.ROOT, "Export: %d échantillons", count));
+            });
+        });
+    }
+
+    // Simple demande : le rendu a lieu à la prochaine image, pour les graphiques visibles
+    private void updateCharts() {
+        temperatureController.refresh();
+        voltageController.refresh();
+        brightnessController.refresh();
+    }
+
+    @Override
+    public void onAlertChanged(String deviceAddress, AlertRule rule, boolean raised, float value) {
+        String key = deviceAddress + "/" + rule.getName();
+        if (raised) {
+            activeAlerts.put(key, String.format(Locale.ROOT, "%s (%s) : %.1f", rule.getName(), deviceAddress, value));
+        } else {
+            activeAlerts.remove(key);
+        }
+        if (activeAlerts.isEmpty()) {
+            alertTextView.setVisibility(View.GONE);
+            return;
+        }
+        alertTextView.setText(TextUtils.join("\n", activeAlerts.values()));
+        alertTextView.setVisibility(View.VISIBLE);
+    }
+
     @Override
-    public void onConnectionFailed() {
+    public void onConnectionFailed(String deviceAddress) {
         try {
-            Log.e(TAG, "Échec de la connexion Bluetooth");
+            Log.e(TAG, "Échec de la connexion Bluetooth: " + deviceAddress);
             Toast.makeText(this, R.string.connection_failed, Toast.LENGTH_SHORT).show();
-            deviceStatusTextView.setText(R.string.no_device);
+            if (!isDisplayed(deviceAddress)) {
+                return;
+            }
+deviceStatusTextView.setText(R.string.no_device);
             connectButton.setText(R.string.connect);
         } catch (Exception e) {
             Log.e(TAG, "Erreur dans onConnectionFailed", e);
@@ -0,0 +1,66 @@
+package com.example.bluetoothapp;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.view.Choreographer;
+
+/**
+ * Livraison sur le thread principal : Choreographer pour le cadencement par image,
+ * Handler pour les livraisons à intervalle fixe.
+ */
+public class MainThreadScheduler implements SampleDispatcher.Scheduler {
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Choreographer choreographer;
+    // Rappel d'image réutilisé tant que la même tâche est planifiée (une seule en pratique)
+    private FrameTask frameTask;
+
+    /**
+     * À construire sur le thread principal pour profiter du Choreographer.
+     */
+    public MainThreadScheduler() {
+        // Le Choreographer est propre au thread : on ne peut l'obtenir que depuis le thread principal
+        this.choreographer = Looper.myLooper() == Looper.getMainLooper() ? Choreographer.getInstance() : null;
+    }
+
+    @Override
+    public boolean postFrame(Runnable task) {
+        if (choreographer == null) {
+            return false;
+        }
+        FrameTask callback;
+        synchronized (this) {
+            if (frameTask == null || frameTask.task != task) {
+                frameTask = new FrameTask(task);
+            }
+            callback = frameTask;
+        }
+        // postFrameCallback peut être appelé depuis n'importe quel thread
+        choreographer.postFrameCallback(callback);
+        return true;
+    }
+
+    @Override
+    public void postDelayed(Runnable task, long delayMillis) {
+        mainHandler.postDelayed(task, delayMillis);
+    }
+
+    @Override
+    public long uptimeMillis() {
+        return SystemClock.uptimeMillis();
+    }
+
+    private static final class FrameTask implements Choreographer.FrameCallback {
+        final Runnable task;
+
+        FrameTask(Runnable task) {
+            this.task = task;
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            task.run();
+        }
+    }
+}
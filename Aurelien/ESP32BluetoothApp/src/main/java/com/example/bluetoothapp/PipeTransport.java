@@ -0,0 +1,203 @@
+package com.example.bluetoothapp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+
+/**
+ * Liaison en mémoire entre l'application et un appareil simulé dans le même processus.
+ * Chaque sens est un tampon circulaire borné : l'écrivain bloque quand il est plein, ce qui
+ * reproduit le contrôle de flux d'un vrai socket sans passer par le noyau.
+ */
+public class PipeTransport implements Transport {
+
+    public static final int DEFAULT_CAPACITY = 64 * 1024;
+
+    private final String address;
+    // Appareil -> application, et application -> appareil
+    private final Pipe downstream;
+    private final Pipe upstream;
+
+    public PipeTransport(String address) {
+        this(address, DEFAULT_CAPACITY);
+    }
+
+    public PipeTransport(String address, int capacity) {
+        this.address = address;
+        this.downstream = new Pipe(capacity);
+        this.upstream = new Pipe(capacity);
+    }
+
+    @Override
+    public String getAddress() {
+        return address;
+    }
+
+    @Override
+    public String getName() {
+        return "pipe:" + address;
+    }
+
+    /**
+     * Rien à établir ; un tube terminé ou fermé ne peut pas être rouvert.
+     */
+    @Override
+    public void connect() throws IOException {
+        if (downstream.isFinished()) {
+            throw new IOException("Liaison terminée");
+        }
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return downstream.input;
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        return upstream.output;
+    }
+
+    /**
+     * Flux sur lequel l'appareil simulé écrit ses données ; le fermer produit une fin de flux.
+     */
+    public OutputStream getDeviceOutputStream() {
+        return downstream.output;
+    }
+
+    /**
+     * Flux sur lequel l'appareil simulé lit ce que l'application envoie.
+     */
+    public InputStream getDeviceInputStream() {
+        return upstream.input;
+    }
+
+    @Override
+    public void close() {
+        downstream.abort();
+        upstream.abort();
+    }
+
+    private static final class Pipe {
+        private final byte[] buffer;
+        // Octets disponibles dans [readPos, readPos + count)
+        private int readPos;
+        private int count;
+        private boolean writerClosed;
+        private boolean aborted;
+
+        final InputStream input = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                byte[] one = new byte[1];
+                return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return Pipe.this.read(b, off, len);
+            }
+
+            @Override
+            public int available() {
+                synchronized (Pipe.this) {
+                    return count;
+                }
+            }
+
+            @Override
+            public void close() {
+                abort();
+            }
+        };
+
+        final OutputStream output = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                Pipe.this.write(b, off, len);
+            }
+
+            @Override
+            public void close() {
+                synchronized (Pipe.this) {
+                    writerClosed = true;
+                    Pipe.this.notifyAll();
+                }
+            }
+        };
+
+        Pipe(int capacity) {
+            this.buffer = new byte[capacity];
+        }
+
+        synchronized int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (count == 0) {
+                if (aborted) {
+                    throw new IOException("Liaison fermée");
+                }
+                if (writerClosed) {
+                    return -1;
+                }
+                await();
+            }
+            if (aborted) {
+                throw new IOException("Liaison fermée");
+            }
+
+            int n = Math.min(len, count);
+            int first = Math.min(n, buffer.length - readPos);
+            System.arraycopy(buffer, readPos, b, off, first);
+            System.arraycopy(buffer, 0, b, off + first, n - first);
+            readPos = (readPos + n) % buffer.length;
+            count -= n;
+            notifyAll();
+            return n;
+        }
+
+        synchronized void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                while (count == buffer.length && !aborted && !writerClosed) {
+                    await();
+                }
+                if (aborted || writerClosed) {
+                    throw new IOException("Liaison fermée");
+                }
+
+                int writePos = (readPos + count) % buffer.length;
+                int n = Math.min(len, Math.min(buffer.length - count, buffer.length - writePos));
+                System.arraycopy(b, off, buffer, writePos, n);
+                count += n;
+                off += n;
+                len -= n;
+                notifyAll();
+            }
+        }
+
+        synchronized boolean isFinished() {
+            return aborted || (writerClosed && count == 0);
+        }
+
+        synchronized void abort() {
+            aborted = true;
+            notifyAll();
+        }
+
+        private void await() throws InterruptedIOException {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+    }
+}
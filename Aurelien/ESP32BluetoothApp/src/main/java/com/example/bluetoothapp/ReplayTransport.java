@@ -0,0 +1,222 @@
+package com.example.bluetoothapp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Liaison qui rejoue une capture de {@link CapturingTransport} : la chaîne de réception voit
+ * les mêmes lectures, découpées aux mêmes endroits, que lors de l'enregistrement.
+ *
+ * Le rythme d'origine est reproduit à {@link #setSpeed N fois} la vitesse, ou le plus vite
+ * possible. Quelle que soit la vitesse, {@link #getClock()} donne l'heure enregistrée de la
+ * lecture en cours : deux rejeux de la même capture datent les échantillons à l'identique.
+ * Une coupure enregistrée fait échouer la lecture, jusqu'au {@link #connect()} suivant ; à la
+ * fin de la capture, la lecture rend -1 et la connexion échoue. Les commandes envoyées par
+ * l'application sont ignorées. Ne dépend pas d'Android.
+ */
+public class ReplayTransport implements Transport {
+
+    // Vitesse du rejeu : aucune attente entre deux lectures
+    public static final double AS_FAST_AS_POSSIBLE = 0;
+
+    private static final long NONE = Long.MIN_VALUE;
+
+    private final String address;
+    private final CaptureReader reader;
+    // Heure enregistrée de la dernière lecture rejouée, lue par l'horloge sur le même thread
+    private volatile long currentMillis;
+    private final Clock clock = new Clock() {
+        @Override
+        public long currentTimeMillis() {
+            return currentMillis;
+        }
+
+        // Horloge monotone rejouée : l'heure enregistrée
+        @Override
+        public long nanoTime() {
+            return currentMillis * 1_000_000L;
+        }
+    };
+    private volatile double speed = 1;
+    private final CountDownLatch closedSignal = new CountDownLatch(1);
+    private volatile boolean closed;
+
+    // Thread de lecture uniquement
+    private int position;
+    private int remaining;
+    private boolean broken;
+    private boolean finished;
+    // Correspondance entre l'heure enregistrée et System.nanoTime, refaite à chaque changement de vitesse
+    private long originMillis = NONE;
+    private long originNanos;
+    private volatile boolean rebase;
+
+    private volatile long replayedBytes;
+    private volatile long breakCount;
+
+    private final InputStream input = new InputStream() {
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return ReplayTransport.this.read(b, off, len);
+        }
+    };
+
+    private final OutputStream output = new OutputStream() {
+        @Override
+        public void write(int b) throws IOException {
+            write(null, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (closed) {
+                throw new IOException("Liaison fermée");
+            }
+        }
+    };
+
+    public ReplayTransport(String address, InputStream capture) throws IOException {
+        this.address = address;
+        this.reader = new CaptureReader(capture);
+    }
+
+    /**
+     * 1 pour le rythme d'origine, N pour N fois plus vite, {@link #AS_FAST_AS_POSSIBLE} sans attente.
+     * Peut changer en cours de rejeu.
+     */
+    public void setSpeed(double speed) {
+        if (!(speed >= 0) || Double.isInfinite(speed)) {
+            throw new IllegalArgumentException("Vitesse de rejeu invalide: " + speed);
+        }
+        this.speed = speed;
+        rebase = true;
+    }
+
+    @Override
+    public String getAddress() {
+        return address;
+    }
+
+    @Override
+    public String getName() {
+        return "replay:" + address;
+    }
+
+    /**
+     * Reprend après une coupure enregistrée ; échoue en fin de capture ou après fermeture.
+     */
+    @Override
+    public void connect() throws IOException {
+        if (closed) {
+            throw new IOException("Liaison fermée");
+        }
+        if (finished) {
+            throw new IOException("Fin de la capture");
+        }
+        broken = false;
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return input;
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        return output;
+    }
+
+    @Override
+    public Clock getClock() {
+        return clock;
+    }
+
+    public long getReplayedBytes() {
+        return replayedBytes;
+    }
+
+    /**
+     * Coupures enregistrées rejouées.
+     */
+    public long getBreakCount() {
+        return breakCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        closedSignal.countDown();
+        reader.close();
+    }
+
+    private int read(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Liaison fermée");
+        }
+        if (broken) {
+            throw new IOException("Coupure enregistrée");
+        }
+        if (len == 0) {
+            return 0;
+        }
+        while (remaining == 0) {
+            if (finished || !reader.next()) {
+                finished = true;
+                return -1;
+            }
+            awaitRecordedTime(reader.getTimeMillis());
+            currentMillis = reader.getTimeMillis();
+            if (reader.isBreak()) {
+                broken = true;
+                breakCount++;
+                throw new IOException("Coupure enregistrée");
+            }
+            position = 0;
+            remaining = reader.getLength();
+        }
+
+        // Un enregistrement plus grand que le tampon de l'appelant est rendu en plusieurs fois
+        int n = Math.min(len, remaining);
+        System.arraycopy(reader.getData(), position, b, off, n);
+        position += n;
+        remaining -= n;
+        replayedBytes += n;
+        return n;
+    }
+
+    private void awaitRecordedTime(long recordedMillis) throws IOException {
+        double currentSpeed = speed;
+        if (currentSpeed == AS_FAST_AS_POSSIBLE) {
+            return;
+        }
+        if (originMillis == NONE || rebase) {
+            rebase = false;
+            originMillis = recordedMillis;
+            originNanos = System.nanoTime();
+            return;
+        }
+        // Cible fixée depuis l'origine : un retard de la chaîne de réception est rattrapé, pas cumulé
+        long target = originNanos + (long) ((recordedMillis - originMillis) * 1_000_000L / currentSpeed);
+        long delay = target - System.nanoTime();
+        if (delay <= 0) {
+            return;
+        }
+        try {
+            if (closedSignal.await(delay, TimeUnit.NANOSECONDS)) {
+                throw new IOException("Liaison fermée");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Rejeu interrompu");
+        }
+    }
+}
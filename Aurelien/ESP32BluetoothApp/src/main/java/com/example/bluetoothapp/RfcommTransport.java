@@ -0,0 +1,86 @@
+package com.example.bluetoothapp;
+
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothSocket;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.UUID;
+
+/**
+ * Liaison Bluetooth classique (profil SPP) avec un ESP32.
+ */
+public class RfcommTransport implements Transport {
+
+    private static final UUID ESP32_UUID = UUID.fromString("00001101-0000-1000-8000-00805F9B34FB"); // UUID standard SPP
+
+    private final BluetoothAdapter bluetoothAdapter;
+    private final BluetoothDevice device;
+    private volatile BluetoothSocket socket;
+    private volatile boolean closed;
+
+    public RfcommTransport(BluetoothAdapter bluetoothAdapter, BluetoothDevice device) {
+        this.bluetoothAdapter = bluetoothAdapter;
+        this.device = device;
+    }
+
+    @Override
+    public String getAddress() {
+        return device.getAddress();
+    }
+
+    @Override
+    public String getName() {
+        return device.getName();
+    }
+
+    @Override
+    public void connect() throws IOException {
+        // Un BluetoothSocket ne se reconnecte pas : nouveau socket à chaque tentative
+        BluetoothSocket old = socket;
+        if (old != null) {
+            old.close();
+        }
+        BluetoothSocket tmp = device.createRfcommSocketToServiceRecord(ESP32_UUID);
+        socket = tmp;
+        if (closed) {
+            tmp.close();
+            throw new IOException("Liaison fermée");
+        }
+
+        // Toujours annuler la découverte car elle ralentit une connexion
+        bluetoothAdapter.cancelDiscovery();
+
+        // Établir la connexion au BluetoothSocket
+        tmp.connect();
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return requireSocket().getInputStream();
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        return requireSocket().getOutputStream();
+    }
+
+    private BluetoothSocket requireSocket() throws IOException {
+        BluetoothSocket current = socket;
+        if (current == null) {
+            throw new IOException("Liaison non établie");
+        }
+        return current;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        BluetoothSocket current = socket;
+        if (current != null) {
+            current.close();
+        }
+    }
+}
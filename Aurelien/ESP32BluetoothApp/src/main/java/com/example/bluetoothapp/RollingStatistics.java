@@ -0,0 +1,265 @@
+package com.example.bluetoothapp;
+
+/**
+ * Statistiques glissantes d'un canal (min, max, moyenne, écart type, EWMA) sur plusieurs
+ * fenêtres de temps à la fois, en O(1) amorti par échantillon et en mémoire bornée.
+ *
+ * Chaque fenêtre est découpée en {@link #PANES} tranches de même durée. L'échantillon met à jour
+ * la tranche courante (Welford) ; quand une tranche se ferme, elle est fusionnée dans l'agrégat
+ * de la fenêtre (formule de Chan) et entre dans les files monotones du min et du max ; quand elle
+ * sort de la fenêtre, elle en est retirée de la même façon. La fenêtre couvre donc entre sa durée
+ * et sa durée plus une tranche : une minute à la seconde près, un jour à 24 minutes près.
+ * Pas thread-safe : voir {@link TelemetryStatistics}.
+ */
+public class RollingStatistics {
+
+    public static final int PANES = 60;
+
+    private final Window[] windows;
+
+    public RollingStatistics(long... windowMillis) {
+        windows = new Window[windowMillis.length];
+        for (int i = 0; i < windowMillis.length; i++) {
+            windows[i] = new Window(windowMillis[i]);
+        }
+    }
+
+    public void add(long timestampMillis, double value) {
+        for (Window window : windows) {
+            window.add(timestampMillis, value);
+        }
+    }
+
+    public void clear() {
+        for (Window window : windows) {
+            window.clear();
+        }
+    }
+
+    public int getWindowCount() {
+        return windows.length;
+    }
+
+    public Window getWindow(int index) {
+        return windows[index];
+    }
+
+    /**
+     * Une fenêtre de durée fixe.
+     */
+    public static final class Window {
+        // Une tranche de plus que la fenêtre : la tranche courante, encore ouverte
+        private static final int CAPACITY = PANES + 1;
+
+        private final long lengthMillis;
+        private final long paneMillis;
+
+        // Tranches fermées encore dans la fenêtre, de la plus ancienne à la plus récente
+        private final long[] paneId = new long[CAPACITY];
+        private final long[] paneCount = new long[CAPACITY];
+        private final double[] paneMean = new double[CAPACITY];
+        private final double[] paneM2 = new double[CAPACITY];
+        private final double[] paneMin = new double[CAPACITY];
+        private final double[] paneMax = new double[CAPACITY];
+        private int head;
+        private int size;
+
+        // Files monotones (positions dans les tableaux ci-dessus) : min croissants, max décroissants
+        private final int[] minQueue = new int[CAPACITY];
+        private final int[] maxQueue = new int[CAPACITY];
+        private int minHead;
+        private int minSize;
+        private int maxHead;
+        private int maxSize;
+
+        // Agrégat des tranches fermées
+        private long closedCount;
+        private double closedMean;
+        private double closedM2;
+
+        // Tranche courante
+        private long currentId = Long.MIN_VALUE;
+        private long currentCount;
+        private double currentMean;
+        private double currentM2;
+        private double currentMin;
+        private double currentMax;
+
+        // Moyenne mobile exponentielle, constante de temps égale à la durée de la fenêtre
+        private double ewma;
+        private long lastTimestamp;
+        private boolean hasEwma;
+
+        Window(long lengthMillis) {
+            this.lengthMillis = lengthMillis;
+            this.paneMillis = Math.max(1, lengthMillis / PANES);
+        }
+
+        void add(long timestampMillis, double value) {
+            long id = Math.floorDiv(timestampMillis, paneMillis);
+            if (id > currentId) {
+                closeCurrent();
+                expire(id);
+                currentId = id;
+            }
+            // Horloge revenue en arrière : l'échantillon compte dans la tranche courante
+
+            currentCount++;
+            double delta = value - currentMean;
+            currentMean += delta / currentCount;
+            currentM2 += delta * (value - currentMean);
+            if (currentCount == 1) {
+                currentMin = value;
+                currentMax = value;
+            } else {
+                currentMin = Math.min(currentMin, value);
+                currentMax = Math.max(currentMax, value);
+            }
+
+            if (!hasEwma) {
+                ewma = value;
+                hasEwma = true;
+            } else if (timestampMillis > lastTimestamp) {
+                double alpha = 1 - Math.exp(-(double) (timestampMillis - lastTimestamp) / lengthMillis);
+                ewma += alpha * (value - ewma);
+            }
+            lastTimestamp = Math.max(lastTimestamp, timestampMillis);
+        }
+
+        void clear() {
+            size = 0;
+            head = 0;
+            minSize = 0;
+            maxSize = 0;
+            closedCount = 0;
+            closedMean = 0;
+            closedM2 = 0;
+            currentId = Long.MIN_VALUE;
+            currentCount = 0;
+            currentMean = 0;
+            currentM2 = 0;
+            hasEwma = false;
+            lastTimestamp = 0;
+        }
+
+        private void closeCurrent() {
+            if (currentCount == 0) {
+                return;
+            }
+            int slot = (head + size) % CAPACITY;
+            size++;
+            paneId[slot] = currentId;
+            paneCount[slot] = currentCount;
+            paneMean[slot] = currentMean;
+            paneM2[slot] = currentM2;
+            paneMin[slot] = currentMin;
+            paneMax[slot] = currentMax;
+
+            // Fusion de Chan
+            long total = closedCount + currentCount;
+            double delta = currentMean - closedMean;
+            closedM2 += currentM2 + delta * delta * closedCount * currentCount / total;
+            closedMean += delta * currentCount / total;
+            closedCount = total;
+
+            while (minSize > 0 && paneMin[minQueue[(minHead + minSize - 1) % CAPACITY]] >= currentMin) {
+                minSize--;
+            }
+            minQueue[(minHead + minSize++) % CAPACITY] = slot;
+            while (maxSize > 0 && paneMax[maxQueue[(maxHead + maxSize - 1) % CAPACITY]] <= currentMax) {
+                maxSize--;
+            }
+            maxQueue[(maxHead + maxSize++) % CAPACITY] = slot;
+
+            currentCount = 0;
+            currentMean = 0;
+            currentM2 = 0;
+        }
+
+        // Retire les tranches sorties de la fenêtre qui se termine par la tranche newId
+        private void expire(long newId) {
+            long oldestKept = newId - PANES;
+            while (size > 0 && paneId[head] < oldestKept) {
+                int slot = head;
+                head = (head + 1) % CAPACITY;
+                size--;
+
+                // Fusion de Chan inversée
+                long remaining = closedCount - paneCount[slot];
+                if (remaining == 0) {
+                    closedCount = 0;
+                    closedMean = 0;
+                    closedM2 = 0;
+                } else {
+                    double remainingMean = (closedMean * closedCount - paneMean[slot] * paneCount[slot]) / remaining;
+                    double delta = paneMean[slot] - remainingMean;
+                    closedM2 -= paneM2[slot] + delta * delta * remaining * paneCount[slot] / closedCount;
+                    closedM2 = Math.max(0, closedM2);
+                    closedMean = remainingMean;
+                    closedCount = remaining;
+                }
+
+                if (minSize > 0 && minQueue[minHead] == slot) {
+                    minHead = (minHead + 1) % CAPACITY;
+                    minSize--;
+                }
+                if (maxSize > 0 && maxQueue[maxHead] == slot) {
+                    maxHead = (maxHead + 1) % CAPACITY;
+                    maxSize--;
+                }
+            }
+        }
+
+        public long getLengthMillis() {
+            return lengthMillis;
+        }
+
+        public long getCount() {
+            return closedCount + currentCount;
+        }
+
+        public double getMin() {
+            double min = minSize > 0 ? paneMin[minQueue[minHead]] : Double.NaN;
+            if (currentCount > 0 && !(min <= currentMin)) {
+                min = currentMin;
+            }
+            return min;
+        }
+
+        public double getMax() {
+            double max = maxSize > 0 ? paneMax[maxQueue[maxHead]] : Double.NaN;
+            if (currentCount > 0 && !(max >= currentMax)) {
+                max = currentMax;
+            }
+            return max;
+        }
+
+        public double getMean() {
+            long total = getCount();
+            if (total == 0) {
+                return Double.NaN;
+            }
+            return closedMean + (currentMean - closedMean) * currentCount / total;
+        }
+
+        /**
+         * Écart type de l'échantillon (n - 1), 0 pour un seul échantillon.
+         */
+        public double getStdDev() {
+            long total = getCount();
+            if (total == 0) {
+                return Double.NaN;
+            }
+            if (total == 1) {
+                return 0;
+            }
+            double delta = currentMean - closedMean;
+            double m2 = closedM2 + currentM2 + delta * delta * closedCount * currentCount / total;
+            return Math.sqrt(Math.max(0, m2) / (total - 1));
+        }
+
+        public double getEwma() {
+            return hasEwma ? ewma : Double.NaN;
+        }
+    }
+}
@@ -0,0 +1,509 @@
+package com.example.bluetoothapp;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Agrégats des canaux d'un appareil (min, max, moyenne, dernière valeur) par seaux de 10 s,
+ * 1 min et 1 h, pour afficher des semaines d'historique sans relire le journal brut.
+ *
+ * Le thread de lecture met à jour les seaux ouverts à chaque échantillon, sans allocation ni
+ * accès disque ; un seau fermé est déposé dans un tampon que le thread d'écriture ajoute à un
+ * fichier par niveau et par canal (enregistrements de taille fixe, triés par début de seau).
+ * Le même thread applique la rétention de chaque niveau, à l'ouverture puis toutes les heures,
+ * en réécrivant le fichier sans ses plus anciens seaux. Les fichiers se relisent avec
+ * {@link #read} pendant l'écriture comme après la session.
+ */
+public class RollupStore implements Closeable {
+
+    // Pas de niveau d'agrégats assez fin : lire l'historique brut
+    public static final int TIER_RAW = -1;
+    public static final int TIER_10_SECONDS = 0;
+    public static final int TIER_MINUTE = 1;
+    public static final int TIER_HOUR = 2;
+    public static final int TIER_COUNT = 3;
+
+    private static final long DAY_MILLIS = 86_400_000L;
+    private static final long[] TIER_MILLIS = {10_000L, 60_000L, 3_600_000L};
+    private static final long[] TIER_RETENTION_MILLIS = {14 * DAY_MILLIS, 90 * DAY_MILLIS, 5 * 365 * DAY_MILLIS};
+
+    // Enregistrement : début du seau (long), min, max, moyenne, dernière valeur (float), nombre (int)
+    static final int RECORD_SIZE = 8 + 4 * 4 + 4;
+    // Entrée du tampon d'écriture : niveau et canal, puis l'enregistrement
+    private static final int STAGED_SIZE = 4 + 4 + RECORD_SIZE;
+    private static final int STAGING_RECORDS = 1024;
+    private static final int READ_RECORDS = 1024;
+    private static final long FLUSH_INTERVAL_MS = 2000;
+    private static final long COMPACT_INTERVAL_MS = 3_600_000L;
+
+    private final File directory;
+    // Canaux suivis, ChannelRegistry.getChannelCount() à l'ouverture
+    private final int channels;
+
+    // Seaux ouverts, indexés par niveau * channels + canal (thread de lecture uniquement)
+    private final long[] bucketStart;
+    private final int[] bucketCount;
+    private final float[] bucketMin;
+    private final float[] bucketMax;
+    private final double[] bucketSum;
+    private final float[] bucketLast;
+
+    // Seaux fermés, échangés entre le thread de lecture et le thread d'écriture
+    private final Object stagingLock = new Object();
+    private ByteBuffer staging = newStaging();
+    private ByteBuffer writing = newStaging();
+
+    // Thread d'écriture uniquement
+    private final FileChannel[] files;
+    private final Thread writerThread;
+    private boolean closed;
+    private long lastCompactMillis;
+
+    private volatile long droppedCount;
+    private volatile IOException lastError;
+
+    private RollupStore(File directory, int channels) {
+        this.directory = directory;
+        this.channels = channels;
+        int slots = TIER_COUNT * channels;
+        bucketStart = new long[slots];
+        bucketCount = new int[slots];
+        bucketMin = new float[slots];
+        bucketMax = new float[slots];
+        bucketSum = new double[slots];
+        bucketLast = new float[slots];
+        files = new FileChannel[slots];
+        Arrays.fill(bucketStart, Long.MIN_VALUE);
+        this.writerThread = new Thread(this::writeLoop, "RollupWriter");
+        this.writerThread.setDaemon(true);
+    }
+
+    /**
+     * Ouvre (ou crée) les agrégats du répertoire et démarre le thread d'écriture.
+     * @param channels canaux suivis, {@link ChannelRegistry#getChannelCount()}
+     */
+    public static RollupStore open(File directory, int channels) throws IOException {
+        if (channels < 1 || channels > ChannelRegistry.MAX_CHANNELS) {
+            throw new IllegalArgumentException("Nombre de canaux invalide: " + channels);
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Impossible de créer " + directory);
+        }
+        RollupStore store = new RollupStore(directory, channels);
+        store.writerThread.start();
+        return store;
+    }
+
+    public static long getTierMillis(int tier) {
+        return TIER_MILLIS[tier];
+    }
+
+    /**
+     * Niveau le plus grossier qui donne encore au moins un seau par pixel sur spanMillis,
+     * ou {@link #TIER_RAW} si la vue est trop courte pour tous les niveaux.
+     */
+    public static int selectTier(long spanMillis, int pixels) {
+        for (int tier = TIER_COUNT - 1; tier >= 0; tier--) {
+            if (TIER_MILLIS[tier] * Math.max(1, pixels) <= spanMillis) {
+                return tier;
+            }
+        }
+        return TIER_RAW;
+    }
+
+    /**
+     * Thread de lecture. Les marqueurs de coupure et les valeurs NaN sont ignorés.
+     */
+    public void add(TelemetrySample sample) {
+        if (sample.isGap()) {
+            return;
+        }
+        long timestamp = sample.getTimestampMillis();
+        for (int mask = sample.getPresentMask(); mask != 0; mask &= mask - 1) {
+            int channel = Integer.numberOfTrailingZeros(mask);
+            if (channel >= channels) {
+                // Canaux d'une table plus large que celle de l'ouverture : pas de seau
+                break;
+            }
+            float value = sample.get(channel);
+            if (Float.isNaN(value)) {
+                continue;
+            }
+            for (int tier = 0; tier < TIER_COUNT; tier++) {
+                int slot = tier * channels + channel;
+                long start = timestamp - Math.floorMod(timestamp, TIER_MILLIS[tier]);
+                // Horloge revenue en arrière : l'échantillon compte dans le seau ouvert
+                if (start > bucketStart[slot]) {
+                    closeBucket(slot);
+                    bucketStart[slot] = start;
+                }
+                if (bucketCount[slot]++ == 0) {
+                    bucketMin[slot] = value;
+                    bucketMax[slot] = value;
+                    bucketSum[slot] = value;
+                } else {
+                    bucketMin[slot] = Math.min(bucketMin[slot], value);
+                    bucketMax[slot] = Math.max(bucketMax[slot], value);
+                    bucketSum[slot] += value;
+                }
+                bucketLast[slot] = value;
+            }
+        }
+    }
+
+    /**
+     * Seaux fermés perdus parce que le thread d'écriture avait pris trop de retard.
+     */
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * Dernière erreur rencontrée par le thread d'écriture, null si aucune.
+     */
+    public IOException getLastError() {
+        return lastError;
+    }
+
+    /**
+     * Ferme les seaux ouverts (ils seront complétés par un second enregistrement de même début
+     * si la session reprend dans le même seau), les écrit et arrête le thread d'écriture.
+     * À appeler depuis le thread de lecture.
+     */
+    @Override
+    public void close() throws IOException {
+        for (int slot = 0; slot < files.length; slot++) {
+            closeBucket(slot);
+        }
+        synchronized (stagingLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            stagingLock.notify();
+        }
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (lastError != null) {
+            throw lastError;
+        }
+    }
+
+    private void closeBucket(int slot) {
+        int count = bucketCount[slot];
+        if (count == 0) {
+            return;
+        }
+        bucketCount[slot] = 0;
+        synchronized (stagingLock) {
+            if (closed || staging.remaining() < STAGED_SIZE) {
+                droppedCount++;
+                return;
+            }
+            staging.putInt(slot / channels);
+            staging.putInt(slot % channels);
+            staging.putLong(bucketStart[slot]);
+            staging.putFloat(bucketMin[slot]);
+            staging.putFloat(bucketMax[slot]);
+            staging.putFloat((float) (bucketSum[slot] / count));
+            staging.putFloat(bucketLast[slot]);
+            staging.putInt(count);
+        }
+    }
+
+    private static ByteBuffer newStaging() {
+        return ByteBuffer.allocate(STAGING_RECORDS * STAGED_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    // --- Thread d'écriture ---
+
+    private void writeLoop() {
+        while (true) {
+            boolean stopping;
+            synchronized (stagingLock) {
+                if (!closed) {
+                    try {
+                        stagingLock.wait(FLUSH_INTERVAL_MS);
+                    } catch (InterruptedException e) {
+                        closed = true;
+                    }
+                }
+                ByteBuffer swap = staging;
+                staging = writing;
+                writing = swap;
+                stopping = closed;
+            }
+
+            try {
+                writeStaged(writing);
+                long now = System.currentTimeMillis();
+                if (!stopping && now - lastCompactMillis >= COMPACT_INTERVAL_MS) {
+                    // Les fichiers sont réécrits : on les rouvrira à la prochaine écriture
+                    closeFiles();
+                    applyRetention(directory, now);
+                    lastCompactMillis = now;
+                }
+            } catch (IOException e) {
+                lastError = e;
+            } finally {
+                writing.clear();
+            }
+
+            if (stopping) {
+                try {
+                    closeFiles();
+                } catch (IOException e) {
+                    lastError = e;
+                }
+                return;
+            }
+        }
+    }
+
+    private void writeStaged(ByteBuffer data) throws IOException {
+        data.flip();
+        boolean written = data.hasRemaining();
+        int limit = data.limit();
+        while (data.position() < limit) {
+            int tier = data.getInt();
+            int channel = data.getInt();
+            FileChannel file = file(tier * channels + channel);
+            data.limit(data.position() + RECORD_SIZE);
+            while (data.hasRemaining()) {
+                file.write(data);
+            }
+            data.limit(limit);
+        }
+        if (written) {
+            for (FileChannel file : files) {
+                if (file != null) {
+                    file.force(false);
+                }
+            }
+        }
+    }
+
+    private FileChannel file(int slot) throws IOException {
+        FileChannel file = files[slot];
+        if (file == null) {
+            file = FileChannel.open(tierFile(directory, slot / channels, slot % channels).toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            // Enregistrement déchiré par une coupure pendant une écriture : on le supprime
+            long size = file.size();
+            long valid = size - size % RECORD_SIZE;
+            if (valid < size) {
+                file.truncate(valid);
+            }
+            file.position(valid);
+            files[slot] = file;
+        }
+        return file;
+    }
+
+    private void closeFiles() throws IOException {
+        for (int slot = 0; slot < files.length; slot++) {
+            if (files[slot] != null) {
+                files[slot].close();
+                files[slot] = null;
+            }
+        }
+    }
+
+    static File tierFile(File directory, int tier, int channel) {
+        return new File(directory, String.format(Locale.ROOT, "%ds_%d.dat", TIER_MILLIS[tier] / 1000, channel));
+    }
+
+    /**
+     * Supprime de chaque fichier les seaux sortis de la rétention de leur niveau. Le fichier est
+     * recopié puis renommé : un lecteur qui l'a déjà ouvert garde l'ancienne version. Tous les
+     * identifiants de canal sont parcourus, y compris ceux d'une table de canaux précédente.
+     */
+    static void applyRetention(File directory, long nowMillis) throws IOException {
+        ByteBuffer key = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+        for (int tier = 0; tier < TIER_COUNT; tier++) {
+            long cutoff = nowMillis - TIER_RETENTION_MILLIS[tier];
+            for (int channel = 0; channel < ChannelRegistry.MAX_CHANNELS; channel++) {
+                File file = tierFile(directory, tier, channel);
+                long records = file.length() / RECORD_SIZE;
+                if (records == 0) {
+                    continue;
+                }
+                File compacted = new File(directory, file.getName() + ".tmp");
+                try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                    long first = lowerBound(in, records, cutoff, key);
+                    if (first == 0) {
+                        continue;
+                    }
+                    try (FileChannel out = FileChannel.open(compacted.toPath(), StandardOpenOption.CREATE,
+                            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                        long position = first * RECORD_SIZE;
+                        long end = records * RECORD_SIZE;
+                        while (position < end) {
+                            position += in.transferTo(position, end - position, out);
+                        }
+                        out.force(true);
+                    }
+                }
+                if (!compacted.renameTo(file)) {
+                    throw new IOException("Impossible de remplacer " + file);
+                }
+            }
+        }
+    }
+
+    // Premier enregistrement dont le début de seau est >= timestamp (recherche dichotomique)
+    private static long lowerBound(FileChannel channel, long records, long timestamp, ByteBuffer key)
+            throws IOException {
+        long low = 0;
+        long high = records;
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            key.clear();
+            key.limit(8);
+            while (key.hasRemaining()) {
+                if (channel.read(key, middle * RECORD_SIZE + key.position()) < 0) {
+                    throw new IOException("Fin de fichier inattendue");
+                }
+            }
+            key.flip();
+            if (key.getLong() < timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Lit dans series les seaux du niveau qui recoupent [fromMillis, toMillis]. Deux
+     * enregistrements de même début (seau interrompu par une fermeture) sont fusionnés. Les seaux
+     * encore ouverts ou pas encore écrits n'y sont pas.
+     * @return le nombre de seaux lus
+     */
+    public static int read(File directory, int tier, int channel, long fromMillis, long toMillis, Series series)
+            throws IOException {
+        series.clear(TIER_MILLIS[tier]);
+        File file = tierFile(directory, tier, channel);
+        try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long records = in.size() / RECORD_SIZE;
+            ByteBuffer buffer = series.buffer;
+            long record = lowerBound(in, records, fromMillis - TIER_MILLIS[tier] + 1, buffer);
+            while (record < records) {
+                buffer.clear();
+                buffer.limit((int) Math.min(READ_RECORDS, records - record) * RECORD_SIZE);
+                long position = record * RECORD_SIZE;
+                while (buffer.hasRemaining()) {
+                    if (in.read(buffer, position + buffer.position()) < 0) {
+                        throw new IOException("Fin de fichier inattendue");
+                    }
+                }
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    long start = buffer.getLong();
+                    if (start > toMillis) {
+                        return series.size;
+                    }
+                    series.add(start, buffer.getFloat(), buffer.getFloat(), buffer.getFloat(),
+                            buffer.getFloat(), buffer.getInt());
+                    record++;
+                }
+            }
+        } catch (NoSuchFileException e) {
+            // Aucun seau encore écrit pour ce canal
+        }
+        return series.size;
+    }
+
+    /**
+     * Seaux relus par {@link #read}, dans l'ordre chronologique. Réutilisable d'une lecture à
+     * l'autre : les tableaux ne grandissent que si nécessaire.
+     */
+    public static final class Series {
+        private final ByteBuffer buffer = ByteBuffer.allocate(READ_RECORDS * RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private long[] starts = new long[256];
+        private float[] min = new float[256];
+        private float[] max = new float[256];
+        private float[] mean = new float[256];
+        private float[] last = new float[256];
+        private int[] count = new int[256];
+        private int size;
+        private long bucketMillis;
+
+        void clear(long bucketMillis) {
+            this.size = 0;
+            this.bucketMillis = bucketMillis;
+        }
+
+        void add(long start, float bucketMin, float bucketMax, float bucketMean, float bucketLast, int bucketCount) {
+            if (size > 0 && starts[size - 1] == start) {
+                int i = size - 1;
+                int total = count[i] + bucketCount;
+                min[i] = Math.min(min[i], bucketMin);
+                max[i] = Math.max(max[i], bucketMax);
+                mean[i] = (float) (((double) mean[i] * count[i] + (double) bucketMean * bucketCount) / total);
+                last[i] = bucketLast;
+                count[i] = total;
+                return;
+            }
+            if (size == starts.length) {
+                int capacity = size * 2;
+                starts = Arrays.copyOf(starts, capacity);
+                min = Arrays.copyOf(min, capacity);
+                max = Arrays.copyOf(max, capacity);
+                mean = Arrays.copyOf(mean, capacity);
+                last = Arrays.copyOf(last, capacity);
+                count = Arrays.copyOf(count, capacity);
+            }
+            starts[size] = start;
+            min[size] = bucketMin;
+            max[size] = bucketMax;
+            mean[size] = bucketMean;
+            last[size] = bucketLast;
+            count[size++] = bucketCount;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public long getBucketMillis() {
+            return bucketMillis;
+        }
+
+        public long getStart(int index) {
+            return starts[index];
+        }
+
+        public float getMin(int index) {
+            return min[index];
+        }
+
+        public float getMax(int index) {
+            return max[index];
+        }
+
+        public float getMean(int index) {
+            return mean[index];
+        }
+
+        public float getLast(int index) {
+            return last[index];
+        }
+
+        public int getCount(int index) {
+            return count[index];
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.bluetoothapp;
+
+/**
+ * Lot d'échantillons accumulés entre deux livraisons au thread principal.
+ * Stockage en tableaux primitifs préalloués, aucune allocation par échantillon.
+ */
+public class SampleBatch {
+
+    // Politiques de regroupement
+    public static final int POLICY_ALL = 0;          // Tous les échantillons (les plus anciens sont perdus si le lot déborde)
+    public static final int POLICY_LATEST = 1;       // Seulement le dernier échantillon
+    public static final int POLICY_MIN_MAX_LAST = 2; // Dernier échantillon + min/max de chaque canal sur l'intervalle
+
+    private final int capacity;
+    // Valeurs par échantillon, ChannelRegistry.getChannelCount()
+    private final int channels;
+    private final float[] values;
+    private final int[] presentMasks;
+    private final int[] timesOfDay;
+    private final long[] receivedAt;
+    private final long[] timestamps;
+    private final float[] minimums;
+    private final float[] maximums;
+
+    // Échantillons stockés dans un anneau [head, head + size)
+    private int head;
+    private int size;
+    private int receivedCount;
+    private int droppedCount;
+
+    public SampleBatch(int capacity, int channels) {
+        this.capacity = capacity;
+        this.channels = channels;
+        this.values = new float[capacity * channels];
+        this.minimums = new float[channels];
+        this.maximums = new float[channels];
+        this.presentMasks = new int[capacity];
+        this.timesOfDay = new int[capacity];
+        this.receivedAt = new long[capacity];
+        this.timestamps = new long[capacity];
+        clear();
+    }
+
+    public void add(TelemetrySample sample, int policy) {
+        receivedCount++;
+
+        // Seuls les canaux présents : le coût ne dépend pas du nombre de canaux déclarés
+        for (int mask = sample.getPresentMask() & ~TelemetrySample.GAP_FLAG; mask != 0; mask &= mask - 1) {
+            int channel = Integer.numberOfTrailingZeros(mask);
+            float value = sample.get(channel);
+            if (value < minimums[channel]) {
+                minimums[channel] = value;
+            }
+            if (value > maximums[channel]) {
+                maximums[channel] = value;
+            }
+        }
+
+        int slot;
+        if (policy != POLICY_ALL) {
+            // Un seul échantillon conservé : le dernier
+            head = 0;
+            size = 1;
+            slot = 0;
+        } else if (size < capacity) {
+            slot = (head + size) % capacity;
+            size++;
+        } else {
+            // Lot plein (thread principal en retard) : on écrase le plus ancien
+            slot = head;
+            head = (head + 1) % capacity;
+            droppedCount++;
+        }
+
+        sample.copyValuesTo(values, slot * channels);
+        presentMasks[slot] = sample.getPresentMask();
+        timesOfDay[slot] = sample.getTimeOfDayMillis();
+        receivedAt[slot] = sample.getReceivedAtMillis();
+        timestamps[slot] = sample.getTimestampNanos();
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+        receivedCount = 0;
+        droppedCount = 0;
+        for (int channel = 0; channel < channels; channel++) {
+            minimums[channel] = Float.POSITIVE_INFINITY;
+            maximums[channel] = Float.NEGATIVE_INFINITY;
+        }
+    }
+
+    /**
+     * Nombre d'échantillons disponibles dans le lot.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Nombre d'échantillons reçus depuis la dernière livraison, y compris ceux regroupés.
+     */
+    public int getReceivedCount() {
+        return receivedCount;
+    }
+
+    public int getDroppedCount() {
+        return droppedCount;
+    }
+
+    public float get(int index, int channel) {
+        return values[slot(index) * channels + channel];
+    }
+
+    public boolean has(int index, int channel) {
+        return (presentMasks[slot(index)] & (1 << channel)) != 0;
+    }
+
+    public boolean isGap(int index) {
+        return (presentMasks[slot(index)] & TelemetrySample.GAP_FLAG) != 0;
+    }
+
+    public int getTimeOfDayMillis(int index) {
+        return timesOfDay[slot(index)];
+    }
+
+    public long getReceivedAtMillis(int index) {
+        return receivedAt[slot(index)];
+    }
+
+    /**
+     * Heure de mesure recalée, voir {@link TelemetrySample#getTimestampNanos()}.
+     */
+    public long getTimestampNanos(int index) {
+        return timestamps[slot(index)];
+    }
+
+    /**
+     * Minimum du canal sur l'intervalle, NaN si le canal n'a pas été reçu.
+     */
+    public float getMin(int channel) {
+        return minimums[channel] == Float.POSITIVE_INFINITY ? Float.NaN : minimums[channel];
+    }
+
+    /**
+     * Maximum du canal sur l'intervalle, NaN si le canal n'a pas été reçu.
+     */
+    public float getMax(int channel) {
+        return maximums[channel] == Float.NEGATIVE_INFINITY ? Float.NaN : maximums[channel];
+    }
+
+    private int slot(int index) {
+        return (head + index) % capacity;
+    }
+}
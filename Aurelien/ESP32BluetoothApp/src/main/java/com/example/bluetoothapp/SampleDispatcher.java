@@ -0,0 +1,166 @@
+package com.example.bluetoothapp;
+
+/**
+ * Étage de livraison des échantillons d'un appareil vers le thread principal.
+ *
+ * Le thread de lecture accumule les échantillons dans un lot ; une seule livraison est
+ * planifiée à la fois, au plus une par image (Choreographer) ou à l'intervalle configuré.
+ * Un flux à 500 Hz ne produit donc qu'environ 60 messages par seconde sur le Looper principal.
+ *
+ * La classe ne dépend pas d'Android : le thread de livraison est fourni par un {@link Scheduler}
+ * ({@link MainThreadScheduler} dans l'application, un exécuteur ordinaire dans les tests JVM).
+ */
+public class SampleDispatcher {
+
+    // Intervalle spécial : une livraison par image affichée
+    public static final long FRAME_PACED = 0;
+
+    private static final int BATCH_CAPACITY = 1024;
+    private static final long FALLBACK_FRAME_MILLIS = 16;
+
+    /**
+     * Destinataire des lots, appelé sur le thread de livraison.
+     */
+    public interface BatchListener {
+        void onSamplesReceived(String deviceAddress, SampleBatch batch);
+    }
+
+    /**
+     * Thread de livraison : exécute les tâches une par une, dans l'ordre.
+     */
+    public interface Scheduler {
+        /**
+         * Exécute la tâche à la prochaine image affichée.
+         * @return faux si le cadencement par image n'est pas disponible
+         */
+        boolean postFrame(Runnable task);
+
+        void postDelayed(Runnable task, long delayMillis);
+
+        long uptimeMillis();
+    }
+
+    private final Scheduler scheduler;
+    // Null quand aucune interface n'est abonnée : les échantillons ne sont alors pas livrés du tout
+    private volatile BatchListener callback;
+    private final String deviceAddress;
+
+    private final Object lock = new Object();
+    // Lot rempli par le thread de lecture et lot en cours de livraison, échangés à chaque livraison
+    private SampleBatch pending;
+    private SampleBatch delivering;
+    private boolean scheduled;
+    // Instant de planification de la livraison en attente, pour mesurer l'attente sur le thread principal
+    private long scheduledAtMillis;
+    private volatile IngestionMetrics metrics;
+
+    private volatile int policy = SampleBatch.POLICY_ALL;
+    private volatile long intervalMillis = FRAME_PACED;
+    private long lastDeliveryMillis;
+
+    private final Runnable deliverRunnable = this::deliver;
+
+    /**
+     * @param channels valeurs par échantillon des lots, {@link ChannelRegistry#getChannelCount()}
+     */
+    public SampleDispatcher(BatchListener callback, String deviceAddress, Scheduler scheduler, int channels) {
+        this.callback = callback;
+        this.deviceAddress = deviceAddress;
+        this.scheduler = scheduler;
+        this.pending = new SampleBatch(BATCH_CAPACITY, channels);
+        this.delivering = new SampleBatch(BATCH_CAPACITY, channels);
+    }
+
+    /**
+     * @param policy une des constantes SampleBatch.POLICY_*
+     * @param intervalMillis intervalle minimal entre deux livraisons, ou {@link #FRAME_PACED}
+     */
+    public void configure(int policy, long intervalMillis) {
+        this.policy = policy;
+        this.intervalMillis = intervalMillis;
+    }
+
+    /**
+     * Change le destinataire des lots ; null arrête toute livraison (aucun travail sur le
+     * thread principal) jusqu'au prochain abonnement.
+     */
+    public void setListener(BatchListener callback) {
+        this.callback = callback;
+    }
+
+    /**
+     * Mesures alimentées à chaque livraison (taille des lots, attente), ou null.
+     */
+    public void setMetrics(IngestionMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Échantillons publiés et pas encore livrés.
+     */
+    public int getPendingCount() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * Appelé depuis le thread de lecture pour chaque échantillon décodé.
+     */
+    public void publish(TelemetrySample sample) {
+        if (callback == null) {
+            return;
+        }
+        boolean schedule;
+        synchronized (lock) {
+            pending.add(sample, policy);
+            schedule = !scheduled;
+            if (schedule) {
+                scheduled = true;
+                scheduledAtMillis = scheduler.uptimeMillis();
+            }
+        }
+        if (schedule) {
+            scheduleDelivery();
+        }
+    }
+
+    private void scheduleDelivery() {
+        long interval = intervalMillis;
+        if (interval == FRAME_PACED && scheduler.postFrame(deliverRunnable)) {
+            return;
+        }
+        if (interval == FRAME_PACED) {
+            interval = FALLBACK_FRAME_MILLIS;
+        }
+        long delay = lastDeliveryMillis + interval - scheduler.uptimeMillis();
+        scheduler.postDelayed(deliverRunnable, Math.max(0, delay));
+    }
+
+    // Thread de livraison (thread principal dans l'application)
+    private void deliver() {
+        SampleBatch batch;
+        long scheduledAt;
+        synchronized (lock) {
+            batch = pending;
+            pending = delivering;
+            delivering = batch;
+            scheduled = false;
+            scheduledAt = scheduledAtMillis;
+        }
+        lastDeliveryMillis = scheduler.uptimeMillis();
+
+        BatchListener callback = this.callback;
+        IngestionMetrics metrics = this.metrics;
+        if (metrics != null && callback != null && batch.size() > 0) {
+            metrics.onDelivered(batch.size(), lastDeliveryMillis - scheduledAt);
+        }
+        try {
+            if (batch.size() > 0 && callback != null) {
+                callback.onSamplesReceived(deviceAddress, batch);
+            }
+        } finally {
+            batch.clear();
+        }
+    }
+}
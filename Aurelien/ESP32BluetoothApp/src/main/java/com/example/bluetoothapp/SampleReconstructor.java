@@ -0,0 +1,134 @@
+package com.example.bluetoothapp;
+
+/**
+ * Reconstruit une série complète et régulière à partir des mises à jour partielles du mode
+ * report-on-change de l'ESP32 : chaque mise à jour ne contient que les canaux sortis de leur
+ * bande morte (plus un battement périodique), et rien n'est envoyé quand rien ne change.
+ *
+ * Chaque échantillon transmis porte la dernière valeur connue de tous les canaux. Entre deux
+ * mises à jour, les instants manquants (un par intervalle de mesure) sont recréés avec les
+ * dernières valeurs connues au moment où la mise à jour suivante arrive, dans la limite du
+ * battement : au-delà, c'est une perte et l'intervalle reste vide.
+ *
+ * Désactivé (simple relais) tant que le battement ou l'intervalle n'est pas connu. Thread de
+ * lecture uniquement, sans allocation ; les réglages peuvent venir d'un autre thread.
+ */
+public class SampleReconstructor {
+
+    private static final long NONE = Long.MIN_VALUE;
+
+    private final TelemetryDecoder.SampleListener listener;
+    private final TelemetrySample output;
+    private final float[] lastValues;
+    // Canaux dont une valeur a déjà été reçue
+    private int knownMask;
+    private long lastMillis = NONE;
+    private int lastTimeOfDayMillis = TelemetrySample.NO_TIME;
+    private long lastTimestampNanos;
+
+    private volatile long intervalMillis;
+    private volatile long heartbeatMillis;
+
+    private long updateCount;
+    private long filledCount;
+
+    /**
+     * @param channelCount canaux des échantillons, {@link ChannelRegistry#getChannelCount()}
+     */
+    public SampleReconstructor(int channelCount, TelemetryDecoder.SampleListener listener) {
+        this.listener = listener;
+        this.output = new TelemetrySample(channelCount);
+        this.lastValues = new float[channelCount];
+    }
+
+    /**
+     * Intervalle de mesure confirmé par l'ESP32 ; 0 s'il est inconnu.
+     */
+    public void setIntervalMillis(long intervalMillis) {
+        this.intervalMillis = intervalMillis;
+    }
+
+    /**
+     * Battement confirmé par l'ESP32 ; 0 quand chaque mesure est envoyée en entier.
+     */
+    public void setHeartbeatMillis(long heartbeatMillis) {
+        this.heartbeatMillis = heartbeatMillis;
+    }
+
+    public boolean isActive() {
+        return heartbeatMillis > 0 && intervalMillis > 0;
+    }
+
+    public void onSample(TelemetrySample sample) {
+        long interval = intervalMillis;
+        long heartbeat = heartbeatMillis;
+        if (heartbeat <= 0 || interval <= 0 || sample.isGap()) {
+            // Après une coupure, rien n'est connu : pas de valeur d'avant la coupure recopiée après
+            reset();
+            listener.onSample(sample);
+            return;
+        }
+        updateCount++;
+
+        long now = sample.getReceivedAtMillis();
+        if (lastMillis != NONE && knownMask != 0) {
+            long maxTicks = heartbeat / interval + 1;
+            long ticks = 0;
+            // Un instant proche de la mise à jour est celui de la mise à jour elle-même
+            for (long t = lastMillis + interval; t <= now - interval / 2 && ticks < maxTicks; t += interval) {
+                ticks++;
+                emit(t, lastTimeOfDayMillis == TelemetrySample.NO_TIME ? TelemetrySample.NO_TIME
+                        : (int) ((lastTimeOfDayMillis + ticks * interval) % 86_400_000L),
+                        lastTimestampNanos + ticks * interval * 1_000_000L);
+            }
+            filledCount += ticks;
+        }
+
+        for (int mask = sample.getPresentMask(); mask != 0; mask &= mask - 1) {
+            int channel = Integer.numberOfTrailingZeros(mask);
+            lastValues[channel] = sample.get(channel);
+        }
+        knownMask |= sample.getPresentMask();
+        lastMillis = now;
+        lastTimeOfDayMillis = sample.getTimeOfDayMillis();
+        lastTimestampNanos = sample.getTimestampNanos();
+        emit(now, lastTimeOfDayMillis, lastTimestampNanos);
+    }
+
+    /**
+     * Oublie les dernières valeurs (coupure, reconnexion).
+     */
+    public void reset() {
+        knownMask = 0;
+        lastMillis = NONE;
+        lastTimeOfDayMillis = TelemetrySample.NO_TIME;
+    }
+
+    /**
+     * Mises à jour reçues en mode report-on-change.
+     */
+    public long getUpdateCount() {
+        return updateCount;
+    }
+
+    /**
+     * Échantillons recréés entre deux mises à jour.
+     */
+    public long getFilledCount() {
+        return filledCount;
+    }
+
+    private void emit(long receivedAtMillis, int timeOfDayMillis, long timestampNanos) {
+        output.reset();
+        for (int mask = knownMask; mask != 0; mask &= mask - 1) {
+            int channel = Integer.numberOfTrailingZeros(mask);
+            output.set(channel, lastValues[channel]);
+        }
+        output.setReceivedAtMillis(receivedAtMillis);
+        output.setTimestampNanos(timestampNanos);
+        if (timeOfDayMillis != TelemetrySample.NO_TIME) {
+            output.setTimeOfDayMillis(timeOfDayMillis);
+        }
+        listener.onSample(output);
+    }
+}
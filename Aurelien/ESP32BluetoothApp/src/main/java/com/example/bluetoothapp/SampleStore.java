@@ -0,0 +1,519 @@
+package com.example.bluetoothapp;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Historique de plusieurs canaux hors du tas Java, sous un budget de mémoire commun.
+ *
+ * Chaque {@link Series} est une suite de blocs de {@link #BLOCK_POINTS} points (horodatages
+ * puis valeurs) dans des {@link ByteBuffer} directs, que le ramasse-miettes ne parcourt pas ; le
+ * tas ne garde qu'une petite description par bloc. Quand le budget est atteint, le bloc plein le
+ * plus ancien, toutes séries confondues, est écrit dans le fichier de sa série et son tampon est
+ * réutilisé. Les lectures passent par la même interface {@link TimeSeries} où que soient les
+ * points ; un bloc relu du disque reste dans un petit cache ({@link #READ_CACHE_BLOCKS} blocs).
+ *
+ * Le budget n'est tenu que s'il dépasse d'au moins un bloc par série plus le cache ; en dessous,
+ * les blocs en cours d'écriture sont alloués quand même. Au-delà de {@code maxPointsPerSeries},
+ * les blocs les plus anciens d'une série sont oubliés et leur place dans le fichier réutilisée.
+ *
+ * Les fichiers sont temporaires : ceux d'une exécution précédente sont effacés à la création,
+ * ceux-ci à {@link #close()}. Après close(), les ajouts sont ignorés et les séries sont vides.
+ * Ne dépend pas d'Android ; toutes les méthodes peuvent être appelées de n'importe quel thread.
+ */
+public class SampleStore implements Closeable {
+
+    // Points par bloc : l'unité d'allocation, d'écriture sur disque et de relecture
+    public static final int BLOCK_POINTS = 4096;
+    // Colonne des horodatages (long) puis colonne des valeurs (float)
+    public static final int BLOCK_BYTES = BLOCK_POINTS * (Long.BYTES + Float.BYTES);
+    private static final int VALUES_OFFSET = BLOCK_POINTS * Long.BYTES;
+    // Blocs relus du disque gardés en mémoire, pour toutes les séries
+    static final int READ_CACHE_BLOCKS = 4;
+    private static final String FILE_SUFFIX = ".blocks";
+
+    private final File directory;
+    private final long memoryBudget;
+    private final int maxPointsPerSeries;
+    private final Map<String, Series> series = new LinkedHashMap<>();
+
+    // Tampons directs sans bloc ; allocatedBytes compte tous les tampons, libres ou non
+    private final ArrayDeque<ByteBuffer> freeBuffers = new ArrayDeque<>();
+    private long allocatedBytes;
+    // Blocs pleins encore en mémoire, du plus ancien au plus récent : les premiers écrits sur disque
+    private final ArrayDeque<Block> spillQueue = new ArrayDeque<>();
+    // Blocs relus du disque, du moins récemment lu au plus récent
+    private final ArrayDeque<Block> readCache = new ArrayDeque<>();
+    private long spillCount;
+    private long loadCount;
+    private IOException lastError;
+    private boolean closed;
+
+    /**
+     * @param directory répertoire des fichiers de débordement, créé si besoin
+     * @param memoryBudget octets hors tas au plus pour l'ensemble des séries
+     * @param maxPointsPerSeries points conservés au moins par série, en mémoire ou sur disque
+     */
+    public SampleStore(File directory, long memoryBudget, int maxPointsPerSeries) {
+        if (memoryBudget < BLOCK_BYTES) {
+            throw new IllegalArgumentException("Budget mémoire invalide: " + memoryBudget);
+        }
+        if (maxPointsPerSeries <= 0 || maxPointsPerSeries > Integer.MAX_VALUE - BLOCK_POINTS) {
+            throw new IllegalArgumentException("Nombre de points invalide: " + maxPointsPerSeries);
+        }
+        this.directory = directory;
+        this.memoryBudget = memoryBudget;
+        this.maxPointsPerSeries = maxPointsPerSeries;
+        directory.mkdirs();
+        // Fichiers laissés par un processus tué : plus aucune série ne les décrit
+        File[] stale = directory.listFiles((dir, name) -> name.endsWith(FILE_SUFFIX));
+        if (stale != null) {
+            for (File file : stale) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Série nommée, créée au premier appel.
+     */
+    public synchronized Series series(String name) {
+        Series existing = series.get(name);
+        if (existing == null) {
+            existing = new Series(name);
+            series.put(name, existing);
+        }
+        return existing;
+    }
+
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Octets hors tas alloués, tampons libres compris.
+     */
+    public synchronized long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * Octets occupés dans les fichiers de débordement.
+     */
+    public synchronized long getDiskBytes() {
+        long blocks = 0;
+        for (Series s : series.values()) {
+            blocks += s.usedSlots.cardinality();
+        }
+        return blocks * BLOCK_BYTES;
+    }
+
+    /**
+     * Blocs écrits sur disque depuis la création.
+     */
+    public synchronized long getSpillCount() {
+        return spillCount;
+    }
+
+    /**
+     * Blocs relus du disque depuis la création.
+     */
+    public synchronized long getLoadCount() {
+        return loadCount;
+    }
+
+    /**
+     * Dernière erreur d'écriture : les blocs concernés restent en mémoire, au-delà du budget.
+     */
+    public synchronized IOException getLastError() {
+        return lastError;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (Series s : series.values()) {
+            s.blocks.clear();
+            s.size = 0;
+            s.totalCount = 0;
+            s.closeFile();
+        }
+        spillQueue.clear();
+        readCache.clear();
+        freeBuffers.clear();
+        allocatedBytes = 0;
+    }
+
+    // Tampon pour un nouveau bloc : libre, alloué dans le budget, ou repris au bloc le plus ancien
+    private ByteBuffer obtainBuffer() {
+        ByteBuffer buffer = freeBuffers.poll();
+        if (buffer != null) {
+            return buffer;
+        }
+        if (allocatedBytes + BLOCK_BYTES > memoryBudget) {
+            buffer = reclaim();
+            if (buffer != null) {
+                return buffer;
+            }
+        }
+        allocatedBytes += BLOCK_BYTES;
+        return ByteBuffer.allocateDirect(BLOCK_BYTES).order(ByteOrder.nativeOrder());
+    }
+
+    private ByteBuffer reclaim() {
+        Block oldest;
+        while ((oldest = spillQueue.poll()) != null) {
+            try {
+                return oldest.owner.spill(oldest);
+            } catch (IOException e) {
+                // Le bloc reste en mémoire et ne sera plus proposé
+                lastError = e;
+            }
+        }
+        Block cached = readCache.poll();
+        if (cached != null) {
+            ByteBuffer buffer = cached.buffer;
+            cached.buffer = null;
+            return buffer;
+        }
+        return null;
+    }
+
+    private void release(Block block) {
+        if (block.buffer != null) {
+            if (block.slot < 0) {
+                spillQueue.remove(block);
+            } else {
+                readCache.remove(block);
+            }
+            freeBuffers.add(block.buffer);
+            block.buffer = null;
+        }
+        if (block.slot >= 0) {
+            block.owner.usedSlots.clear(block.slot);
+            block.slot = -1;
+        }
+    }
+
+    // Bloc de points contigus : le dernier d'une série est le seul qui ne soit pas plein
+    private static final class Block {
+        final Series owner;
+        // null : sur disque seulement
+        ByteBuffer buffer;
+        // Emplacement dans le fichier de la série, -1 tant que le bloc n'y a pas été écrit
+        int slot = -1;
+        int count;
+        long firstTimestamp;
+
+        Block(Series owner) {
+            this.owner = owner;
+        }
+    }
+
+    /**
+     * Historique d'un canal dans le magasin. Les index logiques suivent {@link TimeSeries}.
+     */
+    public final class Series implements TimeSeries {
+
+        private final String name;
+        private final File file;
+        private RandomAccessFile raf;
+        private FileChannel channel;
+        private final ArrayList<Block> blocks = new ArrayList<>();
+        // Emplacements de blocs occupés dans le fichier
+        private final BitSet usedSlots = new BitSet();
+        private int size;
+        private long totalCount;
+
+        Series(String name) {
+            this.name = name;
+            this.file = new File(directory, name.replaceAll("[^A-Za-z0-9._-]", "_") + FILE_SUFFIX);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public void append(long timestamp, float value) {
+            synchronized (SampleStore.this) {
+                if (closed) {
+                    return;
+                }
+                Block tail = blocks.isEmpty() ? null : blocks.get(blocks.size() - 1);
+                if (tail == null || tail.count == BLOCK_POINTS) {
+                    if (tail != null) {
+                        spillQueue.add(tail);
+                    }
+                    tail = new Block(this);
+                    tail.buffer = obtainBuffer();
+                    tail.firstTimestamp = timestamp;
+                    blocks.add(tail);
+                }
+                tail.buffer.putLong(tail.count * Long.BYTES, timestamp);
+                tail.buffer.putFloat(VALUES_OFFSET + tail.count * Float.BYTES, value);
+                tail.count++;
+                size++;
+                totalCount++;
+                // Des blocs entiers sont oubliés, en gardant au moins maxPointsPerSeries points
+                while (size - blocks.get(0).count >= maxPointsPerSeries) {
+                    Block first = blocks.remove(0);
+                    size -= first.count;
+                    release(first);
+                }
+            }
+        }
+
+        @Override
+        public void clear() {
+            synchronized (SampleStore.this) {
+                for (Block block : blocks) {
+                    release(block);
+                }
+                blocks.clear();
+                size = 0;
+                totalCount = 0;
+                closeFile();
+            }
+        }
+
+        @Override
+        public int size() {
+            synchronized (SampleStore.this) {
+                return size;
+            }
+        }
+
+        @Override
+        public long getTotalCount() {
+            synchronized (SampleStore.this) {
+                return totalCount;
+            }
+        }
+
+        @Override
+        public long getTimestamp(int index) {
+            synchronized (SampleStore.this) {
+                checkIndex(index);
+                return load(blocks.get(index / BLOCK_POINTS)).getLong((index % BLOCK_POINTS) * Long.BYTES);
+            }
+        }
+
+        @Override
+        public float getValue(int index) {
+            synchronized (SampleStore.this) {
+                checkIndex(index);
+                return load(blocks.get(index / BLOCK_POINTS))
+                        .getFloat(VALUES_OFFSET + (index % BLOCK_POINTS) * Float.BYTES);
+            }
+        }
+
+        @Override
+        public int lowerBound(long timestamp) {
+            synchronized (SampleStore.this) {
+                // Premier bloc qui commence à timestamp ou après, sans rien relire du disque
+                int low = 0;
+                int high = blocks.size();
+                while (low < high) {
+                    int mid = (low + high) >>> 1;
+                    if (blocks.get(mid).firstTimestamp < timestamp) {
+                        low = mid + 1;
+                    } else {
+                        high = mid;
+                    }
+                }
+                if (low == 0) {
+                    return 0;
+                }
+                // Le point cherché est dans le bloc précédent, ou au début de celui-ci
+                Block block = blocks.get(low - 1);
+                ByteBuffer buffer = load(block);
+                int first = 0;
+                int last = block.count;
+                while (first < last) {
+                    int mid = (first + last) >>> 1;
+                    if (buffer.getLong(mid * Long.BYTES) < timestamp) {
+                        first = mid + 1;
+                    } else {
+                        last = mid;
+                    }
+                }
+                return (low - 1) * BLOCK_POINTS + first;
+            }
+        }
+
+        @Override
+        public long minMaxIndex(int from, int to) {
+            synchronized (SampleStore.this) {
+                checkIndex(from);
+                if (to <= from || to > size) {
+                    throw new IndexOutOfBoundsException("Fin " + to + ", taille " + size);
+                }
+                int minIndex = from;
+                int maxIndex = from;
+                float min = getValue(from);
+                float max = min;
+                for (int i = from + 1; i < to; ) {
+                    Block block = blocks.get(i / BLOCK_POINTS);
+                    ByteBuffer buffer = load(block);
+                    int base = i - i % BLOCK_POINTS;
+                    int end = Math.min(to - base, block.count);
+                    for (int j = i - base; j < end; j++) {
+                        float value = buffer.getFloat(VALUES_OFFSET + j * Float.BYTES);
+                        if (value < min) {
+                            min = value;
+                            minIndex = base + j;
+                        } else if (value > max) {
+                            max = value;
+                            maxIndex = base + j;
+                        }
+                    }
+                    i = base + end;
+                }
+                return ((long) minIndex << 32) | (maxIndex & 0xFFFFFFFFL);
+            }
+        }
+
+        @Override
+        public int copyValues(int from, int count, float[] dst, int dstOffset) {
+            synchronized (SampleStore.this) {
+                count = clampCount(from, count);
+                for (int i = 0; i < count; ) {
+                    int index = from + i;
+                    Block block = blocks.get(index / BLOCK_POINTS);
+                    ByteBuffer buffer = load(block);
+                    int offset = index % BLOCK_POINTS;
+                    int n = Math.min(count - i, block.count - offset);
+                    for (int j = 0; j < n; j++) {
+                        dst[dstOffset + i + j] = buffer.getFloat(VALUES_OFFSET + (offset + j) * Float.BYTES);
+                    }
+                    i += n;
+                }
+                return count;
+            }
+        }
+
+        @Override
+        public int copyTimestamps(int from, int count, long[] dst, int dstOffset) {
+            synchronized (SampleStore.this) {
+                count = clampCount(from, count);
+                for (int i = 0; i < count; ) {
+                    int index = from + i;
+                    Block block = blocks.get(index / BLOCK_POINTS);
+                    ByteBuffer buffer = load(block);
+                    int offset = index % BLOCK_POINTS;
+                    int n = Math.min(count - i, block.count - offset);
+                    for (int j = 0; j < n; j++) {
+                        dst[dstOffset + i + j] = buffer.getLong((offset + j) * Long.BYTES);
+                    }
+                    i += n;
+                }
+                return count;
+            }
+        }
+
+        private void checkIndex(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index " + index + ", taille " + size);
+            }
+        }
+
+        private int clampCount(int from, int count) {
+            if (from < 0 || from > size) {
+                throw new IndexOutOfBoundsException("Index " + from + ", taille " + size);
+            }
+            return Math.max(0, Math.min(count, size - from));
+        }
+
+        // Écrit un bloc plein dans le fichier et rend son tampon
+        private ByteBuffer spill(Block block) throws IOException {
+            int slot = usedSlots.nextClearBit(0);
+            ByteBuffer buffer = block.buffer;
+            buffer.clear();
+            long position = (long) slot * BLOCK_BYTES;
+            FileChannel out = channel();
+            while (buffer.hasRemaining()) {
+                position += out.write(buffer, position);
+            }
+            usedSlots.set(slot);
+            block.slot = slot;
+            block.buffer = null;
+            spillCount++;
+            return buffer;
+        }
+
+        // Points du bloc, relus du disque dans le cache si besoin
+        private ByteBuffer load(Block block) {
+            if (block.buffer != null) {
+                if (block.slot >= 0 && readCache.peekLast() != block) {
+                    readCache.remove(block);
+                    readCache.add(block);
+                }
+                return block.buffer;
+            }
+            ByteBuffer buffer;
+            if (readCache.size() >= READ_CACHE_BLOCKS) {
+                Block evicted = readCache.poll();
+                buffer = evicted.buffer;
+                evicted.buffer = null;
+            } else {
+                buffer = obtainBuffer();
+            }
+            buffer.clear();
+            long position = (long) block.slot * BLOCK_BYTES;
+            try {
+                FileChannel in = channel();
+                while (buffer.hasRemaining()) {
+                    int n = in.read(buffer, position);
+                    if (n < 0) {
+                        throw new IOException("Fichier de débordement tronqué: " + file);
+                    }
+                    position += n;
+                }
+            } catch (IOException e) {
+                freeBuffers.add(buffer);
+                throw new UncheckedIOException(e);
+            }
+            block.buffer = buffer;
+            readCache.add(block);
+            loadCount++;
+            return buffer;
+        }
+
+        private FileChannel channel() throws IOException {
+            if (channel == null) {
+                raf = new RandomAccessFile(file, "rw");
+                channel = raf.getChannel();
+            }
+            return channel;
+        }
+
+        private void closeFile() {
+            usedSlots.clear();
+            if (raf != null) {
+                try {
+                    raf.close();
+                } catch (IOException e) {
+                    // Fichier temporaire : rien à sauver
+                }
+                raf = null;
+                channel = null;
+            }
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.bluetoothapp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * Liaison TCP, typiquement vers {@link Esp32Simulator} sur la boucle locale ou le réseau.
+ */
+public class TcpTransport implements Transport {
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+
+    private final String host;
+    private final int port;
+    private volatile Socket socket;
+    private volatile boolean closed;
+
+    public TcpTransport(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    @Override
+    public String getAddress() {
+        return host + ":" + port;
+    }
+
+    @Override
+    public String getName() {
+        return "tcp://" + host + ":" + port;
+    }
+
+    @Override
+    public void connect() throws IOException {
+        Socket old = socket;
+        if (old != null) {
+            old.close();
+        }
+        Socket tmp = new Socket();
+        socket = tmp;
+        if (closed) {
+            tmp.close();
+            throw new IOException("Liaison fermée");
+        }
+        tmp.setTcpNoDelay(true);
+        tmp.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MILLIS);
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return requireSocket().getInputStream();
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        return requireSocket().getOutputStream();
+    }
+
+    private Socket requireSocket() throws IOException {
+        Socket current = socket;
+        if (current == null) {
+            throw new IOException("Liaison non établie");
+        }
+        return current;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        Socket current = socket;
+        if (current != null) {
+            current.close();
+        }
+    }
+}
@@ -0,0 +1,574 @@
+package com.example.bluetoothapp;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Décodeur des données de l'ESP32 travaillant directement sur les octets reçus.
+ * Deux protocoles sont acceptés, détectés au premier octet utile de la connexion :
+ * le texte "T:25.5,V:3.3,B:75,L:800,H:12:34:56" terminé par '\n' (anciens firmwares)
+ * et les trames binaires décrites dans {@link BinaryFrameCodec}.
+ *
+ * Les lignes et les trames sont découpées et analysées en place dans un tampon réutilisable et
+ * les valeurs sont écrites dans un unique {@link TelemetrySample} : aucune allocation
+ * en régime établi. Les réponses aux commandes ({@link CommandChannel}), lignes "#id OK valeur"
+ * ou trames 0xA6, sont remises au {@link ReplyListener}. Cette classe ne dépend pas d'Android (pas de Log) pour pouvoir
+ * tourner telle quelle sur une JVM.
+ */
+public class TelemetryDecoder {
+
+    public interface SampleListener {
+        void onSample(TelemetrySample sample);
+    }
+
+    public interface ReplyListener {
+        /**
+         * @param status 0 si la commande est appliquée, sinon code d'erreur de l'ESP32
+         */
+        void onReply(int requestId, int status, int value);
+    }
+
+    public static final int PROTOCOL_AUTO = 0;
+    public static final int PROTOCOL_TEXT = 1;
+    public static final int PROTOCOL_BINARY = 2;
+
+    // Une ligne normale fait ~35 octets, au-delà de cette taille elle est jetée
+    private static final int MAX_LINE_LENGTH = 256;
+    private static final int BUFFER_SIZE = 4096;
+    // En dessous, une ligne n'est acceptée que si tous ses champs sont des canaux connus (mises à
+    // jour partielles du mode report-on-change) ; le bruit de démarrage de l'ESP32 est écarté
+    private static final int MIN_FIELDS = 3;
+
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9
+    };
+
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private final TelemetrySample sample;
+    private final SampleListener listener;
+    private final ChannelRegistry registry;
+    private ReplyListener replyListener;
+    private int protocol = PROTOCOL_AUTO;
+
+    // Octets en attente dans buffer[start, end)
+    private int start;
+    private int end;
+    // Position jusqu'à laquelle on a déjà cherché un '\n'
+    private int scan;
+    // Vrai quand on jette la fin d'une ligne trop longue
+    private boolean discarding;
+
+    // Résultat de la dernière analyse numérique (évite de retourner un objet)
+    private float parsedValue;
+    // Heure de la dernière lecture, appliquée aux échantillons qu'elle contient
+    private long readTimeMillis;
+    private Clock clock = Clock.SYSTEM;
+
+    private long lineCount;
+    private long replyCount;
+    private long errorCount;
+    // Temps cumulé passé à décoder, hors attente de lecture
+    private long decodeNanos;
+
+    // Compteurs spécifiques au protocole binaire
+    private long frameCount;
+    private long crcErrorCount;
+    private long lostFrameCount;
+    private int expectedSequence = -1;
+    private boolean resyncing;
+
+    public TelemetryDecoder(SampleListener listener) {
+        this(ChannelRegistry.createDefault(), listener);
+    }
+
+    public TelemetryDecoder(ChannelRegistry registry, SampleListener listener) {
+        this.registry = registry;
+        this.listener = listener;
+        this.sample = new TelemetrySample(registry.getChannelCount());
+    }
+
+    /**
+     * Effectue une seule lecture sur le flux et décode les lignes ou trames complètes.
+     * @return le nombre d'octets lus, ou -1 en fin de flux
+     */
+    public int readFrom(InputStream in) throws IOException {
+        compact();
+        int read = in.read(buffer, end, buffer.length - end);
+        if (read > 0) {
+            readTimeMillis = clock.currentTimeMillis();
+            end += read;
+            processBuffered();
+        }
+        return read;
+    }
+
+    /**
+     * Décode des octets déjà reçus (tests, rejeu ou autre transport).
+     */
+    public void feed(byte[] src, int offset, int length) {
+        readTimeMillis = clock.currentTimeMillis();
+        while (length > 0) {
+            compact();
+            int chunk = Math.min(length, buffer.length - end);
+            System.arraycopy(src, offset, buffer, end, chunk);
+            end += chunk;
+            offset += chunk;
+            length -= chunk;
+            processBuffered();
+        }
+    }
+
+    /**
+     * Horloge qui date les lectures ; celle de la liaison rejouée pour un rejeu reproductible.
+     */
+    public void setClock(Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Force un protocole au lieu de la détection automatique.
+     */
+    public void setProtocol(int protocol) {
+        this.protocol = protocol;
+    }
+
+    public int getProtocol() {
+        return protocol;
+    }
+
+    /**
+     * Destinataire des réponses aux commandes ; sans lui, elles sont seulement comptées.
+     */
+    public void setReplyListener(ReplyListener replyListener) {
+        this.replyListener = replyListener;
+    }
+
+    public long getReplyCount() {
+        return replyCount;
+    }
+
+    public long getLineCount() {
+        return lineCount;
+    }
+
+    public long getErrorCount() {
+        return errorCount;
+    }
+
+    /**
+     * Temps total passé à décoder depuis la création, en nanosecondes, hors attente de lecture.
+     */
+    public long getDecodeNanos() {
+        return decodeNanos;
+    }
+
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    public long getCrcErrorCount() {
+        return crcErrorCount;
+    }
+
+    /**
+     * Nombre de trames manquantes d'après les trous dans les numéros de séquence.
+     */
+    public long getLostFrameCount() {
+        return lostFrameCount;
+    }
+
+    // Ramène les octets en attente au début du tampon
+    private void compact() {
+        if (start == 0) {
+            return;
+        }
+        int pending = end - start;
+        if (pending > 0) {
+            System.arraycopy(buffer, start, buffer, 0, pending);
+        }
+        scan -= start;
+        start = 0;
+        end = pending;
+    }
+
+    private void processBuffered() {
+        long begin = System.nanoTime();
+        if (protocol == PROTOCOL_AUTO) {
+            detectProtocol();
+        }
+        if (protocol == PROTOCOL_TEXT) {
+            processLines();
+        } else if (protocol == PROTOCOL_BINARY) {
+            processFrames();
+        }
+        decodeNanos += System.nanoTime() - begin;
+    }
+
+    // Le premier octet utile décide : octet de synchro pour le binaire, lettre pour le texte
+    private void detectProtocol() {
+        while (start < end) {
+            int b = buffer[start] & 0xFF;
+            if (b == BinaryFrameCodec.SYNC || b == BinaryFrameCodec.REPLY_SYNC) {
+                protocol = PROTOCOL_BINARY;
+                break;
+            }
+            if ((b >= 'A' && b <= 'Z') || b == '#') {
+                protocol = PROTOCOL_TEXT;
+                break;
+            }
+            // Bruit de démarrage de l'ESP32 ou retour à la ligne isolé
+            start++;
+        }
+        scan = start;
+    }
+
+    private void processLines() {
+        while (scan < end) {
+            if (buffer[scan] != '\n') {
+                scan++;
+                continue;
+            }
+
+            if (discarding) {
+                discarding = false;
+            } else {
+                int lineEnd = scan;
+                if (lineEnd > start && buffer[lineEnd - 1] == '\r') {
+                    lineEnd--;
+                }
+                if (lineEnd > start) {
+                    decodeLine(start, lineEnd);
+                }
+            }
+            scan++;
+            start = scan;
+        }
+
+        // Ligne trop longue sans fin de ligne : on la jette jusqu'au prochain '\n'
+        if (end - start > MAX_LINE_LENGTH) {
+            if (!discarding) {
+                errorCount++;
+                discarding = true;
+            }
+            start = end;
+            scan = end;
+        }
+    }
+
+    private void processFrames() {
+        while (end - start >= 2) {
+            int sync = buffer[start] & 0xFF;
+            if (sync == BinaryFrameCodec.REPLY_SYNC) {
+                if ((buffer[start + 1] & 0xFF) != BinaryFrameCodec.REPLY_PAYLOAD) {
+                    skipByte();
+                    continue;
+                }
+                if (end - start < BinaryFrameCodec.REPLY_SIZE) {
+                    break;
+                }
+                int crc = BinaryFrameCodec.getUnsignedShort(buffer, start + 2 + BinaryFrameCodec.REPLY_PAYLOAD);
+                if (crc != BinaryFrameCodec.crc16(buffer, start + 1, BinaryFrameCodec.REPLY_PAYLOAD + 1)) {
+                    skipByte();
+                    continue;
+                }
+                resyncing = false;
+                onReply(BinaryFrameCodec.getUnsignedShort(buffer, start + 2), buffer[start + 4] & 0xFF,
+                        BinaryFrameCodec.getInt(buffer, start + 5));
+                start += BinaryFrameCodec.REPLY_SIZE;
+                continue;
+            }
+            if (sync != BinaryFrameCodec.SYNC) {
+                skipByte();
+                continue;
+            }
+
+            int payload = buffer[start + 1] & 0xFF;
+            if (payload < BinaryFrameCodec.HEADER_SIZE - 2) {
+                skipByte();
+                continue;
+            }
+            int frameSize = 2 + payload + BinaryFrameCodec.CRC_SIZE;
+            if (end - start < frameSize) {
+                break;
+            }
+
+            int crc = BinaryFrameCodec.getUnsignedShort(buffer, start + 2 + payload);
+            if (crc != BinaryFrameCodec.crc16(buffer, start + 1, payload + 1)) {
+                // Trame corrompue : on cherche la prochaine synchro un octet plus loin
+                if (!resyncing) {
+                    crcErrorCount++;
+                }
+                skipByte();
+                continue;
+            }
+
+            resyncing = false;
+            decodeFrame(start + 2, start + 2 + payload);
+            start += frameSize;
+        }
+        scan = start;
+    }
+
+    // Octet hors trame, compté une seule fois par perte de synchronisation
+    private void skipByte() {
+        if (!resyncing) {
+            errorCount++;
+            resyncing = true;
+        }
+        start++;
+    }
+
+    private void decodeFrame(int from, int to) {
+        frameCount++;
+
+        int sequence = BinaryFrameCodec.getUnsignedShort(buffer, from);
+        if (expectedSequence >= 0 && sequence != expectedSequence) {
+            lostFrameCount += (sequence - expectedSequence) & 0xFFFF;
+        }
+        expectedSequence = (sequence + 1) & 0xFFFF;
+
+        int count = buffer[from + 2] & 0xFF;
+        int firstTime = BinaryFrameCodec.getInt(buffer, from + 3);
+        int interval = BinaryFrameCodec.getUnsignedShort(buffer, from + 7);
+
+        int pos = from + BinaryFrameCodec.HEADER_SIZE - 2;
+        for (int i = 0; i < count; i++) {
+            if (pos >= to) {
+                errorCount++;
+                return;
+            }
+            sample.reset();
+            int channels = buffer[pos++] & 0xFF;
+            for (int c = 0; c < channels; c++) {
+                if (pos >= to) {
+                    errorCount++;
+                    return;
+                }
+                int tag = buffer[pos++] & 0xFF;
+                int channel = tag & BinaryFrameCodec.TAG_CHANNEL_MASK;
+                int fixed;
+                if ((tag & BinaryFrameCodec.TAG_WIDE) != 0) {
+                    if (pos + 4 > to) {
+                        errorCount++;
+                        return;
+                    }
+                    fixed = BinaryFrameCodec.getInt(buffer, pos);
+                    pos += 4;
+                } else {
+                    if (pos + 2 > to) {
+                        errorCount++;
+                        return;
+                    }
+                    fixed = BinaryFrameCodec.getShort(buffer, pos);
+                    pos += 2;
+                }
+                // Canaux inconnus des versions futures du firmware : ignorés
+                if (registry.isDefined(channel)) {
+                    sample.set(channel, fixed / registry.getScale(channel));
+                }
+            }
+            sample.setReceivedAtMillis(readTimeMillis);
+            if (firstTime != BinaryFrameCodec.NO_TIME) {
+                sample.setTimeOfDayMillis((int) (((long) firstTime + (long) i * interval) % 86_400_000L));
+            }
+            listener.onSample(sample);
+        }
+    }
+
+    private void onReply(int requestId, int status, int value) {
+        replyCount++;
+        if (replyListener != null) {
+            replyListener.onReply(requestId, status, value);
+        }
+    }
+
+    // Réponse "#id OK valeur" ou "#id ERR code" ; false si la ligne n'en est pas une
+    private boolean decodeReply(int from, int to) {
+        int pos = from + 1;
+        int space = indexOf(' ', pos, to);
+        if (space < 0 || !parseDecimal(pos, space)) {
+            return false;
+        }
+        int requestId = (int) parsedValue;
+        pos = space + 1;
+        int statusEnd = indexOf(' ', pos, to);
+        if (statusEnd < 0) {
+            statusEnd = to;
+        }
+        int number = 0;
+        if (statusEnd < to) {
+            if (!parseDecimal(statusEnd + 1, to)) {
+                return false;
+            }
+            number = Math.round(parsedValue);
+        }
+        if (statusEnd - pos == 2 && buffer[pos] == 'O' && buffer[pos + 1] == 'K') {
+            onReply(requestId, 0, number);
+            return true;
+        }
+        if (statusEnd - pos == 3 && buffer[pos] == 'E' && buffer[pos + 1] == 'R' && buffer[pos + 2] == 'R'
+                && number > 0) {
+            onReply(requestId, number, 0);
+            return true;
+        }
+        return false;
+    }
+
+    private void decodeLine(int from, int to) {
+        // Une ligne de mesures corrompue peut aussi commencer par '#'
+        if (buffer[from] == '#' && decodeReply(from, to)) {
+            return;
+        }
+        lineCount++;
+        sample.reset();
+
+        int fields = 0;
+        int pos = from;
+        while (pos < to) {
+            int fieldEnd = indexOf(',', pos, to);
+            if (fieldEnd < 0) {
+                fieldEnd = to;
+            }
+            fields++;
+            if (!decodeField(pos, fieldEnd)) {
+                errorCount++;
+            }
+            pos = fieldEnd + 1;
+        }
+
+        if (fields < MIN_FIELDS && fields != recognizedFields()) {
+            errorCount++;
+            return;
+        }
+        sample.setReceivedAtMillis(readTimeMillis);
+        listener.onSample(sample);
+    }
+
+    private int recognizedFields() {
+        int time = sample.getTimeOfDayMillis() != TelemetrySample.NO_TIME ? 1 : 0;
+        return Integer.bitCount(sample.getPresentMask()) + time;
+    }
+
+    // Analyse un champ "clé:valeur", retourne false si la valeur est illisible
+    private boolean decodeField(int from, int to) {
+        int colon = indexOf(':', from, to);
+        if (colon <= from) {
+            return true;
+        }
+
+        int valueStart = colon + 1;
+        // Tolère "Lux: 12.5" (espace après les deux-points)
+        while (valueStart < to && buffer[valueStart] == ' ') {
+            valueStart++;
+        }
+        if (colon == from + 1 && buffer[from] == 'H') {
+            return decodeTime(valueStart, to);
+        }
+        int channel = registry.lookup(buffer, from, colon);
+        if (channel == ChannelRegistry.UNKNOWN) {
+            // Clés inconnues ignorées
+            return true;
+        }
+        return decodeChannel(channel, valueStart, to);
+    }
+
+    private boolean decodeChannel(int channel, int from, int to) {
+        if (!parseDecimal(from, to)) {
+            return false;
+        }
+        sample.set(channel, parsedValue);
+        return true;
+    }
+
+    // Nombre décimal simple : signe optionnel, chiffres, partie décimale optionnelle
+    private boolean parseDecimal(int from, int to) {
+        int pos = from;
+        boolean negative = false;
+        if (pos < to && (buffer[pos] == '-' || buffer[pos] == '+')) {
+            negative = buffer[pos] == '-';
+            pos++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean inFraction = false;
+        for (; pos < to; pos++) {
+            byte b = buffer[pos];
+            if (b >= '0' && b <= '9') {
+                // Au-delà de 18 chiffres on ignore la précision supplémentaire
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + (b - '0');
+                    digits++;
+                    if (inFraction) {
+                        fractionDigits++;
+                    }
+                } else if (!inFraction) {
+                    return false;
+                }
+            } else if (b == '.' && !inFraction) {
+                inFraction = true;
+            } else {
+                return false;
+            }
+        }
+        if (digits == 0 || fractionDigits >= POW10.length) {
+            return false;
+        }
+
+        double value = mantissa / POW10[fractionDigits];
+        parsedValue = (float) (negative ? -value : value);
+        return true;
+    }
+
+    // Heure "HH:mm:ss" avec millisecondes optionnelles "HH:mm:ss.SSS"
+    private boolean decodeTime(int from, int to) {
+        if (to - from < 8 || buffer[from + 2] != ':' || buffer[from + 5] != ':') {
+            return false;
+        }
+        int hours = twoDigits(from);
+        int minutes = twoDigits(from + 3);
+        int seconds = twoDigits(from + 6);
+        if (hours < 0 || hours > 23 || minutes < 0 || minutes > 59 || seconds < 0 || seconds > 59) {
+            return false;
+        }
+
+        int millis = 0;
+        int pos = from + 8;
+        if (pos < to) {
+            if (buffer[pos] != '.') {
+                return false;
+            }
+            int scale = 100;
+            for (pos++; pos < to; pos++) {
+                byte b = buffer[pos];
+                if (b < '0' || b > '9') {
+                    return false;
+                }
+                millis += (b - '0') * scale;
+                scale /= 10;
+            }
+        }
+
+        sample.setTimeOfDayMillis(((hours * 60 + minutes) * 60 + seconds) * 1000 + millis);
+        return true;
+    }
+
+    private int twoDigits(int pos) {
+        int tens = buffer[pos] - '0';
+        int units = buffer[pos + 1] - '0';
+        if (tens < 0 || tens > 9 || units < 0 || units > 9) {
+            return -1;
+        }
+        return tens * 10 + units;
+    }
+
+    private int indexOf(char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,689 @@
+package com.example.bluetoothapp;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.CRC32;
+
+/**
+ * Journal persistant des échantillons reçus, en segments binaires en ajout seul.
+ *
+ * Les échantillons sont copiés dans un tampon mémoire par le thread de lecture (jamais bloqué :
+ * si le tampon est plein l'échantillon est compté comme perdu), puis un thread d'écriture les
+ * écrit par blocs avec une FileChannel et force la synchronisation disque à intervalle régulier.
+ *
+ * Chaque bloc commence par un en-tête (nombre d'enregistrements, premier et dernier horodatage,
+ * CRC32) et chaque segment a un index clairsemé d'un enregistrement par bloc : lire une plage
+ * de temps revient à une recherche dans l'index puis une lecture séquentielle. Au démarrage, le
+ * dernier segment est vérifié bloc par bloc et tronqué après le dernier bloc intact.
+ * Avec une rétention ({@link #setRetentionMillis}), les segments les plus anciens sont supprimés.
+ */
+public class TelemetryLog implements Closeable {
+
+    // Enregistrement : horodatage recalé en ms (long), heure ESP32 (int), masque (int), une
+    // valeur (float) par canal ; taille donnée par recordSize(canaux)
+    // En-tête de bloc : magic, nombre, premier et dernier horodatage, CRC, canaux par enregistrement
+    static final int BLOCK_HEADER_SIZE = 4 + 4 + 8 + 8 + 4 + 4;
+    // Les premiers journaux avaient 4 canaux et un champ réservé à 0 à la place du nombre de canaux
+    static final int LEGACY_CHANNELS = 4;
+    // Entrée d'index : premier et dernier horodatage, position du bloc, nombre
+    static final int INDEX_ENTRY_SIZE = 8 + 8 + 8 + 4;
+    static final int BLOCK_MAGIC = 0x544C4F47; // "TLOG"
+
+    private static final long SEGMENT_MAX_BYTES = 8L * 1024 * 1024;
+    private static final int STAGING_RECORDS = 4096;
+    private static final long FLUSH_INTERVAL_MS = 250;
+    private static final long FSYNC_INTERVAL_MS = 1000;
+    private static final long RETENTION_CHECK_INTERVAL_MS = 3_600_000L;
+    private static final String DATA_SUFFIX = ".log";
+    private static final String INDEX_SUFFIX = ".idx";
+
+    private final File directory;
+    // Canaux par enregistrement écrit, ChannelRegistry.getChannelCount() à l'ouverture
+    private final int channels;
+    private final int recordSize;
+    private final List<Segment> segments = new ArrayList<>();
+    private Segment active;
+    private FileChannel activeData;
+    private FileChannel activeIndex;
+
+    // Tampons d'écriture échangés entre le thread de lecture et le thread d'écriture
+    private final Object stagingLock = new Object();
+    private ByteBuffer staging;
+    private ByteBuffer writing;
+    private int stagedCount;
+    private long stagedFirst;
+    private long stagedLast;
+
+    private final ByteBuffer blockHeader = ByteBuffer.allocate(BLOCK_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private final ByteBuffer indexEntry = ByteBuffer.allocate(INDEX_ENTRY_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private final ByteBuffer[] blockBuffers = new ByteBuffer[2];
+    private final CRC32 crc = new CRC32();
+
+    private final Thread writerThread;
+    private volatile boolean closed;
+    private long lastSyncMillis;
+    private long lastRetentionMillis;
+    // Durée conservée, 0 : tout garder
+    private volatile long retentionMillis;
+
+    private volatile long writtenCount;
+    private volatile long droppedCount;
+    private volatile IOException lastError;
+
+    private TelemetryLog(File directory, int channels) {
+        this.directory = directory;
+        this.channels = channels;
+        this.recordSize = recordSize(channels);
+        this.staging = newStaging(recordSize);
+        this.writing = newStaging(recordSize);
+        this.writerThread = new Thread(this::writeLoop, "TelemetryLogWriter");
+        this.writerThread.setDaemon(true);
+    }
+
+    /**
+     * Ouvre (ou crée) le journal dans le répertoire, répare le dernier segment si besoin
+     * et démarre le thread d'écriture.
+     * @param channels canaux par enregistrement ({@link ChannelRegistry#getChannelCount()}) ;
+     *                 les segments écrits avec un autre nombre restent lisibles
+     */
+    public static TelemetryLog open(File directory, int channels) throws IOException {
+        if (channels < 1 || channels > ChannelRegistry.MAX_CHANNELS) {
+            throw new IllegalArgumentException("Nombre de canaux invalide: " + channels);
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Impossible de créer " + directory);
+        }
+        TelemetryLog log = new TelemetryLog(directory, channels);
+        log.loadSegments();
+        log.writerThread.start();
+        return log;
+    }
+
+    /**
+     * Ajoute un échantillon. Appelé depuis le thread de lecture, ne bloque jamais sur le disque.
+     * @return false si le tampon était plein et que l'échantillon a été perdu
+     */
+    public boolean append(TelemetrySample sample) {
+        synchronized (stagingLock) {
+            if (closed || staging.remaining() < recordSize) {
+                droppedCount++;
+                return false;
+            }
+            long timestamp = sample.getTimestampMillis();
+            staging.putLong(timestamp);
+            staging.putInt(sample.getTimeOfDayMillis());
+            staging.putInt(sample.getPresentMask());
+            for (int channel = 0; channel < channels; channel++) {
+                staging.putFloat(sample.get(channel));
+            }
+            if (stagedCount == 0) {
+                stagedFirst = timestamp;
+            }
+            stagedLast = timestamp;
+            stagedCount++;
+            // Réveiller le thread d'écriture quand le tampon est à moitié plein
+            if (stagedCount == STAGING_RECORDS / 2) {
+                stagingLock.notify();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Relit les échantillons reçus dans [fromMillis, toMillis], dans l'ordre d'écriture.
+     * Seuls les blocs déjà écrits sur disque sont visibles.
+     * @return le nombre d'échantillons lus
+     */
+    public long read(long fromMillis, long toMillis, TelemetryDecoder.SampleListener listener) throws IOException {
+        Segment[] snapshot;
+        synchronized (segments) {
+            snapshot = segments.toArray(new Segment[0]);
+        }
+
+        // Segments écrits avec une autre table de canaux : l'échantillon couvre le plus large
+        int widest = channels;
+        for (Segment segment : snapshot) {
+            widest = Math.max(widest, segment.channels);
+        }
+        TelemetrySample sample = new TelemetrySample(widest);
+        ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer records = ByteBuffer.allocate(STAGING_RECORDS * recordSize(widest)).order(ByteOrder.LITTLE_ENDIAN);
+        long count = 0;
+
+        for (Segment segment : snapshot) {
+            int blockCount = segment.blockCount();
+            if (blockCount == 0 || segment.lastTimestamp() < fromMillis || segment.firstTimestamp() > toMillis) {
+                continue;
+            }
+            int block = segment.firstBlockEndingAfter(fromMillis);
+            if (block >= blockCount) {
+                continue;
+            }
+
+            FileChannel channel;
+            try {
+                channel = FileChannel.open(segment.dataFile.toPath(), StandardOpenOption.READ);
+            } catch (NoSuchFileException e) {
+                // Segment supprimé par la rétention depuis la copie de la liste
+                continue;
+            }
+            try {
+                // Une recherche puis lecture séquentielle des blocs suivants
+                channel.position(segment.offset(block));
+                for (; block < blockCount && segment.first(block) <= toMillis; block++) {
+                    header.clear();
+                    readFully(channel, header);
+                    header.flip();
+                    header.getInt();
+                    int recordCount = header.getInt();
+                    header.position(BLOCK_HEADER_SIZE - 4);
+                    int blockChannels = channelsOf(header.getInt());
+
+                    records.clear();
+                    records.limit(recordCount * recordSize(blockChannels));
+                    readFully(channel, records);
+                    records.flip();
+                    for (int i = 0; i < recordCount; i++) {
+                        if (readRecord(records, sample, fromMillis, toMillis, blockChannels)) {
+                            listener.onSample(sample);
+                            count++;
+                        }
+                    }
+                }
+            } finally {
+                channel.close();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Supprime, à intervalle régulier et depuis le thread d'écriture, les segments dont tous les
+     * échantillons sont plus anciens que retentionMillis (0 : tout garder). Le segment en cours
+     * d'écriture n'est jamais supprimé.
+     */
+    public void setRetentionMillis(long retentionMillis) {
+        this.retentionMillis = retentionMillis;
+    }
+
+    /**
+     * Canaux par enregistrement écrit.
+     */
+    public int getChannelCount() {
+        return channels;
+    }
+
+    public long getWrittenCount() {
+        return writtenCount;
+    }
+
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * Dernière erreur d'écriture rencontrée par le thread d'écriture, null si aucune.
+     */
+    public IOException getLastError() {
+        return lastError;
+    }
+
+    /**
+     * Vide le tampon, synchronise le disque et arrête le thread d'écriture.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (stagingLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            stagingLock.notify();
+        }
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        closeActive();
+        if (lastError != null) {
+            throw lastError;
+        }
+    }
+
+    static int recordSize(int channels) {
+        return 8 + 4 + 4 + 4 * channels;
+    }
+
+    private static int channelsOf(int headerField) {
+        return headerField == 0 ? LEGACY_CHANNELS : headerField;
+    }
+
+    private static ByteBuffer newStaging(int recordSize) {
+        return ByteBuffer.allocate(STAGING_RECORDS * recordSize).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static boolean readRecord(ByteBuffer records, TelemetrySample sample, long fromMillis, long toMillis,
+                                      int channels) {
+        long timestamp = records.getLong();
+        if (timestamp < fromMillis || timestamp > toMillis) {
+            records.position(records.position() + recordSize(channels) - 8);
+            return false;
+        }
+        sample.reset();
+        sample.setReceivedAtMillis(timestamp);
+        sample.setTimeOfDayMillis(records.getInt());
+        int mask = records.getInt();
+        for (int channel = 0; channel < channels; channel++) {
+            float value = records.getFloat();
+            if ((mask & (1 << channel)) != 0) {
+                sample.set(channel, value);
+            }
+        }
+        if ((mask & TelemetrySample.GAP_FLAG) != 0) {
+            sample.markGap();
+        }
+        return true;
+    }
+
+    // --- Thread d'écriture ---
+
+    private void writeLoop() {
+        lastSyncMillis = System.currentTimeMillis();
+        while (true) {
+            int count;
+            long first;
+            long last;
+            boolean stopping;
+            synchronized (stagingLock) {
+                if (!closed && stagedCount < STAGING_RECORDS / 2) {
+                    try {
+                        stagingLock.wait(FLUSH_INTERVAL_MS);
+                    } catch (InterruptedException e) {
+                        closed = true;
+                    }
+                }
+                ByteBuffer swap = staging;
+                staging = writing;
+                writing = swap;
+                count = stagedCount;
+                first = stagedFirst;
+                last = stagedLast;
+                stagedCount = 0;
+                stopping = closed;
+            }
+
+            try {
+                if (count > 0) {
+                    writeBlock(writing, count, first, last);
+                }
+                long now = System.currentTimeMillis();
+                if (stopping || now - lastSyncMillis >= FSYNC_INTERVAL_MS) {
+                    sync();
+                    lastSyncMillis = now;
+                }
+                long retention = retentionMillis;
+                if (!stopping && retention > 0 && now - lastRetentionMillis >= RETENTION_CHECK_INTERVAL_MS) {
+                    deleteSegmentsBefore(now - retention);
+                    lastRetentionMillis = now;
+                }
+            } catch (IOException e) {
+                lastError = e;
+                synchronized (stagingLock) {
+                    droppedCount += count;
+                }
+            } finally {
+                writing.clear();
+            }
+
+            if (stopping) {
+                return;
+            }
+        }
+    }
+
+    private void writeBlock(ByteBuffer data, int count, long first, long last) throws IOException {
+        if (active == null || active.size >= SEGMENT_MAX_BYTES) {
+            rollSegment();
+        }
+
+        data.flip();
+        crc.reset();
+        crc.update(data.array(), 0, data.limit());
+
+        blockHeader.clear();
+        blockHeader.putInt(BLOCK_MAGIC);
+        blockHeader.putInt(count);
+        blockHeader.putLong(first);
+        blockHeader.putLong(last);
+        blockHeader.putInt((int) crc.getValue());
+        blockHeader.putInt(channels);
+        blockHeader.flip();
+
+        long offset = active.size;
+        blockBuffers[0] = blockHeader;
+        blockBuffers[1] = data;
+        while (data.hasRemaining()) {
+            activeData.write(blockBuffers);
+        }
+        active.size = offset + BLOCK_HEADER_SIZE + data.limit();
+
+        indexEntry.clear();
+        indexEntry.putLong(first);
+        indexEntry.putLong(last);
+        indexEntry.putLong(offset);
+        indexEntry.putInt(count);
+        indexEntry.flip();
+        while (indexEntry.hasRemaining()) {
+            activeIndex.write(indexEntry);
+        }
+
+        // Visible des lecteurs seulement une fois les données écrites
+        active.addBlock(first, last, offset, count);
+        writtenCount += count;
+    }
+
+    // Retire les plus anciens segments entièrement antérieurs à cutoff, dans l'ordre
+    private void deleteSegmentsBefore(long cutoff) {
+        while (true) {
+            Segment oldest;
+            synchronized (segments) {
+                if (segments.isEmpty() || segments.get(0) == active || segments.get(0).lastTimestamp() >= cutoff) {
+                    return;
+                }
+                oldest = segments.remove(0);
+            }
+            oldest.dataFile.delete();
+            oldest.indexFile.delete();
+        }
+    }
+
+    private void sync() throws IOException {
+        if (activeData != null) {
+            activeData.force(false);
+            activeIndex.force(false);
+        }
+    }
+
+    private void rollSegment() throws IOException {
+        long id = 0;
+        if (active != null) {
+            id = active.id + 1;
+            closeActive();
+        } else if (!segments.isEmpty()) {
+            id = segments.get(segments.size() - 1).id + 1;
+        }
+
+        Segment segment = new Segment(directory, id, channels);
+        openActive(segment);
+        synchronized (segments) {
+            segments.add(segment);
+        }
+    }
+
+    private void openActive(Segment segment) throws IOException {
+        activeData = FileChannel.open(segment.dataFile.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        activeData.position(segment.size);
+        activeIndex = FileChannel.open(segment.indexFile.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        activeIndex.position((long) segment.blockCount() * INDEX_ENTRY_SIZE);
+        active = segment;
+    }
+
+    private void closeActive() throws IOException {
+        if (activeData != null) {
+            sync();
+            activeData.close();
+            activeIndex.close();
+            activeData = null;
+            activeIndex = null;
+        }
+        active = null;
+    }
+
+    // --- Ouverture et réparation ---
+
+    private void loadSegments() throws IOException {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(DATA_SUFFIX));
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files);
+
+        for (int i = 0; i < files.length; i++) {
+            String name = files[i].getName();
+            long id;
+            try {
+                id = Long.parseLong(name.substring(0, name.length() - DATA_SUFFIX.length()));
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            Segment segment = new Segment(directory, id, channels);
+            boolean last = i == files.length - 1;
+            if (last || !segment.loadIndex()) {
+                // Dernier segment (peut-être interrompu) ou index illisible : on vérifie les blocs
+                segment.recover();
+            }
+            segments.add(segment);
+        }
+
+        // On continue d'écrire dans le dernier segment s'il n'est pas plein et a le même format
+        if (!segments.isEmpty()) {
+            Segment last = segments.get(segments.size() - 1);
+            if (last.size < SEGMENT_MAX_BYTES && last.channels == channels) {
+                openActive(last);
+            }
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Fin de fichier inattendue");
+            }
+        }
+    }
+
+    /**
+     * Un fichier de données et son index clairsemé (un enregistrement par bloc).
+     */
+    private static class Segment {
+        final long id;
+        final File dataFile;
+        final File indexFile;
+        // Taille des données valides, modifiée uniquement par le thread d'écriture
+        long size;
+        // Canaux par enregistrement, identique pour tous les blocs du segment
+        int channels;
+        // Canaux du journal qui l'a ouvert, repris tant que le segment est vide
+        private final int writerChannels;
+
+        // Index en mémoire ; blockCount est publié après les tableaux pour les lecteurs
+        private long[] firsts = new long[64];
+        private long[] lasts = new long[64];
+        private long[] offsets = new long[64];
+        private volatile int blockCount;
+
+        Segment(File directory, long id, int channels) {
+            this.id = id;
+            this.channels = channels;
+            this.writerChannels = channels;
+            String base = String.format(Locale.ROOT, "%016d", id);
+            this.dataFile = new File(directory, base + DATA_SUFFIX);
+            this.indexFile = new File(directory, base + INDEX_SUFFIX);
+        }
+
+        synchronized void addBlock(long first, long last, long offset, int count) {
+            int n = blockCount;
+            if (n == firsts.length) {
+                firsts = Arrays.copyOf(firsts, n * 2);
+                lasts = Arrays.copyOf(lasts, n * 2);
+                offsets = Arrays.copyOf(offsets, n * 2);
+            }
+            firsts[n] = first;
+            lasts[n] = last;
+            offsets[n] = offset;
+            blockCount = n + 1;
+        }
+
+        int blockCount() {
+            return blockCount;
+        }
+
+        synchronized long first(int block) {
+            return firsts[block];
+        }
+
+        synchronized long offset(int block) {
+            return offsets[block];
+        }
+
+        synchronized long firstTimestamp() {
+            return firsts[0];
+        }
+
+        synchronized long lastTimestamp() {
+            long last = Long.MIN_VALUE;
+            for (int i = 0; i < blockCount; i++) {
+                last = Math.max(last, lasts[i]);
+            }
+            return last;
+        }
+
+        /**
+         * Premier bloc dont le dernier horodatage est >= timestamp (recherche linéaire sur
+         * l'index en mémoire, quelques milliers d'entrées au plus).
+         */
+        synchronized int firstBlockEndingAfter(long timestamp) {
+            int block = 0;
+            while (block < blockCount && lasts[block] < timestamp) {
+                block++;
+            }
+            return block;
+        }
+
+        // Charge l'index d'un segment fermé proprement
+        boolean loadIndex() throws IOException {
+            if (!indexFile.exists()) {
+                return false;
+            }
+            long dataSize = dataFile.length();
+            if (dataSize >= BLOCK_HEADER_SIZE) {
+                try (FileChannel data = FileChannel.open(dataFile.toPath(), StandardOpenOption.READ)) {
+                    ByteBuffer field = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+                    data.read(field, BLOCK_HEADER_SIZE - 4);
+                    field.flip();
+                    channels = channelsOf(field.getInt());
+                }
+            }
+            int recordSize = recordSize(channels);
+            try (FileChannel channel = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ)) {
+                ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                long end = 0;
+                while (channel.read(entry) == INDEX_ENTRY_SIZE) {
+                    entry.flip();
+                    long first = entry.getLong();
+                    long last = entry.getLong();
+                    long offset = entry.getLong();
+                    int count = entry.getInt();
+                    entry.clear();
+                    end = offset + BLOCK_HEADER_SIZE + (long) count * recordSize;
+                    if (end > dataSize) {
+                        return false;
+                    }
+                    addBlock(first, last, offset, count);
+                }
+                size = end;
+                return end == dataSize;
+            }
+        }
+
+        /**
+         * Parcourt les blocs, vérifie leur CRC et tronque le fichier après le dernier bloc intact.
+         * L'index est réécrit à partir des en-têtes valides.
+         */
+        void recover() throws IOException {
+            blockCount = 0;
+            size = 0;
+            ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            CRC32 crc = new CRC32();
+
+            try (FileChannel data = FileChannel.open(dataFile.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                long length = data.size();
+                long offset = 0;
+                while (offset + BLOCK_HEADER_SIZE <= length) {
+                    header.clear();
+                    data.read(header, offset);
+                    header.flip();
+                    int magic = header.getInt();
+                    int count = header.getInt();
+                    long first = header.getLong();
+                    long last = header.getLong();
+                    int expectedCrc = header.getInt();
+                    int blockChannels = channelsOf(header.getInt());
+                    if (offset == 0) {
+                        channels = blockChannels;
+                    }
+                    int recordSize = recordSize(blockChannels);
+                    long blockEnd = offset + BLOCK_HEADER_SIZE + (long) count * recordSize;
+                    if (magic != BLOCK_MAGIC || count <= 0 || count > STAGING_RECORDS || blockEnd > length
+                            || blockChannels != channels || blockChannels > ChannelRegistry.MAX_CHANNELS) {
+                        break;
+                    }
+
+                    ByteBuffer records = ByteBuffer.allocate(count * recordSize);
+                    data.read(records, offset + BLOCK_HEADER_SIZE);
+                    crc.reset();
+                    crc.update(records.array(), 0, records.capacity());
+                    if ((int) crc.getValue() != expectedCrc) {
+                        break;
+                    }
+
+                    addBlock(first, last, offset, count);
+                    offset = blockEnd;
+                }
+
+                if (blockCount == 0) {
+                    channels = writerChannels;
+                }
+
+                // Fin de segment déchirée (coupure pendant une écriture) : on la supprime
+                if (offset < length) {
+                    data.truncate(offset);
+                    data.force(true);
+                }
+                size = offset;
+            }
+
+            try (FileChannel index = FileChannel.open(indexFile.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                for (int i = 0; i < blockCount; i++) {
+                    entry.clear();
+                    entry.putLong(firsts[i]);
+                    entry.putLong(lasts[i]);
+                    entry.putLong(offsets[i]);
+                    entry.putInt((int) ((i + 1 < blockCount ? offsets[i + 1] : size)
+                            - offsets[i] - BLOCK_HEADER_SIZE) / recordSize(channels));
+                    entry.flip();
+                    while (entry.hasRemaining()) {
+                        index.write(entry);
+                    }
+                }
+                index.force(true);
+            }
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.bluetoothapp;
+
+/**
+ * Échantillon de télémétrie mutable et réutilisable.
+ * Le décodeur remplit toujours la même instance pour ne rien allouer par ligne reçue.
+ * Les valeurs sont indexées par identifiant de canal ({@link ChannelRegistry}).
+ */
+public class TelemetrySample {
+
+    // Valeur de timeOfDayMillis quand l'ESP32 n'a pas envoyé de champ H
+    public static final int NO_TIME = -1;
+    // Valeur de timestampNanos tant que l'échantillon n'a pas été recalé
+    private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+    private static final long DAY_MILLIS = 86_400_000L;
+
+    // Bit du masque marquant une coupure de liaison : pas de valeurs, seulement l'instant de la coupure
+    public static final int GAP_FLAG = 1 << 31;
+
+    private float[] values;
+    private int presentMask;
+    private int timeOfDayMillis = NO_TIME;
+    // Heure de réception côté téléphone (System.currentTimeMillis)
+    private long receivedAtMillis;
+    // Heure de mesure epoch recalée par ClockSync
+    private long timestampNanos = NO_TIMESTAMP;
+
+    /**
+     * @param channelCount taille du tableau de valeurs, {@link ChannelRegistry#getChannelCount()}
+     */
+    public TelemetrySample(int channelCount) {
+        values = new float[channelCount];
+    }
+
+    public int getChannelCount() {
+        return values.length;
+    }
+
+    public void reset() {
+        // Seuls les canaux reçus ont été écrits
+        for (int mask = presentMask & ~GAP_FLAG; mask != 0; mask &= mask - 1) {
+            values[Integer.numberOfTrailingZeros(mask)] = 0f;
+        }
+        presentMask = 0;
+        timeOfDayMillis = NO_TIME;
+        timestampNanos = NO_TIMESTAMP;
+    }
+
+    public void set(int channel, float value) {
+        values[channel] = value;
+        presentMask |= 1 << channel;
+    }
+
+    // 0 pour un canal absent, y compris au-delà de la table de canaux de l'échantillon
+    public float get(int channel) {
+        return channel < values.length ? values[channel] : 0f;
+    }
+
+    public boolean has(int channel) {
+        return (presentMask & (1 << channel)) != 0;
+    }
+
+    /**
+     * Transforme l'échantillon en marqueur de coupure, pour que graphiques et journal
+     * montrent l'interruption au lieu de relier les points de part et d'autre.
+     */
+    public void markGap() {
+        presentMask |= GAP_FLAG;
+    }
+
+    public boolean isGap() {
+        return (presentMask & GAP_FLAG) != 0;
+    }
+
+    public int getPresentMask() {
+        return presentMask;
+    }
+
+    public void setTimeOfDayMillis(int timeOfDayMillis) {
+        this.timeOfDayMillis = timeOfDayMillis;
+    }
+
+    public int getTimeOfDayMillis() {
+        return timeOfDayMillis;
+    }
+
+    public void setReceivedAtMillis(long receivedAtMillis) {
+        this.receivedAtMillis = receivedAtMillis;
+    }
+
+    public long getReceivedAtMillis() {
+        return receivedAtMillis;
+    }
+
+    public void setTimestampNanos(long timestampNanos) {
+        this.timestampNanos = timestampNanos;
+    }
+
+    /**
+     * Heure de mesure epoch en ns, recalée sur l'horloge de la carte ({@link ClockSync}) ;
+     * l'heure de réception tant que l'échantillon n'a pas été recalé.
+     */
+    public long getTimestampNanos() {
+        return timestampNanos != NO_TIMESTAMP ? timestampNanos : receivedAtMillis * 1_000_000L;
+    }
+
+    public long getTimestampMillis() {
+        return Math.floorDiv(getTimestampNanos(), 1_000_000L);
+    }
+
+    public float getTemperature() {
+        return get(ChannelRegistry.TEMPERATURE);
+    }
+
+    public float getVoltage() {
+        return get(ChannelRegistry.VOLTAGE);
+    }
+
+    public int getBatteryPercentage() {
+        return (int) get(ChannelRegistry.BATTERY);
+    }
+
+    public float getBrightness() {
+        return get(ChannelRegistry.BRIGHTNESS);
+    }
+
+    /**
+     * Copie les valeurs de tous les canaux (0 pour les canaux absents) à partir de dest[offset].
+     */
+    public void copyValuesTo(float[] dest, int offset) {
+        System.arraycopy(values, 0, dest, offset, values.length);
+    }
+
+    public void copyFrom(TelemetrySample other) {
+        if (values.length != other.values.length) {
+            // Échantillon d'une autre table de canaux : une seule allocation au changement
+            values = new float[other.values.length];
+        }
+        System.arraycopy(other.values, 0, values, 0, values.length);
+        presentMask = other.presentMask;
+        timeOfDayMillis = other.timeOfDayMillis;
+        receivedAtMillis = other.receivedAtMillis;
+        timestampNanos = other.timestampNanos;
+    }
+
+    /**
+     * Construit l'horodatage "HH:mm:ss" pour l'affichage.
+     * Alloue une String : à n'appeler que côté interface, jamais dans la boucle de lecture.
+     */
+    public String formatTimestamp() {
+        return formatTimeOfDay(timeOfDayMillis);
+    }
+
+    /**
+     * Heure locale "HH:mm:ss" d'un horodatage epoch en ns, à l'affichage uniquement.
+     */
+    public static String formatLocalTime(long timestampNanos) {
+        long millis = Math.floorDiv(timestampNanos, 1_000_000L);
+        long local = millis + java.util.TimeZone.getDefault().getOffset(millis);
+        return formatTimeOfDay((int) Math.floorMod(local, DAY_MILLIS));
+    }
+
+    public static String formatTimeOfDay(int timeOfDayMillis) {
+        if (timeOfDayMillis == NO_TIME) {
+            return "--:--:--";
+        }
+        int seconds = timeOfDayMillis / 1000;
+        char[] text = new char[8];
+        writeTwoDigits(text, 0, seconds / 3600);
+        text[2] = ':';
+        writeTwoDigits(text, 3, (seconds / 60) % 60);
+        text[5] = ':';
+        writeTwoDigits(text, 6, seconds % 60);
+        return new String(text);
+    }
+
+    private static void writeTwoDigits(char[] text, int offset, int value) {
+        text[offset] = (char) ('0' + value / 10);
+        text[offset + 1] = (char) ('0' + value % 10);
+    }
+}
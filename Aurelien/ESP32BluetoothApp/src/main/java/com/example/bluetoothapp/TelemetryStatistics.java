@@ -0,0 +1,146 @@
+package com.example.bluetoothapp;
+
+/**
+ * Statistiques glissantes des canaux d'un appareil sur la dernière minute, heure et journée.
+ *
+ * Alimentées par le thread de lecture à chaque échantillon décodé ; le thread principal en copie
+ * les valeurs dans un {@link Snapshot} réutilisé, sans parcourir l'historique.
+ */
+public class TelemetryStatistics {
+
+    public static final int WINDOW_MINUTE = 0;
+    public static final int WINDOW_HOUR = 1;
+    public static final int WINDOW_DAY = 2;
+    public static final int WINDOW_COUNT = 3;
+
+    private static final long[] WINDOW_MILLIS = {60_000L, 3_600_000L, 86_400_000L};
+
+    private final RollingStatistics[] channels;
+
+    /**
+     * @param channelCount canaux suivis, {@link ChannelRegistry#getChannelCount()}
+     */
+    public TelemetryStatistics(int channelCount) {
+        channels = new RollingStatistics[channelCount];
+        for (int channel = 0; channel < channels.length; channel++) {
+            channels[channel] = new RollingStatistics(WINDOW_MILLIS);
+        }
+    }
+
+    public static long getWindowMillis(int window) {
+        return WINDOW_MILLIS[window];
+    }
+
+    /**
+     * Plus courte fenêtre couvrant au moins cette durée, ou -1 si aucune ne suffit.
+     */
+    public static int windowCovering(long spanMillis) {
+        for (int window = 0; window < WINDOW_COUNT; window++) {
+            if (WINDOW_MILLIS[window] >= spanMillis) {
+                return window;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Thread de lecture. Les marqueurs de coupure sont ignorés.
+     */
+    public synchronized void add(TelemetrySample sample) {
+        if (sample.isGap()) {
+            return;
+        }
+        long timestamp = sample.getReceivedAtMillis();
+        for (int mask = sample.getPresentMask(); mask != 0; mask &= mask - 1) {
+            int channel = Integer.numberOfTrailingZeros(mask);
+            if (channel >= channels.length) {
+                break;
+            }
+            channels[channel].add(timestamp, sample.get(channel));
+        }
+    }
+
+    public synchronized void clear() {
+        for (RollingStatistics channel : channels) {
+            channel.clear();
+        }
+    }
+
+    /**
+     * Copie les statistiques ; la copie est agrandie si elle vient d'un appareil avec moins de canaux.
+     */
+    public synchronized void copyTo(Snapshot snapshot) {
+        snapshot.resize(channels.length);
+        for (int channel = 0; channel < channels.length; channel++) {
+            for (int window = 0; window < WINDOW_COUNT; window++) {
+                RollingStatistics.Window source = channels[channel].getWindow(window);
+                int i = channel * WINDOW_COUNT + window;
+                snapshot.count[i] = source.getCount();
+                snapshot.min[i] = (float) source.getMin();
+                snapshot.max[i] = (float) source.getMax();
+                snapshot.mean[i] = (float) source.getMean();
+                snapshot.stdDev[i] = (float) source.getStdDev();
+                snapshot.ewma[i] = (float) source.getEwma();
+            }
+        }
+    }
+
+    /**
+     * Copie des statistiques, lue sur le thread principal. Les valeurs valent NaN tant que la
+     * fenêtre est vide.
+     */
+    public static final class Snapshot {
+        private int channelCount;
+        private long[] count = new long[0];
+        private float[] min = new float[0];
+        private float[] max = new float[0];
+        private float[] mean = new float[0];
+        private float[] stdDev = new float[0];
+        private float[] ewma = new float[0];
+
+        /**
+         * Canaux de la dernière copie ; les getters ne sont valides qu'en deçà.
+         */
+        public int getChannelCount() {
+            return channelCount;
+        }
+
+        private void resize(int channels) {
+            channelCount = channels;
+            int size = channels * WINDOW_COUNT;
+            if (count.length == size) {
+                return;
+            }
+            count = new long[size];
+            min = new float[size];
+            max = new float[size];
+            mean = new float[size];
+            stdDev = new float[size];
+            ewma = new float[size];
+        }
+
+        public long getCount(int channel, int window) {
+            return count[channel * WINDOW_COUNT + window];
+        }
+
+        public float getMin(int channel, int window) {
+            return min[channel * WINDOW_COUNT + window];
+        }
+
+        public float getMax(int channel, int window) {
+            return max[channel * WINDOW_COUNT + window];
+        }
+
+        public float getMean(int channel, int window) {
+            return mean[channel * WINDOW_COUNT + window];
+        }
+
+        public float getStdDev(int channel, int window) {
+            return stdDev[channel * WINDOW_COUNT + window];
+        }
+
+        public float getEwma(int channel, int window) {
+            return ewma[channel * WINDOW_COUNT + window];
+        }
+    }
+}
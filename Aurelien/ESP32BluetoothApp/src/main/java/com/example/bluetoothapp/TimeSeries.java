@@ -0,0 +1,66 @@
+package com.example.bluetoothapp;
+
+/**
+ * Historique d'un canal lu par les graphiques et le sous-échantillonnage, qu'il soit en
+ * tableaux ({@link TimeSeriesRingBuffer}) ou dans un {@link SampleStore}, en mémoire ou sur disque.
+ * Les index logiques vont de 0 (le plus ancien point conservé) à size() - 1 (le plus récent) ;
+ * les horodatages doivent être croissants pour que {@link #lowerBound(long)} soit valide.
+ */
+public interface TimeSeries {
+
+    void append(long timestamp, float value);
+
+    void clear();
+
+    int size();
+
+    /**
+     * Nombre total de points ajoutés depuis le dernier clear(), y compris ceux déjà oubliés.
+     * L'index logique i correspond au point numéro getTotalCount() - size() + i.
+     */
+    long getTotalCount();
+
+    long getTimestamp(int index);
+
+    float getValue(int index);
+
+    /**
+     * Index logique du premier point dont l'horodatage est >= timestamp, size() si aucun.
+     */
+    int lowerBound(long timestamp);
+
+    /**
+     * Index du minimum et du maximum de [from, to), non vide, le premier rencontré à égalité,
+     * réunis en un long : (min << 32) | max. Les historiques qui le peuvent parcourent la plage
+     * d'un seul tenant au lieu d'un appel à {@link #getValue} par point.
+     */
+    default long minMaxIndex(int from, int to) {
+        int minIndex = from;
+        int maxIndex = from;
+        float min = getValue(from);
+        float max = min;
+        for (int i = from + 1; i < to; i++) {
+            float value = getValue(i);
+            if (value < min) {
+                min = value;
+                minIndex = i;
+            } else if (value > max) {
+                max = value;
+                maxIndex = i;
+            }
+        }
+        return ((long) minIndex << 32) | (maxIndex & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Copie les valeurs [from, from + count) dans dst.
+     * @return le nombre de valeurs copiées
+     */
+    int copyValues(int from, int count, float[] dst, int dstOffset);
+
+    /**
+     * Copie les horodatages [from, from + count) dans dst.
+     * @return le nombre d'horodatages copiés
+     */
+    int copyTimestamps(int from, int count, long[] dst, int dstOffset);
+}
@@ -0,0 +1,136 @@
+package com.example.bluetoothapp;
+
+/**
+ * Historique d'un canal de taille fixe : horodatages et valeurs en tableaux primitifs circulaires.
+ * L'ajout est en O(1) sans allocation ; une fois plein, chaque ajout écrase le point le plus ancien.
+ * Les index logiques vont de 0 (le plus ancien) à size() - 1 (le plus récent).
+ * Les horodatages doivent être croissants pour que {@link #lowerBound(long)} soit valide.
+ */
+public class TimeSeriesRingBuffer implements TimeSeries {
+
+    private final long[] timestamps;
+    private final float[] values;
+    private final int capacity;
+
+    // Position physique du prochain ajout
+    private int next;
+    private int size;
+    private long totalCount;
+
+    public TimeSeriesRingBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacité invalide: " + capacity);
+        }
+        this.capacity = capacity;
+        this.timestamps = new long[capacity];
+        this.values = new float[capacity];
+    }
+
+    @Override
+    public void append(long timestamp, float value) {
+        timestamps[next] = timestamp;
+        values[next] = value;
+        next = next + 1 == capacity ? 0 : next + 1;
+        if (size < capacity) {
+            size++;
+        }
+        totalCount++;
+    }
+
+    @Override
+    public void clear() {
+        next = 0;
+        size = 0;
+        totalCount = 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Nombre total de points ajoutés depuis la création, y compris ceux déjà écrasés.
+     * L'index logique i correspond au point numéro getTotalCount() - size() + i.
+     */
+    @Override
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    @Override
+    public long getTimestamp(int index) {
+        return timestamps[physical(index)];
+    }
+
+    @Override
+    public float getValue(int index) {
+        return values[physical(index)];
+    }
+
+    /**
+     * Index logique du premier point dont l'horodatage est >= timestamp, size() si aucun.
+     */
+    @Override
+    public int lowerBound(long timestamp) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[physical(mid)] < timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Copie les valeurs [from, from + count) dans dst, en deux System.arraycopy au plus.
+     * @return le nombre de valeurs copiées
+     */
+    @Override
+    public int copyValues(int from, int count, float[] dst, int dstOffset) {
+        count = clampCount(from, count);
+        int start = physical(from);
+        int firstPart = Math.min(count, capacity - start);
+        System.arraycopy(values, start, dst, dstOffset, firstPart);
+        System.arraycopy(values, 0, dst, dstOffset + firstPart, count - firstPart);
+        return count;
+    }
+
+    /**
+     * Copie les horodatages [from, from + count) dans dst.
+     * @return le nombre d'horodatages copiés
+     */
+    @Override
+    public int copyTimestamps(int from, int count, long[] dst, int dstOffset) {
+        count = clampCount(from, count);
+        int start = physical(from);
+        int firstPart = Math.min(count, capacity - start);
+        System.arraycopy(timestamps, start, dst, dstOffset, firstPart);
+        System.arraycopy(timestamps, 0, dst, dstOffset + firstPart, count - firstPart);
+        return count;
+    }
+
+    private int clampCount(int from, int count) {
+        if (from < 0 || from > size) {
+            throw new IndexOutOfBoundsException("Index " + from + ", taille " + size);
+        }
+        return Math.max(0, Math.min(count, size - from));
+    }
+
+    private int physical(int index) {
+        int oldest = next - size;
+        if (oldest < 0) {
+            oldest += capacity;
+        }
+        int position = oldest + index;
+        return position >= capacity ? position - capacity : position;
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.bluetoothapp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Liaison série avec un appareil : RFCOMM sur le téléphone, TCP ou tube en mémoire pour
+ * faire tourner la chaîne de réception sur une machine sans Bluetooth.
+ */
+public interface Transport extends Closeable {
+
+    /**
+     * Identifiant stable de l'appareil (adresse MAC pour RFCOMM).
+     */
+    String getAddress();
+
+    /**
+     * Nom affiché, éventuellement null.
+     */
+    String getName();
+
+    /**
+     * Établit la liaison ; bloquant. Rappelée après une coupure, elle ouvre une nouvelle
+     * liaison vers le même appareil en remplaçant l'ancienne.
+     */
+    void connect() throws IOException;
+
+    InputStream getInputStream() throws IOException;
+
+    OutputStream getOutputStream() throws IOException;
+
+    /**
+     * Horloge qui date les données lues sur cette liaison : l'heure système, sauf en rejeu.
+     */
+    default Clock getClock() {
+        return Clock.SYSTEM;
+    }
+
+    /**
+     * Ferme définitivement la liaison ; débloque une lecture ou une connexion en cours.
+     * Peut être appelé depuis n'importe quel thread et plusieurs fois.
+     */
+    @Override
+    void close() throws IOException;
+}
@@ -0,0 +1,102 @@
+package com.example.bluetoothapp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Règles d'alerte : hystérésis, durée minimale, vitesse de variation et coupures.
+ */
+public class AlertEvaluatorTest {
+
+    private static final ChannelRegistry REGISTRY = ChannelRegistry.createDefault();
+
+    private final List<String> events = new ArrayList<>();
+    private final TelemetrySample sample = new TelemetrySample(REGISTRY.getChannelCount());
+
+    private AlertEvaluator evaluator(AlertRule... rules) {
+        AlertRuleSet set = AlertRuleSet.compile(Arrays.asList(rules), "AA");
+        return new AlertEvaluator(set, (rule, raised, value, timestamp) ->
+                events.add((raised ? "+" : "-") + set.getRule(rule).getName() + "@" + timestamp));
+    }
+
+    private void feed(AlertEvaluator evaluator, long timestamp, int channel, float value) {
+        sample.reset();
+        sample.setReceivedAtMillis(timestamp);
+        sample.set(channel, value);
+        evaluator.evaluate(sample);
+    }
+
+    @Test
+    public void hysteresisAvoidsFlapping() {
+        AlertEvaluator alerts = evaluator(AlertRule.below("bas", ChannelRegistry.BATTERY, 20).withHysteresis(2));
+        feed(alerts, 0, ChannelRegistry.BATTERY, 25);
+        feed(alerts, 1, ChannelRegistry.BATTERY, 19);
+        feed(alerts, 2, ChannelRegistry.BATTERY, 21);
+        feed(alerts, 3, ChannelRegistry.BATTERY, 19);
+        feed(alerts, 4, ChannelRegistry.BATTERY, 22.5f);
+        assertEquals(Arrays.asList("+bas@1", "-bas@4"), events);
+        assertEquals(0, alerts.getActiveCount());
+    }
+
+    @Test
+    public void sustainedConditionRestartsAfterInterruption() {
+        AlertEvaluator alerts = evaluator(AlertRule.above("chaud", ChannelRegistry.TEMPERATURE, 60).sustainedFor(5000));
+        feed(alerts, 0, ChannelRegistry.TEMPERATURE, 61);
+        feed(alerts, 4000, ChannelRegistry.TEMPERATURE, 59);
+        feed(alerts, 5000, ChannelRegistry.TEMPERATURE, 61);
+        feed(alerts, 9000, ChannelRegistry.TEMPERATURE, 62);
+        assertTrue(events.isEmpty());
+        feed(alerts, 10_000, ChannelRegistry.TEMPERATURE, 62);
+        assertEquals(Arrays.asList("+chaud@10000"), events);
+        // Les autres canaux ne touchent pas à la règle
+        feed(alerts, 11_000, ChannelRegistry.VOLTAGE, 0);
+        assertTrue(alerts.isActive(0));
+    }
+
+    @Test
+    public void rateMeasuredOverWindowAndResetByGap() {
+        AlertEvaluator alerts = evaluator(
+                AlertRule.risingFasterThan("hausse", ChannelRegistry.TEMPERATURE, 0.5f, 10_000),
+                AlertRule.above("chaud", ChannelRegistry.TEMPERATURE, 100));
+        feed(alerts, 0, ChannelRegistry.TEMPERATURE, 20);
+        feed(alerts, 5000, ChannelRegistry.TEMPERATURE, 40);
+        assertTrue(events.isEmpty());
+        feed(alerts, 10_000, ChannelRegistry.TEMPERATURE, 30);
+        assertEquals(Arrays.asList("+hausse@10000"), events);
+
+        // Une coupure n'est pas une variation : la mesure repart de zéro
+        sample.reset();
+        sample.setReceivedAtMillis(11_000);
+        sample.markGap();
+        alerts.evaluate(sample);
+        feed(alerts, 12_000, ChannelRegistry.TEMPERATURE, 10);
+        feed(alerts, 22_000, ChannelRegistry.TEMPERATURE, 10);
+        assertEquals(Arrays.asList("+hausse@10000", "-hausse@22000"), events);
+
+        feed(alerts, 23_000, ChannelRegistry.TEMPERATURE, 101);
+        alerts.clearAll(24_000);
+        assertEquals("-chaud@24000", events.get(events.size() - 1));
+        assertFalse(alerts.isActive(1));
+    }
+
+    @Test
+    public void rulesForOtherDevicesAreLeftOut() {
+        List<AlertRule> rules = Arrays.asList(
+                AlertRule.above("a", ChannelRegistry.VOLTAGE, 1),
+                AlertRule.above("b", ChannelRegistry.TEMPERATURE, 1).forDevice("BB"),
+                AlertRule.above("c", ChannelRegistry.TEMPERATURE, 1).forDevice("AA"));
+        AlertRuleSet set = AlertRuleSet.compile(rules, "AA");
+        assertEquals(2, set.size());
+        // Triées par canal
+        assertEquals("c", set.getRule(0).getName());
+        assertEquals("a", set.getRule(1).getName());
+        assertEquals(3, AlertRuleSet.compile(rules, null).size());
+    }
+}
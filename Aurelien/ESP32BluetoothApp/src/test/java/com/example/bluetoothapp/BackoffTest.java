@@ -0,0 +1,45 @@
+package com.example.bluetoothapp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class BackoffTest {
+
+    @Test
+    public void delaysGrowWithJitterUpToCap() {
+        Backoff backoff = new Backoff(200, 3000, 8, new Random(7));
+        long[] nominal = {200, 400, 800, 1600, 3000, 3000, 3000, 3000};
+        for (long expected : nominal) {
+            assertTrue(backoff.hasNext());
+            long delay = backoff.nextDelayMillis();
+            assertTrue("délai " + delay + " pour " + expected, delay >= expected / 2 && delay <= expected);
+        }
+        assertFalse(backoff.hasNext());
+        assertEquals(8, backoff.getAttempts());
+    }
+
+    @Test
+    public void firstRetryLeavesRoomForTimeToDataTarget() {
+        // Première tentative en moins de 200 ms : le reste des 2 s revient à la connexion RFCOMM
+        for (int seed = 0; seed < 100; seed++) {
+            Backoff backoff = new Backoff(Backoff.DEFAULT_INITIAL_MILLIS, Backoff.DEFAULT_MAX_MILLIS,
+                    Backoff.DEFAULT_MAX_ATTEMPTS, new Random(seed));
+            assertTrue(backoff.nextDelayMillis() <= 200);
+        }
+    }
+
+    @Test
+    public void resetRestartsSequence() {
+        Backoff backoff = new Backoff(100, 1000, 3, new Random(1));
+        backoff.nextDelayMillis();
+        backoff.nextDelayMillis();
+        backoff.reset();
+        assertEquals(0, backoff.getAttempts());
+        assertTrue(backoff.nextDelayMillis() <= 100);
+    }
+}
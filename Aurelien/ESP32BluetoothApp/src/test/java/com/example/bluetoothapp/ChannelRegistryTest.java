@@ -0,0 +1,102 @@
+package com.example.bluetoothapp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class ChannelRegistryTest {
+
+    private static final ChannelRegistry REGISTRY = ChannelRegistry.createDefault();
+
+    @Test
+    public void looksUpShortAndLongKeys() {
+        ChannelRegistry registry = ChannelRegistry.createDefault();
+        byte[] line = "T:1,Lux:2,Luxe:3,P:4".getBytes(StandardCharsets.US_ASCII);
+
+        assertEquals(ChannelRegistry.TEMPERATURE, registry.lookup(line, 0, 1));
+        assertEquals(ChannelRegistry.LUX, registry.lookup(line, 4, 7));
+        assertEquals(ChannelRegistry.UNKNOWN, registry.lookup(line, 10, 14));
+        assertEquals(ChannelRegistry.PRESSURE, registry.lookup("P"));
+        assertEquals(ChannelRegistry.UNKNOWN, registry.lookup("H"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsDuplicateKeys() {
+        new ChannelRegistry().register(0, "T", "a", "u", 1).register(1, "T", "b", "u", 1);
+    }
+
+    @Test
+    public void decoderDeliversRegisteredChannels() {
+        List<float[]> received = new ArrayList<>();
+        TelemetryDecoder decoder = new TelemetryDecoder(ChannelRegistry.createDefault(), sample -> {
+            assertFalse(sample.has(ChannelRegistry.BRIGHTNESS));
+            received.add(new float[]{sample.get(ChannelRegistry.TEMPERATURE),
+                    sample.get(ChannelRegistry.PRESSURE), sample.get(ChannelRegistry.LUX)});
+        });
+        byte[] text = "T:21.5,V:3.30,B:80,P:1013.2,Lux: 350.5,X:9\n".getBytes(StandardCharsets.US_ASCII);
+        decoder.feed(text, 0, text.length);
+
+        assertEquals(0, decoder.getErrorCount());
+        assertEquals(1, received.size());
+        assertEquals(21.5f, received.get(0)[0], 1e-4f);
+        assertEquals(1013.2f, received.get(0)[1], 1e-3f);
+        assertEquals(350.5f, received.get(0)[2], 1e-3f);
+    }
+
+    @Test
+    public void binaryFramesCarryPressureAndWideLux() {
+        float[][] values = new float[1][REGISTRY.getChannelCount()];
+        Arrays.fill(values[0], Float.NaN);
+        values[0][ChannelRegistry.PRESSURE] = 1013.2f;
+        values[0][ChannelRegistry.LUX] = 12000.25f;
+        byte[] frame = new byte[BinaryFrameCodec.MAX_FRAME_SIZE];
+        int length = BinaryFrameCodec.encode(REGISTRY, frame, 0, BinaryFrameCodec.NO_TIME, 100, values, 1);
+
+        List<TelemetrySample> received = new ArrayList<>();
+        TelemetryDecoder decoder = new TelemetryDecoder(sample -> {
+            TelemetrySample copy = new TelemetrySample(sample.getChannelCount());
+            copy.copyFrom(sample);
+            received.add(copy);
+        });
+        decoder.feed(frame, 0, length);
+
+        assertEquals(1, received.size());
+        assertTrue(received.get(0).has(ChannelRegistry.LUX));
+        assertEquals(1013.2f, received.get(0).get(ChannelRegistry.PRESSURE), 1e-3f);
+        assertEquals(12000.25f, received.get(0).get(ChannelRegistry.LUX), 1e-2f);
+    }
+
+    @Test
+    public void addedChannelSizesSamplesAndCarriesItsScale() {
+        int humidity = 8;
+        ChannelRegistry registry = ChannelRegistry.createDefault().register(humidity, "Hum", "Humidité", "%", 10);
+        assertEquals(humidity + 1, registry.getChannelCount());
+
+        float[][] values = new float[1][registry.getChannelCount()];
+        Arrays.fill(values[0], Float.NaN);
+        values[0][humidity] = 45.5f;
+        byte[] frame = new byte[BinaryFrameCodec.MAX_FRAME_SIZE];
+        int length = BinaryFrameCodec.encode(registry, frame, 0, BinaryFrameCodec.NO_TIME, 100, values, 1);
+        byte[] text = "T:20.0,V:3.30,Hum:47.5\n".getBytes(StandardCharsets.US_ASCII);
+
+        List<Float> received = new ArrayList<>();
+        TelemetryDecoder.SampleListener listener = sample -> {
+            assertEquals(humidity + 1, sample.getChannelCount());
+            assertTrue(sample.has(humidity));
+            received.add(sample.get(humidity));
+        };
+        new TelemetryDecoder(registry, listener).feed(frame, 0, length);
+        new TelemetryDecoder(registry, listener).feed(text, 0, text.length);
+
+        assertEquals(2, received.size());
+        assertEquals(45.5f, received.get(0), 1e-4f);
+        assertEquals(47.5f, received.get(1), 1e-4f);
+    }
+}
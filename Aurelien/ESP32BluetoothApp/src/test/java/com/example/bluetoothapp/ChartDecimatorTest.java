@@ -0,0 +1,89 @@
+package com.example.bluetoothapp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Seaux du mode suivi : mis à jour au fil de l'eau, fusionnés deux à deux et retirés quand
+ * l'historique les écrase, ils doivent rester égaux au min/max recalculé sur les échantillons.
+ */
+public class ChartDecimatorTest {
+
+    private static final int PIXELS = 16;
+    private static final int CAPACITY = 200;
+
+    @Test
+    public void followTailBucketsMatchBruteForce() {
+        TimeSeriesRingBuffer history = new TimeSeriesRingBuffer(CAPACITY);
+        ChartDecimator decimator = new ChartDecimator(history);
+        decimator.setPixelWidth(PIXELS);
+
+        // Horodatage = numéro global de l'échantillon, valeurs toutes différentes et désordonnées
+        int total = 3000;
+        float[] values = new float[total];
+        for (int i = 0; i < total; i++) {
+            values[i] = (i * 7919) % 100_003;
+        }
+
+        int appended = 0;
+        int[] chunks = {1, 7, 33, 2, 90, 150, 13};
+        long lastBucketSize = 1;
+        int merges = 0;
+        for (int step = 0; appended < total; step++) {
+            int count = Math.min(chunks[step % chunks.length], total - appended);
+            for (int i = 0; i < count; i++, appended++) {
+                history.append(appended, values[appended]);
+            }
+            assertTrue(decimator.update());
+            if (decimator.getBucketSize() != lastBucketSize) {
+                merges++;
+                lastBucketSize = decimator.getBucketSize();
+            }
+            assertBuckets(decimator, values, appended, Math.max(0, appended - CAPACITY));
+        }
+        // Plusieurs fusions et des seaux retirés après le remplissage de l'historique
+        assertTrue(merges >= 3);
+        assertTrue(decimator.getTime(0) > 0);
+        assertFalse(decimator.update());
+    }
+
+    // Compare chaque seau émis (min et max dans l'ordre du temps) au parcours des échantillons
+    private static void assertBuckets(ChartDecimator decimator, float[] values, int total, int oldest) {
+        long size = decimator.getBucketSize();
+        long firstBucket = decimator.getTime(0) / size;
+        long lastBucket = (total - 1) / size;
+        assertTrue(lastBucket - firstBucket < PIXELS);
+        // Un seau n'est retiré qu'une fois entièrement écrasé
+        assertTrue((firstBucket + 1) * size > oldest);
+
+        int point = 0;
+        for (long bucket = firstBucket; bucket <= lastBucket; bucket++) {
+            int from = (int) (bucket * size);
+            int to = (int) Math.min((bucket + 1) * size, total);
+            int minIndex = from;
+            int maxIndex = from;
+            for (int i = from + 1; i < to; i++) {
+                if (values[i] < values[minIndex]) {
+                    minIndex = i;
+                }
+                if (values[i] > values[maxIndex]) {
+                    maxIndex = i;
+                }
+            }
+            point = assertPoint(decimator, point, values, Math.min(minIndex, maxIndex));
+            if (minIndex != maxIndex) {
+                point = assertPoint(decimator, point, values, Math.max(minIndex, maxIndex));
+            }
+        }
+        assertEquals(point, decimator.getPointCount());
+    }
+
+    private static int assertPoint(ChartDecimator decimator, int point, float[] values, int index) {
+        assertEquals(index, decimator.getTime(point));
+        assertEquals(values[index], decimator.getValue(point), 0);
+        return point + 1;
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.bluetoothapp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * Recalage d'une carte qui dérive, avec un délai de transmission variable, le passage de
+ * minuit et un redémarrage de la carte.
+ */
+public class ClockSyncTest {
+
+    private static final ChannelRegistry REGISTRY = ChannelRegistry.createDefault();
+    private static final long EPOCH_MILLIS = 1_700_000_000_000L;
+    private static final double DRIFT_PPM = 50;
+
+    // Horloge du téléphone pilotée par le test
+    private long phoneNanos = 5_000_000_000_000L;
+    private final Clock clock = new Clock() {
+        @Override
+        public long currentTimeMillis() {
+            return EPOCH_MILLIS + phoneNanos / 1_000_000;
+        }
+
+        @Override
+        public long nanoTime() {
+            return phoneNanos;
+        }
+    };
+    private final long epochOffsetNanos = EPOCH_MILLIS * 1_000_000L;
+    private final Random random = new Random(7);
+    private final TelemetrySample sample = new TelemetrySample(REGISTRY.getChannelCount());
+
+    @Test
+    public void estimatesDriftAndAlignsToMeasurementTime() {
+        ClockSync sync = new ClockSync(clock);
+        // La carte démarre juste avant minuit et retarde de 50 ppm
+        long start = phoneNanos;
+        long deviceStart = 86_400_000L - 30_000;
+        long lastReceived = 0;
+        long maxError = 0;
+        for (int i = 0; i < 10 * 60 * 10; i++) {
+            long measured = start + i * 100_000_000L;
+            int device = deviceTime(deviceStart, measured - start);
+            lastReceived = deliver(sync, measured, device, lastReceived);
+            long error = sample.getTimestampNanos() - epochOffsetNanos - measured;
+            assertTrue("Horodatage après la réception", sample.getTimestampNanos() - epochOffsetNanos <= lastReceived);
+            if (i >= 600) {
+                maxError = Math.max(maxError, Math.abs(error));
+            }
+        }
+        assertEquals(DRIFT_PPM, sync.getDriftPpm(), 5);
+        // Délai minimal de 5 ms plus l'arrondi à la milliseconde de l'horloge de la carte
+        assertTrue("Erreur maximale " + maxError / 1_000_000 + " ms", maxError < 10_000_000L);
+        assertEquals(0, sync.getResyncCount());
+    }
+
+    @Test
+    public void rebootOfTheBoardRestartsTheEstimation() {
+        ClockSync sync = new ClockSync(clock);
+        long start = phoneNanos;
+        long lastReceived = 0;
+        for (int i = 0; i < 3000; i++) {
+            long measured = start + i * 100_000_000L;
+            lastReceived = deliver(sync, measured, deviceTime(3_600_000, measured - start), lastReceived);
+        }
+        // Redémarrage : millis() repart de 0
+        long reboot = start + 3000 * 100_000_000L;
+        long maxError = 0;
+        for (int i = 0; i < 1200; i++) {
+            long measured = reboot + i * 100_000_000L;
+            lastReceived = deliver(sync, measured, deviceTime(0, measured - reboot), lastReceived);
+            if (i >= 300) {
+                maxError = Math.max(maxError, Math.abs(sample.getTimestampNanos() - epochOffsetNanos - measured));
+            }
+        }
+        assertEquals(1, sync.getResyncCount());
+        assertTrue("Erreur maximale " + maxError / 1_000_000 + " ms", maxError < 10_000_000L);
+    }
+
+    @Test
+    public void sampleWithoutBoardTimeIsStampedOnReceipt() {
+        ClockSync sync = new ClockSync(clock);
+        sample.reset();
+        sample.set(ChannelRegistry.TEMPERATURE, 21);
+        sync.apply(sample);
+        assertEquals(epochOffsetNanos + phoneNanos, sample.getTimestampNanos());
+        assertEquals(false, sync.isSynchronized());
+    }
+
+    // Heure de la carte (ms modulo 24 h) après elapsed ns, avec sa dérive
+    private static int deviceTime(long deviceStartMillis, long elapsedNanos) {
+        long device = deviceStartMillis + (long) (elapsedNanos * (1 - DRIFT_PPM * 1e-6)) / 1_000_000;
+        return (int) (device % 86_400_000L);
+    }
+
+    // Délai de 5 ms plus une attente exponentielle (moyenne 20 ms), dans l'ordre d'envoi
+    private long deliver(ClockSync sync, long measured, int device, long lastReceived) {
+        long delay = 5_000_000L + (long) (-Math.log(1 - random.nextDouble()) * 20_000_000L);
+        long received = Math.max(lastReceived, measured + delay);
+        phoneNanos = received;
+        sample.reset();
+        sample.set(ChannelRegistry.TEMPERATURE, 21);
+        sample.setTimeOfDayMillis(device);
+        sync.apply(sample);
+        return received;
+    }
+}
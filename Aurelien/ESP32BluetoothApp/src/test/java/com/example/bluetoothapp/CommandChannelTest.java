@@ -0,0 +1,95 @@
+package com.example.bluetoothapp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Commandes vers l'ESP32 : plusieurs en vol, réponses dans le désordre (texte et binaire),
+ * expiration et fermeture.
+ */
+public class CommandChannelTest {
+
+    private static final ChannelRegistry REGISTRY = ChannelRegistry.createDefault();
+
+    private final PipeTransport transport = new PipeTransport("5E:00:00:00:00:01");
+    private final CommandChannel commands = new CommandChannel(transport);
+    private final BlockingQueue<String> replies = new LinkedBlockingQueue<>();
+    private final CommandChannel.ReplyCallback callback = (requestId, command, status, value) ->
+            replies.add(requestId + "/" + command + "/" + status + "/" + value);
+
+    @After
+    public void tearDown() {
+        commands.close();
+        transport.close();
+    }
+
+    @Test
+    public void pipelinedCommandsMatchRepliesInAnyOrder() throws Exception {
+        commands.start();
+        int rate = commands.send(CommandChannel.SET_INTERVAL, 20, callback);
+        int channels = commands.send(CommandChannel.SET_CHANNELS, 0b10111, callback);
+        int slow = commands.send(CommandChannel.SET_INTERVAL, 10_000, callback);
+
+        // Les trois partent sans attendre de réponse
+        BufferedReader device = new BufferedReader(
+                new InputStreamReader(transport.getDeviceInputStream(), StandardCharsets.US_ASCII));
+        assertEquals("#" + rate + " RATE 20", device.readLine());
+        assertEquals("#" + channels + " CHAN 23", device.readLine());
+        assertEquals("#" + slow + " RATE 10000", device.readLine());
+        assertEquals(3, commands.getInFlightCount());
+
+        TelemetryDecoder decoder = new TelemetryDecoder(sample -> { });
+        decoder.setReplyListener(commands);
+        byte[] text = ("#" + slow + " OK 10000\r\nT:21.5,V:3.30,B:80\n#" + rate + " ERR 2\n")
+                .getBytes(StandardCharsets.US_ASCII);
+        decoder.feed(text, 0, text.length);
+        assertEquals(slow + "/0/0/10000", replies.poll(1, TimeUnit.SECONDS));
+        assertEquals(rate + "/0/2/0", replies.poll(1, TimeUnit.SECONDS));
+        assertEquals(1, decoder.getLineCount());
+        assertEquals(0, decoder.getErrorCount());
+
+        // Réponse binaire intercalée entre deux trames de données
+        TelemetryDecoder binary = new TelemetryDecoder(sample -> { });
+        binary.setReplyListener(commands);
+        float[][] values = {{21.5f, 3.3f, 80, Float.NaN, Float.NaN, Float.NaN}};
+        byte[] frames = new byte[2 * BinaryFrameCodec.MAX_FRAME_SIZE + BinaryFrameCodec.REPLY_SIZE];
+        int length = BinaryFrameCodec.encode(REGISTRY, frames, 0, 0, 100, values, 1);
+        length += BinaryFrameCodec.encodeReply(frames, length, channels, CommandChannel.STATUS_OK, 23);
+        byte[] second = new byte[BinaryFrameCodec.MAX_FRAME_SIZE];
+        int secondLength = BinaryFrameCodec.encode(REGISTRY, second, 1, 100, 100, values, 1);
+        System.arraycopy(second, 0, frames, length, secondLength);
+        binary.feed(frames, 0, length + secondLength);
+        assertEquals(channels + "/1/0/23", replies.poll(1, TimeUnit.SECONDS));
+        assertEquals(2, binary.getFrameCount());
+        assertEquals(0, binary.getLostFrameCount());
+        assertEquals(0, binary.getErrorCount());
+        assertEquals(0, commands.getInFlightCount());
+    }
+
+    @Test
+    public void unansweredCommandTimesOutAndLateReplyIsIgnored() throws Exception {
+        commands.setTimeoutMillis(100);
+        commands.start();
+        int id = commands.send(CommandChannel.SET_INTERVAL, 50, callback);
+        assertEquals(id + "/0/" + CommandChannel.STATUS_TIMEOUT + "/0", replies.poll(2, TimeUnit.SECONDS));
+
+        commands.onReply(id, CommandChannel.STATUS_OK, 50);
+        assertNull(replies.poll(100, TimeUnit.MILLISECONDS));
+        assertEquals(1, commands.getUnmatchedReplyCount());
+        assertEquals(1, commands.getTimeoutCount());
+
+        commands.close();
+        int late = commands.send(CommandChannel.SET_INTERVAL, 50, callback);
+        assertEquals(late + "/0/" + CommandChannel.STATUS_DISCONNECTED + "/0", replies.poll(1, TimeUnit.SECONDS));
+    }
+}
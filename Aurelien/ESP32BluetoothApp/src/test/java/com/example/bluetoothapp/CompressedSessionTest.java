@@ -0,0 +1,114 @@
+package com.example.bluetoothapp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Export compressé : relecture exacte au bit près et taux de compression sur des données
+ * du simulateur.
+ */
+public class CompressedSessionTest {
+
+    private static final ChannelRegistry REGISTRY = ChannelRegistry.createDefault();
+
+    @Test
+    public void roundTripIsBitExact() throws IOException {
+        Random random = new Random(7);
+        List<TelemetrySample> expected = new ArrayList<>();
+        long time = 1_700_000_000_000L;
+        // Plusieurs blocs, canaux intermittents, coupures et valeurs arbitraires (NaN, -0, extrêmes)
+        for (int i = 0; i < 3 * CompressedSessionWriter.BLOCK_SAMPLES + 17; i++) {
+            TelemetrySample sample = new TelemetrySample(REGISTRY.getChannelCount());
+            time += random.nextInt(5) == 0 ? random.nextInt(100_000) : 10;
+            sample.setReceivedAtMillis(time);
+            if (random.nextInt(200) == 0) {
+                sample.markGap();
+            } else {
+                sample.setTimeOfDayMillis(random.nextInt(10) == 0 ? TelemetrySample.NO_TIME : i * 10);
+                sample.set(ChannelRegistry.TEMPERATURE, Math.round(random.nextGaussian() * 300) / 10f);
+                sample.set(ChannelRegistry.VOLTAGE, random.nextFloat());
+                if (i % 3 != 0) {
+                    sample.set(ChannelRegistry.BATTERY, 80 - i / 1000);
+                }
+                if (i % 7 == 0) {
+                    float[] odd = {Float.NaN, -0f, Float.MAX_VALUE, Float.MIN_VALUE, 1e-3f};
+                    sample.set(ChannelRegistry.PRESSURE, odd[random.nextInt(odd.length)]);
+                }
+            }
+            expected.add(sample);
+        }
+
+        byte[] file = export(expected);
+        try (CompressedSessionReader reader = new CompressedSessionReader(new ByteArrayInputStream(file))) {
+            TelemetrySample actual = new TelemetrySample(REGISTRY.getChannelCount());
+            for (TelemetrySample sample : expected) {
+                assertTrue(reader.next(actual));
+                assertEquals(sample.getReceivedAtMillis(), actual.getReceivedAtMillis());
+                assertEquals(sample.getTimeOfDayMillis(), actual.getTimeOfDayMillis());
+                assertEquals(sample.getPresentMask(), actual.getPresentMask());
+                for (int channel = 0; channel < REGISTRY.getChannelCount(); channel++) {
+                    if (sample.has(channel)) {
+                        assertEquals(Float.floatToRawIntBits(sample.get(channel)),
+                                Float.floatToRawIntBits(actual.get(channel)));
+                    }
+                }
+            }
+            assertFalse(reader.next(actual));
+        }
+    }
+
+    @Test
+    public void simulatorSessionIsTenTimesSmallerThanText() throws IOException {
+        int samples = 100_000;
+        byte[] line = new byte[128];
+        List<TelemetrySample> decoded = new ArrayList<>();
+        Random jitter = new Random(3);
+        long[] receivedAt = {1_700_000_000_000L};
+        TelemetryDecoder decoder = new TelemetryDecoder(sample -> {
+            // Réception à 100 Hz avec quelques millisecondes de gigue
+            receivedAt[0] += 10;
+            TelemetrySample copy = new TelemetrySample(sample.getChannelCount());
+            copy.copyFrom(sample);
+            copy.setReceivedAtMillis(receivedAt[0] + jitter.nextInt(4));
+            decoded.add(copy);
+        });
+        long textBytes = 0;
+        for (int i = 0; i < samples; i++) {
+            int length = Esp32Simulator.formatLine(0, i, 43_200_000 + i * 10, line, 0);
+            decoder.feed(line, 0, length);
+            textBytes += length;
+        }
+        assertEquals(samples, decoded.size());
+
+        byte[] file = export(decoded);
+        double ratio = (double) textBytes / file.length;
+        assertTrue("Taux de compression " + ratio, ratio >= 10);
+
+        long read;
+        try (CompressedSessionReader reader = new CompressedSessionReader(new ByteArrayInputStream(file))) {
+            read = reader.readAll(sample -> { });
+        }
+        assertEquals(samples, read);
+    }
+
+    private static byte[] export(List<TelemetrySample> samples) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (CompressedSessionWriter writer = new CompressedSessionWriter(bytes, REGISTRY.getChannelCount())) {
+            for (TelemetrySample sample : samples) {
+                writer.append(sample);
+            }
+            assertEquals(samples.size(), writer.getSampleCount());
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,196 @@
+package com.example.bluetoothapp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Machine d'état des sessions, seule puis martelée par des connexions et des arrêts concurrents
+ * organisés comme dans {@link BluetoothService} (table concurrente, fermeture par le gagnant du
+ * passage à CLOSING, fin de session par le thread de lecture).
+ */
+public class ConnectionStateMachineTest {
+
+    private static final String[] ADDRESSES = {"AA:00", "AA:01", "AA:02", "AA:03"};
+
+    private final List<ConnectionStateMachine.Listener> listeners = new CopyOnWriteArrayList<>();
+
+    @Test
+    public void onlyAllowedTransitionsSucceed() {
+        ConnectionStateMachine machine = new ConnectionStateMachine("AA:00", listeners);
+        assertFalse(machine.moveTo(ConnectionStateMachine.CONNECTED));
+        assertFalse(machine.close());
+
+        assertTrue(machine.moveTo(ConnectionStateMachine.CONNECTING));
+        assertTrue(machine.moveTo(ConnectionStateMachine.CONNECTED));
+        assertTrue(machine.moveTo(ConnectionStateMachine.RECONNECTING));
+        assertTrue(machine.close());
+        // Un seul gagnant pour la fermeture, et plus de reconnexion possible ensuite
+        assertFalse(machine.close());
+        assertFalse(machine.moveTo(ConnectionStateMachine.CONNECTED));
+
+        machine.finish();
+        assertEquals(ConnectionStateMachine.NONE, machine.getState());
+        assertFalse(machine.isActive());
+    }
+
+    @Test
+    public void concurrentConnectAndStopLeaveNothingOpen() throws Exception {
+        AtomicInteger started = new AtomicInteger();
+        AtomicInteger finished = new AtomicInteger();
+        AtomicInteger illegal = new AtomicInteger();
+        listeners.add((address, from, to) -> {
+            if (!ConnectionStateMachine.isAllowed(from, to)) {
+                illegal.incrementAndGet();
+            }
+            if (to == ConnectionStateMachine.CONNECTING) {
+                started.incrementAndGet();
+            } else if (to == ConnectionStateMachine.NONE) {
+                finished.incrementAndGet();
+            }
+        });
+
+        Map<String, Session> sessions = new ConcurrentHashMap<>();
+        Queue<Session> all = new ConcurrentLinkedQueue<>();
+        AtomicInteger openSockets = new AtomicInteger();
+        ExecutorService readers = Executors.newCachedThreadPool();
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        int iterations = 5_000;
+
+        CountDownLatch done = new CountDownLatch(8);
+        for (int t = 0; t < 8; t++) {
+            callers.execute(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    for (int i = 0; i < iterations; i++) {
+                        String address = ADDRESSES[random.nextInt(ADDRESSES.length)];
+                        int action = random.nextInt(10);
+                        if (action < 6) {
+                            Session session = new Session(address, openSockets);
+                            all.add(session);
+                            Session previous = sessions.put(address, session);
+                            if (previous != null) {
+                                previous.cancel();
+                            }
+                            session.machine.moveTo(ConnectionStateMachine.CONNECTING);
+                            readers.execute(session);
+                        } else if (action < 9) {
+                            Session session = sessions.remove(address);
+                            if (session != null) {
+                                session.cancel();
+                            }
+                        } else {
+                            for (Map.Entry<String, Session> entry : sessions.entrySet()) {
+                                if (sessions.remove(entry.getKey(), entry.getValue())) {
+                                    entry.getValue().cancel();
+                                }
+                            }
+                        }
+                    }
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        assertTrue(done.await(60, TimeUnit.SECONDS));
+        callers.shutdown();
+
+        for (Session session : sessions.values()) {
+            session.cancel();
+        }
+        readers.shutdown();
+        assertTrue("Thread de lecture bloqué", readers.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertEquals("Liaisons restées ouvertes", 0, openSockets.get());
+        for (Session session : all) {
+            assertEquals("État bloqué: " + ConnectionStateMachine.name(session.machine.getState()),
+                    ConnectionStateMachine.NONE, session.machine.getState());
+        }
+        assertEquals(0, illegal.get());
+        assertEquals(all.size(), started.get());
+        assertEquals(started.get(), finished.get());
+    }
+
+    // Session réduite au cycle de vie de BluetoothService.DeviceSession
+    private final class Session implements Runnable {
+        final ConnectionStateMachine machine;
+        final FakeSocket socket;
+        final CountDownLatch cancelSignal = new CountDownLatch(1);
+        volatile boolean cancelled;
+
+        Session(String address, AtomicInteger openSockets) {
+            this.machine = new ConnectionStateMachine(address, listeners);
+            this.socket = new FakeSocket(openSockets);
+        }
+
+        void cancel() {
+            cancelled = true;
+            cancelSignal.countDown();
+            if (machine.close()) {
+                socket.close();
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (cancelled) {
+                    return;
+                }
+                socket.open();
+                if (!machine.moveTo(ConnectionStateMachine.CONNECTED)) {
+                    return;
+                }
+                // Coupure et reconnexion, perdues contre une fermeture concurrente le cas échéant
+                if (ThreadLocalRandom.current().nextBoolean()
+                        && machine.moveTo(ConnectionStateMachine.RECONNECTING)
+                        && !machine.moveTo(ConnectionStateMachine.CONNECTED)) {
+                    return;
+                }
+                cancelSignal.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                socket.close();
+                machine.finish();
+            }
+        }
+    }
+
+    private static final class FakeSocket {
+        private final AtomicInteger openSockets;
+        private final AtomicBoolean open = new AtomicBoolean();
+
+        FakeSocket(AtomicInteger openSockets) {
+            this.openSockets = openSockets;
+        }
+
+        void open() {
+            if (open.compareAndSet(false, true)) {
+                openSockets.incrementAndGet();
+            }
+        }
+
+        void close() {
+            if (open.compareAndSet(true, false)) {
+                openSockets.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.bluetoothapp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Le simulateur doit produire exactement les lignes du firmware, et le décodeur les relire.
+ */
+public class Esp32SimulatorTest {
+
+    @Test
+    public void formatsFirmwareLines() {
+        byte[] out = new byte[96];
+        int length = Esp32Simulator.formatLine(0, 0, 45_296_000, out, 0);
+        String line = new String(out, 0, length, StandardCharsets.US_ASCII);
+
+        assertTrue(line, line.matches("T:-?\\d+\\.\\d,V:\\d+\\.\\d\\d,B:\\d+,L:-?\\d+,P:\\d+\\.\\d,Lux:-?\\d+\\.\\d,H:12:34:56\r\n"));
+    }
+
+    @Test
+    public void decoderReadsSimulatedStream() throws IOException {
+        Esp32Simulator simulator = new Esp32Simulator(1);
+        simulator.setRateHz(0);
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        simulator.stream(0, stream, 1000);
+        byte[] bytes = stream.toByteArray();
+
+        List<Float> temperatures = new ArrayList<>();
+        TelemetryDecoder decoder = new TelemetryDecoder(sample -> {
+            assertTrue(sample.has(ChannelRegistry.VOLTAGE));
+            assertTrue(sample.has(ChannelRegistry.BATTERY));
+            assertTrue(sample.has(ChannelRegistry.BRIGHTNESS));
+            assertTrue(sample.has(ChannelRegistry.PRESSURE));
+            assertTrue(sample.has(ChannelRegistry.LUX));
+            temperatures.add(sample.getTemperature());
+        });
+        decoder.feed(bytes, 0, bytes.length);
+
+        assertEquals(1000, decoder.getLineCount());
+        assertEquals(0, decoder.getErrorCount());
+        assertEquals(1000, temperatures.size());
+
+        // Même valeur que celle formatée par le simulateur
+        byte[] line = new byte[96];
+        int length = Esp32Simulator.formatLine(0, 42, 0, line, 0);
+        String text = new String(line, 0, length, StandardCharsets.US_ASCII);
+        float expected = Float.parseFloat(text.substring(2, text.indexOf(',')));
+        assertEquals(expected, temperatures.get(42), 1e-4f);
+    }
+
+    @Test
+    public void corruptionNeverBreaksFraming() throws IOException {
+        Esp32Simulator simulator = new Esp32Simulator(1);
+        simulator.setRateHz(0);
+        simulator.setCorruptionRatio(0.1);
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        simulator.stream(0, stream, 10_000);
+        byte[] bytes = stream.toByteArray();
+
+        long[] samples = new long[1];
+        TelemetryDecoder decoder = new TelemetryDecoder(sample -> samples[0]++);
+        decoder.feed(bytes, 0, bytes.length);
+
+        assertTrue(simulator.getCorruptedCount() > 500);
+        assertEquals(10_000, decoder.getLineCount());
+        assertTrue(decoder.getErrorCount() > 0);
+        assertTrue(samples[0] >= 10_000 - simulator.getCorruptedCount());
+    }
+}
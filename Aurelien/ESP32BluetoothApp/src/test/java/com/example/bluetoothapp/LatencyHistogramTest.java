@@ -0,0 +1,42 @@
+package com.example.bluetoothapp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketsCoverValuesWithBoundedError() {
+        for (long value = 0; value < 1_000_000; value += 7) {
+            long upper = LatencyHistogram.upperBoundOf(LatencyHistogram.bucketOf(value));
+            assertTrue("borne " + upper + " pour " + value, upper >= value);
+            // 8 sous-seaux par puissance de 2 : erreur relative inférieure à 12,5 %
+            assertTrue("borne " + upper + " pour " + value, upper - value <= value / 8);
+        }
+    }
+
+    @Test
+    public void percentilesOfUniformValues() {
+        LatencyHistogram histogram = new LatencyHistogram("ms");
+        for (int value = 1; value <= 1000; value++) {
+            histogram.record(value);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1000, histogram.getMax());
+        assertEquals(500.5, histogram.getMean(), 1e-9);
+        assertPercentile(500, histogram.getPercentile(50));
+        assertPercentile(990, histogram.getPercentile(99));
+        assertEquals(1000, histogram.getPercentile(100));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(50));
+    }
+
+    private static void assertPercentile(long expected, long actual) {
+        assertTrue("percentile " + actual + " au lieu de " + expected,
+                actual >= expected && actual <= expected + expected / 8);
+    }
+}
@@ -0,0 +1,222 @@
+package com.example.bluetoothapp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Capture des octets reçus puis rejeu dans le décodeur : mêmes échantillons, datés à
+ * l'identique d'un rejeu à l'autre, au rythme demandé.
+ */
+public class ReplayTransportTest {
+
+    private static final ChannelRegistry REGISTRY = ChannelRegistry.createDefault();
+    private static final String ADDRESS = "5E:00:00:00:00:01";
+
+    @Test
+    public void replayRepeatsExactlyTheCapturedSession() throws Exception {
+        Esp32Simulator simulator = new Esp32Simulator(1);
+        simulator.setRateHz(0);
+        PipeTransport pipe = new PipeTransport(ADDRESS);
+        ByteArrayOutputStream capture = new ByteArrayOutputStream();
+        CapturingTransport capturing = new CapturingTransport(pipe, capture);
+        Thread device = new Thread(() -> {
+            try (OutputStream out = pipe.getDeviceOutputStream()) {
+                simulator.stream(0, out, 20_000);
+            } catch (IOException e) {
+                // Lecteur parti
+            }
+        });
+        device.start();
+
+        List<String> live = new ArrayList<>();
+        read(capturing, live);
+        capturing.close();
+        device.join();
+        assertEquals(20_000, live.size());
+        assertNull(capturing.getCaptureError());
+
+        List<String> first = new ArrayList<>();
+        List<String> second = new ArrayList<>();
+        ReplayTransport replay = new ReplayTransport(ADDRESS, new ByteArrayInputStream(capture.toByteArray()));
+        replay.setSpeed(ReplayTransport.AS_FAST_AS_POSSIBLE);
+        read(replay, first);
+        replay = new ReplayTransport(ADDRESS, new ByteArrayInputStream(capture.toByteArray()));
+        replay.setSpeed(ReplayTransport.AS_FAST_AS_POSSIBLE);
+        read(replay, second);
+
+        assertEquals(first, second);
+        assertEquals(live.size(), first.size());
+        assertEquals(capturing.getCapturedBytes(), replay.getReplayedBytes());
+        for (int i = 0; i < live.size(); i++) {
+            // Mêmes valeurs qu'en direct ; l'heure vient de la capture
+            assertEquals(values(live.get(i)), values(first.get(i)));
+        }
+    }
+
+    @Test
+    public void replayKeepsRecordedTimingAndBreaks() throws Exception {
+        // Capture fabriquée avec une horloge manuelle : une ligne toutes les 100 ms, coupure après la cinquième
+        List<byte[]> reads = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            reads.add(("T:2" + i + ".0,V:3.30,B:80\n").getBytes(StandardCharsets.US_ASCII));
+            if (i == 4) {
+                reads.add(null);
+            }
+        }
+        ScriptedTransport scripted = new ScriptedTransport(reads, 1_000_000, 100);
+        ByteArrayOutputStream capture = new ByteArrayOutputStream();
+        CapturingTransport capturing = new CapturingTransport(scripted, capture);
+        InputStream in = capturing.getInputStream();
+        byte[] buffer = new byte[64];
+        for (byte[] read : reads) {
+            try {
+                int length = in.read(buffer, 0, buffer.length);
+                assertEquals(read.length, length);
+            } catch (IOException e) {
+                assertNull(read);
+            }
+        }
+        capturing.close();
+
+        ReplayTransport replay = new ReplayTransport(ADDRESS, new ByteArrayInputStream(capture.toByteArray()));
+        replay.setSpeed(10);
+        List<String> samples = new ArrayList<>();
+        TelemetryDecoder decoder = new TelemetryDecoder(sample -> samples.add(format(sample)));
+        decoder.setClock(replay.getClock());
+        replay.connect();
+        long start = System.nanoTime();
+        try {
+            while (decoder.readFrom(replay.getInputStream()) >= 0) {
+                // Jusqu'à la coupure
+            }
+            fail("Coupure attendue");
+        } catch (IOException e) {
+            assertEquals(1, replay.getBreakCount());
+        }
+        replay.connect();
+        while (decoder.readFrom(replay.getInputStream()) >= 0) {
+            // Jusqu'à la fin de la capture
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals(10, samples.size());
+        for (int i = 0; i < 10; i++) {
+            long expected = 1_000_000 + (i > 4 ? i + 1 : i) * 100;
+            assertEquals(expected, Long.parseLong(samples.get(i).split(" ")[0]));
+        }
+        // 1 s enregistrée à 10x : environ 100 ms
+        assertTrue("Rejeu trop rapide: " + elapsedMillis + " ms", elapsedMillis >= 90);
+        try {
+            replay.connect();
+            fail("Capture terminée");
+        } catch (IOException expected) {
+            // Fin de la capture
+        }
+    }
+
+    // Boucle de lecture comme dans BluetoothService, jusqu'à la fin du flux
+    private static void read(Transport transport, List<String> out) throws IOException {
+        TelemetryDecoder decoder = new TelemetryDecoder(sample -> out.add(format(sample)));
+        decoder.setClock(transport.getClock());
+        transport.connect();
+        InputStream in = transport.getInputStream();
+        try {
+            while (decoder.readFrom(in) >= 0) {
+                // Décodage dans le listener
+            }
+        } catch (IOException e) {
+            // Fin de flux du direct, enregistrée comme coupure à la fin de la capture
+        }
+    }
+
+    private static String format(TelemetrySample sample) {
+        float[] values = new float[REGISTRY.getChannelCount()];
+        sample.copyValuesTo(values, 0);
+        return sample.getReceivedAtMillis() + " " + Arrays.toString(values);
+    }
+
+    private static String values(String formatted) {
+        return formatted.substring(formatted.indexOf(' ') + 1);
+    }
+
+    // Lectures prévues à l'avance (null : coupure), datées toutes les stepMillis
+    private static final class ScriptedTransport implements Transport {
+        private final List<byte[]> reads;
+        private final long startMillis;
+        private final long stepMillis;
+        private int next;
+        private long now;
+
+        ScriptedTransport(List<byte[]> reads, long startMillis, long stepMillis) {
+            this.reads = reads;
+            this.startMillis = startMillis;
+            this.stepMillis = stepMillis;
+        }
+
+        @Override
+        public String getAddress() {
+            return ADDRESS;
+        }
+
+        @Override
+        public String getName() {
+            return "script";
+        }
+
+        @Override
+        public void connect() {
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return new InputStream() {
+                @Override
+                public int read() {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    if (next == reads.size()) {
+                        return -1;
+                    }
+                    now = startMillis + next * stepMillis;
+                    byte[] read = reads.get(next++);
+                    if (read == null) {
+                        throw new IOException("Coupure");
+                    }
+                    System.arraycopy(read, 0, b, off, read.length);
+                    return read.length;
+                }
+            };
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Clock getClock() {
+            return () -> now;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
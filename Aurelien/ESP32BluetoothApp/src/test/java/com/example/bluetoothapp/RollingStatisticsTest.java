@@ -0,0 +1,73 @@
+package com.example.bluetoothapp;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class RollingStatisticsTest {
+
+    @Test
+    public void matchesBruteForceOverSlidingWindow() {
+        long windowMillis = 6_000;
+        long paneMillis = windowMillis / RollingStatistics.PANES;
+        RollingStatistics statistics = new RollingStatistics(windowMillis);
+        RollingStatistics.Window window = statistics.getWindow(0);
+
+        Random random = new Random(3);
+        int total = 20_000;
+        long[] times = new long[total];
+        double[] values = new double[total];
+        long time = 1_000_000;
+        for (int i = 0; i < total; i++) {
+            // Pas irréguliers, avec de temps en temps un trou de plusieurs tranches
+            time += random.nextInt(20) == 0 ? random.nextInt(3_000) : random.nextInt(5);
+            times[i] = time;
+            values[i] = 20 + 5 * Math.sin(i / 300.0) + random.nextGaussian();
+            statistics.add(time, values[i]);
+
+            if (i % 97 != 0) {
+                continue;
+            }
+            // Référence : tous les échantillons des PANES tranches précédentes et de la courante
+            long oldestPane = Math.floorDiv(time, paneMillis) - RollingStatistics.PANES;
+            long count = 0;
+            double sum = 0;
+            double min = Double.MAX_VALUE;
+            double max = -Double.MAX_VALUE;
+            for (int j = i; j >= 0 && Math.floorDiv(times[j], paneMillis) >= oldestPane; j--) {
+                count++;
+                sum += values[j];
+                min = Math.min(min, values[j]);
+                max = Math.max(max, values[j]);
+            }
+            double mean = sum / count;
+            double squares = 0;
+            for (int j = i; j >= 0 && Math.floorDiv(times[j], paneMillis) >= oldestPane; j--) {
+                squares += (values[j] - mean) * (values[j] - mean);
+            }
+
+            assertEquals(count, window.getCount());
+            assertEquals(min, window.getMin(), 0);
+            assertEquals(max, window.getMax(), 0);
+            assertEquals(mean, window.getMean(), 1e-9);
+            double stdDev = count > 1 ? Math.sqrt(squares / (count - 1)) : 0;
+            assertEquals(stdDev, window.getStdDev(), 1e-6);
+        }
+    }
+
+    @Test
+    public void ewmaFollowsStepWithWindowTimeConstant() {
+        RollingStatistics statistics = new RollingStatistics(1_000);
+        RollingStatistics.Window window = statistics.getWindow(0);
+        statistics.add(0, 0);
+        for (long t = 10; t <= 1_000; t += 10) {
+            statistics.add(t, 100);
+        }
+        // Après une constante de temps : 1 - 1/e de la marche
+        assertEquals(100 * (1 - Math.exp(-1)), window.getEwma(), 0.01);
+        // Le 0 initial est sorti de la fenêtre, pas de la moyenne exponentielle
+        assertEquals(100, window.getMin(), 0);
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.bluetoothapp;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Agrégats : valeurs des seaux, fusion d'un seau interrompu, choix du niveau et rétention.
+ */
+public class RollupStoreTest {
+
+    private static final ChannelRegistry REGISTRY = ChannelRegistry.createDefault();
+    private static final long HOUR = 3_600_000L;
+    private static final long DAY = 24 * HOUR;
+    // Début d'heure récent (seaux alignés) : la rétention appliquée à l'ouverture ne touche à rien
+    private static final long T0 = System.currentTimeMillis() / HOUR * HOUR - 3 * HOUR;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void bucketsHoldMinMaxMeanAndLast() throws IOException {
+        File directory = folder.newFolder();
+        RollupStore store = RollupStore.open(directory, REGISTRY.getChannelCount());
+        TelemetrySample sample = new TelemetrySample(REGISTRY.getChannelCount());
+        // Deux heures à 1 Hz, valeur = numéro de l'échantillon
+        for (int i = 0; i < 7200; i++) {
+            sample.reset();
+            sample.setReceivedAtMillis(T0 + i * 1000L);
+            sample.set(ChannelRegistry.TEMPERATURE, i);
+            store.add(sample);
+        }
+        store.close();
+
+        RollupStore.Series series = new RollupStore.Series();
+        assertEquals(120, RollupStore.read(directory, RollupStore.TIER_MINUTE, ChannelRegistry.TEMPERATURE,
+                T0, T0 + 2 * HOUR, series));
+        assertEquals(T0 + 60_000, series.getStart(1));
+        assertEquals(60, series.getMin(1), 0);
+        assertEquals(119, series.getMax(1), 0);
+        assertEquals(89.5, series.getMean(1), 1e-4);
+        assertEquals(119, series.getLast(1), 0);
+        assertEquals(60, series.getCount(1));
+
+        assertEquals(2, RollupStore.read(directory, RollupStore.TIER_HOUR, ChannelRegistry.TEMPERATURE,
+                T0, T0 + 2 * HOUR, series));
+        assertEquals(3600, series.getMin(1), 0);
+        assertEquals(7199, series.getMax(1), 0);
+
+        // Une plage ne lit que les seaux qui la recoupent
+        assertEquals(10, RollupStore.read(directory, RollupStore.TIER_MINUTE, ChannelRegistry.TEMPERATURE,
+                T0 + 600_000 + 1, T0 + 1_200_000 - 1, series));
+        assertEquals(T0 + 600_000, series.getStart(0));
+        assertEquals(0, RollupStore.read(directory, RollupStore.TIER_MINUTE, ChannelRegistry.VOLTAGE,
+                T0, T0 + 2 * HOUR, series));
+    }
+
+    @Test
+    public void bucketSplitByRestartIsMerged() throws IOException {
+        File directory = folder.newFolder();
+        TelemetrySample sample = new TelemetrySample(REGISTRY.getChannelCount());
+        for (int session = 0; session < 2; session++) {
+            RollupStore store = RollupStore.open(directory, REGISTRY.getChannelCount());
+            for (int i = 0; i < 3; i++) {
+                sample.reset();
+                sample.setReceivedAtMillis(T0 + session * 3000 + i * 1000L);
+                sample.set(ChannelRegistry.VOLTAGE, session * 10 + i);
+                store.add(sample);
+            }
+            store.close();
+        }
+
+        RollupStore.Series series = new RollupStore.Series();
+        assertEquals(1, RollupStore.read(directory, RollupStore.TIER_10_SECONDS, ChannelRegistry.VOLTAGE,
+                T0, T0 + 10_000, series));
+        assertEquals(6, series.getCount(0));
+        assertEquals(0, series.getMin(0), 0);
+        assertEquals(12, series.getMax(0), 0);
+        assertEquals(6, series.getMean(0), 1e-6);
+        assertEquals(12, series.getLast(0), 0);
+    }
+
+    @Test
+    public void coarsestTierWithOnePointPerPixel() {
+        assertEquals(RollupStore.TIER_RAW, RollupStore.selectTier(HOUR, 1000));
+        assertEquals(RollupStore.TIER_10_SECONDS, RollupStore.selectTier(3 * HOUR, 1000));
+        assertEquals(RollupStore.TIER_MINUTE, RollupStore.selectTier(30 * DAY, 1000));
+        assertEquals(RollupStore.TIER_HOUR, RollupStore.selectTier(365 * DAY, 1000));
+    }
+
+    @Test
+    public void retentionDropsOldBuckets() throws IOException {
+        File directory = folder.newFolder();
+        RollupStore store = RollupStore.open(directory, REGISTRY.getChannelCount());
+        TelemetrySample sample = new TelemetrySample(REGISTRY.getChannelCount());
+        long now = T0 + 100 * DAY;
+        // Un échantillon par jour pendant 30 jours
+        for (int day = 30; day > 0; day--) {
+            sample.reset();
+            sample.setReceivedAtMillis(now - day * DAY);
+            sample.set(ChannelRegistry.TEMPERATURE, day);
+            store.add(sample);
+        }
+        store.close();
+
+        RollupStore.applyRetention(directory, now);
+        RollupStore.Series series = new RollupStore.Series();
+        // 10 s : 14 jours gardés ; 1 min : 90 jours
+        assertEquals(14, RollupStore.read(directory, RollupStore.TIER_10_SECONDS, ChannelRegistry.TEMPERATURE,
+                0, now, series));
+        assertEquals(14, series.getLast(0), 0);
+        assertEquals(30, RollupStore.read(directory, RollupStore.TIER_MINUTE, ChannelRegistry.TEMPERATURE,
+                0, now, series));
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.bluetoothapp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Mode report-on-change : moins d'octets et de lignes à décoder, et la même série une fois
+ * reconstruite (à la bande morte près).
+ */
+public class SampleReconstructorTest {
+
+    private static final ChannelRegistry REGISTRY = ChannelRegistry.createDefault();
+
+    // Une heure à 10 Hz (le simulateur en mode libre espace ses lignes de 100 ms)
+    private static final int SAMPLES = 36_000;
+    private static final long INTERVAL = 100;
+    private static final long HEARTBEAT = 10_000;
+    private static final float[] DEAD_BANDS = {0.2f, 0.02f, 1f, 20f, 0.5f, 20f};
+
+    @Test
+    public void soakHourSendsLessAndRebuildsSameSeries() throws IOException {
+        Esp32Simulator simulator = new Esp32Simulator(1);
+        simulator.setRateHz(0);
+        ByteArrayOutputStream full = new ByteArrayOutputStream();
+        simulator.stream(0, full, SAMPLES);
+        simulator.setReportOnChange(DEAD_BANDS, HEARTBEAT);
+        ByteArrayOutputStream sparse = new ByteArrayOutputStream();
+        simulator.stream(0, sparse, SAMPLES);
+
+        List<float[]> expected = new ArrayList<>();
+        TelemetryDecoder fullDecoder = new TelemetryDecoder(sample -> expected.add(values(sample)));
+        fullDecoder.feed(full.toByteArray(), 0, full.size());
+
+        List<float[]> rebuilt = new ArrayList<>();
+        List<Long> times = new ArrayList<>();
+        SampleReconstructor reconstructor = new SampleReconstructor(REGISTRY.getChannelCount(), sample -> {
+            rebuilt.add(values(sample));
+            times.add(sample.getReceivedAtMillis());
+        });
+        reconstructor.setIntervalMillis(INTERVAL);
+        reconstructor.setHeartbeatMillis(HEARTBEAT);
+        // Horloge de l'appareil (champ H à la milliseconde) au lieu de l'heure de lecture
+        TelemetryDecoder sparseDecoder = new TelemetryDecoder(sample -> {
+            sample.setReceivedAtMillis(sample.getTimeOfDayMillis());
+            reconstructor.onSample(sample);
+        });
+        sparseDecoder.feed(sparse.toByteArray(), 0, sparse.size());
+
+        assertEquals(0, sparseDecoder.getErrorCount());
+        assertTrue(sparse.size() < full.size() / 2);
+        assertTrue(sparseDecoder.getLineCount() < fullDecoder.getLineCount() / 2);
+
+        // Série régulière ; seule la fin après la dernière mise à jour manque (moins d'un battement)
+        assertTrue(rebuilt.size() > SAMPLES - HEARTBEAT / INTERVAL);
+        long start = times.get(0);
+        for (int i = 0; i < rebuilt.size(); i++) {
+            assertEquals(start + i * INTERVAL, (long) times.get(i));
+            for (int channel = 0; channel < REGISTRY.getChannelCount(); channel++) {
+                assertEquals(expected.get(i)[channel], rebuilt.get(i)[channel], DEAD_BANDS[channel] + 1e-3f);
+            }
+        }
+        assertEquals(rebuilt.size(), reconstructor.getUpdateCount() + reconstructor.getFilledCount());
+    }
+
+    @Test
+    public void fillsUpToOneHeartbeatAndForgetsAfterGap() {
+        List<TelemetrySample> out = new ArrayList<>();
+        SampleReconstructor reconstructor = new SampleReconstructor(REGISTRY.getChannelCount(), sample -> {
+            TelemetrySample copy = new TelemetrySample(sample.getChannelCount());
+            copy.copyFrom(sample);
+            out.add(copy);
+        });
+        reconstructor.setIntervalMillis(100);
+        reconstructor.setHeartbeatMillis(1000);
+        TelemetrySample update = new TelemetrySample(REGISTRY.getChannelCount());
+
+        update.setReceivedAtMillis(0);
+        update.set(ChannelRegistry.TEMPERATURE, 21);
+        reconstructor.onSample(update);
+        update.reset();
+        update.setReceivedAtMillis(510);
+        update.set(ChannelRegistry.VOLTAGE, 3.3f);
+        reconstructor.onSample(update);
+        // 100 à 400 recréés, puis la mise à jour avec la température connue
+        assertEquals(6, out.size());
+        assertEquals(400, out.get(4).getReceivedAtMillis());
+        assertFalse(out.get(4).has(ChannelRegistry.VOLTAGE));
+        assertEquals(21, out.get(5).getTemperature(), 0);
+        assertEquals(3.3f, out.get(5).getVoltage(), 0);
+
+        // Silence plus long qu'un battement : perte, on ne comble qu'un battement
+        out.clear();
+        update.reset();
+        update.setReceivedAtMillis(10_000);
+        update.set(ChannelRegistry.TEMPERATURE, 22);
+        reconstructor.onSample(update);
+        assertEquals(11 + 1, out.size());
+
+        out.clear();
+        update.reset();
+        update.setReceivedAtMillis(10_100);
+        update.markGap();
+        reconstructor.onSample(update);
+        update.reset();
+        update.setReceivedAtMillis(10_500);
+        update.set(ChannelRegistry.BATTERY, 80);
+        reconstructor.onSample(update);
+        assertEquals(2, out.size());
+        assertTrue(out.get(0).isGap());
+        assertFalse(out.get(1).has(ChannelRegistry.TEMPERATURE));
+    }
+
+    private static float[] values(TelemetrySample sample) {
+        float[] values = new float[REGISTRY.getChannelCount()];
+        sample.copyValuesTo(values, 0);
+        return values;
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.bluetoothapp;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Magasin hors tas : budget tenu sur plusieurs heures et plusieurs canaux, lectures exactes
+ * que les points soient en mémoire ou sur disque, rétention et fichiers temporaires.
+ */
+public class SampleStoreTest {
+
+    private static final long T0 = 1_700_000_000_000L;
+    // 50 Hz
+    private static final long PERIOD = 20;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void hoursOfHistoryStayWithinTheBudget() throws IOException {
+        File directory = folder.newFolder();
+        long budget = 2L * 1024 * 1024;
+        SampleStore store = new SampleStore(directory, budget, Integer.MAX_VALUE - SampleStore.BLOCK_POINTS);
+        SampleStore.Series[] series = {store.series("a"), store.series("b"), store.series("c")};
+        // 4 h à 50 Hz sur trois canaux, ajoutés en alternance comme par le thread de rendu
+        int points = 4 * 3600 * 50;
+        for (int i = 0; i < points; i++) {
+            for (int s = 0; s < series.length; s++) {
+                series[s].append(T0 + i * PERIOD, value(s, i));
+            }
+            if (i % 10_000 == 0) {
+                assertTrue("Mémoire " + store.getAllocatedBytes(), store.getAllocatedBytes() <= budget);
+            }
+        }
+        assertTrue(store.getSpillCount() > 0);
+        assertNull(store.getLastError());
+        assertTrue(store.getDiskBytes() + store.getAllocatedBytes()
+                >= 3L * points * (Long.BYTES + Float.BYTES));
+
+        Random random = new Random(3);
+        for (int s = 0; s < series.length; s++) {
+            SampleStore.Series current = series[s];
+            assertEquals(points, current.size());
+            assertEquals(points, current.getTotalCount());
+            for (int k = 0; k < 2000; k++) {
+                int i = random.nextInt(points);
+                assertEquals(T0 + i * PERIOD, current.getTimestamp(i));
+                assertEquals(value(s, i), current.getValue(i), 0f);
+                assertEquals(i, current.lowerBound(T0 + i * PERIOD));
+                assertEquals(i + 1, current.lowerBound(T0 + i * PERIOD + 1));
+            }
+            assertEquals(0, current.lowerBound(0));
+            assertEquals(points, current.lowerBound(Long.MAX_VALUE));
+
+            // Plage à cheval sur plusieurs blocs, dont des blocs relus du disque
+            int from = SampleStore.BLOCK_POINTS * 3 - 17;
+            int count = SampleStore.BLOCK_POINTS * 2 + 100;
+            long[] times = new long[count];
+            float[] values = new float[count];
+            assertEquals(count, current.copyTimestamps(from, count, times, 0));
+            assertEquals(count, current.copyValues(from, count, values, 0));
+            for (int j = 0; j < count; j++) {
+                assertEquals(T0 + (from + j) * PERIOD, times[j]);
+                assertEquals(value(s, from + j), values[j], 0f);
+            }
+            assertEquals(10, current.copyValues(points - 10, 100, values, 0));
+        }
+        assertTrue(store.getLoadCount() > 0);
+        assertTrue("Mémoire " + store.getAllocatedBytes(), store.getAllocatedBytes() <= budget);
+
+        store.close();
+        assertEquals(0, series[0].size());
+        assertEquals(0, directory.listFiles().length);
+    }
+
+    @Test
+    public void downsamplingReadsTheSameThroughEitherHistory() throws IOException {
+        SampleStore store = new SampleStore(folder.newFolder(), 4L * SampleStore.BLOCK_BYTES, 1_000_000);
+        TimeSeries stored = store.series("a");
+        TimeSeries ring = new TimeSeriesRingBuffer(100_000);
+        Random random = new Random(5);
+        for (int i = 0; i < 100_000; i++) {
+            float value = (float) random.nextGaussian();
+            stored.append(T0 + i * PERIOD, value);
+            ring.append(T0 + i * PERIOD, value);
+        }
+        assertTrue(store.getSpillCount() > 0);
+        long[] storedTimes = new long[1000];
+        float[] storedValues = new float[1000];
+        long[] ringTimes = new long[1000];
+        float[] ringValues = new float[1000];
+        int from = stored.lowerBound(T0 + 123_456);
+        int to = stored.lowerBound(T0 + 1_800_000);
+        int n = Downsampler.minMax(stored, from, to, 500, storedTimes, storedValues);
+        assertEquals(n, Downsampler.minMax(ring, from, to, 500, ringTimes, ringValues));
+        assertArrayEquals(ringTimes, storedTimes);
+        assertArrayEquals(ringValues, storedValues, 0f);
+        n = Downsampler.lttb(stored, 0, stored.size(), 1000, storedTimes, storedValues);
+        assertEquals(n, Downsampler.lttb(ring, 0, ring.size(), 1000, ringTimes, ringValues));
+        assertArrayEquals(ringTimes, storedTimes);
+        assertArrayEquals(ringValues, storedValues, 0f);
+        store.close();
+    }
+
+    @Test
+    public void retentionForgetsWholeBlocksAndReusesTheFile() throws IOException {
+        File directory = folder.newFolder();
+        int keep = 10 * SampleStore.BLOCK_POINTS;
+        SampleStore store = new SampleStore(directory, 3L * SampleStore.BLOCK_BYTES, keep);
+        SampleStore.Series series = store.series("a");
+        int points = 100 * SampleStore.BLOCK_POINTS + 5;
+        for (int i = 0; i < points; i++) {
+            series.append(T0 + i * PERIOD, i);
+        }
+        assertEquals(points, series.getTotalCount());
+        assertTrue(series.size() >= keep && series.size() < keep + SampleStore.BLOCK_POINTS);
+        int oldest = (int) (series.getTotalCount() - series.size());
+        assertEquals(oldest, series.getValue(0), 0f);
+        assertEquals(points - 1, series.getValue(series.size() - 1), 0f);
+        // Les emplacements des blocs oubliés sont repris : le fichier ne grandit pas
+        assertTrue(store.getDiskBytes() <= 10L * SampleStore.BLOCK_BYTES);
+        assertTrue(new File(directory, "a.blocks").length() <= 11L * SampleStore.BLOCK_BYTES);
+
+        series.clear();
+        assertEquals(0, series.size());
+        assertEquals(0, series.getTotalCount());
+        assertEquals(0, store.getDiskBytes());
+        series.append(T0, 1);
+        assertEquals(1, series.size());
+        assertEquals(T0, series.getTimestamp(0));
+        store.close();
+    }
+
+    private static float value(int series, int index) {
+        return series * 1000 + (index % 997) * 0.5f;
+    }
+}
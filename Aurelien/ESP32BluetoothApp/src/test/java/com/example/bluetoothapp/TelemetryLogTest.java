@@ -0,0 +1,229 @@
+package com.example.bluetoothapp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Journal : réparation d'un segment abîmé à l'ouverture, index incohérent, anciens segments
+ * à 4 canaux et rétention.
+ */
+public class TelemetryLogTest {
+
+    private static final ChannelRegistry REGISTRY = ChannelRegistry.createDefault();
+    private static final int CHANNELS = REGISTRY.getChannelCount();
+    private static final String FIRST_SEGMENT = "0000000000000000";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void tornTailIsTruncatedAndAppendsResume() throws IOException {
+        File directory = folder.newFolder();
+        File data = writeTwoBlocks(directory);
+        // Coupure pendant l'écriture du second bloc
+        try (RandomAccessFile file = new RandomAccessFile(data, "rw")) {
+            file.setLength(file.length() - 10);
+        }
+        assertIntactPrefixThenResume(directory, data);
+    }
+
+    @Test
+    public void blockWithBadCrcIsTruncatedAndAppendsResume() throws IOException {
+        File directory = folder.newFolder();
+        File data = writeTwoBlocks(directory);
+        // Dernier octet du second bloc altéré : taille cohérente, CRC faux
+        try (RandomAccessFile file = new RandomAccessFile(data, "rw")) {
+            file.seek(file.length() - 1);
+            int last = file.read();
+            file.seek(file.length() - 1);
+            file.write(last ^ 0xFF);
+        }
+        assertIntactPrefixThenResume(directory, data);
+    }
+
+    @Test
+    public void inconsistentIndexFallsBackToBlockScan() throws IOException {
+        File directory = folder.newFolder();
+        File data = writeTwoBlocks(directory);
+        File index = new File(directory, FIRST_SEGMENT + ".idx");
+        // Copie en second segment : le premier n'est plus le dernier et son index est lu tel quel
+        Files.copy(data.toPath(), new File(directory, "0000000000000001.log").toPath());
+        Files.copy(index.toPath(), new File(directory, "0000000000000001.idx").toPath());
+        try (RandomAccessFile file = new RandomAccessFile(index, "rw")) {
+            file.setLength(TelemetryLog.INDEX_ENTRY_SIZE);
+        }
+
+        TelemetryLog log = TelemetryLog.open(directory, CHANNELS);
+        List<TelemetrySample> samples = readAll(log);
+        log.close();
+        assertEquals(400, samples.size());
+        for (int copy = 0; copy < 2; copy++) {
+            assertSequence(samples, copy * 200, 1000, 100);
+            assertSequence(samples, copy * 200 + 100, 2000, 100);
+        }
+        // Index reconstruit à partir des en-têtes de blocs
+        assertEquals(2 * TelemetryLog.INDEX_ENTRY_SIZE, index.length());
+    }
+
+    @Test
+    public void legacyFourChannelSegmentIsReadable() throws IOException {
+        File directory = folder.newFolder();
+        writeLegacySegment(new File(directory, FIRST_SEGMENT + ".log"), 1000, 3);
+
+        TelemetryLog log = TelemetryLog.open(directory, CHANNELS);
+        List<TelemetrySample> samples = readAll(log);
+        assertEquals(3, samples.size());
+        assertSequence(samples, 0, 1000, 3);
+        assertTrue(samples.get(0).has(ChannelRegistry.BRIGHTNESS));
+        assertFalse(samples.get(0).has(ChannelRegistry.PRESSURE));
+        log.close();
+
+        // Format différent : les nouveaux échantillons vont dans un nouveau segment
+        append(directory, CHANNELS, 2000, 5);
+        assertTrue(new File(directory, "0000000000000001.log").exists());
+        log = TelemetryLog.open(directory, CHANNELS);
+        samples = readAll(log);
+        log.close();
+        assertEquals(8, samples.size());
+        assertSequence(samples, 0, 1000, 3);
+        assertSequence(samples, 3, 2000, 5);
+        assertEquals(2004 * (ChannelRegistry.LUX + 1) * 0.5f, samples.get(7).get(ChannelRegistry.LUX), 0);
+    }
+
+    @Test
+    public void retentionDeletesOldSegments() throws Exception {
+        File directory = folder.newFolder();
+        writeTwoBlocks(directory);
+        File oldData = new File(directory, FIRST_SEGMENT + ".log");
+
+        // Autre nombre de canaux : le vieux segment n'est pas le segment en cours d'écriture
+        long now = System.currentTimeMillis();
+        TelemetryLog log = TelemetryLog.open(directory, 3);
+        log.setRetentionMillis(86_400_000L);
+        log.append(sample(3, now));
+        for (int i = 0; i < 100 && oldData.exists(); i++) {
+            Thread.sleep(50);
+        }
+        log.close();
+        assertFalse(oldData.exists());
+        assertFalse(new File(directory, FIRST_SEGMENT + ".idx").exists());
+
+        log = TelemetryLog.open(directory, 3);
+        List<TelemetrySample> samples = readAll(log);
+        log.close();
+        assertEquals(1, samples.size());
+        assertEquals(now, samples.get(0).getReceivedAtMillis());
+    }
+
+    // Deux sessions de 100 échantillons : un bloc chacune, dans le même segment
+    private static File writeTwoBlocks(File directory) throws IOException {
+        append(directory, CHANNELS, 1000, 100);
+        append(directory, CHANNELS, 2000, 100);
+        File data = new File(directory, FIRST_SEGMENT + ".log");
+        assertEquals(2 * (TelemetryLog.BLOCK_HEADER_SIZE + 100 * TelemetryLog.recordSize(CHANNELS)),
+                data.length());
+        return data;
+    }
+
+    private static void assertIntactPrefixThenResume(File directory, File data) throws IOException {
+        long intact = TelemetryLog.BLOCK_HEADER_SIZE + 100 * TelemetryLog.recordSize(CHANNELS);
+        TelemetryLog log = TelemetryLog.open(directory, CHANNELS);
+        List<TelemetrySample> samples = readAll(log);
+        log.close();
+        assertEquals(intact, data.length());
+        assertEquals(100, samples.size());
+        assertSequence(samples, 0, 1000, 100);
+
+        // L'écriture reprend dans le même segment, juste après le bloc intact
+        append(directory, CHANNELS, 3000, 50);
+        log = TelemetryLog.open(directory, CHANNELS);
+        samples = readAll(log);
+        log.close();
+        assertEquals(150, samples.size());
+        assertSequence(samples, 0, 1000, 100);
+        assertSequence(samples, 100, 3000, 50);
+        assertFalse(new File(directory, "0000000000000001.log").exists());
+    }
+
+    // Une ouverture par appel : la fermeture écrit les échantillons en un seul bloc
+    private static void append(File directory, int channels, long start, int count) throws IOException {
+        TelemetryLog log = TelemetryLog.open(directory, channels);
+        for (int i = 0; i < count; i++) {
+            assertTrue(log.append(sample(channels, start + i)));
+        }
+        log.close();
+    }
+
+    private static TelemetrySample sample(int channels, long timestamp) {
+        TelemetrySample sample = new TelemetrySample(channels);
+        sample.setReceivedAtMillis(timestamp);
+        for (int channel = 0; channel < channels; channel++) {
+            sample.set(channel, timestamp * (channel + 1) * 0.5f);
+        }
+        return sample;
+    }
+
+    private static List<TelemetrySample> readAll(TelemetryLog log) throws IOException {
+        List<TelemetrySample> samples = new ArrayList<>();
+        log.read(Long.MIN_VALUE, Long.MAX_VALUE, sample -> {
+            TelemetrySample copy = new TelemetrySample(sample.getChannelCount());
+            copy.copyFrom(sample);
+            samples.add(copy);
+        });
+        return samples;
+    }
+
+    private static void assertSequence(List<TelemetrySample> samples, int from, long start, int count) {
+        for (int i = 0; i < count; i++) {
+            TelemetrySample sample = samples.get(from + i);
+            long timestamp = start + i;
+            assertEquals(timestamp, sample.getReceivedAtMillis());
+            assertEquals(timestamp * 0.5f, sample.get(ChannelRegistry.TEMPERATURE), 0);
+            assertEquals(timestamp, sample.get(ChannelRegistry.VOLTAGE), 0);
+        }
+    }
+
+    // Ancien format : champ réservé à 0 à la place du nombre de canaux, 4 valeurs par enregistrement
+    private static void writeLegacySegment(File file, long start, int count) throws IOException {
+        int channels = TelemetryLog.LEGACY_CHANNELS;
+        ByteBuffer records = ByteBuffer.allocate(count * TelemetryLog.recordSize(channels))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < count; i++) {
+            TelemetrySample sample = sample(channels, start + i);
+            records.putLong(start + i);
+            records.putInt(0);
+            records.putInt(sample.getPresentMask());
+            for (int channel = 0; channel < channels; channel++) {
+                records.putFloat(sample.get(channel));
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(records.array());
+
+        ByteBuffer block = ByteBuffer.allocate(TelemetryLog.BLOCK_HEADER_SIZE + records.capacity())
+                .order(ByteOrder.LITTLE_ENDIAN);
+        block.putInt(TelemetryLog.BLOCK_MAGIC);
+        block.putInt(count);
+        block.putLong(start);
+        block.putLong(start + count - 1);
+        block.putInt((int) crc.getValue());
+        block.putInt(0);
+        block.put(records.array());
+        Files.write(file.toPath(), block.array());
+    }
+}
@@ -0,0 +1,206 @@
+package com.example.bluetoothapp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Chaîne de réception complète sur la JVM : simulateur -> transport -> décodeur -> livraison.
+ * Le thread principal Android est remplacé par un exécuteur à un seul thread.
+ */
+public class TransportIngestionTest {
+
+    private ScheduledExecutorService deliveryThread;
+    private ExecutorService readers;
+    private final CountingCallback callback = new CountingCallback();
+    private final AtomicLong decoded = new AtomicLong();
+
+    @Before
+    public void setUp() {
+        deliveryThread = Executors.newSingleThreadScheduledExecutor();
+        readers = Executors.newFixedThreadPool(BluetoothService.MAX_DEVICES);
+    }
+
+    @After
+    public void tearDown() {
+        readers.shutdownNow();
+        deliveryThread.shutdownNow();
+    }
+
+    @Test
+    public void pipesCarryMillionsOfSamples() throws Exception {
+        Esp32Simulator simulator = new Esp32Simulator(8);
+        simulator.setRateHz(0);
+        long perDevice = 250_000;
+
+        List<TelemetryDecoder> decoders = ingest(new ArrayList<>(simulator.startPipes(perDevice)));
+        awaitReceived(8 * perDevice);
+
+        for (TelemetryDecoder decoder : decoders) {
+            assertEquals(perDevice, decoder.getLineCount());
+            assertEquals(0, decoder.getErrorCount());
+        }
+        for (int device = 0; device < 8; device++) {
+            assertEquals(perDevice, callback.received(Esp32Simulator.deviceAddress(device)));
+        }
+    }
+
+    @Test
+    public void corruptedLinesAreCountedNotFatal() throws Exception {
+        Esp32Simulator simulator = new Esp32Simulator(4);
+        simulator.setRateHz(0);
+        simulator.setCorruptionRatio(0.05);
+        long perDevice = 20_000;
+
+        List<TelemetryDecoder> decoders = ingest(new ArrayList<>(simulator.startPipes(perDevice)));
+        long errors = 0;
+        long lines = 0;
+        for (TelemetryDecoder decoder : decoders) {
+            errors += decoder.getErrorCount();
+            lines += decoder.getLineCount();
+        }
+        awaitReceived(decoded.get());
+
+        assertEquals(4 * perDevice, lines);
+        assertTrue(errors > 0);
+        // Une ligne corrompue peut être rejetée, jamais plus
+        assertTrue(decoded.get() >= 4 * perDevice - simulator.getCorruptedCount());
+    }
+
+    @Test
+    public void tcpLoopbackWithPacingAndJitter() throws Exception {
+        Esp32Simulator simulator = new Esp32Simulator(2);
+        simulator.setRateHz(200);
+        simulator.setJitterRatio(0.5);
+        long perDevice = 200;
+
+        try (ServerSocket server = new ServerSocket(0, 8, InetAddress.getLoopbackAddress())) {
+            Future<?> serving = readers.submit(() -> {
+                simulator.serve(server, perDevice);
+                return null;
+            });
+            List<Transport> transports = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                transports.add(new TcpTransport("127.0.0.1", server.getLocalPort()));
+            }
+
+            List<TelemetryDecoder> decoders = ingest(transports);
+            serving.get();
+            awaitReceived(2 * perDevice);
+            for (TelemetryDecoder decoder : decoders) {
+                assertEquals(perDevice, decoder.getLineCount());
+            }
+        }
+    }
+
+    // Une boucle de lecture par transport, comme dans BluetoothService ; attend la fin des flux
+    private List<TelemetryDecoder> ingest(List<? extends Transport> transports) throws Exception {
+        List<TelemetryDecoder> decoders = new ArrayList<>();
+        List<Future<?>> loops = new ArrayList<>();
+        for (Transport transport : transports) {
+            SampleDispatcher dispatcher = new SampleDispatcher(callback, transport.getAddress(),
+                    new ExecutorScheduler(deliveryThread), ChannelRegistry.createDefault().getChannelCount());
+            long[] count = new long[1];
+            TelemetryDecoder decoder = new TelemetryDecoder(sample -> {
+                count[0]++;
+                dispatcher.publish(sample);
+            });
+            decoders.add(decoder);
+            loops.add(readers.submit(() -> {
+                transport.connect();
+                InputStream in = transport.getInputStream();
+                while (decoder.readFrom(in) >= 0) {
+                    // Décodage et publication dans le listener
+                }
+                transport.close();
+                decoded.addAndGet(count[0]);
+                return null;
+            }));
+        }
+        for (Future<?> loop : loops) {
+            loop.get(60, TimeUnit.SECONDS);
+        }
+        return decoders;
+    }
+
+    private void awaitReceived(long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (callback.total() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(expected, callback.total());
+    }
+
+    static class ExecutorScheduler implements SampleDispatcher.Scheduler {
+        private final ScheduledExecutorService executor;
+
+        ExecutorScheduler(ScheduledExecutorService executor) {
+            this.executor = executor;
+        }
+
+        @Override
+        public boolean postFrame(Runnable task) {
+            return false;
+        }
+
+        @Override
+        public void postDelayed(Runnable task, long delayMillis) {
+            executor.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public long uptimeMillis() {
+            return System.nanoTime() / 1_000_000;
+        }
+    }
+
+    static class CountingCallback implements BluetoothService.BluetoothCallback {
+        private final ConcurrentHashMap<String, AtomicLong> counts = new ConcurrentHashMap<>();
+        private final AtomicLong total = new AtomicLong();
+
+        @Override
+        public void onSamplesReceived(String deviceAddress, SampleBatch batch) {
+            // Compte aussi les échantillons regroupés ou écrasés quand la livraison prend du retard
+            counts.computeIfAbsent(deviceAddress, a -> new AtomicLong()).addAndGet(batch.getReceivedCount());
+            total.addAndGet(batch.getReceivedCount());
+        }
+
+        long received(String deviceAddress) {
+            AtomicLong count = counts.get(deviceAddress);
+            return count != null ? count.get() : 0;
+        }
+
+        long total() {
+            return total.get();
+        }
+
+        @Override
+        public void onConnectionStateChanged(String deviceAddress, int state) {
+        }
+
+        @Override
+        public void onConnectionFailed(String deviceAddress) {
+        }
+
+        @Override
+        public void onAlertChanged(String deviceAddress, AlertRule rule, boolean raised, float value) {
+        }
+    }
+}